@@ -11,7 +11,6 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Base64;
 
 public class ControladorAudio {
     private static final String MIME_WAV = "audio/wav";
@@ -52,26 +51,30 @@ public class ControladorAudio {
     }
 
     private ResultadoEnvioAudio procesarEnvio(File archivoWav, byte[] datosWav, RegistroLocal registroLocal) {
-        if (datosWav == null || datosWav.length == 0) {
+        // Con el archivo en disco se sube leyéndolo por bloques; los bytes en memoria quedan de respaldo
+        boolean desdeArchivo = archivoWav != null && archivoWav.isFile() && archivoWav.length() > 0;
+        if (!desdeArchivo && (datosWav == null || datosWav.length == 0)) {
             return ResultadoEnvioAudio.fallo("No se recibió audio para enviar");
         }
         try {
-            AnalisisWav analisis = analizarWav(datosWav);
+            AnalisisWav analisis = desdeArchivo ? analizarWav(archivoWav) : analizarWav(datosWav);
             if (analisis == null) {
                 return ResultadoEnvioAudio.fallo("Formato de audio no soportado");
             }
 
             com.arquitectura.servicios.ServicioComandosChat comandos = new com.arquitectura.servicios.ServicioComandosChat(conexion);
-            String base64 = Base64.getEncoder().encodeToString(datosWav);
             String nombreArchivo = archivoWav != null ? archivoWav.getName() : null;
-            var respuesta = comandos.subirAudio(base64, MIME_WAV, analisis.duracionSegundos, nombreArchivo, 10000);
+            var respuesta = (desdeArchivo
+                    ? comandos.subirAudioAsincrono(archivoWav.toPath(), MIME_WAV, analisis.duracionSegundos, nombreArchivo, 10000)
+                    : comandos.subirAudioAsincrono(new ByteArrayInputStream(datosWav), MIME_WAV, analisis.duracionSegundos, nombreArchivo, 10000))
+                    .join();
             if (respuesta == null || !respuesta.exito || respuesta.rutaArchivo == null || respuesta.rutaArchivo.isBlank()) {
                 String mensaje = respuesta != null && respuesta.mensaje != null ? respuesta.mensaje : "Error subiendo el audio";
                 return ResultadoEnvioAudio.fallo(mensaje);
             }
 
             try {
-                boolean enviado = registroLocal.registrar(respuesta.rutaArchivo, analisis.duracionSegundos, base64, MIME_WAV);
+                boolean enviado = registroLocal.registrar(respuesta.rutaArchivo, analisis.duracionSegundos, null, MIME_WAV);
                 if (!enviado) {
                     return ResultadoEnvioAudio.fallo("El servidor no confirmó el envío del audio");
                 }
@@ -90,22 +93,32 @@ public class ControladorAudio {
     private AnalisisWav analizarWav(byte[] datosWav) throws IOException, UnsupportedAudioFileException {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(datosWav);
              AudioInputStream ais = AudioSystem.getAudioInputStream(bais)) {
-            AudioFormat formato = ais.getFormat();
-            if (formato == null) return null;
-            if (formato.getChannels() != 1 || formato.getSampleSizeInBits() != 16) return null;
-            float sampleRate = formato.getSampleRate();
-            if (sampleRate <= 0) return null;
-            if (Math.abs(sampleRate - 16000f) > 1f) return null;
-            long frames = ais.getFrameLength();
-            if (frames <= 0) {
-                frames = datosWav.length / Math.max(1, formato.getFrameSize());
-            }
-            double segundos = frames / sampleRate;
-            int duracion = (int) Math.max(1, Math.ceil(segundos));
-            AnalisisWav analisis = new AnalisisWav();
-            analisis.duracionSegundos = duracion;
-            return analisis;
+            return analizarWav(ais, datosWav.length);
+        }
+    }
+
+    private AnalisisWav analizarWav(File archivoWav) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream ais = AudioSystem.getAudioInputStream(archivoWav)) {
+            return analizarWav(ais, archivoWav.length());
+        }
+    }
+
+    private AnalisisWav analizarWav(AudioInputStream ais, long tamanoBytes) {
+        AudioFormat formato = ais.getFormat();
+        if (formato == null) return null;
+        if (formato.getChannels() != 1 || formato.getSampleSizeInBits() != 16) return null;
+        float sampleRate = formato.getSampleRate();
+        if (sampleRate <= 0) return null;
+        if (Math.abs(sampleRate - 16000f) > 1f) return null;
+        long frames = ais.getFrameLength();
+        if (frames <= 0) {
+            frames = tamanoBytes / Math.max(1, formato.getFrameSize());
         }
+        double segundos = frames / sampleRate;
+        int duracion = (int) Math.max(1, Math.ceil(segundos));
+        AnalisisWav analisis = new AnalisisWav();
+        analisis.duracionSegundos = duracion;
+        return analisis;
     }
 
     @FunctionalInterface
@@ -1,6 +1,7 @@
 package com.arquitectura.controladores;
 
 import com.arquitectura.entidades.ClienteLocal;
+import com.arquitectura.infra.json.ObjetoJson;
 import com.arquitectura.servicios.ServicioConexionChat;
 import com.arquitectura.servicios.ServicioComandosChat;
 import com.arquitectura.servicios.ObservadorEventosChat;
@@ -45,7 +46,7 @@ public class ControladorLogin {
         }
         try {
             String ip = obtenerIpLocal();
-            var res = comandos.iniciarSesionYEsperarAckConMensaje(usuarioOEmail, contrasenia, ip, 5000);
+            var res = comandos.iniciarSesionAsincrono(usuarioOEmail, contrasenia, ip, 5000).join();
             boolean ok = res.success;
             if (res.message != null && !res.message.isEmpty()) {
                 ultimoMensajeServidor = res.message;
@@ -57,42 +58,27 @@ public class ControladorLogin {
 
             // Solo crear la sesión local cuando el servidor confirma LOGIN exitoso
             clienteSesion = new ClienteLocal();
+            // La respuesta se lee una vez; de ahí salen el sessionId, los datos del usuario y la foto
+            ObjetoJson respuesta = ObjetoJson.intentarParsear(res.raw);
             // Si el servidor devuelve un sessionId, usarlo como token de sesion para la DB local
-            try {
-                String rawTok0 = res.raw;
-                if (rawTok0 != null) {
-                    var psid0 = java.util.regex.Pattern.compile("\\\"sessionId\\\"\\s*:\\s*\\\"(.*?)\\\"");
-                    var msid0 = psid0.matcher(rawTok0);
-                    if (msid0.find()) {
-                        String sid0 = msid0.group(1);
-                        if (sid0 != null && !sid0.isBlank()) {
-                            System.setProperty("arquitectura.config.client.db.sessionToken", sid0);
-                        }
-                    }
-                }
-            } catch (Exception ignored00) {}
-            try {
-                String raw = res.raw;
-                if (raw != null) {
-                    var pid = java.util.regex.Pattern.compile("\\\"id\\\"\\s*:\\s*(\\d+)");
-                    var puser = java.util.regex.Pattern.compile("\\\"usuario\\\"\\s*:\\s*\\\"(.*?)\\\"");
-                    var pmail = java.util.regex.Pattern.compile("\\\"email\\\"\\s*:\\s*\\\"(.*?)\\\"");
-                    var mid = pid.matcher(raw);
-                    var mus = puser.matcher(raw);
-                    var mma = pmail.matcher(raw);
-                    if (mid.find()) { try { clienteSesion.setId(Long.parseLong(mid.group(1))); } catch (Exception ignored2) {} }
-                    if (mus.find()) { clienteSesion.setNombreDeUsuario(mus.group(1)); } else { clienteSesion.setNombreDeUsuario(usuarioOEmail); }
-                    if (mma.find()) { clienteSesion.setEmail(mma.group(1)); }
-                } else {
-                    clienteSesion.setNombreDeUsuario(usuarioOEmail);
-                }
-            } catch (Exception ignored2) {
+            String sid0 = respuesta != null ? respuesta.buscarTexto("sessionId") : null;
+            if (sid0 != null && !sid0.isBlank()) {
+                System.setProperty("arquitectura.config.client.db.sessionToken", sid0);
+            }
+            if (respuesta != null) {
+                Long id = respuesta.buscarLargo("id");
+                String usuario = respuesta.buscarTexto("usuario");
+                String email = respuesta.buscarTexto("email");
+                if (id != null) clienteSesion.setId(id);
+                clienteSesion.setNombreDeUsuario(usuario != null ? usuario : usuarioOEmail);
+                if (email != null) clienteSesion.setEmail(email);
+            } else {
                 clienteSesion.setNombreDeUsuario(usuarioOEmail);
             }
             clienteSesion.setContrasenia(contrasenia);
             clienteSesion.setEstado(true);
             configurarContextoLocal(clienteSesion);
-            intentarCargarFotoDesdeRespuesta(res.raw, clienteSesion);
+            intentarCargarFotoDesdeRespuesta(respuesta, clienteSesion);
             // Registrar observador singleton de eventos de mensajes
             try { ObservadorEventosChat.instancia().registrarEn(servicioConexion); } catch (Exception ignored4) {}
             // Completar datos faltantes consultando LIST_USERS si el servidor no devolvió id
@@ -100,7 +86,7 @@ public class ControladorLogin {
                 String emailRef = (usuarioOEmail != null && usuarioOEmail.contains("@")) ? usuarioOEmail : null;
                 if (clienteSesion.getEmail() == null && emailRef != null) clienteSesion.setEmail(emailRef);
                 if (clienteSesion.getId() == null) {
-                    java.util.List<com.arquitectura.entidades.ClienteLocal> todos = comandos.listarUsuariosYEsperar(6000);
+                    java.util.List<com.arquitectura.entidades.ClienteLocal> todos = comandos.listarUsuariosAsincrono(6000).join();
                     if (todos != null) {
                         for (com.arquitectura.entidades.ClienteLocal u : todos) {
                             if (u == null) continue;
@@ -137,13 +123,15 @@ public class ControladorLogin {
             String fotoBase64 = (foto != null && foto.length > 0) ? Base64.getEncoder().encodeToString(foto) : null;
             String ip = obtenerIpLocal();
             // Enviar REGISTER y esperar respuesta del servidor
+            var espera = servicioConexion.registrarEspera("REGISTER", 6000);
             boolean enviado = comandos.registrar(usuario, email, contrasenia, fotoBase64, null, ip);
-            if (!enviado) { ultimoMensajeServidor = "No se pudo enviar solicitud"; return false; }
-            String linea = servicioConexion.esperarRespuesta("REGISTER", 6000);
+            if (!enviado) { espera.cancel(false); ultimoMensajeServidor = "No se pudo enviar solicitud"; return false; }
+            String linea = servicioConexion.esperarRespuesta(espera);
             if (linea == null) { ultimoMensajeServidor = "Tiempo de espera agotado"; return false; }
-            String compact = linea.replaceAll("\\s+", "");
-            boolean ok = compact.contains("\"command\":\"REGISTER\"") && compact.contains("\"success\":true");
-            String msg = extraerMensaje(linea);
+            ObjetoJson respuesta = ObjetoJson.intentarParsear(linea);
+            boolean ok = respuesta != null && "REGISTER".equals(respuesta.texto("command"))
+                    && Boolean.TRUE.equals(respuesta.buscarBooleano("success"));
+            String msg = respuesta != null ? respuesta.buscarTexto("message") : null;
             ultimoMensajeServidor = (msg != null && !msg.isEmpty()) ? msg : (ok ? "Registro exitoso" : "Error en registro");
             return ok;
         } catch (Exception e) {
@@ -152,15 +140,6 @@ public class ControladorLogin {
         }
     }
 
-    private String extraerMensaje(String jsonLinea) {
-        try {
-            var pat = java.util.regex.Pattern.compile("\\\"message\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            var m = pat.matcher(jsonLinea);
-            if (m.find()) return m.group(1);
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     private String obtenerIpLocal() {
         try {
             // Preferir IPv4 y direcciones site-local (privadas)
@@ -194,17 +173,12 @@ public class ControladorLogin {
         ServicioContextoDatos.configurarUsuarioActual(cliente.getId(), cliente.getNombreDeUsuario());
     }
 
-    private void intentarCargarFotoDesdeRespuesta(String raw, ClienteLocal cliente) {
-        if (raw == null || cliente == null) return;
-        try {
-            var pfoto = java.util.regex.Pattern.compile("\\\"foto(?:Base64)?\\\"\\s*:\\s*\\\"(.*?)\\\"", java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.DOTALL);
-            var mfo = pfoto.matcher(raw);
-            if (mfo.find()) {
-                String base64 = mfo.group(1);
-                if (base64 != null && !base64.isBlank()) {
-                    try { cliente.setFoto(Base64.getDecoder().decode(base64)); } catch (IllegalArgumentException ignored) {}
-                }
-            }
-        } catch (Exception ignored) {}
+    private void intentarCargarFotoDesdeRespuesta(ObjetoJson respuesta, ClienteLocal cliente) {
+        if (respuesta == null || cliente == null) return;
+        String base64 = respuesta.buscarTexto("foto");
+        if (base64 == null) base64 = respuesta.buscarTexto("fotoBase64");
+        if (base64 != null && !base64.isBlank()) {
+            try { cliente.setFoto(Base64.getDecoder().decode(base64)); } catch (IllegalArgumentException ignored) {}
+        }
     }
 }
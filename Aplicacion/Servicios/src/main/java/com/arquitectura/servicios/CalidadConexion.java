@@ -0,0 +1,55 @@
+package com.arquitectura.servicios;
+
+import java.util.Locale;
+
+/**
+ * Instantánea del RTT medido con los PING de latido. Los tiempos son -1 mientras
+ * no haya ninguna muestra.
+ */
+public final class CalidadConexion {
+    private final double ultimoRttMs;
+    private final double rttP50Ms;
+    private final double rttP99Ms;
+    private final int muestras;
+    private final int fallosConsecutivos;
+
+    CalidadConexion(double ultimoRttMs, double rttP50Ms, double rttP99Ms, int muestras, int fallosConsecutivos) {
+        this.ultimoRttMs = ultimoRttMs;
+        this.rttP50Ms = rttP50Ms;
+        this.rttP99Ms = rttP99Ms;
+        this.muestras = muestras;
+        this.fallosConsecutivos = fallosConsecutivos;
+    }
+
+    public boolean tieneMuestras() {
+        return muestras > 0;
+    }
+
+    public double obtenerUltimoRttMs() {
+        return ultimoRttMs;
+    }
+
+    public double obtenerRttP50Ms() {
+        return rttP50Ms;
+    }
+
+    public double obtenerRttP99Ms() {
+        return rttP99Ms;
+    }
+
+    /** Muestras dentro de la ventana usada para los percentiles. */
+    public int obtenerMuestras() {
+        return muestras;
+    }
+
+    /** PING seguidos sin respuesta hasta ahora. */
+    public int obtenerFallosConsecutivos() {
+        return fallosConsecutivos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "CalidadConexion{ultimo=%.1fms, p50=%.1fms, p99=%.1fms, muestras=%d, fallos=%d}",
+                ultimoRttMs, rttP50Ms, rttP99Ms, muestras, fallosConsecutivos);
+    }
+}
@@ -0,0 +1,125 @@
+package com.arquitectura.servicios;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.net.ClienteChatTcp;
+import com.arquitectura.infra.net.DespachadorRespuestas;
+import com.arquitectura.infra.net.LineaBase64;
+import com.arquitectura.infra.net.OyenteMensajesChat;
+import com.arquitectura.infra.net.ProtocoloChat;
+import com.arquitectura.infra.net.TramaChat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Segunda conexión autenticada para el tráfico pesado (subidas de audio y
+ * MESSAGE_SYNC), para que no bloquee a los comandos interactivos de la conexión
+ * principal. Se abre al primer uso con las credenciales de la sesión y un LOGIN con
+ * "conexion":"bulk"; si el servidor no la acepta se sigue por la principal y no se
+ * vuelve a intentar hasta pasado un minuto.
+ *
+ * Los MESSAGE_SYNC que lleguen por aquí se entregan a los oyentes de la principal,
+ * en el hilo de despacho de la principal.
+ * Va siempre al mismo servidor que la principal: si esta cambió de servidor, la
+ * masiva se vuelve a abrir en el siguiente uso.
+ */
+final class CarrilMasivo {
+    private static final long ESPERA_TRAS_RECHAZO_MS = 60000;
+    private static final long TIMEOUT_LOGIN_MS = 10000;
+
+    private final ConfiguracionClienteChat configuracion;
+    private final ClienteChatTcp principal;
+    private final DespachadorRespuestas respuestas = new DespachadorRespuestas();
+    private ClienteChatTcp cliente;
+    private long rechazadoHasta;
+
+    CarrilMasivo(ConfiguracionClienteChat configuracion, ClienteChatTcp principal) {
+        this.configuracion = configuracion;
+        this.principal = principal;
+    }
+
+    /** Conexión masiva lista para usar, o null si hay que ir por la principal. */
+    synchronized ClienteChatTcp disponible(String[] sesion) {
+        if (cliente != null && cliente.estaConectado()
+                && Objects.equals(cliente.obtenerServidorActual(), principal.obtenerServidorActual())) {
+            return cliente;
+        }
+        if (sesion == null || System.currentTimeMillis() < rechazadoHasta) return null;
+        cerrar();
+        // Sin supervisor: si se cae, se vuelve a abrir en el siguiente uso
+        ClienteChatTcp nuevo = new ClienteChatTcp(configuracion, false);
+        if (principal.obtenerServidorActual() != null) nuevo.fijarServidor(principal.obtenerServidorActual());
+        nuevo.agregarOyente(respuestas);
+        nuevo.observarEscrituras(respuestas::alEscribirComando);
+        nuevo.suscribir("MESSAGE_SYNC", new OyenteMensajesChat() {
+            @Override public void alRecibirMensaje(String mensaje) {
+                principal.entregar(TramaChat.desdeTexto(mensaje));
+            }
+
+            @Override public void alRecibirTrama(TramaChat trama) {
+                principal.entregar(trama);
+            }
+        });
+        try {
+            nuevo.conectar();
+            autenticar(nuevo, sesion);
+        } catch (IOException e) {
+            System.out.println("[CarrilMasivo] Sin conexión masiva (" + e.getMessage() + "); se usa la principal");
+            rechazadoHasta = System.currentTimeMillis() + ESPERA_TRAS_RECHAZO_MS;
+            try { nuevo.close(); } catch (IOException ignored) {}
+            return null;
+        }
+        System.out.println("[CarrilMasivo] Conexión masiva abierta");
+        cliente = nuevo;
+        return nuevo;
+    }
+
+    CompletableFuture<String> enviarYEsperar(ClienteChatTcp c, String comando, String idSolicitud, ByteBuffer linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comando, idSolicitud, timeoutMs);
+        c.enviarAsincrono(linea).whenComplete((r, e) -> {
+            if (e != null) espera.completeExceptionally(e);
+        });
+        return espera;
+    }
+
+    CompletableFuture<String> enviarYEsperar(ClienteChatTcp c, String comando, LineaBase64 linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comando, timeoutMs);
+        c.enviarAsincrono(linea).whenComplete((r, e) -> {
+            if (e != null) espera.completeExceptionally(e);
+        });
+        return espera;
+    }
+
+    synchronized void cerrar() {
+        if (cliente == null) return;
+        try { cliente.close(); } catch (IOException ignored) {}
+        cliente = null;
+    }
+
+    private void autenticar(ClienteChatTcp c, String[] sesion) throws IOException {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        p.put("email", sesion[0]);
+        p.put("contrasenia", sesion[1]);
+        if (sesion[2] != null) p.put("ip", sesion[2]);
+        p.put("conexion", "bulk");
+        String id = respuestas.nuevoIdSolicitud();
+        CompletableFuture<String> espera = respuestas.esperar("LOGIN", id, TIMEOUT_LOGIN_MS);
+        c.enviar(ProtocoloChat.codificar("LOGIN", p, id));
+        String linea;
+        try {
+            linea = espera.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Autenticación de la conexión masiva interrumpida");
+        } catch (ExecutionException e) {
+            throw new IOException("Sin respuesta al LOGIN de la conexión masiva", e.getCause());
+        }
+        if (!ServicioComandosChat.esRespuestaLoginExitosa(linea)) {
+            throw new IOException("El servidor no aceptó la conexión masiva");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.arquitectura.servicios;
+
+import java.util.Arrays;
+
+/**
+ * Últimas muestras de RTT en un arreglo circular. Los percentiles se calculan sobre
+ * una copia ordenada al pedirlos, que es poco frecuente comparado con registrar.
+ */
+final class HistogramaLatencia {
+    private final long[] muestras;
+    private int siguiente;
+    private int cantidad;
+    private long ultima = -1;
+
+    HistogramaLatencia(int capacidad) {
+        this.muestras = new long[Math.max(1, capacidad)];
+    }
+
+    synchronized void registrar(long nanos) {
+        muestras[siguiente] = nanos;
+        siguiente = (siguiente + 1) % muestras.length;
+        if (cantidad < muestras.length) cantidad++;
+        ultima = nanos;
+    }
+
+    synchronized CalidadConexion instantanea(int fallosConsecutivos) {
+        if (cantidad == 0) return new CalidadConexion(-1, -1, -1, 0, fallosConsecutivos);
+        long[] orden = Arrays.copyOf(muestras, cantidad);
+        Arrays.sort(orden);
+        return new CalidadConexion(aMs(ultima), aMs(percentil(orden, 0.50)), aMs(percentil(orden, 0.99)),
+                cantidad, fallosConsecutivos);
+    }
+
+    // Método del rango más cercano
+    private static long percentil(long[] orden, double p) {
+        int i = (int) Math.ceil(p * orden.length) - 1;
+        return orden[Math.max(0, Math.min(orden.length - 1, i))];
+    }
+
+    private static double aMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.arquitectura.servicios;
+
+import com.arquitectura.infra.net.OyenteMensajesChat;
+import com.arquitectura.infra.net.RuedaTemporizadores;
+import com.arquitectura.infra.net.TramaChat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Latido de la conexión: cada intervalo manda un PING y mide el RTT de la respuesta,
+ * con o sin requestId. Con read.timeout.ms=0 es lo único que detecta una conexión
+ * medio abierta. Cualquier trama recibida prueba que la conexión sigue viva, así que
+ * un PING vencido solo cuenta como fallo si desde su envío no llegó nada; tras varios
+ * fallos seguidos se fuerza la reconexión.
+ *
+ * Corre sobre la RuedaTemporizadores compartida, así que cada latido solo encola
+ * el envío y nunca bloquea el hilo de la rueda.
+ */
+final class LatidoConexion implements OyenteMensajesChat {
+    private static final int VENTANA_MUESTRAS = 256;
+
+    private final ServicioConexionChat conexion;
+    private final long intervaloMs;
+    private final long timeoutMs;
+    private final int fallosMaximos;
+    private final HistogramaLatencia histograma = new HistogramaLatencia(VENTANA_MUESTRAS);
+    private final RuedaTemporizadores rueda = RuedaTemporizadores.compartida();
+
+    private volatile boolean activo;
+    private volatile int fallosConsecutivos;
+    private volatile CompletableFuture<Long> enCurso;
+    // Llegó alguna trama desde el último PING enviado
+    private volatile boolean recibido;
+    private RuedaTemporizadores.Temporizador proximo;
+
+    LatidoConexion(ServicioConexionChat conexion, long intervaloMs, long timeoutMs, int fallosMaximos) {
+        this.conexion = conexion;
+        this.intervaloMs = intervaloMs;
+        this.timeoutMs = timeoutMs;
+        this.fallosMaximos = fallosMaximos;
+    }
+
+    synchronized void iniciar() {
+        if (activo || intervaloMs <= 0) return;
+        activo = true;
+        fallosConsecutivos = 0;
+        proximo = rueda.programar(intervaloMs, this::latir);
+    }
+
+    synchronized void detener() {
+        activo = false;
+        if (proximo != null) proximo.cancelar();
+        proximo = null;
+    }
+
+    CalidadConexion obtenerCalidad() {
+        return histograma.instantanea(fallosConsecutivos);
+    }
+
+    @Override
+    public void alRecibirMensaje(String mensaje) {
+        recibido = true;
+    }
+
+    // Solo interesa que llegó algo: sin decodificar la trama
+    @Override
+    public void alRecibirTrama(TramaChat trama) {
+        recibido = true;
+    }
+
+    private void latir() {
+        synchronized (this) {
+            if (!activo) return;
+            proximo = rueda.programar(intervaloMs, this::latir);
+        }
+        // Sin conexión no hay nada que medir; un PING anterior aún pendiente cuenta cuando venza
+        if (!conexion.estaConectado() || conexion.estaReconectando()) return;
+        CompletableFuture<Long> anterior = enCurso;
+        if (anterior != null && !anterior.isDone()) return;
+        recibido = false;
+        CompletableFuture<Long> ping = new ServicioComandosChat(conexion).pingAsincrono(timeoutMs);
+        enCurso = ping;
+        ping.whenComplete(this::alResponder);
+    }
+
+    private void alResponder(Long rttNanos, Throwable error) {
+        if (error == null) {
+            histograma.registrar(rttNanos);
+            fallosConsecutivos = 0;
+            return;
+        }
+        Throwable c = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        // Un cierre de conexión ya lo atiende el cliente; solo el silencio cuenta como fallo
+        if (!(c instanceof TimeoutException)) return;
+        if (recibido) {
+            fallosConsecutivos = 0;
+            return;
+        }
+        int fallos = ++fallosConsecutivos;
+        System.out.println("[LatidoConexion] PING sin respuesta (" + fallos + "/" + fallosMaximos + ")");
+        if (fallos >= fallosMaximos && activo) {
+            fallosConsecutivos = 0;
+            conexion.forzarReconexion();
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.arquitectura.servicios;
 
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.arquitectura.config.ProveedorConexionCliente;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+import com.arquitectura.infra.json.CamposJson;
+import com.arquitectura.infra.json.DecodificadorBase64;
+import com.arquitectura.infra.json.VistaJson;
+import com.arquitectura.infra.net.EventoChat;
 import com.arquitectura.infra.net.OyenteMensajesChat;
+import com.arquitectura.infra.net.PoolBuffers;
+import com.arquitectura.infra.net.TramaChat;
+import com.arquitectura.repositorios.CamposMensajeSync;
 import com.arquitectura.repositorios.RepositorioMensajes;
 
 /**
@@ -17,23 +23,40 @@ import com.arquitectura.repositorios.RepositorioMensajes;
  */
 public class ObservadorEventosChat implements OyenteMensajesChat {
     private final RepositorioMensajes repo = new RepositorioMensajes();
-    private final ExecutorService ioPool = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "obs-eventos-chat-io");
-        t.setDaemon(true);
-        return t;
-    });
+    // Secuencial: los eventos se persisten en el orden en que llegan
+    private final ExecutorService ioPool = FabricaEjecutores.compartida().secuencial("obs-eventos-chat-io");
 
     private static final ObservadorEventosChat INSTANCE = new ObservadorEventosChat();
+    private static final int LOTE_SYNC_EN_DISCO = 200;
+    private static final String[] COMANDOS_OBSERVADOS = {"MESSAGE_SYNC", "EVENT", "NEW_CHANNEL_MESSAGE", "NEW_MESSAGE"};
     private static final java.util.Map<ServicioConexionChat, Boolean> REGISTRADOS = java.util.Collections.synchronizedMap(new java.util.WeakHashMap<>());
     
     // Listener para notificaciones de sincronización completada
     private volatile SincronizacionCompletadaListener sincronizacionListener;
+    // ultimaSincronizacion del último MESSAGE_SYNC persistido; base para la resincronización al reconectar
+    private volatile String ultimaSincronizacion;
 
     public static ObservadorEventosChat instancia() { return INSTANCE; }
     
     public void setSincronizacionListener(SincronizacionCompletadaListener listener) {
         this.sincronizacionListener = listener;
     }
+
+    /**
+     * Desde cuándo pedir mensajes al reconectar: la ultimaSincronizacion del último
+     * MESSAGE_SYNC procesado o, si no hubo, el server_ts más reciente de la BD local.
+     */
+    public String obtenerUltimaSincronizacion() {
+        String ultima = ultimaSincronizacion;
+        if (ultima != null) return ultima;
+        try {
+            java.sql.Timestamp ts = repo.obtenerUltimoServerTs();
+            return ts != null ? ts.toLocalDateTime().toString() : null;
+        } catch (Exception e) {
+            System.out.println("[ObservadorEventosChat] No se pudo leer el último server_ts: " + e.getMessage());
+            return null;
+        }
+    }
     
     private void notificarSincronizacionCompletada(int insertados, boolean exito, String mensajeError) {
         SincronizacionCompletadaListener listener = this.sincronizacionListener;
@@ -53,65 +76,73 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
         if (sc == null) return;
         synchronized (REGISTRADOS) {
             if (!Boolean.TRUE.equals(REGISTRADOS.get(sc))) {
-                try { sc.registrarOyente(this); REGISTRADOS.put(sc, true); System.out.println("[ObservadorEventosChat] Registrado sobre la conexion TCP (" + sc + ")"); } catch (Exception ignored) {}
+                try {
+                    // Solo las tramas que este observador procesa; el resto ya no pasa por él
+                    for (String clave : COMANDOS_OBSERVADOS) sc.suscribir(clave, this);
+                    REGISTRADOS.put(sc, true);
+                    System.out.println("[ObservadorEventosChat] Registrado sobre la conexion TCP (" + sc + ")");
+                } catch (Exception ignored) {}
             }
         }
     }
 
     @Override
-    public void alRecibirMensaje(String mensaje) {
-        if (mensaje == null) return;
-        String compact = mensaje.replaceAll("\\s+", "");
-        String raw = mensaje.replace('\n',' ').replace('\r',' ');
-        String rawLog = SanitizadorBase64Logs.truncarCamposBase64(raw);
-        String payload = extraerObjetoPayload(raw);
-        if (payload == null) payload = raw;
-        String payloadLog = SanitizadorBase64Logs.truncarCamposBase64(payload);
-        String command = extraerCampo(compact, "command");
-        registrarLogGenerico(command, payload, raw);
+    public void alRecibirTrama(TramaChat trama) {
+        // Una sincronización que no cupo en memoria se procesa desde el archivo, sin pasarla a String
+        if (trama.estaEnDisco() && "MESSAGE_SYNC".equals(trama.comando())) {
+            System.out.println("\n==== MESSAGE_SYNC recibido en disco (" + trama.longitud() + " bytes) ====\n");
+            ioPool.submit(() -> procesarMessageSyncPorPartes(trama));
+            return;
+        }
+        // El mismo EventoChat que reciben los demás oyentes de la trama: no se vuelve a leer
+        EventoChat evento = trama.evento();
+        if (evento == null) {
+            System.out.println("[ObservadorEventosChat] Trama descartada, no es un objeto JSON: " + SanitizadorBase64Logs.truncarCamposBase64(trama.comoTexto()));
+            return;
+        }
+        String jsonLog = SanitizadorBase64Logs.abreviar(evento.documento());
+        VistaJson payload = evento.payload();
+        String command = evento.comando();
+        registrarLogGenerico(evento, jsonLog);
         // Procesar sincronizaciones masivas (log y encolar)
-        if (compact.contains("\"command\":\"MESSAGE_SYNC\"")) {
-            String ultima = extraerCampo(payload, "ultimaSincronizacion");
-            Long total = null;
-            try { String t = extraerCampo(payload, "totalMensajes"); if (t != null) total = Long.parseLong(t); } catch (Exception ignored) {}
-            java.util.List<String> arr = extraerObjetosDeArreglo(payload, "mensajes");
+        if ("MESSAGE_SYNC".equals(command)) {
+            String ultima = payload.texto("ultimaSincronizacion");
+            Long total = payload.largo("totalMensajes");
+            java.util.List<VistaJson> arr = payload.objetos("mensajes");
             StringBuilder sb = new StringBuilder();
             sb.append("\n==== MESSAGE_SYNC recibido ====\n");
             sb.append("- totalMensajes: ").append(total).append('\n');
-            sb.append("- itemsEnArray: ").append(arr != null ? arr.size() : 0).append('\n');
+            sb.append("- itemsEnArray: ").append(arr.size()).append('\n');
             sb.append("- ultimaSincronizacion: ").append(ultima).append('\n');
-            sb.append("- payload: ").append(payloadLog).append('\n');
+            sb.append("- json: ").append(jsonLog).append('\n');
             sb.append("================================\n");
             System.out.println(sb.toString());
-            ioPool.submit(() -> procesarMessageSync(mensaje));
+            ioPool.submit(() -> procesarMessageSync(payload, ultima, arr));
             return;
         }
-        
+
         // Procesar eventos del servidor (como USER_STATUS_CHANGED)
-        if (compact.contains("\"command\":\"EVENT\"")) {
-            ioPool.submit(() -> procesarEventoServidor(mensaje));
+        if ("EVENT".equals(command)) {
+            ioPool.submit(() -> procesarEventoServidor(evento));
             return;
         }
-        
-        boolean esComandoCanal = contieneEventoCanal(compact);
-        boolean esComandoPrivado = contieneEventoPrivado(compact);
+
+        VistaJson payloadMensaje = evento.mensaje();
+        CamposJson m = new CamposJson(CamposMensajeSync.TABLA).leer(payloadMensaje);
+        boolean esComandoCanal = esEventoCanal(evento);
+        boolean esComandoPrivado = esEventoPrivado(evento);
         if (!(esComandoCanal || esComandoPrivado)) return;
 
-        String payloadMensaje = extraerPayloadMensaje(compact, payload);
         // Log organizado para NEW_CHANNEL_MESSAGE recibido (incluye eventos empaquetados en EVENT)
         if (esComandoCanal) {
-            Long canalId = extraerLong(payloadMensaje, "canalId");
-            if (canalId == null) {
-                String canalObj = extraerObjeto(payloadMensaje, "canal");
-                if (canalObj != null) canalId = obtenerCampoLong(canalObj, "id", "canalId");
-            }
-            Long id = obtenerCampoLongRaiz(payloadMensaje, "serverId", "id", "mensajeId", "messageId");
-            Long emisor = obtenerCampoLong(payloadMensaje, "emisor", "emisorId");
-            String tipo = obtenerCampoTexto(payloadMensaje, "tipo", "tipoMensaje");
-            String timeStamp = obtenerCampoTexto(payloadMensaje, "timeStamp", "timestamp");
-            String contenido = obtenerCampoTextoPermitirNulo(payloadMensaje, "contenido", "texto");
-            String rutaArchivo = obtenerCampoTexto(payloadMensaje, "rutaArchivo");
-            String transcripcion = obtenerCampoTextoPermitirNulo(payloadMensaje, "transcripcion");
+            Long canalId = canalIdDe(payloadMensaje);
+            Long id = m.largo(CamposMensajeSync.SERVER_ID);
+            Long emisor = m.largo(CamposMensajeSync.EMISOR);
+            String tipo = m.texto(CamposMensajeSync.TIPO);
+            String timeStamp = m.texto(CamposMensajeSync.TIMESTAMP);
+            String contenido = m.textoDeLaPrimera(CamposMensajeSync.TEXTO);
+            String rutaArchivo = m.texto(CamposMensajeSync.RUTA);
+            String transcripcion = m.textoDeLaPrimera(CamposMensajeSync.TRANSCRIPCION);
             StringBuilder sb = new StringBuilder();
             sb.append("\n==== NEW_CHANNEL_MESSAGE recibido ====\n");
             sb.append("- id: ").append(id).append('\n');
@@ -122,192 +153,192 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
             if (contenido != null) sb.append("- contenido: ").append(contenido).append('\n');
             if (rutaArchivo != null) sb.append("- rutaArchivo: ").append(rutaArchivo).append('\n');
             if (transcripcion != null) sb.append("- transcripcion: ").append(transcripcion).append('\n');
-            sb.append("- jsonCompleto: ").append(rawLog).append('\n');
+            sb.append("- jsonCompleto: ").append(jsonLog).append('\n');
             sb.append("====================================\n");
             System.out.println(sb.toString());
         } else if (esComandoPrivado) {
-            Long emisor = obtenerCampoLong(payloadMensaje, "emisor", "emisorId");
-            Long receptor = obtenerCampoLong(payloadMensaje, "receptor", "receptorId");
-            String tipo = obtenerCampoTexto(payloadMensaje, "tipo", "tipoMensaje");
-            String contenido = obtenerCampoTextoPermitirNulo(payloadMensaje, "contenido", "texto");
+            Long emisor = m.largo(CamposMensajeSync.EMISOR);
+            Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+            String tipo = m.texto(CamposMensajeSync.TIPO);
+            String contenido = m.textoDeLaPrimera(CamposMensajeSync.TEXTO);
             StringBuilder sb = new StringBuilder();
             sb.append("\n==== NEW_MESSAGE recibido ====\n");
             sb.append("- tipo: ").append(tipo).append('\n');
             sb.append("- emisor: ").append(emisor).append('\n');
             sb.append("- receptor: ").append(receptor).append('\n');
             if (contenido != null) sb.append("- contenido: ").append(contenido).append('\n');
-            sb.append("- jsonCompleto: ").append(rawLog).append('\n');
+            sb.append("- jsonCompleto: ").append(jsonLog).append('\n');
             sb.append("===============================\n");
             System.out.println(sb.toString());
         }
-        ioPool.submit(() -> procesarEventoMensaje(mensaje));
+        ioPool.submit(() -> procesarEventoMensaje(evento));
     }
 
-    private void registrarLogGenerico(String command, String payload, String raw) {
+    @Override
+    public void alRecibirMensaje(String mensaje) {
+        if (mensaje != null) alRecibirTrama(TramaChat.desdeTexto(mensaje));
+    }
+
+    private void registrarLogGenerico(EventoChat evento, String jsonLog) {
+        String command = evento.comando();
         if (command == null) return;
         StringBuilder sb = new StringBuilder();
         sb.append("[ObservadorEventosChat] Evento recibido command=").append(command);
         if ("EVENT".equalsIgnoreCase(command)) {
-            String origenParaTipo = payload != null ? payload : raw;
-            String tipoEvento = extraerCampo(origenParaTipo, "tipo");
-            if (tipoEvento == null) tipoEvento = extraerCampo(raw, "tipo");
+            String tipoEvento = evento.payload().texto("tipo");
+            if (tipoEvento == null) tipoEvento = evento.documento().buscarTexto("tipo");
             if (tipoEvento != null) {
                 sb.append(" tipo=").append(tipoEvento);
             }
         }
-        sb.append(" json=").append(SanitizadorBase64Logs.truncarCamposBase64(raw));
+        sb.append(" json=").append(jsonLog);
         System.out.println(sb.toString());
     }
 
-    private void procesarMessageSync(String json) {
+    private void procesarMessageSync(VistaJson payload, String ultima, java.util.List<VistaJson> objetos) {
         esperarContextoDatos();
         try {
-            String compact = json.replace('\n',' ').replace('\r',' ');
-            String payload = extraerObjetoPayload(compact);
-            if (payload == null) payload = compact;
-            
             // Log al inicio del procesamiento
-            String ultima = extraerCampo(payload, "ultimaSincronizacion");
-            Long total = null; 
-            try { 
-                String t = extraerCampo(payload, "totalMensajes"); 
-                if (t != null) total = Long.valueOf(t); 
-            } catch (Exception ignored) {}
-            
-            java.util.List<String> prev = extraerObjetosDeArreglo(payload, "mensajes");
+            Long total = payload.largo("totalMensajes");
             StringBuilder preSb = new StringBuilder();
             preSb.append("\n==== MESSAGE_SYNC (procesando) ====\n");
             preSb.append("- totalMensajes: ").append(total).append('\n');
-            preSb.append("- itemsEnArray: ").append(prev != null ? prev.size() : 0).append('\n');
+            preSb.append("- itemsEnArray: ").append(objetos.size()).append('\n');
             preSb.append("- ultimaSincronizacion: ").append(ultima).append('\n');
             preSb.append("================================\n");
             System.out.println(preSb.toString());
-            
-            java.util.List<String> objetos = extraerObjetosDeArreglo(payload, "mensajes");
+
             java.util.Set<Long> canalesNotificar = new java.util.HashSet<>();
             java.util.Set<Long> privadosNotificar = new java.util.HashSet<>();
-            int insertados = 0;
-            
-            // Usar inserción por lotes para mejor rendimiento
-            try {
-                insertados = repo.insertarMensajesDesdeServidorBatch(objetos);
-                
-                // Procesar notificaciones por tipo de conversación
-                for (String obj : objetos) {
-                    Long canalId = obtenerCampoLong(obj, "canalId");
-                    Long emisor = obtenerCampoLong(obj, "emisor", "emisorId");
-                    Long receptor = obtenerCampoLong(obj, "receptor", "receptorId");
-                    String tipoConversacion = obtenerCampoTexto(obj, "tipoConversacion");
-                    boolean esCanal = canalId != null || (tipoConversacion != null && "CANAL".equalsIgnoreCase(tipoConversacion));
-                    
-                    if (esCanal && canalId != null) {
-                        canalesNotificar.add(canalId);
-                    } else {
-                        if (emisor != null) privadosNotificar.add(emisor);
-                        if (receptor != null) privadosNotificar.add(receptor);
-                    }
-                }
-            } catch (Exception ex) {
-                System.err.println("Error en inserción batch, fallback a método individual: " + ex.getMessage());
-                // Fallback al método anterior si hay problemas con batch
-                insertados = procesarMensajesIndividual(objetos, canalesNotificar, privadosNotificar);
-            }
-            
+            int insertados = insertarLote(objetos, canalesNotificar, privadosNotificar);
+
             // Notificar canales y usuarios después del procesamiento
             for (Long c : canalesNotificar) ServicioEventosMensajes.instancia().notificarCanal(c);
             for (Long u : privadosNotificar) ServicioEventosMensajes.instancia().notificarPrivado(u);
+            if (ultima != null) ultimaSincronizacion = ultima;
             System.out.println("[ObservadorEventosChat] MESSAGE_SYNC procesado. Insertados=" + insertados + ", canalesNotificar=" + canalesNotificar.size() + ", privadosNotificar=" + privadosNotificar.size());
-            
+
             // Notificar al listener que la sincronización se completó exitosamente
             notificarSincronizacionCompletada(insertados, true, null);
-            
+
         } catch (Exception e) {
-            System.out.println("[ObservadorEventosChat] Error procesando MESSAGE_SYNC: " + e + " json=" + SanitizadorBase64Logs.truncarCamposBase64(json));
+            System.out.println("[ObservadorEventosChat] Error procesando MESSAGE_SYNC: " + e);
             // Notificar al listener que la sincronización falló
             notificarSincronizacionCompletada(0, false, e.getMessage());
         }
     }
 
+    /**
+     * MESSAGE_SYNC que llegó como trama en disco: los mensajes se leen de a uno desde
+     * el archivo mapeado y se insertan por lotes, sin tener nunca toda la historia en heap.
+     */
+    private void procesarMessageSyncPorPartes(TramaChat trama) {
+        esperarContextoDatos();
+        String ultima = trama.textoPayload("ultimaSincronizacion");
+        java.util.Set<Long> canalesNotificar = new java.util.HashSet<>();
+        java.util.Set<Long> privadosNotificar = new java.util.HashSet<>();
+        java.util.List<VistaJson> lote = new java.util.ArrayList<>(LOTE_SYNC_EN_DISCO);
+        int[] insertados = {0};
+        try {
+            int total = trama.recorrerObjetos("mensajes", mensaje -> {
+                lote.add(mensaje);
+                if (lote.size() == LOTE_SYNC_EN_DISCO) {
+                    insertados[0] += insertarLote(lote, canalesNotificar, privadosNotificar);
+                    lote.clear();
+                }
+            });
+            if (!lote.isEmpty()) insertados[0] += insertarLote(lote, canalesNotificar, privadosNotificar);
+            for (Long c : canalesNotificar) ServicioEventosMensajes.instancia().notificarCanal(c);
+            for (Long u : privadosNotificar) ServicioEventosMensajes.instancia().notificarPrivado(u);
+            if (ultima != null) ultimaSincronizacion = ultima;
+            System.out.println("[ObservadorEventosChat] MESSAGE_SYNC en disco procesado. Mensajes=" + total + ", Insertados=" + insertados[0]
+                    + ", canalesNotificar=" + canalesNotificar.size() + ", privadosNotificar=" + privadosNotificar.size());
+            notificarSincronizacionCompletada(insertados[0], true, null);
+        } catch (Exception e) {
+            System.out.println("[ObservadorEventosChat] Error procesando MESSAGE_SYNC en disco: " + e);
+            notificarSincronizacionCompletada(insertados[0], false, e.getMessage());
+        }
+    }
+
+    // Inserta por lotes y junta a quién notificar; si el lote falla, uno por uno
+    private int insertarLote(java.util.List<VistaJson> objetos, java.util.Set<Long> canalesNotificar, java.util.Set<Long> privadosNotificar) {
+        int insertados;
+        try {
+            insertados = repo.insertarMensajesDesdeServidorBatch(objetos);
+
+            // Procesar notificaciones por tipo de conversación
+            CamposJson m = new CamposJson(CamposMensajeSync.TABLA);
+            for (VistaJson obj : objetos) {
+                m.leer(obj);
+                Long canalId = m.largo(CamposMensajeSync.CANAL_ID);
+                Long emisor = m.largo(CamposMensajeSync.EMISOR);
+                Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+                String tipoConversacion = m.texto(CamposMensajeSync.TIPO_CONVERSACION);
+                boolean esCanal = canalId != null || (tipoConversacion != null && "CANAL".equalsIgnoreCase(tipoConversacion));
+
+                if (esCanal && canalId != null) {
+                    canalesNotificar.add(canalId);
+                } else {
+                    if (emisor != null) privadosNotificar.add(emisor);
+                    if (receptor != null) privadosNotificar.add(receptor);
+                }
+            }
+        } catch (Exception ex) {
+            System.err.println("Error en inserción batch, fallback a método individual: " + ex.getMessage());
+            // Fallback al método anterior si hay problemas con batch
+            insertados = procesarMensajesIndividual(objetos, canalesNotificar, privadosNotificar);
+        }
+        return insertados;
+    }
+
     // Método auxiliar para el fallback de procesamiento individual
-    private int procesarMensajesIndividual(java.util.List<String> objetos, java.util.Set<Long> canalesNotificar, java.util.Set<Long> privadosNotificar) {
+    private int procesarMensajesIndividual(java.util.List<VistaJson> objetos, java.util.Set<Long> canalesNotificar, java.util.Set<Long> privadosNotificar) {
         int insertados = 0;
-        for (String obj : objetos) {
+        CamposJson m = new CamposJson(CamposMensajeSync.TABLA);
+        CamposJson contenido = new CamposJson(CamposMensajeSync.TABLA);
+        for (VistaJson obj : objetos) {
             try {
-                String tipoMsg = obtenerCampoTexto(obj, "tipo", "tipoMensaje");
-                Long emisor = obtenerCampoLong(obj, "emisor", "emisorId");
-                String emisorNombre = obtenerCampoTextoPermitirNulo(obj, "emisorNombre", "nombreEmisor", "emisor_nombre", "emisorNombreUsuario", "emisorName");
-                Long receptor = obtenerCampoLong(obj, "receptor", "receptorId");
-                String receptorNombre = obtenerCampoTextoPermitirNulo(obj, "receptorNombre", "nombreReceptor", "receptor_nombre", "receptorNombreUsuario", "receptorName");
-                Long canalId = obtenerCampoLong(obj, "canalId");
-                String canalUuid = obtenerCampoTextoPermitirNulo(obj, "canalUuid", "uuidCanal", "canalUUID");
+                m.leer(obj);
+                String tipoMsg = m.texto(CamposMensajeSync.TIPO);
+                Long emisor = m.largo(CamposMensajeSync.EMISOR);
+                String emisorNombre = m.textoDeLaPrimera(CamposMensajeSync.EMISOR_NOMBRE);
+                Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+                String receptorNombre = m.textoDeLaPrimera(CamposMensajeSync.RECEPTOR_NOMBRE);
+                Long canalId = m.largo(CamposMensajeSync.CANAL_ID);
+                String canalUuid = m.textoDeLaPrimera(CamposMensajeSync.CANAL_UUID);
                 if (canalUuid == null) {
-                    String canalObj = extraerObjeto(obj, "canal");
-                    if (canalObj != null) canalUuid = obtenerCampoTextoPermitirNulo(canalObj, "uuid", "canalUuid", "uuidCanal");
+                    VistaJson canalObj = m.objeto(CamposMensajeSync.CANAL);
+                    if (canalObj != null) canalUuid = canalObj.textoDeLaPrimera("uuid", "canalUuid", "uuidCanal");
                 }
-                Long serverId = obtenerCampoLongRaiz(obj, "serverId", "mensajeId", "messageId", "id");
-                java.sql.Timestamp serverTs = parseTimestamp(obtenerCampoTexto(obj, "timeStamp", "timestamp"));
-                String tipoConversacion = obtenerCampoTexto(obj, "tipoConversacion");
+                Long serverId = m.largo(CamposMensajeSync.SERVER_ID);
+                java.sql.Timestamp serverTs = parseTimestamp(m.texto(CamposMensajeSync.TIMESTAMP));
+                String tipoConversacion = m.texto(CamposMensajeSync.TIPO_CONVERSACION);
                 boolean esCanal = canalId != null || (tipoConversacion != null && "CANAL".equalsIgnoreCase(tipoConversacion));
-                Boolean marcaAudio = obtenerCampoBooleano(obj, "esAudio", "audio", "audioFlag");
-
-                String contenidoObjeto = extraerObjeto(obj, "contenido");
-                String contenidoPlano = obtenerCampoTextoPermitirNulo(obj, "contenido", "texto");
-                String ruta = obtenerCampoTexto(obj, "rutaArchivo", "ruta", "rutaAudio");
-                String transcripcion = obtenerCampoTextoPermitirNulo(obj, "transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription");
-                String audioBase64 = obtenerCampoTextoPermitirNulo(obj, "audioBase64", "base64", "audio");
-                String audioMime = obtenerCampoTextoPermitirNulo(obj, "mime", "mimeType", "tipoMime");
-                Integer duracionSeg = obtenerCampoEntero(obj, "duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos");
-                
-                if (contenidoObjeto != null) {
-                    boolean probableAudio = Boolean.TRUE.equals(marcaAudio)
-                            || "AUDIO".equalsIgnoreCase(tipoMsg)
-                            || contieneCampo(contenidoObjeto, "audioBase64")
-                            || contieneCampo(contenidoObjeto, "rutaArchivo")
-                            || contieneCampo(contenidoObjeto, "ruta")
-                            || contieneCampo(contenidoObjeto, "rutaAudio")
-                            || contieneCampo(contenidoObjeto, "mime")
-                            || contieneCampo(contenidoObjeto, "mimeType")
-                            || contieneCampo(contenidoObjeto, "tipoMime");
-                    if (probableAudio) {
-                        String rutaInterna = obtenerCampoTexto(contenidoObjeto, "rutaArchivo", "ruta", "rutaAudio");
-                        if (rutaInterna != null) ruta = rutaInterna;
-                        String transcripcionInterna = obtenerCampoTextoPermitirNulo(contenidoObjeto, "transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription");
-                        if (transcripcionInterna != null || contieneCampo(contenidoObjeto, "transcripcion")) transcripcion = transcripcionInterna;
-                        String base64Interno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "audioBase64", "base64", "audio");
-                        if (base64Interno != null || contieneCampo(contenidoObjeto, "audioBase64")) audioBase64 = base64Interno;
-                        String mimeInterno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "mime", "mimeType", "tipoMime");
-                        if (mimeInterno != null || contieneCampo(contenidoObjeto, "mime")) audioMime = mimeInterno;
-                        Integer duracionInterna = obtenerCampoEntero(contenidoObjeto, "duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos");
-                        if (duracionInterna != null || contieneCampo(contenidoObjeto, "duracionSeg")) duracionSeg = duracionInterna;
-                    } else {
-                        String contenidoInterno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "contenido", "texto");
-                        if (contenidoInterno != null || contieneCampo(contenidoObjeto, "contenido") || contieneCampo(contenidoObjeto, "texto")) contenidoPlano = contenidoInterno;
-                    }
-                }
-
-                boolean esAudio = Boolean.TRUE.equals(marcaAudio)
-                        || "AUDIO".equalsIgnoreCase(tipoMsg)
-                        || (audioMime != null && audioMime.toLowerCase(java.util.Locale.ROOT).startsWith("audio"))
-                        || (ruta != null && !ruta.isBlank());
-
-                if (esAudio) {
-                    if (esCanal) {
-                        long idIns = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", ruta, audioBase64, audioMime, duracionSeg);
-                        if (idIns > 0) insertados++;
-                        if (canalId != null) canalesNotificar.add(canalId);
-                    } else {
-                        long idIns = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", ruta, audioBase64, audioMime, duracionSeg);
-                        if (idIns > 0) insertados++;
-                        if (emisor != null) privadosNotificar.add(emisor);
-                        if (receptor != null) privadosNotificar.add(receptor);
+                ContenidoMensaje c = leerContenido(m, contenido, tipoMsg);
+
+                if (c.esAudio) {
+                    ByteBuffer audio = decodificarAudio(c.audioBase64);
+                    try {
+                        if (esCanal) {
+                            long idIns = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, c.transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", c.ruta, audio, c.audioMime, c.duracionSeg);
+                            if (idIns > 0) insertados++;
+                            if (canalId != null) canalesNotificar.add(canalId);
+                        } else {
+                            long idIns = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, c.transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", c.ruta, audio, c.audioMime, c.duracionSeg);
+                            if (idIns > 0) insertados++;
+                            if (emisor != null) privadosNotificar.add(emisor);
+                            if (receptor != null) privadosNotificar.add(receptor);
+                        }
+                    } finally {
+                        PoolBuffers.compartido().devolver(audio);
                     }
                 } else {
                     if (esCanal) {
-                        long idIns = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, contenidoPlano != null ? contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
+                        long idIns = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, c.contenidoPlano != null ? c.contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
                         if (idIns > 0) insertados++;
                         if (canalId != null) canalesNotificar.add(canalId);
                     } else {
-                        long idIns = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, contenidoPlano != null ? contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
+                        long idIns = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, c.contenidoPlano != null ? c.contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
                         if (idIns > 0) insertados++;
                         if (emisor != null) privadosNotificar.add(emisor);
                         if (receptor != null) privadosNotificar.add(receptor);
@@ -320,46 +351,111 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
         return insertados;
     }
 
-    private void procesarEventoServidor(String json) {
+    /** Texto o audio de un mensaje, ya sea en campos sueltos o dentro de "contenido":{...}. */
+    private static final class ContenidoMensaje {
+        String contenidoPlano;
+        String ruta;
+        String transcripcion;
+        ByteBuffer audioBase64; // tramo de la trama, sin decodificar
+        String audioMime;
+        Integer duracionSeg;
+        boolean esAudio;
+    }
+
+    // contenido es una instancia libre para leer el objeto "contenido" si lo hay
+    private static ContenidoMensaje leerContenido(CamposJson msg, CamposJson contenido, String tipoMsg) {
+        ContenidoMensaje c = new ContenidoMensaje();
+        Boolean marcaAudio = msg.booleano(CamposMensajeSync.ES_AUDIO);
+        VistaJson contenidoVista = msg.objeto(CamposMensajeSync.CONTENIDO);
+        CamposJson contenidoObjeto = contenidoVista != null ? contenido.leer(contenidoVista) : null;
+        c.contenidoPlano = msg.textoDeLaPrimera(CamposMensajeSync.TEXTO);
+        c.ruta = msg.texto(CamposMensajeSync.RUTA);
+        c.transcripcion = msg.textoDeLaPrimera(CamposMensajeSync.TRANSCRIPCION);
+        c.audioBase64 = msg.tramoResuelto(CamposMensajeSync.AUDIO_BASE64);
+        c.audioMime = msg.textoDeLaPrimera(CamposMensajeSync.MIME);
+        c.duracionSeg = msg.entero(CamposMensajeSync.DURACION);
+        if (contenidoObjeto != null) {
+            boolean probableAudio = Boolean.TRUE.equals(marcaAudio)
+                    || "AUDIO".equalsIgnoreCase(tipoMsg)
+                    || contenidoObjeto.contiene(CamposMensajeSync.AUDIO_BASE64)
+                    || contenidoObjeto.contiene(CamposMensajeSync.RUTA)
+                    || contenidoObjeto.contiene(CamposMensajeSync.MIME);
+            if (probableAudio) {
+                String rutaInterna = contenidoObjeto.texto(CamposMensajeSync.RUTA);
+                if (rutaInterna != null) c.ruta = rutaInterna;
+                if (contenidoObjeto.contiene(CamposMensajeSync.TRANSCRIPCION)) c.transcripcion = contenidoObjeto.textoDeLaPrimera(CamposMensajeSync.TRANSCRIPCION);
+                if (contenidoObjeto.contiene(CamposMensajeSync.AUDIO_BASE64)) c.audioBase64 = contenidoObjeto.tramoResuelto(CamposMensajeSync.AUDIO_BASE64);
+                if (contenidoObjeto.contiene(CamposMensajeSync.MIME)) c.audioMime = contenidoObjeto.textoDeLaPrimera(CamposMensajeSync.MIME);
+                if (contenidoObjeto.contiene(CamposMensajeSync.DURACION)) c.duracionSeg = contenidoObjeto.entero(CamposMensajeSync.DURACION);
+            } else if (contenidoObjeto.contiene(CamposMensajeSync.TEXTO)) {
+                c.contenidoPlano = contenidoObjeto.textoDeLaPrimera(CamposMensajeSync.TEXTO);
+            }
+        }
+        c.esAudio = Boolean.TRUE.equals(marcaAudio)
+                || "AUDIO".equalsIgnoreCase(tipoMsg)
+                || (c.audioMime != null && c.audioMime.toLowerCase(Locale.ROOT).startsWith("audio"))
+                || (c.ruta != null && !c.ruta.isBlank());
+        return c;
+    }
+
+    /**
+     * Decodifica el Base64 del audio directamente desde la trama a un buffer del pool,
+     * listo para guardarlo; el que llama lo devuelve. Null si no hay audio o no es Base64.
+     */
+    private static ByteBuffer decodificarAudio(ByteBuffer tramo) {
+        if (tramo == null || !tramo.hasRemaining()) return null;
+        ByteBuffer destino = null;
+        try {
+            destino = PoolBuffers.compartido().tomarEnHeap(DecodificadorBase64.longitudDecodificada(tramo));
+            DecodificadorBase64.decodificar(tramo, destino);
+            return destino.flip();
+        } catch (IllegalArgumentException e) {
+            PoolBuffers.compartido().devolver(destino);
+            System.err.println("[ObservadorEventosChat] Audio con Base64 inválido, se guarda sin audio: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void procesarEventoServidor(EventoChat evento) {
         esperarContextoDatos();
         try {
-            String compact = json.replace('\n',' ').replace('\r',' ');
-            String payload = extraerObjetoPayload(compact);
-            if (payload == null) payload = compact;
-            
+            VistaJson payload = evento.payload();
+
             // Extraer el tipo de evento
-            String tipoEvento = obtenerCampoTexto(payload, "evento", "eventType");
-            
+            String tipoEvento = payload.texto("evento", "eventType");
+
             // Si no hay evento explícito, verificar si es un mensaje de canal o privado por su estructura
             // Esto es necesario para mensajes P2P que llegan como EVENT sin campo "evento"
             if (tipoEvento == null || tipoEvento.isBlank()) {
-                Long canalId = obtenerCampoLong(payload, "canalId");
-                Long emisor = obtenerCampoLong(payload, "emisor", "emisorId");
-                Long receptor = obtenerCampoLong(payload, "receptor", "receptorId");
-                String tipoMsg = obtenerCampoTextoPermitirNulo(payload, "tipo", "tipoMensaje");
-                
+                // Los campos pueden estar en el payload o en el mensaje que envuelve
+                VistaJson mensaje = evento.mensaje();
+                CamposJson m = new CamposJson(CamposMensajeSync.TABLA).leer(mensaje);
+                Long canalId = canalIdDe(mensaje);
+                Long emisor = m.largo(CamposMensajeSync.EMISOR);
+                Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+
                 // Es un mensaje de canal si tiene canalId
                 if (canalId != null && emisor != null) {
                     System.out.println("[ObservadorEventosChat] Detectado mensaje de canal P2P sin campo 'evento' - canalId=" + canalId);
-                    procesarEventoMensaje(json);
+                    procesarEventoMensaje(evento);
                     return;
                 }
                 // Es un mensaje privado si tiene emisor y receptor sin canalId
                 if (emisor != null && receptor != null && canalId == null) {
                     System.out.println("[ObservadorEventosChat] Detectado mensaje privado P2P sin campo 'evento' - emisor=" + emisor + " receptor=" + receptor);
-                    procesarEventoMensaje(json);
+                    procesarEventoMensaje(evento);
                     return;
                 }
             }
-            
+
             if ("USER_STATUS_CHANGED".equalsIgnoreCase(tipoEvento)) {
                 procesarCambioEstadoUsuario(payload);
             } else if ("NEW_MESSAGE".equalsIgnoreCase(tipoEvento)) {
                 System.out.println("[ObservadorEventosChat] Procesando NEW_MESSAGE desde servidor");
-                procesarEventoMensaje(json);
+                procesarEventoMensaje(evento);
             } else if ("NEW_CHANNEL_MESSAGE".equalsIgnoreCase(tipoEvento)) {
                 System.out.println("[ObservadorEventosChat] Procesando NEW_CHANNEL_MESSAGE desde servidor");
-                procesarEventoMensaje(json);
+                procesarEventoMensaje(evento);
             } else if ("INVITE_SENT".equalsIgnoreCase(tipoEvento)
                     || "INVITE_ACCEPTED".equalsIgnoreCase(tipoEvento)
                     || "INVITE_REJECTED".equalsIgnoreCase(tipoEvento)) {
@@ -367,22 +463,22 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
             } else {
                 System.out.println("[ObservadorEventosChat] Evento no manejado: " + tipoEvento);
             }
-            
+
         } catch (Exception e) {
             System.out.println("[ObservadorEventosChat] Error procesando evento del servidor: " + e);
         }
     }
-    
-    private void procesarCambioEstadoUsuario(String payloadJson) {
+
+    private void procesarCambioEstadoUsuario(VistaJson payload) {
         try {
-            Long usuarioId = obtenerCampoLong(payloadJson, "usuarioId", "userId", "id");
-            String usuarioNombre = obtenerCampoTextoPermitirNulo(payloadJson, "usuarioNombre", "usuario", "nombre", "name");
-            String usuarioEmail = obtenerCampoTextoPermitirNulo(payloadJson, "usuarioEmail", "email");
-            Boolean conectado = obtenerCampoBooleano(payloadJson, "conectado", "online", "isConnected");
-            
+            Long usuarioId = payload.largo("usuarioId", "userId", "id");
+            String usuarioNombre = payload.textoDeLaPrimera("usuarioNombre", "usuario", "nombre", "name");
+            String usuarioEmail = payload.textoDeLaPrimera("usuarioEmail", "email");
+            Boolean conectado = payload.booleano("conectado", "online", "isConnected");
+
             if (usuarioId != null && conectado != null) {
                 System.out.println("[ObservadorEventosChat] Cambio de estado: Usuario " + usuarioNombre + " (" + usuarioId + ") -> " + (conectado ? "CONECTADO" : "DESCONECTADO"));
-                
+
                 // Notificar a la capa de presentación sobre el cambio de estado
                 // Crear un objeto ClienteLocal temporal para la notificación
                 com.arquitectura.entidades.ClienteLocal usuarioTemporal = new com.arquitectura.entidades.ClienteLocal();
@@ -390,112 +486,75 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
                 usuarioTemporal.setNombreDeUsuario(usuarioNombre);
                 usuarioTemporal.setEmail(usuarioEmail);
                 usuarioTemporal.setEstado(conectado);
-                
+
                 // Extraer sesiones activas si está disponible
-                Integer sesionesActivas = obtenerCampoEntero(payloadJson, "sesionesActivas", "activeSessions");
-                String timestamp = obtenerCampoTextoPermitirNulo(payloadJson, "timestamp", "time");
+                Integer sesionesActivas = payload.entero("sesionesActivas", "activeSessions");
+                String timestamp = payload.textoDeLaPrimera("timestamp", "time");
                 usuarioTemporal.setSesionesActivas(sesionesActivas);
-                
+
                 ServicioEventosMensajes.instancia().notificarEstadoUsuarioActualizado(usuarioTemporal, sesionesActivas, timestamp);
             }
-            
+
         } catch (Exception e) {
             System.err.println("[ObservadorEventosChat] Error procesando cambio de estado de usuario: " + e.getMessage());
         }
     }
 
-    private void procesarEventoMensaje(String json) {
+    private void procesarEventoMensaje(EventoChat evento) {
         esperarContextoDatos();
         try {
-            String compact = json.replace('\n',' ').replace('\r',' ');
-            String command = extraerCampo(compact, "command");
-            String payload = extraerObjetoPayload(compact);
-            if (payload == null) payload = compact; // fallback
-            String payloadMensaje = extraerPayloadMensaje(compact, payload);
-            String tipoMsg = obtenerCampoTexto(payloadMensaje, "tipo", "tipoMensaje"); // TEXTO / AUDIO
-            Long emisor = obtenerCampoLong(payloadMensaje, "emisor", "emisorId");
-            String emisorNombre = obtenerCampoTextoPermitirNulo(payloadMensaje, "emisorNombre", "nombreEmisor", "emisor_nombre", "emisorNombreUsuario", "emisorName");
-            Long receptor = obtenerCampoLong(payloadMensaje, "receptor", "receptorId");
-            String receptorNombre = obtenerCampoTextoPermitirNulo(payloadMensaje, "receptorNombre", "nombreReceptor", "receptor_nombre", "receptorNombreUsuario", "receptorName");
-            Long canalId = obtenerCampoLong(payloadMensaje, "canalId");
-            String canalUuid = obtenerCampoTextoPermitirNulo(payloadMensaje, "canalUuid", "uuidCanal", "canalUUID");
+            String command = evento.comando();
+            CamposJson m = new CamposJson(CamposMensajeSync.TABLA).leer(evento.mensaje());
+            String tipoMsg = m.texto(CamposMensajeSync.TIPO); // TEXTO / AUDIO
+            Long emisor = m.largo(CamposMensajeSync.EMISOR);
+            String emisorNombre = m.textoDeLaPrimera(CamposMensajeSync.EMISOR_NOMBRE);
+            Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+            String receptorNombre = m.textoDeLaPrimera(CamposMensajeSync.RECEPTOR_NOMBRE);
+            Long canalId = m.largo(CamposMensajeSync.CANAL_ID);
+            String canalUuid = m.textoDeLaPrimera(CamposMensajeSync.CANAL_UUID);
             if (canalId == null || canalUuid == null) {
-                String canalObj = extraerObjeto(payloadMensaje, "canal");
+                VistaJson canalObj = m.objeto(CamposMensajeSync.CANAL);
                 if (canalObj != null) {
-                    if (canalId == null) canalId = obtenerCampoLong(canalObj, "id", "canalId");
-                    if (canalUuid == null) canalUuid = obtenerCampoTextoPermitirNulo(canalObj, "uuid", "canalUuid", "uuidCanal");
+                    if (canalId == null) canalId = canalObj.largo("id", "canalId");
+                    if (canalUuid == null) canalUuid = canalObj.textoDeLaPrimera("uuid", "canalUuid", "uuidCanal");
                 }
             }
-            Long serverId = obtenerCampoLongRaiz(payloadMensaje, "serverId", "mensajeId", "messageId", "id");
-            java.sql.Timestamp serverTs = parseTimestamp(obtenerCampoTexto(payloadMensaje, "timeStamp", "timestamp"));
-            String tipoConversacion = obtenerCampoTexto(payloadMensaje, "tipoConversacion");
-            boolean esCanal = contieneEventoCanal(compact) || "NEW_CHANNEL_MESSAGE".equalsIgnoreCase(command) || (canalId != null) || (tipoConversacion != null && "CANAL".equalsIgnoreCase(tipoConversacion));
-            Boolean marcaAudio = obtenerCampoBooleano(payloadMensaje, "esAudio", "audio", "audioFlag");
-
-            String contenidoObjeto = extraerObjeto(payloadMensaje, "contenido");
-            String contenidoPlano = obtenerCampoTextoPermitirNulo(payloadMensaje, "contenido", "texto");
-            String ruta = obtenerCampoTexto(payloadMensaje, "rutaArchivo", "ruta", "rutaAudio");
-            String transcripcion = obtenerCampoTextoPermitirNulo(payloadMensaje, "transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription");
-            String audioBase64 = obtenerCampoTextoPermitirNulo(payloadMensaje, "audioBase64", "base64", "audio");
-            String audioMime = obtenerCampoTextoPermitirNulo(payloadMensaje, "mime", "mimeType", "tipoMime");
-            Integer duracionSeg = obtenerCampoEntero(payloadMensaje, "duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos");
-            if (contenidoObjeto != null) {
-                boolean probableAudio = Boolean.TRUE.equals(marcaAudio)
-                        || "AUDIO".equalsIgnoreCase(tipoMsg)
-                        || contieneCampo(contenidoObjeto, "audioBase64")
-                        || contieneCampo(contenidoObjeto, "rutaArchivo")
-                        || contieneCampo(contenidoObjeto, "ruta")
-                        || contieneCampo(contenidoObjeto, "rutaAudio")
-                        || contieneCampo(contenidoObjeto, "mime")
-                        || contieneCampo(contenidoObjeto, "mimeType")
-                        || contieneCampo(contenidoObjeto, "tipoMime");
-                if (probableAudio) {
-                    String rutaInterna = obtenerCampoTexto(contenidoObjeto, "rutaArchivo", "ruta", "rutaAudio");
-                    if (rutaInterna != null) ruta = rutaInterna;
-                    String transcripcionInterna = obtenerCampoTextoPermitirNulo(contenidoObjeto, "transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription");
-                    if (transcripcionInterna != null || contieneCampo(contenidoObjeto, "transcripcion")) transcripcion = transcripcionInterna;
-                    String base64Interno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "audioBase64", "base64", "audio");
-                    if (base64Interno != null || contieneCampo(contenidoObjeto, "audioBase64")) audioBase64 = base64Interno;
-                    String mimeInterno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "mime", "mimeType", "tipoMime");
-                    if (mimeInterno != null || contieneCampo(contenidoObjeto, "mime")) audioMime = mimeInterno;
-                    Integer duracionInterna = obtenerCampoEntero(contenidoObjeto, "duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos");
-                    if (duracionInterna != null || contieneCampo(contenidoObjeto, "duracionSeg")) duracionSeg = duracionInterna;
-                } else {
-                    String contenidoInterno = obtenerCampoTextoPermitirNulo(contenidoObjeto, "contenido", "texto");
-                    if (contenidoInterno != null || contieneCampo(contenidoObjeto, "contenido") || contieneCampo(contenidoObjeto, "texto")) contenidoPlano = contenidoInterno;
-                }
-            }
-
-            boolean esAudio = Boolean.TRUE.equals(marcaAudio)
-                    || "AUDIO".equalsIgnoreCase(tipoMsg)
-                    || (audioMime != null && audioMime.toLowerCase(Locale.ROOT).startsWith("audio"))
-                    || (ruta != null && !ruta.isBlank());
-
-            if (esAudio) {
-                if (esCanal) {
-                    long id = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", ruta, audioBase64, audioMime, duracionSeg);
-                    System.out.println("[ObservadorEventosChat] Audio canal insertado id=" + id + " canal=" + canalId + " uuid=" + canalUuid);
-                    // Notificar por ID y también por UUID (para compatibilidad P2P)
-                    if (canalId != null) ServicioEventosMensajes.instancia().notificarCanal(canalId);
-                    if (canalUuid != null && !canalUuid.isBlank()) ServicioEventosMensajes.instancia().notificarCanalPorUuid(canalUuid, canalId);
-                } else {
-                    long id = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", ruta, audioBase64, audioMime, duracionSeg);
-                    System.out.println("[ObservadorEventosChat] Audio privado insertado id=" + id + " receptor=" + receptor);
-                    // Notificar por ID y también por nombre (para compatibilidad P2P)
-                    if (emisor != null) ServicioEventosMensajes.instancia().notificarPrivado(emisor);
-                    if (emisorNombre != null && !emisorNombre.isBlank()) ServicioEventosMensajes.instancia().notificarPrivadoPorNombre(emisorNombre, emisor);
-                    if (receptor != null && !receptor.equals(emisor)) ServicioEventosMensajes.instancia().notificarPrivado(receptor);
-                    if (receptorNombre != null && !receptorNombre.isBlank() && !receptorNombre.equals(emisorNombre)) ServicioEventosMensajes.instancia().notificarPrivadoPorNombre(receptorNombre, receptor);
+            Long serverId = m.largo(CamposMensajeSync.SERVER_ID);
+            java.sql.Timestamp serverTs = parseTimestamp(m.texto(CamposMensajeSync.TIMESTAMP));
+            String tipoConversacion = m.texto(CamposMensajeSync.TIPO_CONVERSACION);
+            boolean esCanal = esEventoCanal(evento) || "NEW_CHANNEL_MESSAGE".equalsIgnoreCase(command) || (canalId != null) || (tipoConversacion != null && "CANAL".equalsIgnoreCase(tipoConversacion));
+            ContenidoMensaje c = leerContenido(m, new CamposJson(CamposMensajeSync.TABLA), tipoMsg);
+
+            if (c.esAudio) {
+                ByteBuffer audio = decodificarAudio(c.audioBase64);
+                try {
+                    if (esCanal) {
+                        long id = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, c.transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", c.ruta, audio, c.audioMime, c.duracionSeg);
+                        System.out.println("[ObservadorEventosChat] Audio canal insertado id=" + id + " canal=" + canalId + " uuid=" + canalUuid);
+                        // Notificar por ID y también por UUID (para compatibilidad P2P)
+                        if (canalId != null) ServicioEventosMensajes.instancia().notificarCanal(canalId);
+                        if (canalUuid != null && !canalUuid.isBlank()) ServicioEventosMensajes.instancia().notificarCanalPorUuid(canalUuid, canalId);
+                    } else {
+                        long id = repo.insertarDesdeServidorAudioConRuta(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, c.transcripcion, tipoMsg != null ? tipoMsg : "AUDIO", c.ruta, audio, c.audioMime, c.duracionSeg);
+                        System.out.println("[ObservadorEventosChat] Audio privado insertado id=" + id + " receptor=" + receptor);
+                        // Notificar por ID y también por nombre (para compatibilidad P2P)
+                        if (emisor != null) ServicioEventosMensajes.instancia().notificarPrivado(emisor);
+                        if (emisorNombre != null && !emisorNombre.isBlank()) ServicioEventosMensajes.instancia().notificarPrivadoPorNombre(emisorNombre, emisor);
+                        if (receptor != null && !receptor.equals(emisor)) ServicioEventosMensajes.instancia().notificarPrivado(receptor);
+                        if (receptorNombre != null && !receptorNombre.isBlank() && !receptorNombre.equals(emisorNombre)) ServicioEventosMensajes.instancia().notificarPrivadoPorNombre(receptorNombre, receptor);
+                    }
+                } finally {
+                    PoolBuffers.compartido().devolver(audio);
                 }
             } else { // TEXTO u otros
                 if (esCanal) {
-                        long id = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, contenidoPlano != null ? contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
+                    long id = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, null, null, canalId, canalUuid, c.contenidoPlano != null ? c.contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
                     System.out.println("[ObservadorEventosChat] Texto canal insertado id=" + id + " canal=" + canalId + " uuid=" + canalUuid);
                     // Notificar por ID y también por UUID (para compatibilidad P2P)
                     if (canalId != null) ServicioEventosMensajes.instancia().notificarCanal(canalId);
                     if (canalUuid != null && !canalUuid.isBlank()) ServicioEventosMensajes.instancia().notificarCanalPorUuid(canalUuid, canalId);
                 } else {
-                    long id = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, contenidoPlano != null ? contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
+                    long id = repo.insertarDesdeServidorTexto(serverId, serverTs, emisor != null ? emisor : 0L, emisorNombre, receptor, receptorNombre, null, null, c.contenidoPlano != null ? c.contenidoPlano : "", tipoMsg != null ? tipoMsg : "TEXTO");
                     System.out.println("[ObservadorEventosChat] Texto privado insertado id=" + id + " receptor=" + receptor);
                     // Notificar por ID y también por nombre (para compatibilidad P2P)
                     if (emisor != null) ServicioEventosMensajes.instancia().notificarPrivado(emisor);
@@ -507,23 +566,23 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
         } catch (SQLException e) {
             System.out.println("[ObservadorEventosChat] Error insertando en BD: " + e);
         } catch (Exception e) {
-            System.out.println("[ObservadorEventosChat] Error procesando evento: " + e + " json=" + SanitizadorBase64Logs.truncarCamposBase64(json));
+            System.out.println("[ObservadorEventosChat] Error procesando evento: " + e + " json=" + SanitizadorBase64Logs.abreviar(evento.documento()));
         }
     }
 
-    private void procesarEventoInvitacion(String payloadJson, String tipoEvento) {
+    private void procesarEventoInvitacion(VistaJson payload, String tipoEvento) {
         try {
-            Long canalId = obtenerCampoLong(payloadJson, "canalId");
-            String canalUuid = obtenerCampoTextoPermitirNulo(payloadJson, "canalUuid", "uuidCanal", "canalUUID");
-            String canalNombre = obtenerCampoTextoPermitirNulo(payloadJson, "canalNombre", "nombreCanal");
-            Boolean canalPrivado = obtenerCampoBooleano(payloadJson, "canalPrivado", "privado");
-            Long invitadorId = obtenerCampoLong(payloadJson, "invitadorId", "ownerId");
-            String invitadorNombre = obtenerCampoTextoPermitirNulo(payloadJson, "invitadorNombre", "ownerNombre");
-            Long invitadoId = obtenerCampoLong(payloadJson, "invitadoId", "destinatarioId");
-            String invitadoNombre = obtenerCampoTextoPermitirNulo(payloadJson, "invitadoNombre", "destinatarioNombre");
-            String estado = obtenerCampoTextoPermitirNulo(payloadJson, "estado", "status");
-            Long invitacionId = obtenerCampoLong(payloadJson, "invitacionId", "inviteId", "id");
-            String timestamp = obtenerCampoTextoPermitirNulo(payloadJson, "timestamp", "timeStamp");
+            Long canalId = payload.largo("canalId");
+            String canalUuid = payload.textoDeLaPrimera("canalUuid", "uuidCanal", "canalUUID");
+            String canalNombre = payload.textoDeLaPrimera("canalNombre", "nombreCanal");
+            Boolean canalPrivado = payload.booleano("canalPrivado", "privado");
+            Long invitadorId = payload.largo("invitadorId", "ownerId");
+            String invitadorNombre = payload.textoDeLaPrimera("invitadorNombre", "ownerNombre");
+            Long invitadoId = payload.largo("invitadoId", "destinatarioId");
+            String invitadoNombre = payload.textoDeLaPrimera("invitadoNombre", "destinatarioNombre");
+            String estado = payload.textoDeLaPrimera("estado", "status");
+            Long invitacionId = payload.largo("invitacionId", "inviteId", "id");
+            String timestamp = payload.textoDeLaPrimera("timestamp", "timeStamp");
 
             ServicioEventosMensajes.EventoInvitacion evento = new ServicioEventosMensajes.EventoInvitacion(
                     tipoEvento,
@@ -551,383 +610,40 @@ public class ObservadorEventosChat implements OyenteMensajesChat {
         }
     }
 
-    private static boolean contieneEventoCanal(String compact) {
-        if (compact == null) return false;
-        if (compact.contains("\"command\":\"NEW_CHANNEL_MESSAGE\"")) return true;
-        if (!compact.contains("\"command\":\"EVENT\"")) return false;
-        if (compact.contains("\"tipo\":\"NEW_CHANNEL_MESSAGE\"")) return true;
-        if (compact.contains("\"evento\":\"NEW_CHANNEL_MESSAGE\"")) return true;
-        int idx = compact.indexOf("\"canalId\":");
-        if (idx >= 0) {
-            idx += "\"canalId\":".length();
-            if (idx < compact.length()) {
-                char c = compact.charAt(idx);
-                if (Character.isDigit(c) || c == '-' || c == '+') return true;
-                if (c == '\"') {
-                    int next = idx + 1;
-                    if (next < compact.length()) {
-                        char d = compact.charAt(next);
-                        if (Character.isDigit(d)) return true;
-                    }
-                }
-            }
-        }
-        int objIdx = compact.indexOf("\"canal\":{");
-        if (objIdx >= 0) {
-            int idIdx = compact.indexOf("\"id\":", objIdx);
-            if (idIdx > objIdx) {
-                idIdx += "\"id\":".length();
-                if (idIdx < compact.length()) {
-                    char c = compact.charAt(idIdx);
-                    if (Character.isDigit(c) || c == '-' || c == '+') return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static boolean contieneEventoPrivado(String compact) {
-        if (compact == null) return false;
-        if (compact.contains("\"command\":\"NEW_MESSAGE\"")) return true;
-        if (!compact.contains("\"command\":\"EVENT\"")) return false;
-        if (compact.contains("\"tipo\":\"NEW_MESSAGE\"")) return true;
-        if (compact.contains("\"evento\":\"NEW_MESSAGE\"")) return true;
-        int idxCanal = compact.indexOf("\"canalId\":");
-        if (idxCanal >= 0) {
-            idxCanal += "\"canalId\":".length();
-            if (idxCanal < compact.length()) {
-                char c = compact.charAt(idxCanal);
-                if (Character.isDigit(c) || c == '-' || c == '+') return false;
-                if (c == '\"') {
-                    int next = idxCanal + 1;
-                    if (next < compact.length() && Character.isDigit(compact.charAt(next))) return false;
-                }
-            }
-        }
-        int idx = compact.indexOf("\"receptorId\":");
-        if (idx >= 0) {
-            idx += "\"receptorId\":".length();
-            if (idx < compact.length()) {
-                char c = compact.charAt(idx);
-                if (Character.isDigit(c) || c == '-' || c == '+') return true;
-                if (c == '\"') {
-                    int next = idx + 1;
-                    if (next < compact.length() && Character.isDigit(compact.charAt(next))) return true;
-                }
-            }
-        }
-        idx = compact.indexOf("\"receptor\":");
-        if (idx >= 0) {
-            idx += "\"receptor\":".length();
-            if (idx < compact.length()) {
-                char c = compact.charAt(idx);
-                if (Character.isDigit(c) || c == '-' || c == '+') return true;
-                if (c == '\"') {
-                    int next = idx + 1;
-                    if (next < compact.length() && Character.isDigit(compact.charAt(next))) return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static String extraerPayloadMensaje(String compact, String payload) {
-        if (payload == null) return null;
-        if (compact != null && compact.contains("\"command\":\"EVENT\"")) {
-            String interno = extraerObjeto(payload, "mensaje");
-            if (interno == null) interno = extraerObjeto(payload, "message");
-            if (interno == null) interno = extraerObjeto(payload, "payload");
-            if (interno != null) return interno;
-        }
-        return payload;
-    }
-
-    private static Long obtenerCampoLongRaiz(String json, String... nombres) {
-        if (json == null || nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            Long valor = extraerLongNivelRaiz(json, nombre);
-            if (valor != null) return valor;
-        }
-        return null;
-    }
-
-    private static Long extraerLongNivelRaiz(String json, String campo) {
-        String valor = extraerValorNivelRaiz(json, campo);
-        if (valor == null) return null;
-        valor = valor.trim();
-        if (valor.isEmpty() || "null".equalsIgnoreCase(valor)) return null;
-        try {
-            return Long.parseLong(valor);
-        } catch (NumberFormatException ignored) {
-            return null;
-        }
-    }
-
-    private static String extraerValorNivelRaiz(String json, String campo) {
-        if (json == null || campo == null) return null;
-        int depth = 0;
-        boolean inString = false;
-        boolean escape = false;
-        StringBuilder claveActual = null;
-        String clave = null;
-        int len = json.length();
-        for (int i = 0; i < len; i++) {
-            char ch = json.charAt(i);
-            if (inString) {
-                if (escape) {
-                    escape = false;
-                    if (claveActual != null) claveActual.append(ch);
-                    continue;
-                }
-                if (ch == '\\') {
-                    escape = true;
-                    continue;
-                }
-                if (ch == '"') {
-                    inString = false;
-                    if (claveActual != null) {
-                        clave = claveActual.toString();
-                        claveActual = null;
-                    }
-                    continue;
-                }
-                if (claveActual != null) claveActual.append(ch);
-                continue;
-            }
-            switch (ch) {
-                case '"' -> {
-                    if (depth == 1) {
-                        claveActual = new StringBuilder();
-                    } else {
-                        claveActual = null;
-                    }
-                    inString = true;
-                }
-                case '{', '[' -> depth++;
-                case '}', ']' -> {
-                    if (depth > 0) depth--;
-                    if (depth < 1) clave = null;
-                }
-                case ':' -> {
-                    if (depth == 1 && campo.equals(clave)) {
-                        int j = i + 1;
-                        while (j < len && Character.isWhitespace(json.charAt(j))) j++;
-                        if (j >= len) return null;
-                        char inicio = json.charAt(j);
-                        if (inicio == '"') {
-                            j++;
-                            StringBuilder sb = new StringBuilder();
-                            boolean esc = false;
-                            while (j < len) {
-                                char c = json.charAt(j);
-                                if (esc) {
-                                    sb.append(c);
-                                    esc = false;
-                                } else if (c == '\\') {
-                                    esc = true;
-                                } else if (c == '"') {
-                                    return sb.toString();
-                                } else {
-                                    sb.append(c);
-                                }
-                                j++;
-                            }
-                            return sb.toString();
-                        } else {
-                            int start = j;
-                            while (j < len) {
-                                char c = json.charAt(j);
-                                if (c == ',' || c == '}' || c == ']') break;
-                                j++;
-                            }
-                            return json.substring(start, j).trim();
-                        }
-                    }
-                }
-                case ',' -> {
-                    if (depth == 1) clave = null;
-                }
-            }
-        }
-        return null;
-    }
-
-    private static String obtenerCampoTexto(String json, String... nombres) {
-        if (nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            String v = extraerCampo(json, nombre);
-            if (v != null) return v;
-        }
-        return null;
-    }
-
-    private static String obtenerCampoTextoPermitirNulo(String json, String... nombres) {
-        if (nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            String v = extraerCampoPermitirNulo(json, nombre);
-            if (v != null) return v;
-            if (contieneCampo(json, nombre)) return null;
-        }
-        return null;
-    }
-
-    private static Integer obtenerCampoEntero(String json, String... nombres) {
-        if (nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            Integer v = extraerEntero(json, nombre);
-            if (v != null) return v;
-        }
-        return null;
-    }
-
-    private static Long obtenerCampoLong(String json, String... nombres) {
-        if (nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            Long v = extraerLong(json, nombre);
-            if (v != null) return v;
-        }
-        return null;
-    }
-
-    private static Boolean obtenerCampoBooleano(String json, String... nombres) {
-        if (nombres == null) return null;
-        for (String nombre : nombres) {
-            if (nombre == null) continue;
-            Boolean v = extraerBooleano(json, nombre);
-            if (v != null) return v;
-        }
-        return null;
-    }
-
-    private static String extraerCampo(String json, String campo) {
-        try {
-            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Matcher m = p.matcher(json);
-            if (m.find()) return m.group(1);
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static String extraerCampoPermitirNulo(String json, String campo) {
-        // Permite null: "campo":null
-        String v = extraerCampo(json, campo);
-        if (v != null) return v;
-        try {
-            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*null");
-            Matcher m = p.matcher(json);
-            if (m.find()) return null;
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static Long extraerLong(String json, String campo) {
-        try {
-            Pattern p = Pattern.compile(
-                    "\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(?:\\\"(-?\\d+)\\\"|(-?\\d+))"
-            );
-            Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1) != null ? m.group(1) : m.group(2);
-                if (valor != null && !valor.isBlank()) {
-                    return Long.parseLong(valor);
-                }
-            }
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static Integer extraerEntero(String json, String campo) {
-        try {
-            Pattern p = Pattern.compile(
-                    "\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(?:\\\"(-?\\d+)\\\"|(-?\\d+))"
-            );
-            Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1) != null ? m.group(1) : m.group(2);
-                if (valor != null && !valor.isBlank()) {
-                    return Integer.parseInt(valor);
-                }
-            }
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static Boolean extraerBooleano(String json, String campo) {
-        try {
-            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(true|false)", Pattern.CASE_INSENSITIVE);
-            Matcher m = p.matcher(json);
-            if (m.find()) return Boolean.parseBoolean(m.group(1));
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static boolean contieneCampo(String json, String campo) {
-        if (json == null || campo == null) return false;
-        return json.contains("\"" + campo + "\"");
-    }
-
-    private static String extraerObjetoPayload(String json) {
-        try {
-            int idx = json.indexOf("\"payload\"");
-            if (idx < 0) return null;
-            int start = json.indexOf('{', idx);
-            if (start < 0) return null;
-            int depth = 0;
-            for (int i = start; i < json.length(); i++) {
-                char ch = json.charAt(i);
-                if (ch == '{') depth++;
-                else if (ch == '}') { depth--; if (depth == 0) { return json.substring(start, i+1); } }
-            }
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static java.util.List<String> extraerObjetosDeArreglo(String json, String campoArray) {
-        java.util.List<String> objs = new java.util.ArrayList<>();
-        try {
-            int idx = json.indexOf("\"" + campoArray + "\"");
-            if (idx < 0) return objs;
-            int startArr = json.indexOf('[', idx);
-            if (startArr < 0) return objs;
-            int braceDepth = 0; int objStart = -1;
-            for (int i = startArr + 1; i < json.length(); i++) { // iniciar después del '['
-                char ch = json.charAt(i);
-                if (ch == '{') { if (braceDepth == 0) objStart = i; braceDepth++; }
-                else if (ch == '}') { braceDepth--; if (braceDepth == 0 && objStart >= 0) { objs.add(json.substring(objStart, i+1)); objStart = -1; } }
-                else if (ch == ']' && braceDepth == 0) { break; }
-            }
-        } catch (Exception ignored) {}
-        return objs;
-    }
-
-    private static String extraerObjeto(String json, String campo) {
-        try {
-            int idx = json.indexOf("\"" + campo + "\"");
-            if (idx < 0) return null;
-            int start = json.indexOf('{', idx);
-            if (start < 0) return null;
-            int depth = 0;
-            boolean inString = false;
-            for (int i = start; i < json.length(); i++) {
-                char ch = json.charAt(i);
-                if (ch == '"' && (i == start || json.charAt(i - 1) != '\\')) {
-                    inString = !inString;
-                }
-                if (inString) continue;
-                if (ch == '{') {
-                    depth++;
-                } else if (ch == '}') {
-                    depth--;
-                    if (depth == 0) return json.substring(start, i + 1);
-                }
-            }
-        } catch (Exception ignored) {}
-        return null;
+    // NEW_CHANNEL_MESSAGE, o un EVENT que lo anuncia o que trae un canal
+    private static boolean esEventoCanal(EventoChat evento) {
+        String command = evento.comando();
+        VistaJson payload = evento.payload();
+        VistaJson mensaje = evento.mensaje();
+        if ("NEW_CHANNEL_MESSAGE".equals(command)) return true;
+        if (!"EVENT".equals(command)) return false;
+        if (anuncia(payload, "NEW_CHANNEL_MESSAGE") || anuncia(mensaje, "NEW_CHANNEL_MESSAGE")) return true;
+        return canalIdDe(payload) != null || canalIdDe(mensaje) != null;
+    }
+
+    // NEW_MESSAGE, o un EVENT que lo anuncia o que trae un receptor y ningún canal
+    private static boolean esEventoPrivado(EventoChat evento) {
+        String command = evento.comando();
+        VistaJson payload = evento.payload();
+        VistaJson mensaje = evento.mensaje();
+        if ("NEW_MESSAGE".equals(command)) return true;
+        if (!"EVENT".equals(command)) return false;
+        if (anuncia(payload, "NEW_MESSAGE") || anuncia(mensaje, "NEW_MESSAGE")) return true;
+        if (payload.largo("canalId") != null || mensaje.largo("canalId") != null) return false;
+        CamposJson campos = new CamposJson(CamposMensajeSync.TABLA);
+        return campos.leer(payload).largo(CamposMensajeSync.RECEPTOR) != null
+                || campos.leer(mensaje).largo(CamposMensajeSync.RECEPTOR) != null;
+    }
+
+    private static boolean anuncia(VistaJson o, String evento) {
+        return evento.equals(o.texto("tipo")) || evento.equals(o.texto("evento"));
+    }
+
+    private static Long canalIdDe(VistaJson mensaje) {
+        Long canalId = mensaje.largo("canalId");
+        if (canalId != null) return canalId;
+        VistaJson canal = mensaje.objeto("canal");
+        return canal != null ? canal.largo("id", "canalId") : null;
     }
 
     private static java.sql.Timestamp parseTimestamp(String iso) {
@@ -3,6 +3,8 @@ package com.arquitectura.servicios;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.arquitectura.infra.json.VistaJson;
+
 /**
  * Utilidad para sanitizar campos Base64 en logs para evitar impresiones excesivas.
  */
@@ -20,6 +22,11 @@ final class SanitizadorBase64Logs {
         return resultado;
     }
 
+    /** El JSON de la vista con sus campos Base64 recortados, sin pasar esos campos a String. */
+    static String abreviar(VistaJson json) {
+        return json.textoAbreviado(LIMITE_PREVISUALIZACION);
+    }
+
     private static String aplicarPatron(String texto, Pattern patron) {
         Matcher matcher = patron.matcher(texto);
         boolean encontrado = false;
@@ -1,15 +1,22 @@
 package com.arquitectura.servicios;
 
 import com.arquitectura.entidades.ClienteLocal;
+import com.arquitectura.infra.json.ObjetoJson;
+import com.arquitectura.infra.net.LineaBase64;
 import com.arquitectura.infra.net.ProtocoloChat;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Servicio que construye y envía comandos al servidor según el protocolo.
@@ -23,7 +30,7 @@ public class ServicioComandosChat {
     }
 
     private boolean enviar(String comando, Map<String, Object> payload) {
-        String linea = ProtocoloChat.construir(comando, payload);
+        ByteBuffer linea = ProtocoloChat.codificar(comando, payload);
         try {
             if (!conexion.estaConectado()) conexion.conectar();
             conexion.enviarLinea(linea);
@@ -33,6 +40,33 @@ public class ServicioComandosChat {
         }
     }
 
+    // Registra la espera de la respuesta antes de enviar, para no perder respuestas rápidas
+    private CompletableFuture<String> solicitar(String comando, Map<String, Object> payload, long timeoutMs) {
+        ByteBuffer linea = ProtocoloChat.codificar(comando, payload);
+        try {
+            if (!conexion.estaConectado()) conexion.conectar();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return conexion.enviarYEsperar(comando, linea, timeoutMs);
+    }
+
+    // Igual que solicitar, pero por la conexión masiva si está disponible
+    private CompletableFuture<String> solicitarMasivo(String comando, Map<String, Object> payload, long timeoutMs) {
+        String id = conexion.nuevoIdSolicitud();
+        ByteBuffer linea = ProtocoloChat.codificar(comando, payload, id);
+        try {
+            if (!conexion.estaConectado()) conexion.conectar();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return conexion.enviarYEsperarMasivo(comando, id, linea, timeoutMs);
+    }
+
+    private static Throwable causa(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     private void imprimirRespuesta(String prefijo, String linea) {
         String contenido = linea != null ? SanitizadorBase64Logs.truncarCamposBase64(linea) : "null";
         System.out.println(prefijo + contenido);
@@ -64,10 +98,13 @@ public class ServicioComandosChat {
         p.put("email", email);
         p.put("contrasenia", contrasenia);
         if (ip != null) p.put("ip", ip);
-        if (!enviar("LOGIN", p)) return false;
-        String linea = conexion.esperarRespuesta("LOGIN", timeoutMs);
+        CompletableFuture<String> espera = solicitar("LOGIN", p, timeoutMs);
+        if (espera.isCompletedExceptionally()) return false;
+        String linea = conexion.esperarRespuesta(espera);
         if (linea == null) return false;
-        return esRespuestaLoginExitosa(linea);
+        boolean ok = esRespuestaLoginExitosa(linea);
+        if (ok) conexion.recordarSesion(email, contrasenia, ip);
+        return ok;
     }
 
     // Envío de mensajes
@@ -108,30 +145,95 @@ public class ServicioComandosChat {
     }
 
     public RespuestaUploadAudio subirAudio(String audioBase64, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
+        return subirAudioAsincrono(audioBase64, mime, duracionSeg, nombreArchivo, timeoutMs).join();
+    }
+
+    public CompletableFuture<RespuestaUploadAudio> subirAudioAsincrono(String audioBase64, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
         Map<String, Object> p = ProtocoloChat.mapa();
         if (audioBase64 != null) p.put("audioBase64", audioBase64);
         if (mime != null) p.put("mime", mime);
         if (duracionSeg != null) p.put("duracionSeg", duracionSeg);
         if (nombreArchivo != null && !nombreArchivo.isBlank()) p.put("nombreArchivo", nombreArchivo);
-        if (!enviar("UPLOAD_AUDIO", p)) {
-            return RespuestaUploadAudio.error("No se pudo enviar el audio al servidor");
+        return solicitarMasivo("UPLOAD_AUDIO", p, timeoutMs).handleAsync((respuesta, error) -> {
+            if (error != null && !(causa(error) instanceof TimeoutException)) {
+                return RespuestaUploadAudio.error("No se pudo enviar el audio al servidor");
+            }
+            return interpretarRespuestaUpload(respuesta, "UPLOAD_AUDIO");
+        });
+    }
+
+    /** Sube el audio leyendo el archivo por bloques; no se carga entero en memoria. */
+    public RespuestaUploadAudio subirAudio(Path archivo, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
+        return subirAudioAsincrono(archivo, mime, duracionSeg, nombreArchivo, timeoutMs).join();
+    }
+
+    public CompletableFuture<RespuestaUploadAudio> subirAudioAsincrono(Path archivo, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
+        if (conexion.obtenerConfiguracion().esSubidaPorPartes()) {
+            return subirAudioPorPartesAsincrono(archivo, mime, duracionSeg, nombreArchivo, timeoutMs);
         }
-        String respuesta = conexion.esperarRespuesta("UPLOAD_AUDIO", timeoutMs);
+        InputStream datos;
+        try {
+            datos = Files.newInputStream(archivo);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(RespuestaUploadAudio.error("No se pudo leer el audio: " + e.getMessage()));
+        }
+        return subirAudioAsincrono(datos, mime, duracionSeg, nombreArchivo, timeoutMs);
+    }
+
+    /**
+     * Sube el audio en fragmentos UPLOAD_AUDIO_CHUNK y lo confirma con
+     * UPLOAD_AUDIO_COMMIT. Si la conexión se corta, reconecta y sigue desde el último
+     * fragmento confirmado. timeoutMs aplica a cada confirmación.
+     */
+    public CompletableFuture<RespuestaUploadAudio> subirAudioPorPartesAsincrono(Path archivo, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        if (mime != null) p.put("mime", mime);
+        if (duracionSeg != null) p.put("duracionSeg", duracionSeg);
+        if (nombreArchivo != null && !nombreArchivo.isBlank()) p.put("nombreArchivo", nombreArchivo);
+        return new SubidaAudioPorPartes(conexion, archivo, p, timeoutMs).iniciar();
+    }
+
+    /**
+     * Sube el audio codificando el flujo a Base64 por bloques directamente dentro de
+     * la trama UPLOAD_AUDIO, con memoria constante por envío. Cierra el flujo.
+     */
+    public CompletableFuture<RespuestaUploadAudio> subirAudioAsincrono(InputStream datos, String mime, Integer duracionSeg, String nombreArchivo, long timeoutMs) {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        if (mime != null) p.put("mime", mime);
+        if (duracionSeg != null) p.put("duracionSeg", duracionSeg);
+        if (nombreArchivo != null && !nombreArchivo.isBlank()) p.put("nombreArchivo", nombreArchivo);
+        try {
+            if (!conexion.estaConectado()) conexion.conectar();
+        } catch (IOException e) {
+            try { datos.close(); } catch (IOException ignored) {}
+            return CompletableFuture.completedFuture(RespuestaUploadAudio.error("No se pudo enviar el audio al servidor"));
+        }
+        LineaBase64 linea = ProtocoloChat.codificarConBase64("UPLOAD_AUDIO", p, "audioBase64", datos);
+        return conexion.enviarYEsperarMasivo("UPLOAD_AUDIO", linea, timeoutMs).handleAsync((respuesta, error) -> {
+            if (error != null && !(causa(error) instanceof TimeoutException)) {
+                return RespuestaUploadAudio.error("No se pudo enviar el audio al servidor");
+            }
+            return interpretarRespuestaUpload(respuesta, "UPLOAD_AUDIO");
+        });
+    }
+
+    static RespuestaUploadAudio interpretarRespuestaUpload(String respuesta, String comando) {
         if (respuesta == null) {
             return RespuestaUploadAudio.error("El servidor no respondió al subir el audio");
         }
-        if (respuesta.contains("\"command\":\"ERROR\"")) {
-            String mensajeError = extraerCampoTexto(respuesta, "message");
-            if (mensajeError == null) mensajeError = extraerCampoTexto(respuesta, "mensaje");
+        ObjetoJson doc = ObjetoJson.intentarParsear(respuesta);
+        String recibido = doc != null ? doc.texto("command") : null;
+        if ("ERROR".equals(recibido)) {
+            String mensajeError = doc.buscarTexto("message");
+            if (mensajeError == null) mensajeError = doc.buscarTexto("mensaje");
             return RespuestaUploadAudio.error(mensajeError != null ? mensajeError : "Servidor devolvió un error");
         }
-        boolean esRespuestaEsperada = respuesta.contains("\"command\":\"UPLOAD_AUDIO\"");
-        if (!esRespuestaEsperada) {
+        if (!comando.equals(recibido)) {
             return RespuestaUploadAudio.error("Respuesta inesperada del servidor al subir audio");
         }
-        Boolean exito = extraerCampoBooleano(respuesta, "exito");
-        String ruta = extraerCampoTexto(respuesta, "rutaArchivo");
-        String mensaje = extraerCampoTexto(respuesta, "mensaje");
+        Boolean exito = doc.buscarBooleano("exito");
+        String ruta = doc.buscarTexto("rutaArchivo");
+        String mensaje = doc.buscarTexto("mensaje");
         return new RespuestaUploadAudio(Boolean.TRUE.equals(exito), ruta, mensaje);
     }
 
@@ -168,49 +270,77 @@ public class ServicioComandosChat {
     // Listados / reportes
     public boolean listarUsuarios() { return enviar("LIST_USERS", null); }
     public List<ClienteLocal> listarUsuariosYEsperar(long timeoutMs) {
-        if (!enviar("LIST_USERS", null)) return List.of();
-        String linea = conexion.esperarRespuesta("LIST_USERS", timeoutMs);
-        imprimirRespuesta("Respuesta LIST_USERS: ", linea);
-        if (linea == null) return List.of();
-        return parsearUsuariosDeRespuesta(linea);
+        return listarUsuariosAsincrono(timeoutMs).join();
+    }
+    public CompletableFuture<List<ClienteLocal>> listarUsuariosAsincrono(long timeoutMs) {
+        return solicitar("LIST_USERS", null, timeoutMs).handleAsync((linea, error) -> {
+            imprimirRespuesta("Respuesta LIST_USERS: ", linea);
+            if (linea == null) return List.<ClienteLocal>of();
+            return parsearUsuariosDeRespuesta(linea);
+        });
     }
     public boolean listarCanales() { return enviar("LIST_CHANNELS", null); }
     public List<com.arquitectura.entidades.CanalLocal> listarCanalesYEsperar(long timeoutMs) {
-        if (!enviar("LIST_CHANNELS", null)) return List.of();
-        String linea = conexion.esperarRespuesta("LIST_CHANNELS", timeoutMs);
-        imprimirRespuesta("Respuesta LIST_CHANNELS: ", linea);
-        if (linea == null) return List.of();
-        return parsearCanalesDeRespuesta(linea);
+        return listarCanalesAsincrono(timeoutMs).join();
+    }
+    public CompletableFuture<List<com.arquitectura.entidades.CanalLocal>> listarCanalesAsincrono(long timeoutMs) {
+        return solicitar("LIST_CHANNELS", null, timeoutMs).handleAsync((linea, error) -> {
+            imprimirRespuesta("Respuesta LIST_CHANNELS: ", linea);
+            if (linea == null) return List.<com.arquitectura.entidades.CanalLocal>of();
+            return parsearCanalesDeRespuesta(linea);
+        });
     }
     public List<ClienteLocal> listarConectadosYEsperar(long timeoutMs) {
-        if (!enviar("LIST_CONNECTED", null)) return List.of();
-        String linea = conexion.esperarRespuesta("LIST_CONNECTED", timeoutMs);
-        imprimirRespuesta("Respuesta LIST_CONNECTED: ", linea);
-        if (linea == null) return List.of();
-        return parsearUsuariosDeRespuesta(linea);
+        return listarConectadosAsincrono(timeoutMs).join();
+    }
+    public CompletableFuture<List<ClienteLocal>> listarConectadosAsincrono(long timeoutMs) {
+        return solicitar("LIST_CONNECTED", null, timeoutMs).handleAsync((linea, error) -> {
+            imprimirRespuesta("Respuesta LIST_CONNECTED: ", linea);
+            if (linea == null) return List.<ClienteLocal>of();
+            return parsearUsuariosDeRespuesta(linea);
+        });
     }
     // Invitaciones
     public boolean listarInvitacionesRecibidas() { return enviar("LIST_RECEIVED_INVITATIONS", null); }
     public boolean listarInvitacionesEnviadas() { return enviar("LIST_SENT_INVITATIONS", null); }
     public java.util.List<InvRecibida> listarInvitacionesRecibidasYEsperar(long timeoutMs) {
-        if (!enviar("LIST_RECEIVED_INVITATIONS", null)) return java.util.List.of();
-        String linea = conexion.esperarRespuesta("LIST_RECEIVED_INVITATIONS", timeoutMs);
-        imprimirRespuesta("Respuesta LIST_RECEIVED_INVITATIONS: ", linea);
-        if (linea == null) return java.util.List.of();
-        return parsearInvRecibidas(linea);
+        return listarInvitacionesRecibidasAsincrono(timeoutMs).join();
+    }
+    public CompletableFuture<java.util.List<InvRecibida>> listarInvitacionesRecibidasAsincrono(long timeoutMs) {
+        return solicitar("LIST_RECEIVED_INVITATIONS", null, timeoutMs).handleAsync((linea, error) -> {
+            imprimirRespuesta("Respuesta LIST_RECEIVED_INVITATIONS: ", linea);
+            if (linea == null) return java.util.List.<InvRecibida>of();
+            return parsearInvRecibidas(linea);
+        });
     }
     public java.util.List<InvEnviada> listarInvitacionesEnviadasYEsperar(long timeoutMs) {
-        if (!enviar("LIST_SENT_INVITATIONS", null)) return java.util.List.of();
-        String linea = conexion.esperarRespuesta("LIST_SENT_INVITATIONS", timeoutMs);
-        imprimirRespuesta("Respuesta LIST_SENT_INVITATIONS: ", linea);
-        if (linea == null) return java.util.List.of();
-        return parsearInvEnviadas(linea);
+        return listarInvitacionesEnviadasAsincrono(timeoutMs).join();
+    }
+    public CompletableFuture<java.util.List<InvEnviada>> listarInvitacionesEnviadasAsincrono(long timeoutMs) {
+        return solicitar("LIST_SENT_INVITATIONS", null, timeoutMs).handleAsync((linea, error) -> {
+            imprimirRespuesta("Respuesta LIST_SENT_INVITATIONS: ", linea);
+            if (linea == null) return java.util.List.<InvEnviada>of();
+            return parsearInvEnviadas(linea);
+        });
     }
     public boolean listarConectados() { return enviar("LIST_CONNECTED", null); }
 
     // Ping (verificación de conectividad)
     public boolean ping() { return enviar("PING", null); }
 
+    /**
+     * PING que no bloquea ni conecta; el futuro termina con el RTT en nanosegundos.
+     * La respuesta se asocia por requestId si el servidor lo devuelve; si no, un PING
+     * o PONG sin id responde al PING pendiente más antiguo. Un ERROR sin id no cuenta.
+     */
+    public CompletableFuture<Long> pingAsincrono(long timeoutMs) {
+        String id = conexion.nuevoIdSolicitud();
+        ByteBuffer linea = ProtocoloChat.codificar("PING", null, id);
+        long inicio = System.nanoTime();
+        return conexion.enviarYEsperarAsincrono("PING", id, linea, timeoutMs)
+                .thenApply(respuesta -> System.nanoTime() - inicio);
+    }
+
     // Broadcast
     public boolean broadcast(String mensaje) {
         Map<String, Object> p = ProtocoloChat.mapa();
@@ -233,163 +363,73 @@ public class ServicioComandosChat {
         }
     }
 
+    // Los objetos del arreglo de la respuesta: el payload mismo o su primer campo arreglo
+    private static List<ObjetoJson> objetosDelPayload(String jsonLinea) {
+        ObjetoJson doc = ObjetoJson.intentarParsear(jsonLinea);
+        if (doc == null) return List.of();
+        if (!doc.arreglo("payload").isEmpty()) return doc.objetos("payload");
+        ObjetoJson payload = doc.objeto("payload");
+        return payload != null ? payload.objetosDelPrimerArreglo() : List.of();
+    }
+
     private static List<ClienteLocal> parsearUsuariosDeRespuesta(String jsonLinea) {
         List<ClienteLocal> usuarios = new ArrayList<>();
         if (jsonLinea == null) return usuarios;
-        try {
-            // Extraer el arreglo del payload tolerando espacios y saltos
-            int idx = jsonLinea.indexOf("\"payload\"");
-            if (idx < 0) return usuarios;
-            int startArr = jsonLinea.indexOf('[', idx);
-            if (startArr < 0) return usuarios;
-            int depth = 0; int endArr = -1;
-            for (int i = startArr; i < jsonLinea.length(); i++) {
-                char ch = jsonLinea.charAt(i);
-                if (ch == '[') depth++;
-                else if (ch == ']') { depth--; if (depth == 0) { endArr = i; break; } }
+        for (ObjetoJson obj : objetosDelPayload(jsonLinea)) {
+            Long id = obj.largo("id");
+            String usuario = obj.texto("usuario");
+            if (id == null || usuario == null) continue;
+            ClienteLocal c = new ClienteLocal();
+            c.setId(id);
+            c.setNombreDeUsuario(usuario);
+            String email = obj.texto("email");
+            if (email != null) c.setEmail(email);
+            Boolean conectado = obj.booleano("conectado");
+            if (conectado != null) c.setEstado(conectado);
+            String fotoBase64 = obj.texto("foto", "fotoBase64");
+            if (fotoBase64 != null) {
+                byte[] foto = decodificarBase64Seguro(fotoBase64);
+                if (foto.length > 0) c.setFoto(foto);
             }
-            if (endArr < 0) return usuarios;
-            String arrayText = jsonLinea.substring(startArr + 1, endArr);
-            // Separar objetos por llaves balanceadas
-            List<String> objetos = new ArrayList<>();
-            depth = 0; int objStart = -1;
-            for (int i = 0; i < arrayText.length(); i++) {
-                char ch = arrayText.charAt(i);
-                if (ch == '{') { if (depth == 0) objStart = i; depth++; }
-                else if (ch == '}') { depth--; if (depth == 0 && objStart >= 0) { objetos.add(arrayText.substring(objStart, i+1)); objStart = -1; } }
-            }
-            Pattern pid = Pattern.compile("\\\"id\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern puser = Pattern.compile("\\\"usuario\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pmail = Pattern.compile("\\\"email\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pcon = Pattern.compile("\\\"conectado\\\"\\s*:\\s*(true|false)");
-            Pattern pfoto = Pattern.compile("\\\"foto(?:Base64)?\\\"\\s*:\\s*\\\"(.*?)\\\"", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-            for (String obj : objetos) {
-                Matcher mid = pid.matcher(obj);
-                Matcher mus = puser.matcher(obj);
-                Matcher mma = pmail.matcher(obj);
-                Matcher mco = pcon.matcher(obj);
-                Matcher mfo = pfoto.matcher(obj);
-                if (mid.find() && mus.find()) {
-                    ClienteLocal c = new ClienteLocal();
-                    try { c.setId(Long.parseLong(mid.group(1))); } catch (Exception ignored) {}
-                    c.setNombreDeUsuario(mus.group(1));
-                    if (mma.find()) c.setEmail(mma.group(1));
-                    if (mco.find()) c.setEstado(Boolean.parseBoolean(mco.group(1)));
-                    if (mfo.find()) {
-                        byte[] foto = decodificarBase64Seguro(mfo.group(1));
-                        if (foto.length > 0) c.setFoto(foto);
-                    }
-                    usuarios.add(c);
-                }
-            }
-        } catch (Exception ignored) {}
+            usuarios.add(c);
+        }
         return usuarios;
     }
 
     private static List<com.arquitectura.entidades.CanalLocal> parsearCanalesDeRespuesta(String jsonLinea) {
         List<com.arquitectura.entidades.CanalLocal> canales = new ArrayList<>();
         if (jsonLinea == null) return canales;
-        try {
-            int idx = jsonLinea.indexOf("\"payload\"");
-            if (idx < 0) return canales;
-            int startArr = jsonLinea.indexOf('[', idx);
-            if (startArr < 0) return canales;
-            int depth = 0; int endArr = -1;
-            for (int i = startArr; i < jsonLinea.length(); i++) {
-                char ch = jsonLinea.charAt(i);
-                if (ch == '[') depth++; else if (ch == ']') { depth--; if (depth == 0) { endArr = i; break; } }
-            }
-            if (endArr < 0) return canales;
-            String arrayText = jsonLinea.substring(startArr + 1, endArr);
-            java.util.List<String> objetos = new java.util.ArrayList<>();
-            depth = 0; int objStart = -1;
-            for (int i = 0; i < arrayText.length(); i++) {
-                char ch = arrayText.charAt(i);
-                if (ch == '{') { if (depth == 0) objStart = i; depth++; }
-                else if (ch == '}') { depth--; if (depth == 0 && objStart >= 0) { objetos.add(arrayText.substring(objStart, i+1)); objStart = -1; } }
+        for (ObjetoJson obj : objetosDelPayload(jsonLinea)) {
+            com.arquitectura.entidades.CanalLocal c = new com.arquitectura.entidades.CanalLocal();
+            Long id = obj.largo("id");
+            if (id != null) c.setId(id);
+            String uuid = obj.texto("uuid");
+            if (uuid != null) c.setUuid(uuid);
+            String nombre = obj.texto("nombre");
+            if (nombre != null) c.setNombre(nombre);
+            Boolean privado = obj.booleano("privado");
+            if (privado != null) c.setPrivado(privado);
+
+            java.util.List<com.arquitectura.entidades.ClienteLocal> miembros = new java.util.ArrayList<>();
+            for (ObjetoJson u : obj.objetos("usuarios")) {
+                com.arquitectura.entidades.ClienteLocal cli = new com.arquitectura.entidades.ClienteLocal();
+                Long idU = u.largo("id");
+                if (idU != null) cli.setId(idU);
+                String usuario = u.texto("usuario");
+                if (usuario != null) cli.setNombreDeUsuario(usuario);
+                String email = u.texto("email");
+                if (email != null) cli.setEmail(email);
+                Boolean conectado = u.booleano("conectado");
+                if (conectado != null) cli.setEstado(conectado);
+                miembros.add(cli);
             }
-            Pattern pid = Pattern.compile("\\\"id\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern puuid = Pattern.compile("\\\"uuid\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pnom = Pattern.compile("\\\"nombre\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern ppriv = Pattern.compile("\\\"privado\\\"\\s*:\\s*(true|false)");
-            Pattern pidUsuario = Pattern.compile("\\\"id\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern puser = Pattern.compile("\\\"usuario\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pmail = Pattern.compile("\\\"email\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pcon = Pattern.compile("\\\"conectado\\\"\\s*:\\s*(true|false)");
-            for (String obj : objetos) {
-                Matcher mid = pid.matcher(obj);
-                Matcher mnom = pnom.matcher(obj);
-                Matcher mpriv = ppriv.matcher(obj);
-                com.arquitectura.entidades.CanalLocal c = new com.arquitectura.entidades.CanalLocal();
-                if (mid.find()) { try { c.setId(Long.parseLong(mid.group(1))); } catch (Exception ignored) {} }
-                Matcher muuid = puuid.matcher(obj);
-                if (muuid.find()) { c.setUuid(muuid.group(1)); }
-                if (mnom.find()) { c.setNombre(mnom.group(1)); }
-                if (mpriv.find()) { c.setPrivado(Boolean.parseBoolean(mpriv.group(1))); }
-
-                int idxUsuarios = obj.indexOf("\"usuarios\"");
-                if (idxUsuarios >= 0) {
-                    int startUsuarios = obj.indexOf('[', idxUsuarios);
-                    if (startUsuarios >= 0) {
-                        int depthUsuarios = 0;
-                        int endUsuarios = -1;
-                        for (int i = startUsuarios; i < obj.length(); i++) {
-                            char ch = obj.charAt(i);
-                            if (ch == '[') depthUsuarios++;
-                            else if (ch == ']') {
-                                depthUsuarios--;
-                                if (depthUsuarios == 0) { endUsuarios = i; break; }
-                            }
-                        }
-                        if (endUsuarios > startUsuarios) {
-                            String usuariosArray = obj.substring(startUsuarios + 1, endUsuarios);
-                            java.util.List<String> usuariosJson = extraerObjetosDeArrayBruto(usuariosArray);
-                            java.util.List<com.arquitectura.entidades.ClienteLocal> miembros = new java.util.ArrayList<>();
-                            for (String u : usuariosJson) {
-                                if (u == null || u.isBlank()) continue;
-                                Matcher midU = pidUsuario.matcher(u);
-                                Matcher muser = puser.matcher(u);
-                                Matcher mmail = pmail.matcher(u);
-                                Matcher mcon = pcon.matcher(u);
-                                com.arquitectura.entidades.ClienteLocal cli = new com.arquitectura.entidades.ClienteLocal();
-                                if (midU.find()) { try { cli.setId(Long.parseLong(midU.group(1))); } catch (Exception ignored) {} }
-                                if (muser.find()) cli.setNombreDeUsuario(muser.group(1));
-                                if (mmail.find()) cli.setEmail(mmail.group(1));
-                                if (mcon.find()) cli.setEstado(Boolean.parseBoolean(mcon.group(1)));
-                                miembros.add(cli);
-                            }
-                            if (!miembros.isEmpty()) {
-                                c.setMiembros(miembros);
-                            }
-                        }
-                    }
-                }
-
-                if (c.getNombre() != null || c.getId() != null) canales.add(c);
+            if (!miembros.isEmpty()) {
+                c.setMiembros(miembros);
             }
-        } catch (Exception ignored) {}
-        return canales;
-    }
 
-    private static java.util.List<String> extraerObjetosDeArrayBruto(String arrayText) {
-        java.util.List<String> objetos = new java.util.ArrayList<>();
-        if (arrayText == null) return objetos;
-        int depth = 0;
-        int objStart = -1;
-        for (int i = 0; i < arrayText.length(); i++) {
-            char ch = arrayText.charAt(i);
-            if (ch == '{') {
-                if (depth == 0) objStart = i;
-                depth++;
-            } else if (ch == '}') {
-                depth--;
-                if (depth == 0 && objStart >= 0) {
-                    objetos.add(arrayText.substring(objStart, i + 1));
-                    objStart = -1;
-                }
-            }
+            if (c.getNombre() != null || c.getId() != null) canales.add(c);
         }
-        return objetos;
+        return canales;
     }
 
     // Modelos simples para invitaciones
@@ -403,64 +443,33 @@ public class ServicioComandosChat {
     private static java.util.List<InvRecibida> parsearInvRecibidas(String jsonLinea) {
         java.util.List<InvRecibida> res = new java.util.ArrayList<>();
         if (jsonLinea == null) return res;
-        try {
-            int idx = jsonLinea.indexOf("\"payload\""); if (idx < 0) return res;
-            int startArr = jsonLinea.indexOf('[', idx); if (startArr < 0) return res;
-            int depth = 0, endArr = -1; for (int i = startArr; i < jsonLinea.length(); i++) { char ch = jsonLinea.charAt(i); if (ch=='[') depth++; else if (ch==']') { depth--; if (depth==0) { endArr=i; break; } } }
-            if (endArr < 0) return res;
-            String arrayText = jsonLinea.substring(startArr+1, endArr);
-            java.util.List<String> objs = new java.util.ArrayList<>(); depth=0; int os=-1; for (int i=0;i<arrayText.length();i++){ char ch=arrayText.charAt(i); if(ch=='{'){ if(depth==0) os=i; depth++; } else if(ch=='}'){ depth--; if(depth==0&&os>=0){ objs.add(arrayText.substring(os,i+1)); os=-1; } } }
-            Pattern pCanalId = Pattern.compile("\\\"canalId\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern pCanalUuid = Pattern.compile("\\\"canalUuid\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pCanalNom = Pattern.compile("\\\"canalNombre\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pCanalPriv = Pattern.compile("\\\"canalPrivado\\\"\\s*:\\s*(true|false)");
-            Pattern pInvId = Pattern.compile("\\\"invitadorId\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern pInvNom = Pattern.compile("\\\"invitadorNombre\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            for (String obj : objs) {
-                InvRecibida ir = new InvRecibida();
-                Matcher m;
-                m = pCanalId.matcher(obj); if (m.find()) { try { ir.canalId = Long.parseLong(m.group(1)); } catch (Exception ignored) {} }
-                m = pCanalUuid.matcher(obj); if (m.find()) ir.canalUuid = m.group(1);
-                m = pCanalNom.matcher(obj); if (m.find()) ir.canalNombre = m.group(1);
-                m = pCanalPriv.matcher(obj); if (m.find()) ir.canalPrivado = Boolean.parseBoolean(m.group(1));
-                m = pInvId.matcher(obj); if (m.find()) { try { ir.invitadorId = Long.parseLong(m.group(1)); } catch (Exception ignored) {} }
-                m = pInvNom.matcher(obj); if (m.find()) ir.invitadorNombre = m.group(1);
-                res.add(ir);
-            }
-        } catch (Exception ignored) {}
+        for (ObjetoJson obj : objetosDelPayload(jsonLinea)) {
+            InvRecibida ir = new InvRecibida();
+            ir.canalId = obj.largo("canalId");
+            ir.canalUuid = obj.texto("canalUuid");
+            ir.canalNombre = obj.texto("canalNombre");
+            ir.canalPrivado = obj.booleano("canalPrivado");
+            ir.invitadorId = obj.largo("invitadorId");
+            ir.invitadorNombre = obj.texto("invitadorNombre");
+            res.add(ir);
+        }
         return res;
     }
 
     private static java.util.List<InvEnviada> parsearInvEnviadas(String jsonLinea) {
         java.util.List<InvEnviada> res = new java.util.ArrayList<>();
         if (jsonLinea == null) return res;
-        try {
-            int idx = jsonLinea.indexOf("\"payload\""); if (idx < 0) return res;
-            int startArr = jsonLinea.indexOf('[', idx); if (startArr < 0) return res;
-            int depth = 0, endArr = -1; for (int i = startArr; i < jsonLinea.length(); i++) { char ch = jsonLinea.charAt(i); if (ch=='[') depth++; else if (ch==']') { depth--; if (depth==0) { endArr=i; break; } } }
-            if (endArr < 0) return res;
-            String arrayText = jsonLinea.substring(startArr+1, endArr);
-            java.util.List<String> objs = new java.util.ArrayList<>(); depth=0; int os=-1; for (int i=0;i<arrayText.length();i++){ char ch=arrayText.charAt(i); if(ch=='{'){ if(depth==0) os=i; depth++; } else if(ch=='}'){ depth--; if(depth==0&&os>=0){ objs.add(arrayText.substring(os,i+1)); os=-1; } } }
-            Pattern pCanalId = Pattern.compile("\\\"canalId\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern pCanalUuid = Pattern.compile("\\\"canalUuid\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pCanalNom = Pattern.compile("\\\"canalNombre\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pCanalPriv = Pattern.compile("\\\"canalPrivado\\\"\\s*:\\s*(true|false)");
-            Pattern pInvId = Pattern.compile("\\\"invitadoId\\\"\\s*:\\s*\\\"?(\\d+)\\\"?");
-            Pattern pInvNom = Pattern.compile("\\\"invitadoNombre\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Pattern pEstado = Pattern.compile("\\\"estado\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            for (String obj : objs) {
-                InvEnviada ie = new InvEnviada();
-                Matcher m;
-                m = pCanalId.matcher(obj); if (m.find()) { try { ie.canalId = Long.parseLong(m.group(1)); } catch (Exception ignored) {} }
-                m = pCanalUuid.matcher(obj); if (m.find()) ie.canalUuid = m.group(1);
-                m = pCanalNom.matcher(obj); if (m.find()) ie.canalNombre = m.group(1);
-                m = pCanalPriv.matcher(obj); if (m.find()) ie.canalPrivado = Boolean.parseBoolean(m.group(1));
-                m = pInvId.matcher(obj); if (m.find()) { try { ie.invitadoId = Long.parseLong(m.group(1)); } catch (Exception ignored) {} }
-                m = pInvNom.matcher(obj); if (m.find()) ie.invitadoNombre = m.group(1);
-                m = pEstado.matcher(obj); if (m.find()) ie.estado = m.group(1);
-                res.add(ie);
-            }
-        } catch (Exception ignored) {}
+        for (ObjetoJson obj : objetosDelPayload(jsonLinea)) {
+            InvEnviada ie = new InvEnviada();
+            ie.canalId = obj.largo("canalId");
+            ie.canalUuid = obj.texto("canalUuid");
+            ie.canalNombre = obj.texto("canalNombre");
+            ie.canalPrivado = obj.booleano("canalPrivado");
+            ie.invitadoId = obj.largo("invitadoId");
+            ie.invitadoNombre = obj.texto("invitadoNombre");
+            ie.estado = obj.texto("estado");
+            res.add(ie);
+        }
         return res;
     }
 
@@ -470,60 +479,71 @@ public class ServicioComandosChat {
         p.put("email", email);
         p.put("contrasenia", contrasenia);
         if (ip != null) p.put("ip", ip);
-        if (!enviar("LOGIN", p)) return false;
-        String linea = conexion.esperarRespuesta("LOGIN", timeoutMs);
+        CompletableFuture<String> espera = solicitar("LOGIN", p, timeoutMs);
+        if (espera.isCompletedExceptionally()) return false;
+        String linea = conexion.esperarRespuesta(espera);
         imprimirRespuesta("Respuesta LOGIN: ", linea);
         if (linea == null) return false;
-        return esRespuestaLoginExitosa(linea);
+        boolean ok = esRespuestaLoginExitosa(linea);
+        if (ok) conexion.recordarSesion(email, contrasenia, ip);
+        return ok;
     }
 
     public ResultadoLogin iniciarSesionYEsperarAckConMensaje(String email, String contrasenia, String ip, long timeoutMs) {
+        return iniciarSesionAsincrono(email, contrasenia, ip, timeoutMs).join();
+    }
+
+    public CompletableFuture<ResultadoLogin> iniciarSesionAsincrono(String email, String contrasenia, String ip, long timeoutMs) {
         Map<String, Object> p = ProtocoloChat.mapa();
         p.put("email", email);
         p.put("contrasenia", contrasenia);
         if (ip != null) p.put("ip", ip);
-        if (!enviar("LOGIN", p)) return new ResultadoLogin(false, "No se pudo enviar solicitud", null);
-        String linea = conexion.esperarRespuesta("LOGIN", timeoutMs);
-        imprimirRespuesta("Respuesta LOGIN: ", linea);
-        if (linea == null) return new ResultadoLogin(false, "Tiempo de espera agotado", null);
-        boolean ok = esRespuestaLoginExitosa(linea);
-        String msg = extraerMensajeDeLinea(linea);
-        return new ResultadoLogin(ok, msg, linea);
+        return solicitar("LOGIN", p, timeoutMs).handleAsync((linea, error) -> {
+            if (error != null && !(causa(error) instanceof TimeoutException)) {
+                return new ResultadoLogin(false, "No se pudo enviar solicitud", null);
+            }
+            imprimirRespuesta("Respuesta LOGIN: ", linea);
+            if (linea == null) return new ResultadoLogin(false, "Tiempo de espera agotado", null);
+            ObjetoJson respuesta = ObjetoJson.intentarParsear(linea);
+            boolean ok = esRespuestaLoginExitosa(respuesta);
+            if (ok) conexion.recordarSesion(email, contrasenia, ip);
+            String msg = respuesta != null ? respuesta.buscarTexto("message") : null;
+            return new ResultadoLogin(ok, msg, linea);
+        });
+    }
+
+    /**
+     * LOGIN tras una reconexión. Con "ultimaSincronizacion" el servidor solo manda en
+     * el MESSAGE_SYNC lo posterior; si lo ignora, la deduplicación por server_id
+     * absorbe la sincronización completa.
+     */
+    void reautenticar(String email, String contrasenia, String ip, String ultimaSincronizacion, long timeoutMs) throws IOException {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        p.put("email", email);
+        p.put("contrasenia", contrasenia);
+        if (ip != null) p.put("ip", ip);
+        if (ultimaSincronizacion != null) p.put("ultimaSincronizacion", ultimaSincronizacion);
+        String linea = conexion.esperarRespuesta(
+                conexion.enviarYEsperar("LOGIN", ProtocoloChat.codificar("LOGIN", p), timeoutMs));
+        imprimirRespuesta("Respuesta LOGIN (reconexión): ", linea);
+        if (!esRespuestaLoginExitosa(linea)) throw new IOException("No se pudo re-autenticar la sesión");
     }
 
-    private static String extraerMensajeDeLinea(String jsonLinea) {
-        try {
-            java.util.regex.Pattern pat = java.util.regex.Pattern.compile("\\\"message\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            java.util.regex.Matcher m = pat.matcher(jsonLinea);
-            if (m.find()) {
-                return m.group(1);
-            }
-        } catch (Exception ignored) {}
-        return null;
+    static boolean esRespuestaLoginExitosa(String jsonLinea) {
+        return esRespuestaLoginExitosa(ObjetoJson.intentarParsear(jsonLinea));
     }
 
-    private boolean esRespuestaLoginExitosa(String jsonLinea) {
-        if (jsonLinea == null) return false;
-        try {
-            String compact = jsonLinea.replaceAll("\\s+", "");
-            if (!compact.contains("\"command\":\"LOGIN\"")) return false;
-
-            String mensaje = extraerCampoTexto(jsonLinea, "message");
-            if (mensaje != null) {
-                String normalizado = mensaje.trim();
-                if (normalizado.equalsIgnoreCase("Login exitoso") || normalizado.toLowerCase(Locale.ROOT).contains("login exitoso")) {
-                    return true;
-                }
-            }
+    private static boolean esRespuestaLoginExitosa(ObjetoJson doc) {
+        if (doc == null || !"LOGIN".equals(doc.texto("command"))) return false;
 
-            java.util.regex.Pattern pat = java.util.regex.Pattern.compile("\\\"success\\\"\\s*:\\s*(true|false)", java.util.regex.Pattern.CASE_INSENSITIVE);
-            java.util.regex.Matcher matcher = pat.matcher(jsonLinea);
-            if (matcher.find()) {
-                String valor = matcher.group(1);
-                if ("true".equalsIgnoreCase(valor)) return true;
+        String mensaje = doc.buscarTexto("message");
+        if (mensaje != null) {
+            String normalizado = mensaje.trim();
+            if (normalizado.equalsIgnoreCase("Login exitoso") || normalizado.toLowerCase(Locale.ROOT).contains("login exitoso")) {
+                return true;
             }
-        } catch (Exception ignored) {}
-        return false;
+        }
+        return Boolean.TRUE.equals(doc.buscarBooleano("success"));
     }
 
     public static class RespuestaUploadAudio {
@@ -542,26 +562,6 @@ public class ServicioComandosChat {
         }
     }
 
-    private static String extraerCampoTexto(String jsonLinea, String campo) {
-        if (jsonLinea == null || campo == null) return null;
-        try {
-            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            Matcher m = p.matcher(jsonLinea);
-            if (m.find()) return m.group(1);
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static Boolean extraerCampoBooleano(String jsonLinea, String campo) {
-        if (jsonLinea == null || campo == null) return null;
-        try {
-            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(true|false)");
-            Matcher m = p.matcher(jsonLinea);
-            if (m.find()) return Boolean.parseBoolean(m.group(1));
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     public static class ResultadoLogin {
         public final boolean success;
         public final String message;
@@ -1,30 +1,60 @@
 package com.arquitectura.servicios;
 
 import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.config.ConfiguracionClienteChat.PuntoServidor;
 import com.arquitectura.infra.net.ClienteChatTcp;
+import com.arquitectura.infra.net.DespachadorRespuestas;
+import com.arquitectura.infra.net.LineaBase64;
+import com.arquitectura.infra.net.MetricasCompresion;
+import com.arquitectura.infra.net.MetricasDespacho;
+import com.arquitectura.infra.net.MetricasPoolBuffers;
 import com.arquitectura.infra.net.OyenteMensajesChat;
 
 import java.io.IOException;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  Servicio de aplicación para gestionar la conexión TCP del chat.
  */
 public class ServicioConexionChat {
+    private static final long TIMEOUT_REAUTENTICACION_MS = 10000;
+
+    private final ConfiguracionClienteChat configuracion;
     private final ClienteChatTcp cliente;
+    private final DespachadorRespuestas respuestas = new DespachadorRespuestas();
+    private final LatidoConexion latido;
+    // Null si bulk.connection.enabled=false
+    private final CarrilMasivo masivo;
+    // Credenciales del último LOGIN exitoso, para volver a entrar tras una reconexión
+    private volatile String[] sesion;
 
     public ServicioConexionChat() {
-        var cfg = ConfiguracionClienteChat.cargarDesdeRecursos();
+        this(ConfiguracionClienteChat.cargarDesdeRecursos());
+    }
+
+    public ServicioConexionChat(ConfiguracionClienteChat cfg) {
+        this.configuracion = cfg;
         this.cliente = new ClienteChatTcp(cfg);
+        this.cliente.agregarOyente(respuestas);
+        this.cliente.observarEscrituras(respuestas::alEscribirComando);
+        this.cliente.establecerAccionReconexion(this::reautenticar);
+        this.latido = new LatidoConexion(this, cfg.obtenerIntervaloLatidoMs(), cfg.obtenerTiempoEsperaLatidoMs(),
+                cfg.obtenerFallosMaximosLatido());
+        this.cliente.agregarOyente(latido);
+        this.masivo = cfg.esConexionMasiva() ? new CarrilMasivo(cfg, cliente) : null;
     }
 
     public void conectar() throws IOException {
         cliente.conectar();
+        latido.iniciar();
     }
 
     public void desconectarSilencioso() {
+        sesion = null;
+        latido.detener();
+        if (masivo != null) masivo.cerrar();
         try {
             cliente.close();
         } catch (IOException ignored) {
@@ -35,39 +65,180 @@ public class ServicioConexionChat {
         return cliente.estaConectado();
     }
 
+    /** True mientras se recupera una conexión perdida; los envíos quedan retenidos. */
+    public boolean estaReconectando() {
+        return cliente.estaReconectando();
+    }
+
+    /** RTT medido por el latido (último, p50 y p99 de las muestras recientes). */
+    public CalidadConexion obtenerCalidadConexion() {
+        return latido.obtenerCalidad();
+    }
+
+    void forzarReconexion() {
+        cliente.forzarReconexion();
+    }
+
+    void recordarSesion(String email, String contrasenia, String ip) {
+        sesion = new String[]{email, contrasenia, ip};
+    }
+
+    /**
+     * Vuelve a conectar una conexión caída y repite el LOGIN de la sesión recordada
+     * antes de devolver, para que lo que se envíe después vaya autenticado. Si el
+     * supervisor ya está reconectando no hace nada: él re-autentica al terminar.
+     */
+    void reconectarConSesion() throws IOException {
+        if (estaConectado() || estaReconectando()) return;
+        if (sesion == null) throw new IOException("Conexión perdida sin una sesión que restablecer");
+        conectar();
+        reautenticar();
+    }
+
+    // Corre en el hilo de reconexión, antes de reenviar lo retenido
+    private void reautenticar() throws IOException {
+        String[] s = sesion;
+        if (s == null) return;
+        String desde = ObservadorEventosChat.instancia().obtenerUltimaSincronizacion();
+        new ServicioComandosChat(this).reautenticar(s[0], s[1], s[2], desde, TIMEOUT_REAUTENTICACION_MS);
+    }
+
     public void enviarLinea(String linea) throws IOException {
         cliente.enviar(linea);
     }
 
+    public CompletableFuture<Void> enviarLineaAsincrona(String linea) {
+        return cliente.enviarAsincrono(linea);
+    }
+
+    /** Envía una línea ya codificada con ProtocoloChat.codificar. */
+    public void enviarLinea(ByteBuffer linea) throws IOException {
+        cliente.enviar(linea);
+    }
+
+    /**
+     * Registra la espera de la respuesta a un comando (o un ERROR). Debe llamarse
+     * antes de enviar el comando; el futuro se resuelve en el orden de las solicitudes.
+     */
+    public CompletableFuture<String> registrarEspera(String comandoEsperado, long timeoutMs) {
+        return respuestas.esperar(comandoEsperado, timeoutMs);
+    }
+
+    /** Registra la espera y envía la línea; si el envío falla el futuro termina con el error. */
+    public CompletableFuture<String> enviarYEsperar(String comandoEsperado, String linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comandoEsperado, timeoutMs);
+        try {
+            cliente.enviar(linea);
+        } catch (IOException e) {
+            espera.completeExceptionally(e);
+        }
+        return espera;
+    }
+
+    public CompletableFuture<String> enviarYEsperar(String comandoEsperado, ByteBuffer linea, long timeoutMs) {
+        return enviarYEsperar(comandoEsperado, null, linea, timeoutMs);
+    }
+
+    /** Como enviarYEsperar, pero la respuesta se asocia por el requestId incluido en la línea. */
+    public CompletableFuture<String> enviarYEsperar(String comandoEsperado, String idSolicitud, ByteBuffer linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comandoEsperado, idSolicitud, timeoutMs);
+        try {
+            cliente.enviar(linea);
+        } catch (IOException e) {
+            espera.completeExceptionally(e);
+        }
+        return espera;
+    }
+
+    /** Como enviarYEsperar, pero sin bloquear en la escritura: la línea solo se encola. */
+    public CompletableFuture<String> enviarYEsperarAsincrono(String comandoEsperado, String idSolicitud, ByteBuffer linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comandoEsperado, idSolicitud, timeoutMs);
+        cliente.enviarAsincrono(linea).whenComplete((r, e) -> {
+            if (e != null) espera.completeExceptionally(e);
+        });
+        return espera;
+    }
+
+    /**
+     * Registra la espera y encola la línea con adjunto. Si la escritura falla (o falla
+     * la lectura del adjunto) la espera termina con ese error.
+     */
+    public CompletableFuture<String> enviarYEsperar(String comandoEsperado, LineaBase64 linea, long timeoutMs) {
+        CompletableFuture<String> espera = respuestas.esperar(comandoEsperado, timeoutMs);
+        cliente.enviarAsincrono(linea).whenComplete((r, e) -> {
+            if (e != null) espera.completeExceptionally(e);
+        });
+        return espera;
+    }
+
+    /**
+     * Como enviarYEsperar, pero por la conexión masiva cuando está habilitada y el
+     * servidor la aceptó; si no, por la principal.
+     */
+    public CompletableFuture<String> enviarYEsperarMasivo(String comandoEsperado, String idSolicitud, ByteBuffer linea, long timeoutMs) {
+        ClienteChatTcp c = masivo != null ? masivo.disponible(sesion) : null;
+        if (c == null) return enviarYEsperar(comandoEsperado, idSolicitud, linea, timeoutMs);
+        return masivo.enviarYEsperar(c, comandoEsperado, idSolicitud, linea, timeoutMs);
+    }
+
+    public CompletableFuture<String> enviarYEsperarMasivo(String comandoEsperado, LineaBase64 linea, long timeoutMs) {
+        ClienteChatTcp c = masivo != null ? masivo.disponible(sesion) : null;
+        if (c == null) return enviarYEsperar(comandoEsperado, linea, timeoutMs);
+        return masivo.enviarYEsperar(c, comandoEsperado, linea, timeoutMs);
+    }
+
     // Esperar una respuesta que contenga un comando esperado o ERROR
     public String esperarRespuesta(String comandoEsperado, long timeoutMs) {
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<String> respuesta = new AtomicReference<>();
-        OyenteMensajesChat tmp = new OyenteMensajesChat() {
-            @Override public void alRecibirMensaje(String mensaje) {
-                if (mensaje == null) return;
-                if (mensaje.contains("\"command\":\"ERROR\"") || mensaje.contains("\"command\":\"" + comandoEsperado + "\"")) {
-                    respuesta.compareAndSet(null, mensaje);
-                    latch.countDown();
-                }
-            }
-        };
-        registrarOyente(tmp);
+        return esperarRespuesta(registrarEspera(comandoEsperado, timeoutMs));
+    }
+
+    /** Bloquea hasta que la espera termine; devuelve null si venció o falló. */
+    public String esperarRespuesta(CompletableFuture<String> espera) {
         try {
-            boolean ok = latch.await(timeoutMs, TimeUnit.MILLISECONDS);
-            return ok ? respuesta.get() : null;
+            return espera.get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            espera.cancel(false);
+            return null;
+        } catch (ExecutionException e) {
             return null;
-        } finally {
-            removerOyente(tmp);
         }
     }
 
+    public String nuevoIdSolicitud() {
+        return respuestas.nuevoIdSolicitud();
+    }
+
+    public ConfiguracionClienteChat obtenerConfiguracion() {
+        return configuracion;
+    }
+
+    public MetricasDespacho obtenerMetricasDespacho() {
+        return cliente.obtenerMetricasDespacho();
+    }
+
+    public MetricasPoolBuffers obtenerMetricasBuffers() {
+        return cliente.obtenerMetricasBuffers();
+    }
+
+    /** Servidor federado al que está conectada la conexión principal. */
+    public PuntoServidor obtenerServidorActual() {
+        return cliente.obtenerServidorActual();
+    }
+
+    public MetricasCompresion obtenerMetricasCompresion() {
+        return cliente.obtenerMetricasCompresion();
+    }
+
     public void registrarOyente(OyenteMensajesChat oyente) {
         cliente.agregarOyente(oyente);
     }
 
+    /** Suscribe el oyente solo a un comando o a un tipo de evento ("EVENT:TIPO"). */
+    public void suscribir(String clave, OyenteMensajesChat oyente) {
+        cliente.suscribir(clave, oyente);
+    }
+
     public void removerOyente(OyenteMensajesChat oyente) {
         cliente.removerOyente(oyente);
     }
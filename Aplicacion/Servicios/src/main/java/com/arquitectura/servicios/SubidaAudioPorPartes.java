@@ -0,0 +1,207 @@
+package com.arquitectura.servicios;
+
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+import com.arquitectura.infra.json.ObjetoJson;
+import com.arquitectura.infra.net.ProtocoloChat;
+import com.arquitectura.servicios.ServicioComandosChat.RespuestaUploadAudio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Subida de audio en fragmentos reanudables:
+ *
+ *   UPLOAD_AUDIO_CHUNK  {uploadId, secuencia, offset, datosBase64}
+ *                       -> {uploadId, secuencia, recibidos}
+ *   UPLOAD_AUDIO_COMMIT {uploadId, totalBytes, mime, duracionSeg, nombreArchivo}
+ *                       -> igual que UPLOAD_AUDIO {exito, rutaArchivo, mensaje}
+ *
+ * "recibidos" es lo que el servidor tiene guardado en orden; el cliente siempre
+ * continúa desde ahí. Si la conexión se cae, se reconecta, se repite el LOGIN y se
+ * reanuda desde el último fragmento confirmado sin reenviar lo anterior. Cada fragmento es una trama
+ * corta, así que los demás comandos se intercalan entre fragmentos; la ventana
+ * limita cuántos hay sin confirmar.
+ */
+final class SubidaAudioPorPartes {
+    private static final String COMANDO_FRAGMENTO = "UPLOAD_AUDIO_CHUNK";
+    private static final String COMANDO_CONFIRMAR = "UPLOAD_AUDIO_COMMIT";
+    private static final int MAX_REINTENTOS = 5;
+    private static final long PAUSA_REINTENTO_MS = 500;
+
+    private final ServicioConexionChat conexion;
+    private final Path archivo;
+    private final Map<String, Object> metadatos;
+    private final long timeoutMs;
+    private final int tamanoFragmento;
+    private final int ventana;
+    private final String idSubida = UUID.randomUUID().toString();
+    private long secuencia;
+    // Lo último que el servidor confirmó tener; sobrevive a los cortes de conexión
+    private long confirmado;
+
+    SubidaAudioPorPartes(ServicioConexionChat conexion, Path archivo, Map<String, Object> metadatos, long timeoutMs) {
+        this.conexion = conexion;
+        this.archivo = archivo;
+        this.metadatos = metadatos;
+        this.timeoutMs = timeoutMs;
+        this.tamanoFragmento = conexion.obtenerConfiguracion().obtenerTamanoFragmentoSubida();
+        this.ventana = conexion.obtenerConfiguracion().obtenerVentanaFragmentosSubida();
+    }
+
+    CompletableFuture<RespuestaUploadAudio> iniciar() {
+        CompletableFuture<RespuestaUploadAudio> resultado = new CompletableFuture<>();
+        FabricaEjecutores.compartida().iniciar("subida-audio-" + idSubida.substring(0, 8), () -> {
+            try {
+                resultado.complete(ejecutar());
+            } catch (RuntimeException e) {
+                resultado.completeExceptionally(e);
+            }
+        });
+        return resultado;
+    }
+
+    private RespuestaUploadAudio ejecutar() {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long total = canal.size();
+            int intentos = 0;
+            long alFallar = -1;
+            while (true) {
+                try {
+                    conexion.reconectarConSesion();
+                    if (confirmado < total) {
+                        long antes = confirmado;
+                        enviarFragmentos(canal, total);
+                        if (confirmado > antes) {
+                            intentos = 0;
+                        } else if (++intentos > MAX_REINTENTOS) {
+                            return RespuestaUploadAudio.error("El servidor no acepta los fragmentos del audio");
+                        }
+                        continue;
+                    }
+                    return confirmar(total);
+                } catch (IOException | TimeoutException e) {
+                    // Un corte después de avanzar no cuenta contra los reintentos
+                    if (confirmado > alFallar) {
+                        intentos = 0;
+                        alFallar = confirmado;
+                    }
+                    if (++intentos > MAX_REINTENTOS) {
+                        return RespuestaUploadAudio.error("No se pudo completar la subida del audio: " + e.getMessage());
+                    }
+                    System.out.println("[SubidaAudioPorPartes] " + idSubida + " interrumpida en " + confirmado + "/" + total
+                            + " bytes (" + e.getMessage() + "); reintento " + intentos);
+                    Thread.sleep(PAUSA_REINTENTO_MS * intentos);
+                }
+            }
+        } catch (IOException e) {
+            return RespuestaUploadAudio.error("No se pudo leer el audio: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RespuestaUploadAudio.error("Subida de audio interrumpida");
+        }
+    }
+
+    /**
+     * Envía fragmentos desde lo confirmado manteniendo hasta "ventana" sin confirmar
+     * y avanza confirmado con cada respuesta. Si el servidor informa otro punto
+     * (perdió o ya tenía datos), se esperan las confirmaciones en vuelo y se vuelve
+     * para seguir desde ese punto.
+     */
+    private void enviarFragmentos(FileChannel canal, long total)
+            throws IOException, TimeoutException, InterruptedException {
+        ArrayDeque<Fragmento> enVuelo = new ArrayDeque<>();
+        ByteBuffer buffer = ByteBuffer.allocate(tamanoFragmento);
+        long siguiente = confirmado;
+        boolean desincronizado = false;
+        while (confirmado < total || !enVuelo.isEmpty()) {
+            while (!desincronizado && enVuelo.size() < ventana && siguiente < total) {
+                int n = leer(canal, buffer, siguiente);
+                enVuelo.add(enviarFragmento(buffer, siguiente, n));
+                siguiente += n;
+            }
+            Fragmento f = enVuelo.poll();
+            if (f == null) break;
+            String respuesta = esperar(f.respuesta);
+            ObjetoJson confirmacion = ObjetoJson.intentarParsear(respuesta);
+            if (confirmacion != null && "ERROR".equals(confirmacion.texto("command"))) {
+                throw new IOException("El servidor rechazó el fragmento " + f.secuencia);
+            }
+            Long recibidosLeidos = confirmacion != null ? confirmacion.buscarLargo("recibidos") : null;
+            if (recibidosLeidos == null) throw new IOException("Confirmación de fragmento sin 'recibidos'");
+            long recibidos = recibidosLeidos;
+            if (desincronizado) continue;
+            if (recibidos != f.fin) {
+                desincronizado = true;
+                siguiente = recibidos;
+            }
+            confirmado = recibidos;
+        }
+    }
+
+    private Fragmento enviarFragmento(ByteBuffer buffer, long offset, int n) {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        p.put("uploadId", idSubida);
+        p.put("secuencia", ++secuencia);
+        p.put("offset", offset);
+        p.put("datosBase64", Base64.getEncoder().encodeToString(n == buffer.capacity()
+                ? buffer.array() : Arrays.copyOf(buffer.array(), n)));
+        String id = conexion.nuevoIdSolicitud();
+        ByteBuffer linea = ProtocoloChat.codificar(COMANDO_FRAGMENTO, p, id);
+        return new Fragmento(secuencia, offset + n, conexion.enviarYEsperarMasivo(COMANDO_FRAGMENTO, id, linea, timeoutMs));
+    }
+
+    private RespuestaUploadAudio confirmar(long total) throws IOException, TimeoutException, InterruptedException {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        p.putAll(metadatos);
+        p.put("uploadId", idSubida);
+        p.put("totalBytes", total);
+        String id = conexion.nuevoIdSolicitud();
+        String respuesta = esperar(conexion.enviarYEsperarMasivo(COMANDO_CONFIRMAR, id,
+                ProtocoloChat.codificar(COMANDO_CONFIRMAR, p, id), timeoutMs));
+        return ServicioComandosChat.interpretarRespuestaUpload(respuesta, COMANDO_CONFIRMAR);
+    }
+
+    private static int leer(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = canal.read(buffer, posicion + buffer.position());
+            if (n < 0) break;
+        }
+        return buffer.position();
+    }
+
+    private static String esperar(CompletableFuture<String> respuesta)
+            throws IOException, TimeoutException, InterruptedException {
+        try {
+            return respuesta.get();
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof TimeoutException t) throw t;
+            if (c instanceof IOException io) throw io;
+            throw new IOException(c);
+        }
+    }
+
+    private static final class Fragmento {
+        final long secuencia;
+        final long fin;
+        final CompletableFuture<String> respuesta;
+
+        Fragmento(long secuencia, long fin, CompletableFuture<String> respuesta) {
+            this.secuencia = secuencia;
+            this.fin = fin;
+            this.respuesta = respuesta;
+        }
+    }
+}
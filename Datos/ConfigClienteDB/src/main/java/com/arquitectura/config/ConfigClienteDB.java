@@ -144,6 +144,7 @@ public class ConfigClienteDB {
                 " texto CLOB," +
                 " ruta_audio VARCHAR(1024)," +
                 " audio_base64 CLOB," +
+                " audio_datos BLOB," +
                 " audio_mime VARCHAR(128)," +
                 " audio_duracion_seg INT," +
                 " contexto_usuario_id BIGINT" +
@@ -155,6 +156,8 @@ public class ConfigClienteDB {
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS server_id BIGINT"); } catch (SQLException ignored) {}
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS server_ts TIMESTAMP"); } catch (SQLException ignored) {}
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS audio_base64 CLOB"); } catch (SQLException ignored) {}
+            // El audio recibido se guarda decodificado; audio_base64 queda para las filas anteriores
+            try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS audio_datos BLOB"); } catch (SQLException ignored) {}
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS audio_mime VARCHAR(128)"); } catch (SQLException ignored) {}
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS audio_duracion_seg INT"); } catch (SQLException ignored) {}
             try { st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS contexto_usuario_id BIGINT"); } catch (SQLException ignored) {}
@@ -255,12 +258,16 @@ public class ConfigClienteDB {
         if (otherUrl.equals(targetUrl)) return;
         try (java.sql.Connection src = java.sql.DriverManager.getConnection(otherUrl, usuario, clave);
              java.sql.Connection dst = java.sql.DriverManager.getConnection(targetUrl, usuario, clave)) {
+            // The source may predate audio_datos
+            try (java.sql.Statement st = src.createStatement()) {
+                st.executeUpdate("ALTER TABLE mensajes ADD COLUMN IF NOT EXISTS audio_datos BLOB");
+            } catch (SQLException ignored) {}
             // Select all messages for this contexto in source
-            try (java.sql.PreparedStatement ps = src.prepareStatement("SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id FROM mensajes WHERE contexto_usuario_id = ?")) {
+            try (java.sql.PreparedStatement ps = src.prepareStatement("SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_datos, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id FROM mensajes WHERE contexto_usuario_id = ?")) {
                 ps.setLong(1, usuarioId);
                 try (java.sql.ResultSet rs = ps.executeQuery()) {
                     String checkSql = "SELECT 1 FROM mensajes WHERE contexto_usuario_id = ? AND server_id = ? LIMIT 1";
-                    String insertSql = "INSERT INTO mensajes (id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                    String insertSql = "INSERT INTO mensajes (id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_datos, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
                     try (java.sql.PreparedStatement check = dst.prepareStatement(checkSql);
                          java.sql.PreparedStatement ins = dst.prepareStatement(insertSql)) {
                         while (rs.next()) {
@@ -285,11 +292,12 @@ public class ConfigClienteDB {
                             ins.setString(10, rs.getString("texto"));
                             ins.setString(11, rs.getString("ruta_audio"));
                             ins.setString(12, rs.getString("audio_base64"));
-                            ins.setString(13, rs.getString("audio_mime"));
-                            if (rs.getObject("audio_duracion_seg") != null) ins.setInt(14, rs.getInt("audio_duracion_seg")); else ins.setNull(14, java.sql.Types.INTEGER);
-                            if (rs.getObject("server_id") != null) ins.setLong(15, rs.getLong("server_id")); else ins.setNull(15, java.sql.Types.BIGINT);
-                            ins.setTimestamp(16, rs.getTimestamp("server_ts"));
-                            ins.setLong(17, usuarioId);
+                            ins.setBytes(13, rs.getBytes("audio_datos"));
+                            ins.setString(14, rs.getString("audio_mime"));
+                            if (rs.getObject("audio_duracion_seg") != null) ins.setInt(15, rs.getInt("audio_duracion_seg")); else ins.setNull(15, java.sql.Types.INTEGER);
+                            if (rs.getObject("server_id") != null) ins.setLong(16, rs.getLong("server_id")); else ins.setNull(16, java.sql.Types.BIGINT);
+                            ins.setTimestamp(17, rs.getTimestamp("server_ts"));
+                            ins.setLong(18, usuarioId);
                             try { ins.executeUpdate(); } catch (Exception ignored) {}
                         }
                     }
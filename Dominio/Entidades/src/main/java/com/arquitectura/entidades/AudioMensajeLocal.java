@@ -5,7 +5,7 @@ public class AudioMensajeLocal extends MensajeLocal {
     private String mime;
     private int duracionSeg;
     private String transcripcion;
-    private String audioBase64;
+    private byte[] audio;
 
     public AudioMensajeLocal() {
     }
@@ -48,12 +48,12 @@ public class AudioMensajeLocal extends MensajeLocal {
         this.transcripcion = transcripcion;
     }
 
-    public String getAudioBase64() {
-        return audioBase64;
+    public byte[] getAudio() {
+        return audio;
     }
 
-    public void setAudioBase64(String audioBase64) {
-        this.audioBase64 = audioBase64;
+    public void setAudio(byte[] audio) {
+        this.audio = audio;
     }
 }
 
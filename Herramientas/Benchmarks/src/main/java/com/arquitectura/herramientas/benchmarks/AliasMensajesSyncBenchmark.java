@@ -0,0 +1,134 @@
+package com.arquitectura.herramientas.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.arquitectura.infra.json.CamposJson;
+import com.arquitectura.infra.json.VistaJson;
+import com.arquitectura.repositorios.CamposMensajeSync;
+
+/**
+ * Costo por mensaje de leer los campos de un MESSAGE_SYNC de 50.000 mensajes ya
+ * analizado: buscando cada alias por separado en VistaJson (como antes hacían el
+ * lote y el procesamiento individual) frente a una pasada por mensaje con la
+ * TablaAlias de CamposMensajeSync. Los mensajes alternan las variantes de nombres
+ * que mandan el servidor y el P2P.
+ *
+ * java -jar Herramientas/Benchmarks/target/benchmarks.jar AliasMensajesSync
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AliasMensajesSyncBenchmark {
+    private static final int MENSAJES = 50_000;
+
+    private List<VistaJson> mensajes;
+    private CamposJson campos;
+    private CamposJson contenido;
+
+    @Setup
+    public void preparar() {
+        StringBuilder sb = new StringBuilder("{\"command\":\"MESSAGE_SYNC\",\"payload\":{\"mensajes\":[");
+        for (int i = 0; i < MENSAJES; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(mensaje(i));
+        }
+        sb.append("],\"ultimaSincronizacion\":\"2025-01-01T10:00:00\"}}");
+        VistaJson doc = VistaJson.de(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        mensajes = doc.objeto("payload").objetos("mensajes");
+        campos = new CamposJson(CamposMensajeSync.TABLA);
+        contenido = new CamposJson(CamposMensajeSync.TABLA);
+    }
+
+    // Tres formas de nombrar los mismos campos; uno de cada cinco es audio
+    private static String mensaje(int i) {
+        boolean audio = i % 5 == 0;
+        StringBuilder sb = new StringBuilder("{");
+        switch (i % 3) {
+            case 0 -> sb.append("\"id\":").append(i).append(",\"emisor\":7,\"emisorNombre\":\"ana\",\"receptor\":9,\"receptorNombre\":\"bob\"");
+            case 1 -> sb.append("\"mensajeId\":\"").append(i).append("\",\"emisorId\":7,\"nombreEmisor\":\"ana\",\"receptorId\":9,\"nombreReceptor\":\"bob\"");
+            default -> sb.append("\"messageId\":").append(i).append(",\"emisor\":7,\"emisor_nombre\":\"ana\",\"canalId\":3,\"canalUuid\":\"c-3\"");
+        }
+        sb.append(",\"tipo\":\"").append(audio ? "AUDIO" : "TEXTO").append('"')
+          .append(i % 2 == 0 ? ",\"timeStamp\":" : ",\"timestamp\":").append("\"2025-01-01T10:00:00\"");
+        if (audio) {
+            sb.append(",\"esAudio\":true,\"contenido\":{\"rutaArchivo\":\"/audios/").append(i)
+              .append(".wav\",\"mime\":\"audio/wav\",\"duracion\":4,\"transcripcion\":\"hola\",\"audioBase64\":\"UklGRiQAAABXQVZF\"}");
+        } else {
+            sb.append(",\"contenido\":\"hola ").append(i).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MENSAJES)
+    public void porClave(Blackhole bh) {
+        for (VistaJson m : mensajes) {
+            bh.consume(m.largo("serverId", "mensajeId", "messageId", "id"));
+            bh.consume(m.texto("tipo", "tipoMensaje"));
+            bh.consume(m.largo("emisor", "emisorId"));
+            bh.consume(m.textoDeLaPrimera("emisorNombre", "nombreEmisor", "emisor_nombre", "emisorNombreUsuario", "emisorName"));
+            bh.consume(m.largo("receptor", "receptorId"));
+            bh.consume(m.textoDeLaPrimera("receptorNombre", "nombreReceptor", "receptor_nombre", "receptorNombreUsuario", "receptorName"));
+            bh.consume(m.largo("canalId"));
+            bh.consume(m.textoDeLaPrimera("canalUuid", "uuidCanal", "canalUUID"));
+            bh.consume(m.texto("timeStamp", "timestamp"));
+            bh.consume(m.booleano("esAudio", "audio", "audioFlag"));
+            bh.consume(m.textoDeLaPrimera("contenido", "texto", "mensaje"));
+            VistaJson c = m.objeto("contenido");
+            if (c != null) {
+                bh.consume(c.texto("rutaArchivo", "ruta", "rutaAudio"));
+                bh.consume(c.textoDeLaPrimera("transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription"));
+                bh.consume(c.textoDeLaPrimera("mime", "mimeType", "tipoMime", "audioMime"));
+                bh.consume(c.entero("duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos", "audioDuracionSeg"));
+                bh.consume(c.tramoResuelto("audioBase64", "base64", "audio"));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MENSAJES)
+    public void tablaAlias(Blackhole bh) {
+        for (VistaJson obj : mensajes) {
+            CamposJson m = campos.leer(obj);
+            bh.consume(m.largo(CamposMensajeSync.SERVER_ID));
+            bh.consume(m.texto(CamposMensajeSync.TIPO));
+            bh.consume(m.largo(CamposMensajeSync.EMISOR));
+            bh.consume(m.textoDeLaPrimera(CamposMensajeSync.EMISOR_NOMBRE));
+            bh.consume(m.largo(CamposMensajeSync.RECEPTOR));
+            bh.consume(m.textoDeLaPrimera(CamposMensajeSync.RECEPTOR_NOMBRE));
+            bh.consume(m.largo(CamposMensajeSync.CANAL_ID));
+            bh.consume(m.textoDeLaPrimera(CamposMensajeSync.CANAL_UUID));
+            bh.consume(m.texto(CamposMensajeSync.TIMESTAMP));
+            bh.consume(m.booleano(CamposMensajeSync.ES_AUDIO));
+            bh.consume(m.textoDeLaPrimera(CamposMensajeSync.TEXTO));
+            VistaJson o = m.objeto(CamposMensajeSync.CONTENIDO);
+            if (o != null) {
+                CamposJson c = contenido.leer(o);
+                bh.consume(c.texto(CamposMensajeSync.RUTA));
+                bh.consume(c.textoDeLaPrimera(CamposMensajeSync.TRANSCRIPCION));
+                bh.consume(c.textoDeLaPrimera(CamposMensajeSync.MIME));
+                bh.consume(c.entero(CamposMensajeSync.DURACION));
+                bh.consume(c.tramoResuelto(CamposMensajeSync.AUDIO_BASE64));
+            }
+        }
+    }
+}
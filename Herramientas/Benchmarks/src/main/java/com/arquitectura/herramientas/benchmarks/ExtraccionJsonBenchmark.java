@@ -0,0 +1,183 @@
+package com.arquitectura.herramientas.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.arquitectura.infra.json.ObjetoJson;
+import com.arquitectura.infra.json.VistaJson;
+
+/**
+ * Lectura de los campos de un mensaje entrante: expresiones regulares por campo
+ * frente a una pasada de ObjetoJson y frente a VistaJson sobre los bytes de la
+ * trama (el audio queda como tramo, sin String). Se mide un evento de mensaje de
+ * canal (con audio en Base64 de tamaño variable) y un MESSAGE_SYNC de varios mensajes.
+ *
+ * java -jar Herramientas/Benchmarks/target/benchmarks.jar ExtraccionJson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtraccionJsonBenchmark {
+
+    /** Bytes de audio del evento; 0 = mensaje de texto. */
+    @Param({"0", "65536"})
+    public int bytesAudio;
+
+    @Param({"50"})
+    public int mensajesSync;
+
+    private String evento;
+    private String sync;
+    private ByteBuffer eventoBytes;
+    private ByteBuffer syncBytes;
+
+    @Setup
+    public void preparar() {
+        Random r = new Random(42);
+        String audio = null;
+        if (bytesAudio > 0) {
+            byte[] b = new byte[bytesAudio];
+            r.nextBytes(b);
+            audio = Base64.getEncoder().encodeToString(b);
+        }
+        evento = "{\"command\":\"NEW_CHANNEL_MESSAGE\",\"payload\":" + mensaje(1, audio) + "}";
+        StringBuilder sb = new StringBuilder("{\"command\":\"MESSAGE_SYNC\",\"payload\":{\"mensajes\":[");
+        for (int i = 0; i < mensajesSync; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(mensaje(100 + i, null));
+        }
+        sb.append("],\"ultimaSincronizacion\":\"2025-01-01T10:00:00\"}}");
+        sync = sb.toString();
+        eventoBytes = ByteBuffer.wrap(evento.getBytes(StandardCharsets.UTF_8));
+        syncBytes = ByteBuffer.wrap(sync.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String mensaje(long id, String audio) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\":").append(id)
+          .append(",\"serverId\":\"").append(id).append('"')
+          .append(",\"emisor\":7,\"emisorNombre\":\"ana\",\"receptor\":null,\"canalId\":3,\"esPrivado\":false")
+          .append(",\"fechaEnvio\":\"2025-01-01T10:00:00\",\"tipo\":\"").append(audio == null ? "TEXTO" : "AUDIO").append('"')
+          .append(",\"contenido\":{\"tipo\":\"").append(audio == null ? "TEXTO" : "AUDIO").append('"');
+        if (audio == null) {
+            sb.append(",\"contenido\":\"hola \\\"mundo\\\" ").append(id).append("\"}");
+        } else {
+            sb.append(",\"mime\":\"audio/wav\",\"duracionSeg\":4,\"audioBase64\":\"").append(audio).append("\"}");
+        }
+        return sb.append('}').toString();
+    }
+
+    @Benchmark
+    public void eventoRegex(Blackhole bh) {
+        String payload = ExtraccionRegex.extraerObjeto(evento, "payload");
+        leerRegex(payload, bh);
+    }
+
+    @Benchmark
+    public void eventoObjetoJson(Blackhole bh) {
+        ObjetoJson doc = ObjetoJson.parsear(evento);
+        leerObjetoJson(doc.objeto("payload"), bh);
+    }
+
+    @Benchmark
+    public void eventoVistaJson(Blackhole bh) {
+        VistaJson doc = VistaJson.de(eventoBytes);
+        leerVistaJson(doc.objeto("payload"), bh);
+    }
+
+    @Benchmark
+    public void syncRegex(Blackhole bh) {
+        List<String> mensajes = ExtraccionRegex.extraerObjetosDeArreglo(sync, "mensajes");
+        for (String m : mensajes) leerRegex(m, bh);
+    }
+
+    @Benchmark
+    public void syncObjetoJson(Blackhole bh) {
+        ObjetoJson doc = ObjetoJson.parsear(sync);
+        for (ObjetoJson m : doc.objeto("payload").objetos("mensajes")) leerObjetoJson(m, bh);
+    }
+
+    @Benchmark
+    public void syncVistaJson(Blackhole bh) {
+        VistaJson doc = VistaJson.de(syncBytes);
+        for (VistaJson m : doc.objeto("payload").objetos("mensajes")) leerVistaJson(m, bh);
+    }
+
+    // Los mismos campos que lee el observador de cada mensaje
+    private static void leerRegex(String m, Blackhole bh) {
+        bh.consume(ExtraccionRegex.largo(m, "id", "mensajeId"));
+        bh.consume(ExtraccionRegex.texto(m, "serverId"));
+        bh.consume(ExtraccionRegex.largo(m, "emisor", "remitenteId"));
+        bh.consume(ExtraccionRegex.texto(m, "emisorNombre", "remitenteNombre"));
+        bh.consume(ExtraccionRegex.largo(m, "receptor", "destinatarioId"));
+        bh.consume(ExtraccionRegex.largo(m, "canalId"));
+        bh.consume(ExtraccionRegex.booleano(m, "esPrivado"));
+        bh.consume(ExtraccionRegex.texto(m, "fechaEnvio", "timestamp"));
+        String contenido = ExtraccionRegex.extraerObjeto(m, "contenido");
+        if (contenido != null) {
+            bh.consume(ExtraccionRegex.texto(contenido, "tipo"));
+            bh.consume(ExtraccionRegex.texto(contenido, "contenido", "texto"));
+            bh.consume(ExtraccionRegex.texto(contenido, "mime"));
+            bh.consume(ExtraccionRegex.largo(contenido, "duracionSeg"));
+            bh.consume(ExtraccionRegex.texto(contenido, "audioBase64"));
+        }
+    }
+
+    private static void leerObjetoJson(ObjetoJson m, Blackhole bh) {
+        bh.consume(m.largo("id", "mensajeId"));
+        bh.consume(m.texto("serverId"));
+        bh.consume(m.largo("emisor", "remitenteId"));
+        bh.consume(m.texto("emisorNombre", "remitenteNombre"));
+        bh.consume(m.largo("receptor", "destinatarioId"));
+        bh.consume(m.largo("canalId"));
+        bh.consume(m.booleano("esPrivado"));
+        bh.consume(m.texto("fechaEnvio", "timestamp"));
+        ObjetoJson contenido = m.objeto("contenido");
+        if (contenido != null) {
+            bh.consume(contenido.texto("tipo"));
+            bh.consume(contenido.texto("contenido", "texto"));
+            bh.consume(contenido.texto("mime"));
+            bh.consume(contenido.largo("duracionSeg"));
+            bh.consume(contenido.texto("audioBase64"));
+        }
+    }
+
+    private static void leerVistaJson(VistaJson m, Blackhole bh) {
+        bh.consume(m.largo("id", "mensajeId"));
+        bh.consume(m.texto("serverId"));
+        bh.consume(m.largo("emisor", "remitenteId"));
+        bh.consume(m.texto("emisorNombre", "remitenteNombre"));
+        bh.consume(m.largo("receptor", "destinatarioId"));
+        bh.consume(m.largo("canalId"));
+        bh.consume(m.booleano("esPrivado"));
+        bh.consume(m.texto("fechaEnvio", "timestamp"));
+        VistaJson contenido = m.objeto("contenido");
+        if (contenido != null) {
+            bh.consume(contenido.texto("tipo"));
+            bh.consume(contenido.texto("contenido", "texto"));
+            bh.consume(contenido.texto("mime"));
+            bh.consume(contenido.largo("duracionSeg"));
+            bh.consume(contenido.tramo("audioBase64"));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.arquitectura.herramientas.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracción por expresiones regulares tal como la hacían ObservadorEventosChat y
+ * RepositorioMensajes antes de LectorJson. Solo sirve de referencia en las mediciones.
+ */
+final class ExtraccionRegex {
+    private ExtraccionRegex() {}
+
+    static String texto(String json, String... nombres) {
+        for (String nombre : nombres) {
+            String v = extraerCampo(json, nombre);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    static Long largo(String json, String... nombres) {
+        for (String nombre : nombres) {
+            Long v = extraerLong(json, nombre);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    static Boolean booleano(String json, String... nombres) {
+        for (String nombre : nombres) {
+            Boolean v = extraerBooleano(json, nombre);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    static String extraerCampo(String json, String campo) {
+        try {
+            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*\\\"(.*?)\\\"");
+            Matcher m = p.matcher(json);
+            if (m.find()) return m.group(1);
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    static Long extraerLong(String json, String campo) {
+        try {
+            Pattern p = Pattern.compile(
+                    "\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(?:\\\"(-?\\d+)\\\"|(-?\\d+))"
+            );
+            Matcher m = p.matcher(json);
+            if (m.find()) {
+                String valor = m.group(1) != null ? m.group(1) : m.group(2);
+                if (valor != null && !valor.isBlank()) {
+                    return Long.parseLong(valor);
+                }
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    static Boolean extraerBooleano(String json, String campo) {
+        try {
+            Pattern p = Pattern.compile("\\\"" + Pattern.quote(campo) + "\\\"\\s*:\\s*(true|false)", Pattern.CASE_INSENSITIVE);
+            Matcher m = p.matcher(json);
+            if (m.find()) return Boolean.parseBoolean(m.group(1));
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    static String extraerObjeto(String json, String campo) {
+        int idx = json.indexOf("\"" + campo + "\"");
+        if (idx < 0) return null;
+        int start = json.indexOf('{', idx);
+        if (start < 0) return null;
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < json.length(); i++) {
+            char ch = json.charAt(i);
+            if (ch == '"' && (i == start || json.charAt(i - 1) != '\\')) {
+                inString = !inString;
+            }
+            if (inString) continue;
+            if (ch == '{') {
+                depth++;
+            } else if (ch == '}') {
+                depth--;
+                if (depth == 0) return json.substring(start, i + 1);
+            }
+        }
+        return null;
+    }
+
+    static List<String> extraerObjetosDeArreglo(String json, String campoArray) {
+        List<String> objs = new ArrayList<>();
+        int idx = json.indexOf("\"" + campoArray + "\"");
+        if (idx < 0) return objs;
+        int startArr = json.indexOf('[', idx);
+        if (startArr < 0) return objs;
+        int braceDepth = 0; int objStart = -1;
+        for (int i = startArr + 1; i < json.length(); i++) {
+            char ch = json.charAt(i);
+            if (ch == '{') { if (braceDepth == 0) objStart = i; braceDepth++; }
+            else if (ch == '}') { braceDepth--; if (braceDepth == 0 && objStart >= 0) { objs.add(json.substring(objStart, i + 1)); objStart = -1; } }
+            else if (ch == ']' && braceDepth == 0) { break; }
+        }
+        return objs;
+    }
+}
@@ -0,0 +1,395 @@
+package com.arquitectura.herramientas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lado servidor del codec binario "bin1" del cliente (ver CodecBinario en
+ * Infraestructura/Comunicacion), escrito aparte para no depender del cliente.
+ *
+ * Cada trama entrante se reconoce por su primer byte: '{' (o cualquier otro) es una
+ * línea JSON; uno con solo los bits 0x80, 0x40 y 0x10 es la cabecera de un segmento
+ * binario. Las tramas binarias se pasan a JSON, con los bytes crudos en Base64, para
+ * que el servidor siga trabajando sobre texto. Las que traen el bit de compresión en
+ * el primer segmento se descomprimen (deflate) antes. Una trama con el bit de
+ * intercalada llega entera entre dos segmentos de otra y se entrega primero.
+ */
+final class CodecBinarioSimulado {
+    static final String NOMBRE = "bin1";
+
+    private static final int NULO = 0x00, FALSO = 0x01, VERDADERO = 0x02, ENTERO = 0x03, DECIMAL = 0x04,
+            TEXTO = 0x05, BYTES = 0x06, ARREGLO = 0x07, OBJETO = 0x08, BYTES_POR_PARTES = 0x09, FIN = 0x0F;
+    static final String DEFLATE = "deflate";
+    static final String INTERCALADO = "segmentos";
+    private static final int CONTINUA = 0x80000000;
+    private static final int COMPRIMIDA = 0x40000000;
+    private static final int INTERCALADA = 0x10000000;
+    private static final int MAX_SEGMENTO = (1 << 24) - 1;
+
+    private CodecBinarioSimulado() {}
+
+    /**
+     * Tramas entrantes de una conexión. Guarda la trama binaria a medio llegar mientras
+     * se entregan las intercaladas entre sus segmentos.
+     */
+    static final class Entrada {
+        private final InputStream in;
+        private ByteArrayOutputStream abierta;
+        private boolean abiertaComprimida;
+
+        Entrada(InputStream in) {
+            this.in = in;
+        }
+
+        /** Siguiente trama como texto JSON, venga como línea o en binario; null al terminar el flujo. */
+        String leerTrama() throws IOException {
+            int b;
+            if (abierta == null) {
+                do {
+                    b = in.read();
+                } while (b == '\n' || b == '\r' || b == ' ' || b == '\t');
+                if (b < 0) return null;
+                if ((b & 0x2F) != 0) {
+                    ByteArrayOutputStream linea = new ByteArrayOutputStream();
+                    while (b >= 0 && b != '\n') {
+                        linea.write(b);
+                        b = in.read();
+                    }
+                    return linea.toString(StandardCharsets.UTF_8);
+                }
+            } else {
+                b = leerByte(in);
+            }
+            while (true) {
+                int cabecera = b << 24 | leerByte(in) << 16 | leerByte(in) << 8 | leerByte(in);
+                if ((cabecera & INTERCALADA) != 0) return intercalada(cabecera);
+                if (abierta == null) {
+                    abierta = new ByteArrayOutputStream();
+                    abiertaComprimida = (cabecera & COMPRIMIDA) != 0;
+                }
+                abierta.write(in.readNBytes(cabecera & MAX_SEGMENTO));
+                if ((cabecera & CONTINUA) == 0) {
+                    byte[] c = abierta.toByteArray();
+                    abierta = null;
+                    return json(c, abiertaComprimida);
+                }
+                b = leerByte(in);
+            }
+        }
+
+        // Todos sus segmentos vienen seguidos y marcados
+        private String intercalada(int cabecera) throws IOException {
+            ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+            boolean comprimida = (cabecera & COMPRIMIDA) != 0;
+            while (true) {
+                cuerpo.write(in.readNBytes(cabecera & MAX_SEGMENTO));
+                if ((cabecera & CONTINUA) == 0) return json(cuerpo.toByteArray(), comprimida);
+                cabecera = leerByte(in) << 24 | leerByte(in) << 16 | leerByte(in) << 8 | leerByte(in);
+                if ((cabecera & INTERCALADA) == 0) throw new IOException("Segmento sin marca en una trama intercalada");
+            }
+        }
+    }
+
+    private static String json(byte[] cuerpo, boolean comprimida) throws IOException {
+        byte[] c = comprimida ? inflar(cuerpo) : cuerpo;
+        StringBuilder sb = new StringBuilder(c.length * 4 / 3 + 16);
+        aJson(ByteBuffer.wrap(c), sb);
+        return sb.toString();
+    }
+
+    /**
+     * La línea JSON como trama binaria, lista para escribir en el socket. Con un
+     * umbral mayor que cero, el cuerpo que lo alcanza sale comprimido.
+     */
+    static byte[] aBinario(String json, int umbralCompresion) {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(json.length());
+        int fin = new Lector(json, cuerpo).valor(0, false);
+        if (fin < 0) throw new IllegalArgumentException("JSON inválido: " + json);
+        byte[] c = cuerpo.toByteArray();
+        boolean comprimida = umbralCompresion > 0 && c.length >= umbralCompresion;
+        if (comprimida) c = desinflar(c);
+        ByteArrayOutputStream trama = new ByteArrayOutputStream(c.length + 8);
+        int desde = 0;
+        do {
+            int n = Math.min(MAX_SEGMENTO, c.length - desde);
+            int cabecera = n | (desde + n < c.length ? CONTINUA : 0) | (comprimida && desde == 0 ? COMPRIMIDA : 0);
+            trama.write(cabecera >>> 24);
+            trama.write(cabecera >>> 16);
+            trama.write(cabecera >>> 8);
+            trama.write(cabecera);
+            trama.write(c, desde, n);
+            desde += n;
+        } while (desde < c.length);
+        return trama.toByteArray();
+    }
+
+    private static byte[] desinflar(byte[] datos) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 2 + 64);
+            byte[] bloque = new byte[8192];
+            while (!deflater.finished()) salida.write(bloque, 0, deflater.deflate(bloque));
+            return salida.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflar(byte[] datos) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(datos);
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length * 4);
+            byte[] bloque = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(bloque);
+                if (n == 0 && inflater.needsInput()) throw new EOFException("Trama comprimida incompleta");
+                salida.write(bloque, 0, n);
+            }
+            return salida.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Trama comprimida inválida", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void aJson(ByteBuffer c, StringBuilder sb) {
+        int etiqueta = c.get();
+        switch (etiqueta) {
+            case NULO -> sb.append("null");
+            case FALSO -> sb.append("false");
+            case VERDADERO -> sb.append("true");
+            case ENTERO -> {
+                long z = varint(c);
+                sb.append((z >>> 1) ^ -(z & 1));
+            }
+            case DECIMAL -> sb.append(c.getDouble());
+            case TEXTO -> cadena(texto(c), sb);
+            case BYTES -> {
+                byte[] b = new byte[(int) varint(c)];
+                c.get(b);
+                sb.append('"').append(Base64.getEncoder().encodeToString(b)).append('"');
+            }
+            case BYTES_POR_PARTES -> {
+                ByteArrayOutputStream b = new ByteArrayOutputStream();
+                int n;
+                while ((n = (int) varint(c)) > 0) {
+                    byte[] parte = new byte[n];
+                    c.get(parte);
+                    b.writeBytes(parte);
+                }
+                sb.append('"').append(Base64.getEncoder().encodeToString(b.toByteArray())).append('"');
+            }
+            case ARREGLO -> {
+                sb.append('[');
+                for (int i = 0; c.get(c.position()) != FIN; i++) {
+                    if (i > 0) sb.append(',');
+                    aJson(c, sb);
+                }
+                c.get();
+                sb.append(']');
+            }
+            case OBJETO -> {
+                sb.append('{');
+                for (int i = 0; c.get(c.position()) != FIN; i++) {
+                    if (i > 0) sb.append(',');
+                    c.get();
+                    cadena(texto(c), sb);
+                    sb.append(':');
+                    aJson(c, sb);
+                }
+                c.get();
+                sb.append('}');
+            }
+            default -> throw new IllegalArgumentException("Etiqueta desconocida: " + etiqueta);
+        }
+    }
+
+    private static String texto(ByteBuffer c) {
+        byte[] b = new byte[(int) varint(c)];
+        c.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void cadena(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch)); else sb.append(ch);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static long varint(ByteBuffer c) {
+        long v = 0;
+        for (int d = 0; d < 64; d += 7) {
+            byte x = c.get();
+            v |= (long) (x & 0x7F) << d;
+            if ((x & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    private static int leerByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException("Trama binaria incompleta");
+        return b;
+    }
+
+    /** Parser JSON mínimo para las respuestas del servidor; devuelve la posición siguiente o -1. */
+    private static final class Lector {
+        private final String s;
+        private final ByteArrayOutputStream out;
+
+        Lector(String s, ByteArrayOutputStream out) {
+            this.s = s;
+            this.out = out;
+        }
+
+        int valor(int i, boolean bytesCrudos) {
+            i = espacios(i);
+            char ch = s.charAt(i);
+            if (ch == '{') {
+                out.write(OBJETO);
+                i = espacios(i + 1);
+                if (s.charAt(i) == '}') {
+                    out.write(FIN);
+                    return i + 1;
+                }
+                while (true) {
+                    int finClave = finCadena(i);
+                    String clave = desescapar(i + 1, finClave);
+                    escribirTexto(clave);
+                    i = espacios(espacios(finClave + 1) + 1);
+                    i = espacios(valor(i, clave.endsWith("Base64")));
+                    if (s.charAt(i) == '}') break;
+                    i = espacios(i + 1);
+                }
+                out.write(FIN);
+                return i + 1;
+            }
+            if (ch == '[') {
+                out.write(ARREGLO);
+                i = espacios(i + 1);
+                if (s.charAt(i) == ']') {
+                    out.write(FIN);
+                    return i + 1;
+                }
+                while (true) {
+                    i = espacios(valor(i, false));
+                    if (s.charAt(i) == ']') break;
+                    i = i + 1;
+                }
+                out.write(FIN);
+                return i + 1;
+            }
+            if (ch == '"') {
+                int fin = finCadena(i);
+                String t = desescapar(i + 1, fin);
+                if (bytesCrudos) {
+                    try {
+                        byte[] b = Base64.getDecoder().decode(t);
+                        out.write(BYTES);
+                        escribirVarint(b.length);
+                        out.writeBytes(b);
+                        return fin + 1;
+                    } catch (IllegalArgumentException noEsBase64) {
+                        // Sale como texto
+                    }
+                }
+                escribirTexto(t);
+                return fin + 1;
+            }
+            if (s.startsWith("true", i)) { out.write(VERDADERO); return i + 4; }
+            if (s.startsWith("false", i)) { out.write(FALSO); return i + 5; }
+            if (s.startsWith("null", i)) { out.write(NULO); return i + 4; }
+            int j = i;
+            while (j < s.length() && "+-0123456789.eE".indexOf(s.charAt(j)) >= 0) j++;
+            String numero = s.substring(i, j);
+            if (numero.isEmpty()) return -1;
+            try {
+                long n = Long.parseLong(numero);
+                out.write(ENTERO);
+                escribirVarint((n << 1) ^ (n >> 63));
+            } catch (NumberFormatException e) {
+                long bits = Double.doubleToLongBits(Double.parseDouble(numero));
+                out.write(DECIMAL);
+                for (int d = 56; d >= 0; d -= 8) out.write((int) (bits >>> d));
+            }
+            return j;
+        }
+
+        private void escribirTexto(String t) {
+            byte[] b = t.getBytes(StandardCharsets.UTF_8);
+            out.write(TEXTO);
+            escribirVarint(b.length);
+            out.writeBytes(b);
+        }
+
+        private void escribirVarint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        private int finCadena(int i) {
+            for (int j = i + 1; ; j++) {
+                char ch = s.charAt(j);
+                if (ch == '\\') j++;
+                else if (ch == '"') return j;
+            }
+        }
+
+        private String desescapar(int desde, int hasta) {
+            StringBuilder sb = new StringBuilder(hasta - desde);
+            for (int i = desde; i < hasta; i++) {
+                char ch = s.charAt(i);
+                if (ch != '\\') {
+                    sb.append(ch);
+                    continue;
+                }
+                char e = s.charAt(++i);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        sb.append((char) Integer.parseInt(s, i + 1, i + 5, 16));
+                        i += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+            return sb.toString();
+        }
+
+        private int espacios(int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return i;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.arquitectura.herramientas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servidor de chat mínimo para probar el cliente en local, sin el servidor real.
+ * Atiende un hilo por conexión con el protocolo JSON por líneas y responde a los
+ * comandos que el cliente espera (LOGIN, LIST_*, UPLOAD_AUDIO y la subida por
+ * partes UPLOAD_AUDIO_CHUNK / UPLOAD_AUDIO_COMMIT). Si la línea trae requestId se
+ * devuelve en la respuesta.
+ *
+ * Las subidas por partes se guardan por uploadId fuera de la conexión, así que se
+ * pueden reanudar al reconectar. Con --cortar-tras N cada conexión se cierra después
+ * de N fragmentos, para ejercitar la reanudación. Con --callar-tras N cada conexión
+ * deja de responder (sin cerrarse) después de N PING, como una conexión medio abierta.
+ * Con --sin-masiva se rechaza el LOGIN de la conexión masiva ("conexion":"bulk").
+ *
+ * Entiende también el codec binario (ver CodecBinarioSimulado): si el HELLO del
+ * cliente ofrece bin1 lo acepta y responde en binario desde ese momento. Cada trama
+ * entrante se acepta en cualquiera de los dos formatos. Con --solo-json no responde
+ * HELLO, como un servidor anterior al codec. Si el HELLO ofrece compresión deflate
+ * también la acepta y comprime las respuestas binarias desde 1 KiB; si ofrece
+ * intercalado acepta tramas intercaladas entre los segmentos de otra.
+ *
+ * Con --usuarios N, LIST_USERS devuelve N usuarios con foto, para probar respuestas
+ * grandes.
+ *
+ * Uso: java com.arquitectura.herramientas.ServidorChatSimulado [puerto] [--cortar-tras N] [--callar-tras N] [--sin-masiva] [--solo-json] [--usuarios N]
+ */
+public final class ServidorChatSimulado {
+    private static final Pattern COMANDO = Pattern.compile("\"command\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern ID_SOLICITUD = Pattern.compile("\"requestId\"\\s*:\\s*\"([^\"]*)\"");
+    private static final int UMBRAL_COMPRESION = 1024;
+
+    private final int puerto;
+    private final int cortarTrasFragmentos;
+    private final int callarTrasPings;
+    private final boolean rechazarMasiva;
+    private final boolean soloJson;
+    private final String usuarios;
+    private final Path directorioSubidas;
+    private final Map<String, ByteArrayOutputStream> subidas = new ConcurrentHashMap<>();
+
+    public ServidorChatSimulado(int puerto, int cortarTrasFragmentos, int callarTrasPings, boolean rechazarMasiva,
+                                boolean soloJson, int cantidadUsuarios, Path directorioSubidas) {
+        this.puerto = puerto;
+        this.cortarTrasFragmentos = cortarTrasFragmentos;
+        this.callarTrasPings = callarTrasPings;
+        this.rechazarMasiva = rechazarMasiva;
+        this.soloJson = soloJson;
+        this.usuarios = listaUsuarios(cantidadUsuarios);
+        this.directorioSubidas = directorioSubidas;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int puerto = 5000;
+        int cortarTras = 0;
+        int callarTras = 0;
+        boolean sinMasiva = false;
+        boolean soloJson = false;
+        int usuarios = 0;
+        for (int i = 0; i < args.length; i++) {
+            if ("--cortar-tras".equals(args[i]) && i + 1 < args.length) {
+                cortarTras = Integer.parseInt(args[++i]);
+            } else if ("--callar-tras".equals(args[i]) && i + 1 < args.length) {
+                callarTras = Integer.parseInt(args[++i]);
+            } else if ("--sin-masiva".equals(args[i])) {
+                sinMasiva = true;
+            } else if ("--solo-json".equals(args[i])) {
+                soloJson = true;
+            } else if ("--usuarios".equals(args[i]) && i + 1 < args.length) {
+                usuarios = Integer.parseInt(args[++i]);
+            } else {
+                puerto = Integer.parseInt(args[i]);
+            }
+        }
+        Path subidas = Files.createTempDirectory("servidor-simulado-");
+        new ServidorChatSimulado(puerto, cortarTras, callarTras, sinMasiva, soloJson, usuarios, subidas).atender();
+    }
+
+    public void atender() throws IOException {
+        try (ServerSocket servidor = new ServerSocket(puerto)) {
+            System.out.println("[ServidorChatSimulado] Escuchando en " + servidor.getLocalPort() + ", subidas en " + directorioSubidas);
+            while (true) {
+                Socket s = servidor.accept();
+                Thread hilo = new Thread(() -> atenderConexion(s), "simulado-" + s.getPort());
+                hilo.setDaemon(true);
+                hilo.start();
+            }
+        }
+    }
+
+    private void atenderConexion(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16)) {
+            int fragmentos = 0;
+            int pings = 0;
+            boolean callado = false;
+            boolean binario = false;
+            boolean comprimir = false;
+            CodecBinarioSimulado.Entrada entrada = new CodecBinarioSimulado.Entrada(in);
+            String linea;
+            while ((linea = entrada.leerTrama()) != null) {
+                String comando = texto(COMANDO, linea);
+                if (comando == null || callado) continue;
+                if ("PING".equals(comando) && callarTrasPings > 0 && ++pings > callarTrasPings) {
+                    System.out.println("[ServidorChatSimulado] Conexión callada tras " + callarTrasPings + " PING");
+                    callado = true;
+                    continue;
+                }
+                String respuesta = responder(comando, linea);
+                if (respuesta == null) continue;
+                if (binario) {
+                    out.write(CodecBinarioSimulado.aBinario(respuesta, comprimir ? UMBRAL_COMPRESION : 0));
+                } else {
+                    out.write(respuesta.getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                }
+                out.flush();
+                if ("HELLO".equals(comando) && respuesta.contains(CodecBinarioSimulado.NOMBRE)) {
+                    comprimir = respuesta.contains(CodecBinarioSimulado.DEFLATE);
+                    System.out.println("[ServidorChatSimulado] Codec binario aceptado" + (comprimir ? " con compresión" : ""));
+                    binario = true;
+                }
+                if ("UPLOAD_AUDIO_CHUNK".equals(comando) && cortarTrasFragmentos > 0 && ++fragmentos >= cortarTrasFragmentos) {
+                    System.out.println("[ServidorChatSimulado] Cortando conexión tras " + fragmentos + " fragmentos");
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("[ServidorChatSimulado] Conexión terminada: " + e.getMessage());
+        }
+    }
+
+    private String responder(String comando, String linea) throws IOException {
+        String id = texto(ID_SOLICITUD, linea);
+        switch (comando) {
+            case "LOGIN":
+                if ("bulk".equals(texto(campo("conexion"), linea))) {
+                    if (rechazarMasiva) {
+                        return respuesta(comando, id, "{\"success\":false,\"message\":\"Conexión masiva no soportada\"}");
+                    }
+                    System.out.println("[ServidorChatSimulado] Conexión masiva autenticada");
+                }
+                return respuesta(comando, id, "{\"success\":true,\"message\":\"Login exitoso\"}");
+            case "REGISTER":
+                return respuesta(comando, id, "{\"success\":true,\"message\":\"Registro exitoso\"}");
+            case "LIST_USERS":
+                return respuesta(comando, id, usuarios);
+            case "LIST_CHANNELS":
+            case "LIST_CONNECTED":
+            case "LIST_RECEIVED_INVITATIONS":
+            case "LIST_SENT_INVITATIONS":
+                return respuesta(comando, id, "[]");
+            case "HELLO":
+                if (soloJson) return null;
+                if (!linea.contains(CodecBinarioSimulado.NOMBRE)) return respuesta(comando, id, "{\"codec\":\"json\"}");
+                return respuesta(comando, id, "{\"codec\":\"" + CodecBinarioSimulado.NOMBRE + "\""
+                        + (linea.contains(CodecBinarioSimulado.DEFLATE) ? ",\"compresion\":\"" + CodecBinarioSimulado.DEFLATE + "\"" : "")
+                        + (linea.contains("\"intercalado\"") ? ",\"intercalado\":\"" + CodecBinarioSimulado.INTERCALADO + "\"" : "")
+                        + "}");
+            case "PING":
+                return respuesta(comando, id, "{\"message\":\"PONG\"}");
+            case "UPLOAD_AUDIO": {
+                byte[] datos = Base64.getDecoder().decode(textoLargo(linea, "audioBase64"));
+                return respuestaSubida(comando, id, guardar(datos, texto(campo("nombreArchivo"), linea)));
+            }
+            case "UPLOAD_AUDIO_CHUNK":
+                return fragmento(id, linea);
+            case "UPLOAD_AUDIO_COMMIT":
+                return confirmar(id, linea);
+            default:
+                System.out.println("[ServidorChatSimulado] Comando sin respuesta: " + comando);
+                return null;
+        }
+    }
+
+    // Solo se acepta el fragmento que empieza donde termina lo recibido; siempre se informa "recibidos"
+    private String fragmento(String id, String linea) {
+        String idSubida = texto(campo("uploadId"), linea);
+        long offset = numero(linea, "offset");
+        long secuencia = numero(linea, "secuencia");
+        ByteArrayOutputStream datos = subidas.computeIfAbsent(idSubida, k -> new ByteArrayOutputStream());
+        synchronized (datos) {
+            if (offset == datos.size()) {
+                byte[] bloque = Base64.getDecoder().decode(textoLargo(linea, "datosBase64"));
+                datos.write(bloque, 0, bloque.length);
+            }
+            return respuesta("UPLOAD_AUDIO_CHUNK", id, "{\"uploadId\":\"" + idSubida + "\",\"secuencia\":" + secuencia
+                    + ",\"recibidos\":" + datos.size() + "}");
+        }
+    }
+
+    private String confirmar(String id, String linea) throws IOException {
+        String idSubida = texto(campo("uploadId"), linea);
+        long total = numero(linea, "totalBytes");
+        ByteArrayOutputStream datos = subidas.get(idSubida);
+        if (datos == null && total > 0) {
+            return respuesta("UPLOAD_AUDIO_COMMIT", id, "{\"exito\":false,\"mensaje\":\"Subida desconocida\"}");
+        }
+        byte[] contenido = datos == null ? new byte[0] : datos.toByteArray();
+        if (contenido.length != total) {
+            return respuesta("UPLOAD_AUDIO_COMMIT", id, "{\"exito\":false,\"mensaje\":\"Faltan bytes: "
+                    + contenido.length + "/" + total + "\"}");
+        }
+        subidas.remove(idSubida);
+        return respuestaSubida("UPLOAD_AUDIO_COMMIT", id, guardar(contenido, texto(campo("nombreArchivo"), linea)));
+    }
+
+    private Path guardar(byte[] datos, String nombre) throws IOException {
+        String archivo = System.currentTimeMillis() + "-" + (nombre != null ? nombre.replaceAll("[^A-Za-z0-9._-]", "_") : "audio.wav");
+        Path destino = directorioSubidas.resolve(archivo);
+        Files.write(destino, datos);
+        System.out.println("[ServidorChatSimulado] Audio guardado: " + destino + " (" + datos.length + " bytes)");
+        return destino;
+    }
+
+    // Fotos de 64x64 en escala de grises sin comprimir, como las que suben los clientes
+    private static String listaUsuarios(int cantidad) {
+        StringBuilder sb = new StringBuilder("[");
+        byte[] foto = new byte[64 * 64];
+        for (int i = 0; i < cantidad; i++) {
+            for (int p = 0; p < foto.length; p++) foto[p] = (byte) ((p % 64 + p / 64 + i) & 0xF0);
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i + 1).append(",\"usuario\":\"usuario").append(i + 1)
+                    .append("\",\"email\":\"usuario").append(i + 1).append("@chat.local\",\"conectado\":")
+                    .append(i % 3 == 0).append(",\"fotoBase64\":\"").append(Base64.getEncoder().encodeToString(foto))
+                    .append("\"}");
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String respuestaSubida(String comando, String id, Path ruta) {
+        return respuesta(comando, id, "{\"exito\":true,\"rutaArchivo\":\"" + ruta.getFileName()
+                + "\",\"mensaje\":\"Audio recibido\"}");
+    }
+
+    private static String respuesta(String comando, String id, String payload) {
+        return "{\"command\":\"" + comando + "\"" + (id != null ? ",\"requestId\":\"" + id + "\"" : "")
+                + ",\"payload\":" + payload + "}";
+    }
+
+    private static Pattern campo(String nombre) {
+        return Pattern.compile("\"" + Pattern.quote(nombre) + "\"\\s*:\\s*\"([^\"]*)\"");
+    }
+
+    private static String texto(Pattern patron, String linea) {
+        Matcher m = patron.matcher(linea);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static long numero(String linea, String nombre) {
+        Matcher m = Pattern.compile("\"" + Pattern.quote(nombre) + "\"\\s*:\\s*(\\d+)").matcher(linea);
+        return m.find() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    // Base64 no lleva comillas ni escapes: basta con buscar la comilla de cierre
+    private static String textoLargo(String linea, String nombre) {
+        String clave = "\"" + nombre + "\":\"";
+        int inicio = linea.indexOf(clave);
+        if (inicio < 0) return "";
+        inicio += clave.length();
+        int fin = linea.indexOf('"', inicio);
+        return fin < 0 ? "" : linea.substring(inicio, fin);
+    }
+}
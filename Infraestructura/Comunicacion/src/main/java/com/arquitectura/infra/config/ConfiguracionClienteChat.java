@@ -2,20 +2,180 @@ package com.arquitectura.infra.config;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Properties;
 
 public class ConfiguracionClienteChat {
+    /** Tipo de transporte usado por ClienteChatTcp. */
+    public enum ModoTransporte {
+        /** Socket clásico con hilo lector bloqueante (comportamiento original). */
+        BLOQUEANTE,
+        /** SocketChannel no bloqueante atendido por un Selector compartido. */
+        NIO;
+
+        static ModoTransporte desdeTexto(String valor, ModoTransporte porDefecto) {
+            if (valor == null || valor.isBlank()) return porDefecto;
+            String v = valor.trim().toLowerCase(Locale.ROOT);
+            if (v.equals("nio") || v.equals("selector")) return NIO;
+            if (v.equals("blocking") || v.equals("bloqueante") || v.equals("socket")) return BLOQUEANTE;
+            return porDefecto;
+        }
+    }
+
+    /** Cómo espera el hilo de despacho cuando el anillo de tramas está vacío. */
+    public enum EstrategiaEspera {
+        /** Se duerme hasta que el lector publique (menor consumo de CPU). */
+        BLOQUEANTE,
+        /** Cede el procesador en bucle (Thread.yield). */
+        CEDER,
+        /** Espera activa (Thread.onSpinWait); mínima latencia, un núcleo ocupado. */
+        ESPERA_ACTIVA;
+
+        static EstrategiaEspera desdeTexto(String valor, EstrategiaEspera porDefecto) {
+            if (valor == null || valor.isBlank()) return porDefecto;
+            String v = valor.trim().toLowerCase(Locale.ROOT);
+            if (v.equals("yield") || v.equals("ceder")) return CEDER;
+            if (v.equals("busy-spin") || v.equals("busy") || v.equals("spin")) return ESPERA_ACTIVA;
+            if (v.equals("blocking") || v.equals("bloqueante")) return BLOQUEANTE;
+            return porDefecto;
+        }
+    }
+
+    /** Hilos con que se ejecutan las tareas bloqueantes (red, BD) de la aplicación. */
+    public enum ModoEjecucion {
+        /** Hilos de plataforma, daemon (comportamiento original). */
+        PLATAFORMA,
+        /** Un hilo virtual por tarea: esperar una respuesta casi no cuesta. */
+        VIRTUAL;
+
+        static ModoEjecucion desdeTexto(String valor, ModoEjecucion porDefecto) {
+            if (valor == null || valor.isBlank()) return porDefecto;
+            String v = valor.trim().toLowerCase(Locale.ROOT);
+            if (v.equals("virtual") || v.equals("virtuales")) return VIRTUAL;
+            if (v.equals("platform") || v.equals("plataforma")) return PLATAFORMA;
+            return porDefecto;
+        }
+    }
+
+    /** Un servidor de la federación: host y puerto. */
+    public static final class PuntoServidor {
+        private final String host;
+        private final int puerto;
+
+        public PuntoServidor(String host, int puerto) {
+            this.host = Objects.requireNonNull(host);
+            this.puerto = puerto;
+        }
+
+        public String obtenerHost() {
+            return host;
+        }
+
+        public int obtenerPuerto() {
+            return puerto;
+        }
+
+        // "host:puerto", "[ipv6]:puerto" o solo "host" con el puerto por defecto; null si no se entiende
+        static PuntoServidor desdeTexto(String valor, int puertoPorDefecto) {
+            String v = valor.trim();
+            if (v.isEmpty()) return null;
+            int separador = v.lastIndexOf(':');
+            if (v.startsWith("[")) {
+                int cierre = v.indexOf(']');
+                if (cierre < 0) return null;
+                String h = v.substring(1, cierre);
+                return new PuntoServidor(h, cierre + 1 < v.length() && v.charAt(cierre + 1) == ':'
+                        ? parsearEntero(v.substring(cierre + 2), puertoPorDefecto) : puertoPorDefecto);
+            }
+            if (separador < 0 || v.indexOf(':') != separador) return new PuntoServidor(v, puertoPorDefecto);
+            int p = parsearEntero(v.substring(separador + 1).trim(), -1);
+            return p <= 0 ? null : new PuntoServidor(v.substring(0, separador).trim(), p);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PuntoServidor otro && otro.host.equals(host) && otro.puerto == puerto;
+        }
+
+        @Override
+        public int hashCode() {
+            return host.hashCode() * 31 + puerto;
+        }
+
+        @Override
+        public String toString() {
+            return (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + puerto;
+        }
+    }
+
     private final String host;
     private final int puerto;
+    private final List<PuntoServidor> servidores;
+    private final int escalonConexionMs;
     private final int tiempoEsperaConexionMs;
     private final int tiempoEsperaLecturaMs;
+    private final ModoTransporte modoTransporte;
+    private final int tamanoAnilloDespacho;
+    private final EstrategiaEspera estrategiaEsperaDespacho;
+    private final boolean subidaPorPartes;
+    private final int tamanoFragmentoSubida;
+    private final int ventanaFragmentosSubida;
+    private final boolean reconexionAutomatica;
+    private final int esperaInicialReconexionMs;
+    private final int esperaMaximaReconexionMs;
+    private final int intentosMaximosReconexion;
+    private final int intervaloLatidoMs;
+    private final int tiempoEsperaLatidoMs;
+    private final int fallosMaximosLatido;
+    private final boolean conexionMasiva;
+    private final int limiteTramaEnMemoria;
+    private final int limiteEnviosRetenidos;
+    private final boolean codecBinario;
+    private final int tiempoEsperaNegociacionMs;
+    private final boolean compresion;
+    private final ModoEjecucion modoEjecucion;
+    private final int umbralCompresion;
 
     public ConfiguracionClienteChat(String host, int puerto, int tiempoEsperaConexionMs, int tiempoEsperaLecturaMs) {
+        this(host, puerto, tiempoEsperaConexionMs, tiempoEsperaLecturaMs, ModoTransporte.BLOQUEANTE);
+    }
+
+    public ConfiguracionClienteChat(String host, int puerto, int tiempoEsperaConexionMs, int tiempoEsperaLecturaMs, ModoTransporte modoTransporte) {
+        this(host, puerto, tiempoEsperaConexionMs, tiempoEsperaLecturaMs, modoTransporte, new Properties());
+    }
+
+    // Las opciones avanzadas se leen de las propiedades con su valor por defecto
+    private ConfiguracionClienteChat(String host, int puerto, int tiempoEsperaConexionMs, int tiempoEsperaLecturaMs, ModoTransporte modoTransporte, Properties opciones) {
         this.host = Objects.requireNonNullElse(host, "127.0.0.1");
         this.puerto = puerto <= 0 ? 5000 : puerto;
+        this.servidores = parsearServidores(opciones.getProperty("server.endpoints"), new PuntoServidor(this.host, this.puerto));
+        this.escalonConexionMs = Math.max(0, parsearEntero(opciones.getProperty("server.race.stagger.ms"), 250));
         this.tiempoEsperaConexionMs = Math.max(0, tiempoEsperaConexionMs);
         this.tiempoEsperaLecturaMs = Math.max(0, tiempoEsperaLecturaMs);
+        this.modoTransporte = Objects.requireNonNullElse(modoTransporte, ModoTransporte.BLOQUEANTE);
+        this.tamanoAnilloDespacho = Math.max(16, parsearEntero(opciones.getProperty("dispatch.ring.size"), 1024));
+        this.estrategiaEsperaDespacho = EstrategiaEspera.desdeTexto(opciones.getProperty("dispatch.wait.strategy"), EstrategiaEspera.BLOQUEANTE);
+        this.subidaPorPartes = "chunked".equalsIgnoreCase(opciones.getProperty("upload.mode", "").trim());
+        this.tamanoFragmentoSubida = Math.max(1024, parsearEntero(opciones.getProperty("upload.chunk.size"), 32 * 1024));
+        this.ventanaFragmentosSubida = Math.max(1, parsearEntero(opciones.getProperty("upload.chunk.window"), 4));
+        this.reconexionAutomatica = Boolean.parseBoolean(opciones.getProperty("reconnect.enabled", "false").trim());
+        this.esperaInicialReconexionMs = Math.max(50, parsearEntero(opciones.getProperty("reconnect.initial.delay.ms"), 500));
+        this.esperaMaximaReconexionMs = Math.max(esperaInicialReconexionMs, parsearEntero(opciones.getProperty("reconnect.max.delay.ms"), 30000));
+        this.intentosMaximosReconexion = Math.max(0, parsearEntero(opciones.getProperty("reconnect.max.attempts"), 10));
+        this.limiteEnviosRetenidos = Math.max(0, parsearEntero(opciones.getProperty("reconnect.queue.limit"), 1000));
+        this.intervaloLatidoMs = Math.max(0, parsearEntero(opciones.getProperty("heartbeat.interval.ms"), 15000));
+        this.tiempoEsperaLatidoMs = Math.max(100, parsearEntero(opciones.getProperty("heartbeat.timeout.ms"), 5000));
+        this.fallosMaximosLatido = Math.max(1, parsearEntero(opciones.getProperty("heartbeat.max.misses"), 3));
+        this.conexionMasiva = Boolean.parseBoolean(opciones.getProperty("bulk.connection.enabled", "false").trim());
+        this.limiteTramaEnMemoria = Math.max(64 * 1024, parsearEntero(opciones.getProperty("frame.max.memory.bytes"), 8 * 1024 * 1024));
+        this.codecBinario = "binary".equalsIgnoreCase(opciones.getProperty("protocol.codec", "").trim());
+        this.tiempoEsperaNegociacionMs = Math.max(100, parsearEntero(opciones.getProperty("codec.negotiation.timeout.ms"), 1500));
+        this.compresion = Boolean.parseBoolean(opciones.getProperty("compression.enabled", "false").trim());
+        this.umbralCompresion = Math.max(256, parsearEntero(opciones.getProperty("compression.threshold.bytes"), 8 * 1024));
+        this.modoEjecucion = ModoEjecucion.desdeTexto(opciones.getProperty("execution.mode"), ModoEjecucion.PLATAFORMA);
     }
 
     public static ConfiguracionClienteChat cargarDesdeRecursos() {
@@ -31,7 +191,25 @@ public class ConfiguracionClienteChat {
         int puerto = parsearEntero(props.getProperty("server.port"), 5000);
         int tiempoConexion = parsearEntero(props.getProperty("connect.timeout.ms"), 3000);
         int tiempoLectura = parsearEntero(props.getProperty("read.timeout.ms"), 0);
-        return new ConfiguracionClienteChat(host, puerto, tiempoConexion, tiempoLectura);
+        ModoTransporte modo = ModoTransporte.desdeTexto(props.getProperty("transport.mode"), ModoTransporte.BLOQUEANTE);
+        return new ConfiguracionClienteChat(host, puerto, tiempoConexion, tiempoLectura, modo, props);
+    }
+
+    // Sin server.endpoints (o si ninguno se entiende) queda solo server.host/server.port
+    private static List<PuntoServidor> parsearServidores(String valor, PuntoServidor porDefecto) {
+        List<PuntoServidor> lista = new ArrayList<>();
+        if (valor != null) {
+            for (String parte : valor.split(",")) {
+                PuntoServidor p = PuntoServidor.desdeTexto(parte, porDefecto.obtenerPuerto());
+                if (p == null) {
+                    System.out.println("[ConfiguracionClienteChat] Servidor ignorado en server.endpoints: " + parte.trim());
+                } else if (!lista.contains(p)) {
+                    lista.add(p);
+                }
+            }
+        }
+        if (lista.isEmpty()) lista.add(porDefecto);
+        return List.copyOf(lista);
     }
 
     private static int parsearEntero(String valor, int porDefecto) {
@@ -50,6 +228,19 @@ public class ConfiguracionClienteChat {
         return puerto;
     }
 
+    /**
+     * Servidores a los que se puede conectar, en el orden de server.endpoints; si no
+     * está definido, solo server.host/server.port.
+     */
+    public List<PuntoServidor> obtenerServidores() {
+        return servidores;
+    }
+
+    /** Cuánto se espera a un intento de conexión antes de lanzar en paralelo el siguiente servidor. */
+    public int obtenerEscalonConexionMs() {
+        return escalonConexionMs;
+    }
+
     public int obtenerTiempoEsperaConexionMs() {
         return tiempoEsperaConexionMs;
     }
@@ -57,4 +248,103 @@ public class ConfiguracionClienteChat {
     public int obtenerTiempoEsperaLecturaMs() {
         return tiempoEsperaLecturaMs;
     }
+
+    public ModoTransporte obtenerModoTransporte() {
+        return modoTransporte;
+    }
+
+    public int obtenerTamanoAnilloDespacho() {
+        return tamanoAnilloDespacho;
+    }
+
+    public EstrategiaEspera obtenerEstrategiaEsperaDespacho() {
+        return estrategiaEsperaDespacho;
+    }
+
+    /** Si el audio se sube en fragmentos UPLOAD_AUDIO_CHUNK reanudables en lugar de una sola trama. */
+    public boolean esSubidaPorPartes() {
+        return subidaPorPartes;
+    }
+
+    /** Bytes de audio por fragmento en la subida por partes. */
+    public int obtenerTamanoFragmentoSubida() {
+        return tamanoFragmentoSubida;
+    }
+
+    /** Fragmentos enviados sin confirmar como máximo. */
+    public int obtenerVentanaFragmentosSubida() {
+        return ventanaFragmentosSubida;
+    }
+
+    /** Si ClienteChatTcp reconecta solo al perder la conexión en lugar de cerrarse. */
+    public boolean esReconexionAutomatica() {
+        return reconexionAutomatica;
+    }
+
+    public int obtenerEsperaInicialReconexionMs() {
+        return esperaInicialReconexionMs;
+    }
+
+    public int obtenerEsperaMaximaReconexionMs() {
+        return esperaMaximaReconexionMs;
+    }
+
+    /** Intentos antes de rendirse y cerrar; 0 significa sin límite. */
+    public int obtenerIntentosMaximosReconexion() {
+        return intentosMaximosReconexion;
+    }
+
+    /** Envíos que se guardan mientras se reconecta para mandarlos al volver. */
+    public int obtenerLimiteEnviosRetenidos() {
+        return limiteEnviosRetenidos;
+    }
+
+    /** Cada cuánto se manda un PING de latido; 0 lo desactiva. */
+    public int obtenerIntervaloLatidoMs() {
+        return intervaloLatidoMs;
+    }
+
+    public int obtenerTiempoEsperaLatidoMs() {
+        return tiempoEsperaLatidoMs;
+    }
+
+    /** PING seguidos sin respuesta tras los cuales la conexión se da por muerta. */
+    public int obtenerFallosMaximosLatido() {
+        return fallosMaximosLatido;
+    }
+
+    /** Si las subidas y la sincronización masiva van por una segunda conexión. */
+    public boolean esConexionMasiva() {
+        return conexionMasiva;
+    }
+
+    /** Bytes que una trama entrante puede ocupar en memoria antes de pasar a un archivo temporal. */
+    public int obtenerLimiteTramaEnMemoria() {
+        return limiteTramaEnMemoria;
+    }
+
+    /** Si se ofrece el codec binario al conectar; si el servidor no lo acepta se sigue en JSON. */
+    public boolean esCodecBinario() {
+        return codecBinario;
+    }
+
+    /** Cuánto se espera la respuesta a HELLO antes de quedarse con JSON. */
+    public int obtenerTiempoEsperaNegociacionMs() {
+        return tiempoEsperaNegociacionMs;
+    }
+
+    /** Si se ofrece compresión deflate en el HELLO; requiere protocol.codec=binary. */
+    public boolean esCompresion() {
+        return compresion;
+    }
+
+    /** Tamaño de cuerpo binario desde el que se comprime una trama. */
+    public int obtenerUmbralCompresion() {
+        return umbralCompresion;
+    }
+
+    /** Ver FabricaEjecutores. */
+    public ModoEjecucion obtenerModoEjecucion() {
+        return modoEjecucion;
+    }
 }
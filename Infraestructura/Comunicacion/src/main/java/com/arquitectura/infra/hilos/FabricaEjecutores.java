@@ -0,0 +1,89 @@
+package com.arquitectura.infra.hilos;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.config.ConfiguracionClienteChat.ModoEjecucion;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Origen único de los hilos para tareas bloqueantes: login y registro desde las
+ * vistas, envíos de audio, escrituras en la BD local, los hilos de lectura y
+ * escritura del transporte bloqueante y la reconexión. Con execution.mode=virtual
+ * cada tarea corre en su propio hilo virtual, así que cientos de enviarYEsperar a
+ * la vez apenas ocupan memoria; con platform (por defecto) son hilos daemon como
+ * hasta ahora.
+ *
+ * Los hilos que giran o atienden un selector (ReactorNio, el despacho del anillo,
+ * la rueda de temporizadores) y la captura de audio siguen siendo de plataforma.
+ */
+public final class FabricaEjecutores {
+    private static volatile FabricaEjecutores compartida;
+
+    private final ModoEjecucion modo;
+    private final ExecutorService tareas;
+
+    private FabricaEjecutores(ModoEjecucion modo) {
+        this.modo = modo;
+        this.tareas = porTarea("tarea");
+    }
+
+    /** La de la aplicación, con el modo de chat-client.properties. */
+    public static FabricaEjecutores compartida() {
+        FabricaEjecutores f = compartida;
+        if (f == null) {
+            synchronized (FabricaEjecutores.class) {
+                f = compartida;
+                if (f == null) {
+                    f = new FabricaEjecutores(ConfiguracionClienteChat.cargarDesdeRecursos().obtenerModoEjecucion());
+                    compartida = f;
+                    System.out.println("[FabricaEjecutores] Modo de ejecución: " + f.modo);
+                }
+            }
+        }
+        return f;
+    }
+
+    public boolean esVirtual() {
+        return modo == ModoEjecucion.VIRTUAL;
+    }
+
+    /** Arranca la tarea en un hilo nuevo (daemon si es de plataforma) y lo devuelve. */
+    public Thread iniciar(String nombre, Runnable tarea) {
+        if (esVirtual()) return Thread.ofVirtual().name(nombre).start(tarea);
+        Thread hilo = new Thread(tarea, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+
+    /** Ejecutor compartido para tareas sueltas, por ejemplo CompletableFuture.supplyAsync. */
+    public Executor tareas() {
+        return tareas;
+    }
+
+    /** Un hilo por tarea; con plataforma, un pool que reutiliza los hilos libres. */
+    public ExecutorService porTarea(String nombre) {
+        return esVirtual()
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(nombre + "-", 1).factory())
+                : Executors.newCachedThreadPool(fabricaPlataforma(nombre));
+    }
+
+    /** Las tareas de a una y en orden, por ejemplo para escribir en la BD. */
+    public ExecutorService secuencial(String nombre) {
+        return Executors.newSingleThreadExecutor(esVirtual() ? Thread.ofVirtual().name(nombre).factory() : fabricaPlataforma(nombre));
+    }
+
+    private static ThreadFactory fabricaPlataforma(String nombre) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            int n = contador.incrementAndGet();
+            Thread t = new Thread(r, n == 1 ? nombre : nombre + "-" + n);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+
+/**
+ * Lo que hay que hacer sobre una conexión recién recuperada antes de soltar los
+ * envíos retenidos (por ejemplo, volver a autenticarse). Corre en el hilo del
+ * supervisor y sus envíos salen directo, sin esperar en la cola de reconexión.
+ * Si lanza IOException el intento cuenta como fallido.
+ */
+@FunctionalInterface
+public interface AccionReconexion {
+    void alReconectar() throws IOException;
+}
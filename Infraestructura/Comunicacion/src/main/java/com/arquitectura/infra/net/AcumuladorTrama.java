@@ -0,0 +1,103 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bytes de una trama que llega por partes: en un buffer directo de PoolBuffers que
+ * crece al juntar, o en un archivo temporal mapeado si superan el límite en memoria.
+ * El archivo se borra al cerrar el canal; el mapeo sigue válido mientras se use.
+ */
+final class AcumuladorTrama {
+    private static final int TAM_INICIAL = 8 * 1024;
+
+    private final int limiteMemoria;
+    private ByteBuffer acumulado;
+    private int largo;
+    private FileChannel volcado;
+
+    AcumuladorTrama(int limiteMemoria) {
+        this.limiteMemoria = limiteMemoria;
+    }
+
+    /** Agrega los n bytes siguientes de datos y avanza su posición. */
+    void agregar(ByteBuffer datos, int n) throws IOException {
+        if ((long) largo + n > Integer.MAX_VALUE) {
+            throw new IOException("Trama de más de " + Integer.MAX_VALUE + " bytes: supera el máximo de 2 GiB");
+        }
+        if (volcado == null && (long) largo + n > limiteMemoria) {
+            volcado = archivoTemporal();
+            if (acumulado != null) {
+                ByteBuffer previo = acumulado.duplicate().limit(largo).position(0);
+                while (previo.hasRemaining()) volcado.write(previo);
+            }
+        }
+        if (volcado != null) {
+            ByteBuffer segmento = datos.duplicate();
+            segmento.limit(segmento.position() + n);
+            while (segmento.hasRemaining()) volcado.write(segmento);
+        } else {
+            PoolBuffers pool = PoolBuffers.compartido();
+            if (acumulado == null) {
+                acumulado = pool.tomarDirecto(Math.max(TAM_INICIAL, n));
+            } else if (largo + n > acumulado.capacity()) {
+                ByteBuffer mayor = pool.tomarDirecto(largo + n);
+                mayor.put(0, acumulado, 0, largo);
+                pool.devolver(acumulado);
+                acumulado = mayor;
+            }
+            acumulado.put(largo, datos, datos.position(), n);
+        }
+        largo += n;
+        datos.position(datos.position() + n);
+    }
+
+    void agregar(byte[] datos, int desde, int n) throws IOException {
+        agregar(ByteBuffer.wrap(datos, desde, n), n);
+    }
+
+    long largo() {
+        return largo;
+    }
+
+    /** True si lo acumulado pasó al archivo temporal. */
+    boolean enDisco() {
+        return volcado != null;
+    }
+
+    /** Lo acumulado, para leer hasta el próximo reiniciar. */
+    ByteBuffer contenido() throws IOException {
+        if (volcado != null) return volcado.map(FileChannel.MapMode.READ_ONLY, 0, volcado.position());
+        if (acumulado != null) return acumulado.duplicate().limit(largo).position(0);
+        return ByteBuffer.allocate(0);
+    }
+
+    /** Vacía para la trama siguiente; el buffer del pool se conserva. */
+    void reiniciar() {
+        largo = 0;
+        volcado = cerrar(volcado);
+    }
+
+    void liberar() {
+        if (acumulado != null) {
+            PoolBuffers.compartido().devolver(acumulado);
+            acumulado = null;
+        }
+        reiniciar();
+    }
+
+    static FileChannel archivoTemporal() throws IOException {
+        return FileChannel.open(Files.createTempFile("trama-chat-", ".json"), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    static FileChannel cerrar(FileChannel canal) {
+        if (canal != null) {
+            try { canal.close(); } catch (IOException ignored) {}
+        }
+        return null;
+    }
+}
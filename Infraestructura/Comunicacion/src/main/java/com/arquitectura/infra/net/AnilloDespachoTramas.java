@@ -0,0 +1,265 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat.EstrategiaEspera;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Anillo acotado y pre-asignado (estilo Disruptor) entre el hilo que lee del socket
+ * y el hilo que despacha a los oyentes. El lector solo copia una referencia en la
+ * ranura y publica la secuencia, así que el coste de los oyentes ya no frena la
+ * lectura. Si el anillo se llena el lector espera, lo que deja actuar el control
+ * de flujo de TCP en lugar de acumular memoria sin límite.
+ *
+ * El selector NIO atiende todas las conexiones y no puede esperar: con
+ * noEsperarAlLlenarse lo que no cabe va a un desborde, el transporte deja de leer
+ * esa conexión (desbordado) y el hilo de despacho avisa cuando lo vació para que
+ * vuelva a leer. El desborde queda acotado por lo que traía la última lectura.
+ *
+ * Hay un único productor de tramas y errores (el hilo lector o el selector). El
+ * cierre puede avisarse desde cualquier hilo: solo marca una bandera y el hilo de
+ * despacho entrega alCerrar después de vaciar lo ya publicado. Las tramas que llegan
+ * por otra conexión (publicarExterna) entran por una cola aparte, segura entre
+ * hilos, y también las despacha este hilo: los oyentes nunca reciben llamadas desde
+ * dos hilos a la vez.
+ */
+final class AnilloDespachoTramas {
+    private static final int TIPO_TRAMA = 0;
+    private static final int TIPO_ERROR = 1;
+
+    private static final class Ranura {
+        int tipo;
+        TramaChat trama;
+        Exception error;
+    }
+
+    private final Ranura[] ranuras;
+    private final int mascara;
+    private final EstrategiaEspera estrategia;
+    private final OyenteMensajesChat destino;
+
+    private final AtomicLong cursor = new AtomicLong(-1);      // última secuencia publicada
+    private final AtomicLong consumido = new AtomicLong(-1);   // última secuencia despachada
+    private long siguiente = 0;                                // solo productor
+    private final ConcurrentLinkedQueue<TramaChat> externas = new ConcurrentLinkedQueue<>();
+    // Lo publicado con el anillo lleno cuando el productor no puede esperar
+    private final ConcurrentLinkedQueue<Ranura> desborde = new ConcurrentLinkedQueue<>();
+    private volatile Runnable alVaciarDesborde;
+
+    private final ReentrantLock candado = new ReentrantLock();
+    private final Condition hayTramas = candado.newCondition();
+    private volatile boolean consumidorDormido = false;
+    private volatile boolean cerrado = false;
+    private volatile boolean descartado = false;
+
+    // Métricas
+    private final AtomicLong esperasProductor = new AtomicLong();
+    private volatile long profundidadMaxima = 0;
+
+    AnilloDespachoTramas(int capacidadSolicitada, EstrategiaEspera estrategia, OyenteMensajesChat destino) {
+        int capacidad = Integer.highestOneBit(Math.max(16, capacidadSolicitada) - 1) << 1;
+        this.ranuras = new Ranura[capacidad];
+        for (int i = 0; i < capacidad; i++) ranuras[i] = new Ranura();
+        this.mascara = capacidad - 1;
+        this.estrategia = estrategia;
+        this.destino = destino;
+        Thread hilo = new Thread(this::bucleDespacho, "cliente-chat-tcp-despacho");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    void publicarTrama(TramaChat trama) {
+        publicar(TIPO_TRAMA, trama, null);
+    }
+
+    void publicarError(Exception error) {
+        publicar(TIPO_ERROR, null, error);
+    }
+
+    /**
+     * Publica desde cualquier hilo una trama recibida por otra conexión. False si el
+     * anillo ya está cerrado y la trama no se va a despachar.
+     */
+    boolean publicarExterna(TramaChat trama) {
+        if (cerrado) return false;
+        externas.add(trama);
+        despertarConsumidor();
+        return true;
+    }
+
+    /**
+     * El productor no espera con el anillo lleno: lo publicado va al desborde y
+     * alVaciar se ejecuta en el hilo de despacho cada vez que lo vacía.
+     */
+    void noEsperarAlLlenarse(Runnable alVaciar) {
+        alVaciarDesborde = alVaciar;
+    }
+
+    /** True si hay tramas en el desborde; el productor debería dejar de leer. */
+    boolean desbordado() {
+        return !desborde.isEmpty();
+    }
+
+    /** Último evento de la conexión: tras despacharlo el hilo de despacho termina. */
+    void publicarCierre() {
+        cerrado = true;
+        despertarConsumidor();
+    }
+
+    /** Termina el hilo de despacho sin avisar a los oyentes (la conexión nunca se abrió). */
+    void descartar() {
+        descartado = true;
+        publicarCierre();
+    }
+
+    private void publicar(int tipo, TramaChat trama, Exception error) {
+        if (cerrado) return;
+        long secuencia = siguiente;
+        long envoltura = secuencia - ranuras.length;
+        // Detrás de lo ya desbordado, para no adelantarlo
+        if (alVaciarDesborde != null && (!desborde.isEmpty() || envoltura > consumido.get())) {
+            if (desborde.isEmpty()) esperasProductor.incrementAndGet();
+            Ranura r = new Ranura();
+            r.tipo = tipo;
+            r.trama = trama;
+            r.error = error;
+            desborde.add(r);
+            despertarConsumidor();
+            return;
+        }
+        if (envoltura > consumido.get()) {
+            esperasProductor.incrementAndGet();
+            while (envoltura > consumido.get()) {
+                if (cerrado) return;
+                LockSupport.parkNanos(50_000);
+            }
+        }
+        Ranura r = ranuras[(int) (secuencia & mascara)];
+        r.tipo = tipo;
+        r.trama = trama;
+        r.error = error;
+        cursor.set(secuencia);
+        siguiente = secuencia + 1;
+
+        long profundidad = secuencia - consumido.get();
+        if (profundidad > profundidadMaxima) profundidadMaxima = profundidad;
+        despertarConsumidor();
+    }
+
+    private void despertarConsumidor() {
+        if (consumidorDormido) {
+            candado.lock();
+            try {
+                hayTramas.signal();
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+
+    private void bucleDespacho() {
+        long proxima = 0;
+        while (true) {
+            boolean cierre = cerrado;
+            despacharExternas();
+            long disponible = cursor.get();
+            if (disponible < proxima) {
+                // El desborde va detrás de todo lo publicado en el anillo
+                if (despacharDesborde()) continue;
+                if (cierre) {
+                    notificarCierre();
+                    return;
+                }
+                esperar(proxima);
+                continue;
+            }
+            for (; proxima <= disponible; proxima++) {
+                Ranura r = ranuras[(int) (proxima & mascara)];
+                int tipo = r.tipo;
+                TramaChat trama = r.trama;
+                Exception error = r.error;
+                r.trama = null;
+                r.error = null;
+                consumido.set(proxima);
+                entregar(tipo, trama, error);
+            }
+        }
+    }
+
+    private boolean despacharDesborde() {
+        Ranura r = desborde.poll();
+        if (r == null) return false;
+        do {
+            entregar(r.tipo, r.trama, r.error);
+        } while ((r = desborde.poll()) != null);
+        Runnable aviso = alVaciarDesborde;
+        if (aviso != null) aviso.run();
+        return true;
+    }
+
+    private void entregar(int tipo, TramaChat trama, Exception error) {
+        try {
+            if (tipo == TIPO_TRAMA) {
+                destino.alRecibirTrama(trama);
+            } else {
+                destino.alError(error);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[AnilloDespachoTramas] Error en oyente: " + e.getMessage());
+        }
+    }
+
+    private void despacharExternas() {
+        TramaChat trama;
+        while ((trama = externas.poll()) != null) {
+            try {
+                destino.alRecibirTrama(trama);
+            } catch (RuntimeException e) {
+                System.out.println("[AnilloDespachoTramas] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    private void notificarCierre() {
+        if (descartado) return;
+        try {
+            destino.alCerrar();
+        } catch (RuntimeException e) {
+            System.out.println("[AnilloDespachoTramas] Error en oyente: " + e.getMessage());
+        }
+    }
+
+    private void esperar(long secuencia) {
+        switch (estrategia) {
+            case ESPERA_ACTIVA -> Thread.onSpinWait();
+            case CEDER -> Thread.yield();
+            default -> {
+                candado.lock();
+                try {
+                    consumidorDormido = true;
+                    // Revisar de nuevo ya marcado como dormido para no perder la señal
+                    if (cursor.get() < secuencia && externas.isEmpty() && desborde.isEmpty() && !cerrado) {
+                        hayTramas.await(100, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    consumidorDormido = false;
+                    candado.unlock();
+                }
+            }
+        }
+    }
+
+    MetricasDespacho obtenerMetricas() {
+        long publicados = cursor.get() + 1;
+        long despachados = consumido.get() + 1;
+        return new MetricasDespacho(ranuras.length, publicados - despachados, profundidadMaxima,
+                publicados, despachados, esperasProductor.get());
+    }
+}
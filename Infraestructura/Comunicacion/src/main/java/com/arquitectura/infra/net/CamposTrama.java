@@ -0,0 +1,156 @@
+package com.arquitectura.infra.net;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lectura puntual de campos sobre los bytes de una trama, sin decodificarla. Solo
+ * se comparan claves del nivel pedido: un "tipo" dentro de un mensaje anidado no
+ * se confunde con el "tipo" del payload.
+ */
+final class CamposTrama {
+    private CamposTrama() {}
+
+    /** Posición del primer '{' de la trama o -1. */
+    static int inicioRaiz(TramaChat t) {
+        int n = t.longitud();
+        for (int i = 0; i < n; i++) {
+            byte b = t.byteEn(i);
+            if (b == '{') return i;
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Busca la clave entre las claves directas del objeto que empieza en inicioObjeto
+     * y devuelve la posición donde empieza su valor, o -1.
+     */
+    static int buscarValor(TramaChat t, int inicioObjeto, byte[] clave) {
+        if (inicioObjeto < 0) return -1;
+        int n = t.longitud();
+        int nivel = 0;
+        boolean esperandoClave = false;
+        for (int i = inicioObjeto; i < n; i++) {
+            byte b = t.byteEn(i);
+            if (b == '"') {
+                int fin = finCadena(t, i);
+                if (fin < 0) return -1;
+                if (nivel == 1 && esperandoClave) {
+                    esperandoClave = false;
+                    int j = saltarEspacios(t, fin + 1);
+                    if (j < n && t.byteEn(j) == ':' && coincide(t, i + 1, fin, clave)) {
+                        return saltarEspacios(t, j + 1);
+                    }
+                }
+                i = fin;
+            } else if (b == '{' || b == '[') {
+                nivel++;
+                if (nivel == 1) esperandoClave = b == '{';
+            } else if (b == '}' || b == ']') {
+                nivel--;
+                if (nivel <= 0) return -1;
+            } else if (b == ',' && nivel == 1) {
+                esperandoClave = true;
+            }
+        }
+        return -1;
+    }
+
+    /** Valor de texto de la clave en el objeto dado; null si no existe o no es cadena. */
+    static String texto(TramaChat t, int inicioObjeto, byte[] clave) {
+        int v = buscarValor(t, inicioObjeto, clave);
+        if (v < 0 || v >= t.longitud() || t.byteEn(v) != '"') return null;
+        int fin = finCadena(t, v);
+        if (fin < 0) return null;
+        byte[] valor = new byte[fin - v - 1];
+        for (int x = 0; x < valor.length; x++) valor[x] = t.byteEn(v + 1 + x);
+        return new String(valor, StandardCharsets.UTF_8);
+    }
+
+    /** Rango [desde, hasta) de un elemento de un arreglo. */
+    interface Elemento {
+        void en(int desde, int hasta);
+    }
+
+    /**
+     * Recorre los elementos del arreglo que empieza en inicioArreglo ('[') y entrega
+     * el rango de cada uno, sin los espacios que lo rodean. Devuelve cuántos hubo.
+     */
+    static int recorrerArreglo(TramaChat t, int inicioArreglo, Elemento accion) {
+        int n = t.longitud();
+        int nivel = 0;
+        int inicioElemento = -1;
+        int finElemento = -1;
+        int cantidad = 0;
+        for (int i = inicioArreglo; i < n; i++) {
+            byte b = t.byteEn(i);
+            if (b == '"') {
+                if (nivel == 1 && inicioElemento < 0) inicioElemento = i;
+                int fin = finCadena(t, i);
+                if (fin < 0) return cantidad;
+                i = fin;
+                finElemento = fin + 1;
+            } else if (b == '{' || b == '[') {
+                nivel++;
+                if (nivel == 2 && inicioElemento < 0) inicioElemento = i;
+            } else if (b == '}' || b == ']') {
+                nivel--;
+                if (nivel == 1) finElemento = i + 1;
+                if (nivel == 0) {
+                    if (inicioElemento >= 0) {
+                        accion.en(inicioElemento, finElemento);
+                        cantidad++;
+                    }
+                    return cantidad;
+                }
+            } else if (b == ',' && nivel == 1) {
+                if (inicioElemento >= 0) {
+                    accion.en(inicioElemento, finElemento);
+                    cantidad++;
+                }
+                inicioElemento = -1;
+            } else if (nivel == 1 && b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                // Números, true/false/null
+                if (inicioElemento < 0) inicioElemento = i;
+                finElemento = i + 1;
+            }
+        }
+        return cantidad;
+    }
+
+    static byte[] clave(String nombre) {
+        return nombre.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Índice de la comilla que cierra la cadena abierta en inicio
+    static int finCadena(TramaChat t, int inicio) {
+        int n = t.longitud();
+        for (int i = inicio + 1; i < n; i++) {
+            byte b = t.byteEn(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int saltarEspacios(TramaChat t, int i) {
+        int n = t.longitud();
+        while (i < n) {
+            byte b = t.byteEn(i);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean coincide(TramaChat t, int desde, int hasta, byte[] clave) {
+        if (hasta - desde != clave.length) return false;
+        for (int k = 0; k < clave.length; k++) {
+            if (t.byteEn(desde + k) != clave[k]) return false;
+        }
+        return true;
+    }
+}
@@ -1,150 +1,315 @@
 package com.arquitectura.infra.net;
 
 import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.config.ConfiguracionClienteChat.PuntoServidor;
 
 import java.io.*;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ClienteChatTcp implements Closeable {
     private final ConfiguracionClienteChat configuracion;
-    private final AtomicBoolean conectado = new AtomicBoolean(false);
-    private final List<OyenteMensajesChat> oyentes = new CopyOnWriteArrayList<>();
+    // Reparte los eventos del transporte según el comando de cada trama
+    private final EnrutadorMensajesChat enrutador = new EnrutadorMensajesChat();
+    // Null si la reconexión automática está desactivada
+    private final SupervisorReconexion supervisor;
+    // Servidor de cada conexión; recuerda RTT y fallos entre reconexiones
+    private final SelectorServidores servidores;
 
-    private Socket socket;
-    private BufferedReader lector;
-    private BufferedWriter escritor;
-    private Thread hiloLector;
+    private volatile TransporteChat transporte;
+    private volatile AnilloDespachoTramas anillo;
+    private volatile long generacion;
+    private volatile boolean cerradoPorUsuario;
+    // El servidor no aceptó el codec binario: no se vuelve a ofrecer al reconectar
+    private volatile boolean binarioRechazado;
+    private volatile Consumer<String> oyenteEscrituras = comando -> {};
 
     public ClienteChatTcp(ConfiguracionClienteChat configuracion) {
+        this(configuracion, configuracion.esReconexionAutomatica());
+    }
+
+    /** Permite desactivar la reconexión automática aunque la configuración la pida. */
+    public ClienteChatTcp(ConfiguracionClienteChat configuracion, boolean reconexionAutomatica) {
         this.configuracion = configuracion;
+        this.supervisor = reconexionAutomatica ? new SupervisorReconexion(this, configuracion, enrutador) : null;
+        this.servidores = new SelectorServidores(configuracion);
     }
 
     public synchronized void conectar() throws IOException {
-        if (conectado.get()) return;
-        socket = new Socket();
-        socket.connect(new InetSocketAddress(configuracion.obtenerHost(), configuracion.obtenerPuerto()), configuracion.obtenerTiempoEsperaConexionMs());
-        if (configuracion.obtenerTiempoEsperaLecturaMs() > 0) {
-            socket.setSoTimeout(configuracion.obtenerTiempoEsperaLecturaMs());
+        TransporteChat actual = transporte;
+        if (actual != null && actual.estaConectado()) return;
+        // Si el supervisor ya está reconectando, los envíos quedan retenidos hasta que termine
+        if (supervisor != null && supervisor.reconectando() && !supervisor.esHiloSupervisor()) return;
+        cerradoPorUsuario = false;
+        long gen = ++generacion;
+        // Cada conexión tiene su anillo: el transporte publica y un hilo aparte despacha a los oyentes
+        AnilloDespachoTramas nuevoAnillo = new AnilloDespachoTramas(configuracion.obtenerTamanoAnilloDespacho(),
+                configuracion.obtenerEstrategiaEsperaDespacho(), destinoConexion(gen));
+        OyenteMensajesChat entrada = entradaHacia(nuevoAnillo);
+        CompresionTramas compresion = configuracion.esCodecBinario() && configuracion.esCompresion()
+                ? new CompresionTramas(configuracion.obtenerUmbralCompresion()) : null;
+        CodecConexion codec = new CodecConexion(entrada::alRecibirTrama, configuracion.obtenerLimiteTramaEnMemoria(), compresion);
+        TransporteChat nuevo = crearTransporte(entrada, codec, nuevoAnillo);
+        try {
+            nuevo.conectar();
+            if (configuracion.esCodecBinario() && !binarioRechazado) negociarCodec(codec, nuevo);
+        } catch (IOException e) {
+            nuevoAnillo.descartar();
+            throw e;
         }
-        lector = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-        escritor = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
-        conectado.set(true);
-        iniciarBucleLectura();
-    }
-
-    private void iniciarBucleLectura() {
-        hiloLector = new Thread(() -> {
-            try {
-                String linea;
-                StringBuilder buffer = new StringBuilder();
-                int nivelEstructura = 0;
-                boolean enCadena = false;
-                boolean escape = false;
-                while (conectado.get() && (linea = lector.readLine()) != null) {
-                    if (linea.isEmpty() && nivelEstructura == 0 && buffer.length() == 0) {
-                        continue;
-                    }
-                    for (int i = 0; i < linea.length(); i++) {
-                        char ch = linea.charAt(i);
-                        if (nivelEstructura == 0 && !enCadena && buffer.length() == 0 && Character.isWhitespace(ch)) {
-                            continue;
-                        }
-                        buffer.append(ch);
-                        if (enCadena) {
-                            if (escape) {
-                                escape = false;
-                            } else if (ch == '\\') {
-                                escape = true;
-                            } else if (ch == '"') {
-                                enCadena = false;
-                            }
-                            continue;
-                        }
-                        if (ch == '"') {
-                            enCadena = true;
-                            continue;
-                        }
-                        if (ch == '{' || ch == '[') {
-                            nivelEstructura++;
-                        } else if (ch == '}' || ch == ']') {
-                            if (nivelEstructura > 0) nivelEstructura--;
-                            if (nivelEstructura == 0) {
-                                String mensajeCompleto = buffer.toString();
-                                buffer.setLength(0);
-                                for (OyenteMensajesChat o : oyentes) o.alRecibirMensaje(mensajeCompleto);
-                            }
-                        }
-                    }
-                    if (nivelEstructura > 0 || enCadena) {
-                        buffer.append('\n');
-                    } else if (buffer.length() > 0) {
-                        String mensajeCompleto = buffer.toString().trim();
-                        if (!mensajeCompleto.isEmpty()) {
-                            for (OyenteMensajesChat o : oyentes) o.alRecibirMensaje(mensajeCompleto);
-                        }
-                        buffer.setLength(0);
-                    }
-                }
-                if (buffer.length() > 0 && nivelEstructura == 0 && !enCadena) {
-                    String mensajeCompleto = buffer.toString().trim();
-                    if (!mensajeCompleto.isEmpty()) {
-                        for (OyenteMensajesChat o : oyentes) o.alRecibirMensaje(mensajeCompleto);
-                    }
+        anillo = nuevoAnillo;
+        transporte = nuevo;
+    }
+
+    private void negociarCodec(CodecConexion codec, TransporteChat nuevo) {
+        String elegido = codec.negociar(nuevo, configuracion.obtenerTiempoEsperaNegociacionMs());
+        if (CodecBinario.NOMBRE.equals(elegido)) {
+            System.out.println("[ClienteChatTcp] Codec binario " + elegido + " negociado"
+                    + (codec.esCompresionAcordada() ? " con compresión " + CompresionTramas.DEFLATE : ""));
+        } else {
+            binarioRechazado = true;
+            System.out.println("[ClienteChatTcp] El servidor no acepta el codec binario; se sigue con JSON");
+        }
+    }
+
+    /**
+     * Acción a ejecutar cada vez que el supervisor recupera la conexión (por ejemplo,
+     * re-autenticarse). Solo tiene efecto con reconnect.enabled=true.
+     */
+    public void establecerAccionReconexion(AccionReconexion accion) {
+        if (supervisor != null) supervisor.establecerAccion(accion);
+    }
+
+    /** Servidor de la conexión actual (o la última); null si todavía no conectó. */
+    public PuntoServidor obtenerServidorActual() {
+        return servidores.obtenerActual();
+    }
+
+    /**
+     * Conecta siempre a ese servidor en lugar de elegir entre server.endpoints; por
+     * ejemplo, para abrir una segunda conexión al mismo servidor que la principal.
+     */
+    public void fijarServidor(PuntoServidor servidor) {
+        servidores.fijar(servidor);
+    }
+
+    boolean tieneServidoresAlternativos() {
+        return servidores.tieneAlternativas();
+    }
+
+    public boolean estaReconectando() {
+        return supervisor != null && supervisor.reconectando();
+    }
+
+    // Recibe lo que despacha el anillo de una conexión; el cierre decide si se reconecta
+    private OyenteMensajesChat destinoConexion(long gen) {
+        return new OyenteMensajesChat() {
+            @Override public void alRecibirMensaje(String mensaje) {
+                enrutador.alRecibirMensaje(mensaje);
+            }
+
+            @Override public void alRecibirTrama(TramaChat trama) {
+                enrutador.alRecibirTrama(trama);
+            }
+
+            @Override public void alError(Exception e) {
+                enrutador.alError(e);
+            }
+
+            @Override public void alCerrar() {
+                // El cierre tardío de una conexión ya reemplazada no afecta a la actual
+                if (gen != generacion) return;
+                if (supervisor == null || cerradoPorUsuario) {
+                    enrutador.alCerrar();
+                    return;
                 }
-            } catch (IOException e) {
-                for (OyenteMensajesChat o : oyentes) o.alError(e);
-            } finally {
-                conectado.set(false);
-                for (OyenteMensajesChat o : oyentes) o.alCerrar();
-                try { close(); } catch (IOException ignored) {}
+                servidores.alPerderConexion();
+                supervisor.iniciar();
             }
-        }, "cliente-chat-tcp-lector");
-        hiloLector.setDaemon(true);
-        hiloLector.start();
+        };
+    }
+
+    /**
+     * Da por muerta la conexión actual aunque el socket siga abierto (por ejemplo, sin
+     * respuesta a los latidos). Con reconexión automática el supervisor la recupera;
+     * si no, los oyentes reciben alCerrar.
+     */
+    public void forzarReconexion() {
+        System.out.println("[ClienteChatTcp] Conexión dada por perdida; se cierra para reconectar");
+        descartarConexion();
+    }
+
+    // Cierra la conexión actual sin marcarla como cerrada por el usuario
+    void descartarConexion() {
+        TransporteChat actual = transporte;
+        if (actual != null) {
+            try { actual.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    CompletableFuture<Void> enviarRetenido(Function<TransporteChat, CompletableFuture<Void>> envio) {
+        TransporteChat actual = transporte;
+        if (actual == null) return CompletableFuture.failedFuture(new IOException("No conectado"));
+        return envio.apply(actual);
+    }
+
+    private CompletableFuture<Void> retenerSiReconecta(Function<TransporteChat, CompletableFuture<Void>> envio) {
+        return supervisor != null ? supervisor.retenerSiReconecta(envio) : null;
+    }
+
+    private TransporteChat crearTransporte(OyenteMensajesChat entrada, CodecConexion codec, AnilloDespachoTramas anillo) {
+        return switch (configuracion.obtenerModoTransporte()) {
+            case NIO -> new TransporteNio(configuracion, entrada, codec, servidores, anillo, this::alEscribirComando);
+            case BLOQUEANTE -> new TransporteBloqueante(configuracion, entrada, codec, servidores, this::alEscribirComando);
+        };
+    }
+
+    private static OyenteMensajesChat entradaHacia(AnilloDespachoTramas anillo) {
+        return new OyenteMensajesChat() {
+            @Override public void alRecibirMensaje(String mensaje) {
+                anillo.publicarTrama(TramaChat.desdeTexto(mensaje));
+            }
+
+            @Override public void alRecibirTrama(TramaChat trama) {
+                anillo.publicarTrama(trama);
+            }
+
+            @Override public void alCerrar() {
+                anillo.publicarCierre();
+            }
+
+            @Override public void alError(Exception e) {
+                anillo.publicarError(e);
+            }
+        };
     }
 
     public boolean estaConectado() {
-        return conectado.get();
+        TransporteChat actual = transporte;
+        return actual != null && actual.estaConectado();
+    }
+
+    /**
+     * Encola la línea y vuelve sin esperar al socket. Solo falla si no hay conexión;
+     * los errores de escritura posteriores se notifican con alError/alCerrar.
+     */
+    public void enviar(String mensaje) throws IOException {
+        if (retenerSiReconecta(t -> t.enviarAsincrono(mensaje)) != null) return;
+        TransporteChat actual = transporte;
+        if (actual == null || !actual.estaConectado()) throw new IOException("No conectado");
+        actual.enviarAsincrono(mensaje);
+    }
+
+    /** Igual que enviar, pero el futuro se completa cuando la línea quedó escrita en el socket. */
+    public CompletableFuture<Void> enviarAsincrono(String mensaje) {
+        CompletableFuture<Void> retenido = retenerSiReconecta(t -> t.enviarAsincrono(mensaje));
+        if (retenido != null) return retenido;
+        TransporteChat actual = transporte;
+        if (actual == null) return CompletableFuture.failedFuture(new IOException("No conectado"));
+        return actual.enviarAsincrono(mensaje);
+    }
+
+    /**
+     * Encola una línea ya codificada (ver ProtocoloChat.codificar). Los bytes pasan
+     * al escritor tal cual, sin volver a copiarse ni recodificarse.
+     */
+    public void enviar(ByteBuffer linea) throws IOException {
+        if (retenerSiReconecta(t -> t.enviarAsincrono(linea)) != null) return;
+        TransporteChat actual = transporte;
+        if (actual == null || !actual.estaConectado()) throw new IOException("No conectado");
+        actual.enviarAsincrono(linea);
     }
 
-    public synchronized void enviar(String mensaje) throws IOException {
-        if (!conectado.get()) throw new IOException("No conectado");
-        escritor.write(mensaje);
-        escritor.write('\n');
-        escritor.flush();
+    public CompletableFuture<Void> enviarAsincrono(ByteBuffer linea) {
+        CompletableFuture<Void> retenido = retenerSiReconecta(t -> t.enviarAsincrono(linea));
+        if (retenido != null) return retenido;
+        TransporteChat actual = transporte;
+        if (actual == null) return CompletableFuture.failedFuture(new IOException("No conectado"));
+        return actual.enviarAsincrono(linea);
     }
 
+    /**
+     * Encola una línea con adjunto Base64 (ver ProtocoloChat.codificarConBase64). El
+     * adjunto se lee y codifica en el hilo de escritura a medida que sale al socket.
+     */
+    public CompletableFuture<Void> enviarAsincrono(LineaBase64 linea) {
+        CompletableFuture<Void> retenido = retenerSiReconecta(t -> t.enviarAsincrono(linea));
+        if (retenido != null) return retenido;
+        TransporteChat actual = transporte;
+        if (actual == null) {
+            linea.cerrar();
+            return CompletableFuture.failedFuture(new IOException("No conectado"));
+        }
+        return actual.enviarAsincrono(linea);
+    }
+
+    /** Estado de la cola de despacho de la conexión actual (o la última). */
+    public MetricasDespacho obtenerMetricasDespacho() {
+        AnilloDespachoTramas actual = anillo;
+        return actual == null ? MetricasDespacho.vacias() : actual.obtenerMetricas();
+    }
+
+    /** Uso del pool de buffers de E/S, compartido por todas las conexiones. */
+    public MetricasPoolBuffers obtenerMetricasBuffers() {
+        return PoolBuffers.compartido().obtenerMetricas();
+    }
+
+    /** Compresión de tramas de todas las conexiones, incluida la masiva. */
+    public MetricasCompresion obtenerMetricasCompresion() {
+        return CompresionTramas.obtenerMetricas();
+    }
+
+    /** Registra un oyente que recibe todas las tramas. */
     public void agregarOyente(OyenteMensajesChat oyente) {
-        if (oyente != null) oyentes.add(oyente);
+        enrutador.suscribirTodos(oyente);
+    }
+
+    /**
+     * Registra un oyente solo para las tramas con ese comando (por ejemplo
+     * "MESSAGE_SYNC") o ese tipo de evento ("EVENT:KICKED").
+     */
+    public void suscribir(String clave, OyenteMensajesChat oyente) {
+        enrutador.suscribir(clave, oyente);
     }
 
     public void removerOyente(OyenteMensajesChat oyente) {
-        oyentes.remove(oyente);
+        enrutador.desuscribir(oyente);
+    }
+
+    /**
+     * Recibe el comando de cada línea en el orden en que sale al socket (con
+     * prioridades no es el orden en que se envió), en el hilo escritor y antes de que
+     * llegue su respuesta. Ver DespachadorRespuestas.alEscribirComando.
+     */
+    public void observarEscrituras(Consumer<String> oyente) {
+        oyenteEscrituras = oyente;
+    }
+
+    private void alEscribirComando(String comando) {
+        oyenteEscrituras.accept(comando);
+    }
+
+    /**
+     * Entrega a los oyentes de esta conexión una trama que llegó por otra. Se despacha
+     * en el hilo de despacho de esta conexión, junto con sus propias tramas; si no
+     * hay conexión abierta la trama se descarta.
+     */
+    public void entregar(TramaChat trama) {
+        AnilloDespachoTramas actual = anillo;
+        if (actual == null || !actual.publicarExterna(trama)) {
+            System.out.println("[ClienteChatTcp] Trama de otra conexión descartada: la conexión está cerrada");
+        }
     }
 
     @Override
     public synchronized void close() throws IOException {
-        conectado.set(false);
-        if (hiloLector != null) {
-            hiloLector.interrupt();
-            hiloLector = null;
-        }
-        if (lector != null) {
-            try { lector.close(); } catch (IOException ignored) {}
-            lector = null;
-        }
-        if (escritor != null) {
-            try { escritor.close(); } catch (IOException ignored) {}
-            escritor = null;
-        }
-        if (socket != null && !socket.isClosed()) {
-            try { socket.close(); } catch (IOException ignored) {}
-            socket = null;
+        cerradoPorUsuario = true;
+        if (supervisor != null) supervisor.detener();
+        TransporteChat actual = transporte;
+        if (actual != null) {
+            actual.close();
         }
     }
 }
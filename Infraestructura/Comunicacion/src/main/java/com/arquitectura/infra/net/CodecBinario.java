@@ -0,0 +1,436 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.json.LectorJson;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Formato binario "bin1", alternativa al JSON por líneas que se negocia con HELLO
+ * (ver CodecConexion).
+ *
+ * Una trama es uno o más segmentos: cabecera de 4 bytes big-endian y datos. El bit
+ * 31 indica que sigue otro segmento de la misma trama y los 24 bits bajos son la
+ * longitud; el bit 30, solo en el primer segmento, marca la trama comprimida (ver
+ * CompresionTramas) y el bit 28, en todos sus segmentos, una trama intercalada entre
+ * dos segmentos de otra que sigue abierta (si el servidor lo aceptó en el HELLO, ver
+ * ColaEnvios). Los bits 24-27 y 29 van en cero, así que el primer byte de una trama
+ * binaria nunca es '{' ni un espacio y el otro extremo puede distinguir los dos
+ * formatos trama a trama. Los datos de todos los segmentos forman un único valor
+ * etiquetado:
+ *
+ *   0x00 null   0x01 false   0x02 true
+ *   0x03 entero        varint zigzag
+ *   0x04 decimal       8 bytes IEEE 754
+ *   0x05 texto         varint longitud + UTF-8
+ *   0x06 bytes         varint longitud + bytes crudos
+ *   0x07 arreglo       valores... 0x0F
+ *   0x08 objeto        (texto clave, valor)... 0x0F
+ *   0x09 bytes por partes   (varint longitud + bytes)... varint 0
+ *
+ * Al pasar de JSON a binario, las cadenas de las claves terminadas en "Base64"
+ * viajan como bytes crudos. Al volver a JSON los bytes se escriben en Base64, de
+ * modo que el resto del cliente ve siempre el mismo JSON.
+ */
+final class CodecBinario {
+    static final String NOMBRE = "bin1";
+
+    static final byte NULO = 0x00;
+    static final byte FALSO = 0x01;
+    static final byte VERDADERO = 0x02;
+    static final byte ENTERO = 0x03;
+    static final byte DECIMAL = 0x04;
+    static final byte TEXTO = 0x05;
+    static final byte BYTES = 0x06;
+    static final byte ARREGLO = 0x07;
+    static final byte OBJETO = 0x08;
+    static final byte BYTES_POR_PARTES = 0x09;
+    static final byte FIN = 0x0F;
+
+    static final int CABECERA = 4;
+    static final int CONTINUA = 0x80000000;
+    static final int COMPRIMIDA = 0x40000000;
+    static final int INTERCALADA = 0x10000000;
+    static final int MAX_SEGMENTO = (1 << 24) - 1;
+    // Espacio a reservar antes de un bloque para su cabecera de segmento y su longitud
+    static final int PREFIJO_PARTE = CABECERA + 3;
+
+    private static final byte[] SUFIJO_BASE64 = "Base64".getBytes(StandardCharsets.US_ASCII);
+
+    private CodecBinario() {}
+
+    /**
+     * Trama binaria, con sus cabeceras de segmento, equivalente a la línea JSON. No
+     * mueve la posición de la línea. Devuelve null si la línea no es JSON válido.
+     */
+    static ByteBuffer desdeJson(ByteBuffer linea) {
+        return desdeJson(linea, null);
+    }
+
+    /** Como desdeJson, comprimida si la compresión no es null y la trama lo amerita. */
+    static ByteBuffer desdeJson(ByteBuffer linea, CompresionTramas compresion) {
+        return desdeJson(linea, compresion, MAX_SEGMENTO);
+    }
+
+    /** Como desdeJson, con segmentos de hasta maxSegmento bytes. */
+    static ByteBuffer desdeJson(ByteBuffer linea, CompresionTramas compresion, int maxSegmento) {
+        Salida cuerpo = cuerpoDesdeJson(linea);
+        if (cuerpo == null) return null;
+        ByteBuffer comprimida = compresion != null ? compresion.comprimir(cuerpo.buf, cuerpo.pos, maxSegmento) : null;
+        return comprimida != null ? comprimida : segmentar(cuerpo.buf, cuerpo.pos, false, false, maxSegmento);
+    }
+
+    /** Los segmentos de la trama, cada uno con su cabecera, como vistas sobre ella. */
+    static ByteBuffer[] segmentos(ByteBuffer trama) {
+        ByteBuffer[] partes = new ByteBuffer[4];
+        int n = 0;
+        for (int p = trama.position(); p < trama.limit(); ) {
+            int fin = p + CABECERA + (trama.getInt(p) & MAX_SEGMENTO);
+            if (n == partes.length) partes = Arrays.copyOf(partes, n * 2);
+            partes[n++] = trama.duplicate().limit(fin).position(p);
+            p = fin;
+        }
+        return Arrays.copyOf(partes, n);
+    }
+
+    /** Marca todos los segmentos de la trama como intercalados; no mueve la posición. */
+    static void marcarIntercalada(ByteBuffer trama) {
+        for (int p = trama.position(); p < trama.limit(); p += CABECERA + (trama.getInt(p) & MAX_SEGMENTO)) {
+            trama.putInt(p, trama.getInt(p) | INTERCALADA);
+        }
+    }
+
+    /**
+     * Primer segmento de una trama cuyo payload termina con el campo de bytes por
+     * partes: todo lo anterior al primer bloque. Los bloques van con prefijarParte y
+     * la trama termina con cierreBytesPorPartes; si hay flujo, todo pasa por él.
+     */
+    static ByteBuffer cabeceraConBytes(String comando, Map<String, Object> payload, String campo,
+                                       CompresionTramas.FlujoComprimido flujo) {
+        Salida cuerpo = cuerpoDesdeJson(ProtocoloChat.codificar(comando, payload != null ? payload : Map.of()));
+        if (cuerpo == null) throw new IllegalArgumentException("Payload no serializable: " + comando);
+        // El payload es el último campo de la raíz: se quitan su FIN y el de la raíz
+        cuerpo.pos -= 2;
+        byte[] clave = campo.getBytes(StandardCharsets.UTF_8);
+        cuerpo.u8(TEXTO);
+        cuerpo.varint(clave.length);
+        cuerpo.bytes(clave, 0, clave.length);
+        cuerpo.u8(BYTES_POR_PARTES);
+        return flujo != null ? flujo.segmento(cuerpo.buf, 0, cuerpo.pos, false) : segmentar(cuerpo.buf, cuerpo.pos, true, false);
+    }
+
+    /**
+     * Escribe delante de los n bytes que empiezan en inicioDatos la cabecera de
+     * segmento y la longitud del bloque; hay que dejar PREFIJO_PARTE bytes libres.
+     * Devuelve dónde empieza el segmento.
+     */
+    static int prefijarParte(byte[] arreglo, int inicioDatos, int n) {
+        int largoVarint = largoVarint(n);
+        int inicio = inicioDatos - largoVarint - CABECERA;
+        escribirCabecera(arreglo, inicio, largoVarint + n, true);
+        int p = inicio + CABECERA;
+        long v = n;
+        while ((v & ~0x7FL) != 0) {
+            arreglo[p++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        arreglo[p] = (byte) v;
+        return inicio;
+    }
+
+    /** Último segmento de una trama con bytes por partes: longitud 0 y los dos FIN. */
+    static ByteBuffer cierreBytesPorPartes(CompresionTramas.FlujoComprimido flujo) {
+        byte[] b = new byte[CABECERA + 3];
+        escribirCabecera(b, 0, 3, false);
+        b[CABECERA] = 0;
+        b[CABECERA + 1] = FIN;
+        b[CABECERA + 2] = FIN;
+        return flujo != null ? flujo.segmento(b, CABECERA, 3, true) : ByteBuffer.wrap(b);
+    }
+
+    static long leerVarint(ByteBuffer b) {
+        long v = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte x = b.get();
+            v |= (long) (x & 0x7F) << desplazamiento;
+            if ((x & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    private static Salida cuerpoDesdeJson(ByteBuffer linea) {
+        TraductorJson lector = new TraductorJson(linea);
+        try {
+            lector.espacios();
+            lector.valor(false);
+            lector.espacios();
+            return lector.i == lector.fin ? lector.salida : null;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /** Reparte el cuerpo en segmentos de hasta MAX_SEGMENTO bytes, cada uno con su cabecera. */
+    static ByteBuffer segmentar(byte[] cuerpo, int largo, boolean continuaAlFinal, boolean comprimida) {
+        return segmentar(cuerpo, largo, continuaAlFinal, comprimida, MAX_SEGMENTO);
+    }
+
+    static ByteBuffer segmentar(byte[] cuerpo, int largo, boolean continuaAlFinal, boolean comprimida, int maxSegmento) {
+        int segmentos = Math.max(1, (largo + maxSegmento - 1) / maxSegmento);
+        byte[] trama = new byte[largo + segmentos * CABECERA];
+        int p = 0;
+        for (int desde = 0, s = 0; s < segmentos; s++) {
+            int n = Math.min(maxSegmento, largo - desde);
+            escribirCabecera(trama, p, n | (comprimida && s == 0 ? COMPRIMIDA : 0)
+                    | (continuaAlFinal || s < segmentos - 1 ? CONTINUA : 0));
+            System.arraycopy(cuerpo, desde, trama, p + CABECERA, n);
+            p += CABECERA + n;
+            desde += n;
+        }
+        return ByteBuffer.wrap(trama);
+    }
+
+    private static void escribirCabecera(byte[] b, int en, int largo, boolean continua) {
+        escribirCabecera(b, en, largo | (continua ? CONTINUA : 0));
+    }
+
+    static void escribirCabecera(byte[] b, int en, int v) {
+        b[en] = (byte) (v >>> 24);
+        b[en + 1] = (byte) (v >>> 16);
+        b[en + 2] = (byte) (v >>> 8);
+        b[en + 3] = (byte) v;
+    }
+
+    private static int largoVarint(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /** Arreglo que crece, con las escrituras del formato. */
+    private static final class Salida {
+        byte[] buf;
+        int pos;
+
+        Salida(int capacidad) {
+            buf = new byte[Math.max(64, capacidad)];
+        }
+
+        void u8(int b) {
+            asegurar(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void varint(long v) {
+            asegurar(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void bytes(byte[] b, int desde, int n) {
+            asegurar(n);
+            System.arraycopy(b, desde, buf, pos, n);
+            pos += n;
+        }
+
+        void bytes(ByteBuffer b, int desde, int n) {
+            asegurar(n);
+            b.get(desde, buf, pos, n);
+            pos += n;
+        }
+
+        void asegurar(int adicional) {
+            if (pos + adicional > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + adicional));
+            }
+        }
+    }
+
+    /** Recorre la línea JSON con lecturas absolutas y escribe el valor etiquetado. */
+    private static final class TraductorJson {
+        final ByteBuffer j;
+        final int fin;
+        final Salida salida;
+        int i;
+
+        TraductorJson(ByteBuffer linea) {
+            this.j = linea;
+            this.i = linea.position();
+            this.fin = linea.limit();
+            this.salida = new Salida(linea.remaining());
+        }
+
+        void valor(boolean bytesCrudos) {
+            byte b = j.get(i);
+            switch (b) {
+                case '{' -> objeto();
+                case '[' -> arreglo();
+                case '"' -> cadena(bytesCrudos);
+                case 't' -> literal("true", VERDADERO);
+                case 'f' -> literal("false", FALSO);
+                case 'n' -> literal("null", NULO);
+                default -> numero();
+            }
+        }
+
+        void objeto() {
+            i++;
+            salida.u8(OBJETO);
+            espacios();
+            if (j.get(i) == '}') {
+                i++;
+                salida.u8(FIN);
+                return;
+            }
+            while (true) {
+                espacios();
+                if (j.get(i) != '"') throw new IllegalArgumentException("Se esperaba una clave");
+                int inicioClave = salida.pos;
+                cadena(false);
+                boolean crudos = terminaEnBase64(inicioClave);
+                espacios();
+                esperar(':');
+                espacios();
+                valor(crudos);
+                espacios();
+                byte c = j.get(i++);
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("Se esperaba ',' o '}'");
+            }
+            salida.u8(FIN);
+        }
+
+        void arreglo() {
+            i++;
+            salida.u8(ARREGLO);
+            espacios();
+            if (j.get(i) == ']') {
+                i++;
+                salida.u8(FIN);
+                return;
+            }
+            while (true) {
+                espacios();
+                valor(false);
+                espacios();
+                byte c = j.get(i++);
+                if (c == ']') break;
+                if (c != ',') throw new IllegalArgumentException("Se esperaba ',' o ']'");
+            }
+            salida.u8(FIN);
+        }
+
+        void cadena(boolean bytesCrudos) {
+            int inicio = i + 1;
+            int k = inicio;
+            boolean escapes = false;
+            byte c;
+            while ((c = j.get(k)) != '"') {
+                if (c == '\\') {
+                    escapes = true;
+                    k += 2;
+                } else {
+                    k++;
+                }
+            }
+            i = k + 1;
+            if (bytesCrudos && !escapes) {
+                try {
+                    ByteBuffer crudo = Base64.getDecoder().decode(j.duplicate().limit(k).position(inicio));
+                    salida.u8(BYTES);
+                    salida.varint(crudo.remaining());
+                    salida.bytes(crudo, 0, crudo.remaining());
+                    return;
+                } catch (IllegalArgumentException noEsBase64) {
+                    // Sale como texto
+                }
+            }
+            salida.u8(TEXTO);
+            if (!escapes) {
+                salida.varint(k - inicio);
+                salida.bytes(j, inicio, k - inicio);
+                return;
+            }
+            byte[] texto = desescapar(inicio, k).getBytes(StandardCharsets.UTF_8);
+            salida.varint(texto.length);
+            salida.bytes(texto, 0, texto.length);
+        }
+
+        // Las cadenas con escapes son raras (texto de usuario): se pasan por String
+        private String desescapar(int desde, int hasta) {
+            byte[] crudo = new byte[hasta - desde];
+            j.get(desde, crudo);
+            String s = new String(crudo, StandardCharsets.UTF_8);
+            return LectorJson.desescapar(s, 0, s.length());
+        }
+
+        void numero() {
+            int inicio = i;
+            boolean decimal = false;
+            while (i < fin) {
+                byte b = j.get(i);
+                if (b == '.' || b == 'e' || b == 'E') {
+                    decimal = true;
+                } else if (b != '-' && b != '+' && (b < '0' || b > '9')) {
+                    break;
+                }
+                i++;
+            }
+            if (i == inicio) throw new IllegalArgumentException("Valor JSON inesperado");
+            byte[] crudo = new byte[i - inicio];
+            j.get(inicio, crudo);
+            String t = new String(crudo, StandardCharsets.US_ASCII);
+            if (!decimal) {
+                try {
+                    long n = Long.parseLong(t);
+                    salida.u8(ENTERO);
+                    salida.varint((n << 1) ^ (n >> 63));
+                    return;
+                } catch (NumberFormatException fueraDeRango) {
+                    // Sale como decimal
+                }
+            }
+            long bits = Double.doubleToLongBits(Double.parseDouble(t));
+            salida.u8(DECIMAL);
+            salida.asegurar(8);
+            for (int s = 56; s >= 0; s -= 8) salida.buf[salida.pos++] = (byte) (bits >>> s);
+        }
+
+        void literal(String texto, byte etiqueta) {
+            for (int x = 0; x < texto.length(); x++) {
+                if (j.get(i + x) != texto.charAt(x)) throw new IllegalArgumentException("Literal JSON inválido");
+            }
+            i += texto.length();
+            salida.u8(etiqueta);
+        }
+
+        void esperar(char c) {
+            if (j.get(i++) != c) throw new IllegalArgumentException("Se esperaba '" + c + "'");
+        }
+
+        void espacios() {
+            while (i < fin) {
+                byte b = j.get(i);
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+                i++;
+            }
+        }
+
+        // La clave recién escrita (etiqueta, varint y bytes) termina en "Base64"
+        private boolean terminaEnBase64(int inicioClave) {
+            int finClave = salida.pos;
+            if (finClave - inicioClave < SUFIJO_BASE64.length + 2) return false;
+            return Arrays.equals(salida.buf, finClave - SUFIJO_BASE64.length, finClave,
+                    SUFIJO_BASE64, 0, SUFIJO_BASE64.length);
+        }
+    }
+}
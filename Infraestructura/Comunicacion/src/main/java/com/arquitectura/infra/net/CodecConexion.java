@@ -0,0 +1,140 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Codec de una conexión. Empieza en JSON por líneas; con protocol.codec=binary el
+ * cliente manda al conectar
+ *
+ *   HELLO {codecs:["bin1","json"]}  ->  HELLO {codec:"bin1"}
+ *
+ * y si el servidor elige bin1 ambos pasan a CodecBinario: la entrada justo después
+ * de la respuesta HELLO (el servidor cambia al enviarla) y la salida en cuanto
+ * llega. El servidor distingue cada trama entrante por su primer byte, así que los
+ * envíos que salieron en JSON mientras tanto siguen siendo válidos.
+ *
+ * Con compression.enabled=true el HELLO ofrece también {compresion:["deflate"]}; si
+ * el servidor responde {codec:"bin1", compresion:"deflate"}, las tramas binarias
+ * grandes salen comprimidas (ver CompresionTramas).
+ *
+ * El HELLO ofrece además {intercalado:["segmentos"]}: si el servidor lo acepta
+ * ({intercalado:"segmentos"}), las tramas de control e interactivas pueden salir
+ * entre dos segmentos de una trama masiva a medio escribir (ver ColaEnvios).
+ *
+ * Un servidor anterior no responde HELLO o responde ERROR: la conexión sigue en
+ * JSON. Las respuestas a HELLO no llegan a los oyentes.
+ */
+final class CodecConexion implements DecodificadorTramas {
+    static final String JSON = "json";
+    static final String INTERCALADO_SEGMENTOS = "segmentos";
+
+    private final Consumer<TramaChat> destino;
+    private final int limiteMemoria;
+    private final DivisorTramasJson divisorJson;
+    // Null si la compresión no se ofrece
+    private final CompresionTramas compresion;
+    private final CompletableFuture<String> negociado = new CompletableFuture<>();
+
+    // Solo desde el hilo de lectura
+    private DecodificadorTramas actual;
+    private boolean pasarABinario;
+
+    private volatile boolean negociando;
+    private volatile boolean salidaBinaria;
+    private volatile boolean compresionAcordada;
+    private volatile boolean intercaladoAcordado;
+
+    CodecConexion(Consumer<TramaChat> destino, int limiteMemoria, CompresionTramas compresion) {
+        this.destino = destino;
+        this.limiteMemoria = limiteMemoria;
+        this.compresion = compresion;
+        this.divisorJson = new DivisorTramasJson(this::alRecibirJson, limiteMemoria);
+        this.actual = divisorJson;
+    }
+
+    /**
+     * Envía HELLO por el transporte recién conectado y espera la elección del
+     * servidor hasta timeoutMs. Devuelve el codec acordado (JSON si no hubo respuesta).
+     */
+    String negociar(TransporteChat transporte, long timeoutMs) {
+        Map<String, Object> p = ProtocoloChat.mapa();
+        p.put("codecs", List.of(CodecBinario.NOMBRE, JSON));
+        if (compresion != null) p.put("compresion", List.of(CompresionTramas.DEFLATE));
+        p.put("intercalado", List.of(INTERCALADO_SEGMENTOS));
+        negociando = true;
+        transporte.enviarAsincrono(ProtocoloChat.codificar("HELLO", p));
+        try {
+            return negociado.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return JSON;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return JSON;
+        } finally {
+            negociando = false;
+        }
+    }
+
+    boolean esCompresionAcordada() {
+        return compresionAcordada;
+    }
+
+    /** Adapta el envío al codec de salida; se llama al encolarlo. */
+    void preparar(EnvioPendiente envio) {
+        if (salidaBinaria) envio.pasarABinario(compresionAcordada ? compresion : null, intercaladoAcordado);
+    }
+
+    @Override
+    public void procesar(ByteBuffer datos) throws IOException {
+        actual.procesar(datos);
+        if (pasarABinario) {
+            pasarABinario = false;
+            divisorJson.liberar();
+            actual = new DivisorTramasBinario(destino, limiteMemoria, compresionAcordada ? compresion : null);
+            actual.procesar(datos);
+        }
+    }
+
+    @Override
+    public void finalizar() throws IOException {
+        actual.finalizar();
+    }
+
+    @Override
+    public void liberar() {
+        actual.liberar();
+        if (compresion != null) compresion.cerrar();
+    }
+
+    private void alRecibirJson(TramaChat trama) {
+        String comando = trama.comando();
+        if ("HELLO".equals(comando)) {
+            // También si llega tarde: el servidor ya cambió de codec al responder
+            String codec = trama.textoPayload("codec");
+            if (CodecBinario.NOMBRE.equals(codec)) {
+                compresionAcordada = compresion != null
+                        && CompresionTramas.DEFLATE.equals(trama.textoPayload("compresion"));
+                intercaladoAcordado = INTERCALADO_SEGMENTOS.equals(trama.textoPayload("intercalado"));
+                divisorJson.detenerTrasTrama();
+                pasarABinario = true;
+                salidaBinaria = true;
+            }
+            negociado.complete(codec != null ? codec : JSON);
+            return;
+        }
+        if (negociando && "ERROR".equals(comando)) {
+            // Servidor anterior que no conoce HELLO
+            negociado.complete(JSON);
+            return;
+        }
+        destino.accept(trama);
+    }
+}
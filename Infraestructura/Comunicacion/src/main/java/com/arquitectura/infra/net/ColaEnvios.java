@@ -0,0 +1,221 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Cola de salida de una conexión, con una cola FIFO por PrioridadEnvio. El escritor
+ * pide los bytes bloque a bloque y en cada bloque se elige de nuevo: primero control,
+ * luego interactiva y por último masiva, así que un PING o un SEND_USER no esperan a
+ * las subidas encoladas antes que ellos.
+ *
+ * Una trama masiva empezada sigue hasta el final, salvo que el servidor haya aceptado
+ * tramas intercaladas (ver CodecConexion): entonces entre dos de sus segmentos sale
+ * entera cualquier trama de control o interactiva que esté esperando, marcada como
+ * intercalada. En JSON una línea no se puede partir y la prioridad solo cuenta entre
+ * líneas completas.
+ *
+ * Un envío de CIERRE hace de barrera: sale cuando las colas y la trama masiva están
+ * vacías, y lo que se agrega mientras espera queda retenido, en orden, hasta que se
+ * escribe.
+ *
+ * Cada vez que termina de entregarse una línea al escritor se avisa su comando a
+ * alEntregar, antes de escribirla: es el orden en que las líneas salen al socket.
+ *
+ * Lo usan desde cualquier hilo agregar y estaVacia; el resto, solo el escritor.
+ */
+final class ColaEnvios {
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayEnvios = cerrojo.newCondition();
+    private final ArrayDeque<EnvioPendiente>[] colas;
+    // Trama masiva empezada y envíos ya entregados al escritor por completo
+    private EnvioPendiente masivo;
+    private final ArrayDeque<EnvioPendiente> escritos = new ArrayDeque<>();
+    private boolean ultimoPorPartes;
+    // Envío de CIERRE pendiente y lo agregado detrás de él
+    private EnvioPendiente barrera;
+    private final ArrayDeque<EnvioPendiente> retenidos = new ArrayDeque<>();
+    private final Consumer<String> alEntregar;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ColaEnvios(Consumer<String> alEntregar) {
+        this.alEntregar = alEntregar;
+        colas = new ArrayDeque[PrioridadEnvio.values().length];
+        for (int i = 0; i < colas.length; i++) colas[i] = new ArrayDeque<>();
+    }
+
+    void agregar(EnvioPendiente envio) {
+        cerrojo.lock();
+        try {
+            if (barrera != null) {
+                retenidos.add(envio);
+            } else {
+                encolar(envio);
+            }
+            hayEnvios.signal();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private void encolar(EnvioPendiente envio) {
+        if (envio.prioridad == PrioridadEnvio.CIERRE) {
+            barrera = envio;
+        } else {
+            colas[envio.prioridad.ordinal()].add(envio);
+        }
+    }
+
+    boolean estaVacia() {
+        cerrojo.lock();
+        try {
+            return vacia();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Espera hasta que haya algo que escribir; false si pasó el tiempo sin envíos. */
+    boolean esperar(long tiempo, TimeUnit unidad) throws InterruptedException {
+        long nanos = unidad.toNanos(tiempo);
+        cerrojo.lock();
+        try {
+            while (vacia()) {
+                if (nanos <= 0) return false;
+                nanos = hayEnvios.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Siguiente bloque a escribir, o null si no queda nada. Si es por partes hay que
+     * escribirlo antes de pedir otro. Los envíos cuyo último bloque ya se entregó se
+     * completan con completarEscritos, cuando esos bytes llegaron al socket.
+     *
+     * Si falla la lectura del adjunto de una línea por partes, ese envío falla con el
+     * error y se lanza: la trama ya quedó a medias y el escritor debe cerrar la conexión.
+     */
+    ByteBuffer siguienteBloque() throws IOException {
+        while (true) {
+            EnvioPendiente envio;
+            boolean intercalada;
+            cerrojo.lock();
+            try {
+                envio = elegir();
+                if (envio == null) return null;
+                intercalada = masivo != null && envio != masivo;
+            } finally {
+                cerrojo.unlock();
+            }
+            // Fuera del cerrojo: una línea por partes lee del archivo al pedir su bloque
+            if (intercalada) envio.marcarIntercalada();
+            ByteBuffer bloque;
+            try {
+                bloque = envio.bloque();
+            } catch (IOException e) {
+                envio.fallar(e);
+                throw e;
+            }
+            if (bloque == null || envio.entregado()) {
+                retirar(envio);
+                if (envio.comando != null) alEntregar.accept(envio.comando);
+            }
+            if (bloque != null) {
+                ultimoPorPartes = envio.porPartes();
+                return bloque;
+            }
+        }
+    }
+
+    private void retirar(EnvioPendiente envio) {
+        cerrojo.lock();
+        try {
+            if (envio == masivo) {
+                masivo = null;
+            } else if (envio == barrera) {
+                barrera = null;
+                EnvioPendiente e;
+                while (barrera == null && (e = retenidos.poll()) != null) encolar(e);
+            } else {
+                colas[envio.prioridad.ordinal()].poll();
+            }
+            escritos.add(envio);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** True si el último bloque se sobrescribe al pedir el siguiente (ver EnvioPendiente.porPartes). */
+    boolean ultimoBloquePorPartes() {
+        return ultimoPorPartes;
+    }
+
+    /** Completa los envíos terminados; todos los bloques entregados ya están escritos. */
+    void completarEscritos() {
+        EnvioPendiente e;
+        while ((e = siguienteEscrito()) != null) e.completar();
+    }
+
+    void fallarTodos(IOException causa) {
+        ArrayDeque<EnvioPendiente> fallidos = new ArrayDeque<>();
+        cerrojo.lock();
+        try {
+            fallidos.addAll(escritos);
+            escritos.clear();
+            if (masivo != null) fallidos.add(masivo);
+            masivo = null;
+            for (ArrayDeque<EnvioPendiente> cola : colas) {
+                fallidos.addAll(cola);
+                cola.clear();
+            }
+            if (barrera != null) fallidos.add(barrera);
+            barrera = null;
+            fallidos.addAll(retenidos);
+            retenidos.clear();
+        } finally {
+            cerrojo.unlock();
+        }
+        EnvioPendiente.fallarTodos(fallidos, causa);
+    }
+
+    private EnvioPendiente siguienteEscrito() {
+        cerrojo.lock();
+        try {
+            return escritos.poll();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Con una trama masiva abierta que no admite intercalar, o si lo que espera no se
+    // puede intercalar, sigue la masiva. La barrera, solo cuando no queda nada delante
+    private EnvioPendiente elegir() {
+        if (masivo != null && !masivo.admiteIntercalar()) return masivo;
+        for (PrioridadEnvio p : PrioridadEnvio.values()) {
+            if (p == PrioridadEnvio.MASIVA) break;
+            EnvioPendiente cabeza = colas[p.ordinal()].peek();
+            if (cabeza == null) continue;
+            if (masivo == null || cabeza.intercalable()) return cabeza;
+            return masivo;
+        }
+        if (masivo != null) return masivo;
+        masivo = colas[PrioridadEnvio.MASIVA.ordinal()].poll();
+        return masivo != null ? masivo : barrera;
+    }
+
+    private boolean vacia() {
+        if (masivo != null || barrera != null) return false;
+        for (ArrayDeque<EnvioPendiente> cola : colas) {
+            if (!cola.isEmpty()) return false;
+        }
+        return true;
+    }
+}
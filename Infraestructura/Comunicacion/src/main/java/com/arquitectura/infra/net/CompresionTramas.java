@@ -0,0 +1,184 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión deflate por trama del codec binario, acordada en el HELLO
+ * ({compresion:["deflate"]}). Una trama comprimida lleva el bit COMPRIMIDA en la
+ * cabecera de su primer segmento y sus segmentos, juntos, forman un único flujo
+ * deflate con el cuerpo etiquetado.
+ *
+ * Cada conexión reutiliza un Deflater para las tramas que se encolan (en el hilo que
+ * las envía, de a una) y un Inflater en el hilo de lectura. Solo se comprimen las
+ * tramas desde el umbral, y salen comprimidas solo si ocupan menos. Las subidas por
+ * partes se comprimen bloque a bloque con un Deflater propio, porque se escriben en
+ * el hilo de escritura mientras se encolan otras tramas.
+ *
+ * Los contadores son de todas las conexiones, para ajustar el umbral (ver
+ * MetricasCompresion).
+ */
+final class CompresionTramas {
+    static final String DEFLATE = "deflate";
+
+    private static final int TAM_INICIAL = 16 * 1024;
+    // Lo que se conserva del arreglo de salida entre tramas
+    private static final int MAX_RETENIDO = 1024 * 1024;
+    private static final int TAM_BLOQUE_INFLADO = 64 * 1024;
+
+    private static final LongAdder tramasComprimidas = new LongAdder();
+    private static final LongAdder tramasSinGanancia = new LongAdder();
+    private static final LongAdder bytesOriginales = new LongAdder();
+    private static final LongAdder bytesComprimidos = new LongAdder();
+    private static final LongAdder nanosCompresion = new LongAdder();
+    private static final LongAdder tramasDescomprimidas = new LongAdder();
+    private static final LongAdder bytesRecibidos = new LongAdder();
+    private static final LongAdder bytesDescomprimidos = new LongAdder();
+    private static final LongAdder nanosDescompresion = new LongAdder();
+
+    private final int umbral;
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private byte[] comprimido = new byte[TAM_INICIAL];
+    private boolean cerrada;
+
+    // Solo desde el hilo de lectura
+    private byte[] inflado;
+
+    CompresionTramas(int umbral) {
+        this.umbral = umbral;
+    }
+
+    /**
+     * Trama binaria comprimida con el cuerpo dado, o null si no llega al umbral o
+     * comprimido no ocupa menos (entonces sale sin comprimir). Los segmentos son de
+     * hasta maxSegmento bytes.
+     */
+    synchronized ByteBuffer comprimir(byte[] cuerpo, int largo, int maxSegmento) {
+        if (largo < umbral || cerrada) return null;
+        long inicio = System.nanoTime();
+        deflater.reset();
+        deflater.setInput(cuerpo, 0, largo);
+        deflater.finish();
+        int n = 0;
+        // Si no cabe en largo bytes no hay ganancia: se corta ahí
+        while (!deflater.finished() && n < largo) {
+            if (n == comprimido.length) comprimido = Arrays.copyOf(comprimido, Math.min(largo, n * 2));
+            n += deflater.deflate(comprimido, n, Math.min(comprimido.length, largo) - n);
+        }
+        try {
+            if (!deflater.finished() || n >= largo) {
+                tramasSinGanancia.increment();
+                nanosCompresion.add(System.nanoTime() - inicio);
+                return null;
+            }
+            ByteBuffer trama = CodecBinario.segmentar(comprimido, n, false, true, maxSegmento);
+            tramasComprimidas.increment();
+            bytesOriginales.add(largo);
+            bytesComprimidos.add(n);
+            nanosCompresion.add(System.nanoTime() - inicio);
+            return trama;
+        } finally {
+            if (comprimido.length > MAX_RETENIDO) comprimido = new byte[TAM_INICIAL];
+        }
+    }
+
+    /** Flujo para una trama que se escribe por partes; hay que cerrarlo al terminar. */
+    FlujoComprimido abrirFlujo() {
+        return new FlujoComprimido();
+    }
+
+    /** Descomprime el cuerpo de una trama en destino. Solo desde el hilo de lectura. */
+    void descomprimir(ByteBuffer cuerpo, AcumuladorTrama destino) throws IOException {
+        long inicio = System.nanoTime();
+        int entrada = cuerpo.remaining();
+        if (inflado == null) inflado = new byte[TAM_BLOQUE_INFLADO];
+        inflater.reset();
+        inflater.setInput(cuerpo);
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(inflado);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Trama comprimida incompleta");
+                }
+                destino.agregar(inflado, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Trama comprimida inválida", e);
+        }
+        tramasDescomprimidas.increment();
+        bytesRecibidos.add(entrada);
+        bytesDescomprimidos.add(destino.largo());
+        nanosDescompresion.add(System.nanoTime() - inicio);
+    }
+
+    /** Libera el Deflater y el Inflater nativos; se llama al cerrar la conexión. */
+    void cerrar() {
+        synchronized (this) {
+            cerrada = true;
+            deflater.end();
+        }
+        inflater.end();
+    }
+
+    static MetricasCompresion obtenerMetricas() {
+        return new MetricasCompresion(tramasComprimidas.sum(), tramasSinGanancia.sum(), bytesOriginales.sum(),
+                bytesComprimidos.sum(), nanosCompresion.sum(), tramasDescomprimidas.sum(), bytesRecibidos.sum(),
+                bytesDescomprimidos.sum(), nanosDescompresion.sum());
+    }
+
+    /**
+     * Compresión de una trama por partes: cada parte sale en su segmento, con el
+     * deflate vaciado (SYNC_FLUSH) para no retener datos, y la última lo termina.
+     * Reutiliza su arreglo de salida: cada segmento vale hasta pedir el siguiente.
+     */
+    static final class FlujoComprimido {
+        private final Deflater deflater = new Deflater();
+        private byte[] salida = new byte[TAM_INICIAL];
+        private boolean primero = true;
+        private boolean terminado;
+        private long originales;
+        private long comprimidos;
+        private long nanos;
+
+        ByteBuffer segmento(byte[] datos, int desde, int n, boolean ultimo) {
+            long inicio = System.nanoTime();
+            deflater.setInput(datos, desde, n);
+            if (ultimo) deflater.finish();
+            int modo = ultimo ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            int p = CodecBinario.CABECERA;
+            while (true) {
+                if (p == salida.length) salida = Arrays.copyOf(salida, salida.length * 2);
+                p += deflater.deflate(salida, p, salida.length - p, modo);
+                // Con la salida sin llenar ya se vació todo lo pendiente
+                if (ultimo ? deflater.finished() : p < salida.length) break;
+            }
+            int largo = p - CodecBinario.CABECERA;
+            int banderas = (primero ? CodecBinario.COMPRIMIDA : 0) | (ultimo ? 0 : CodecBinario.CONTINUA);
+            CodecBinario.escribirCabecera(salida, 0, largo | banderas);
+            primero = false;
+            originales += n;
+            comprimidos += largo;
+            nanos += System.nanoTime() - inicio;
+            if (ultimo) {
+                tramasComprimidas.increment();
+                bytesOriginales.add(originales);
+                bytesComprimidos.add(comprimidos);
+                nanosCompresion.add(nanos);
+                cerrar();
+            }
+            return ByteBuffer.wrap(salida, 0, p);
+        }
+
+        void cerrar() {
+            if (terminado) return;
+            terminado = true;
+            deflater.end();
+        }
+    }
+}
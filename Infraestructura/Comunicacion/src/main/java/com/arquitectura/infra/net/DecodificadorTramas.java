@@ -0,0 +1,19 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Convierte los bytes que llegan del socket en tramas (TramaChat). Lo usa el hilo
+ * de lectura de cada transporte; no es seguro entre hilos.
+ */
+interface DecodificadorTramas {
+    /** Consume todos los bytes entre position y limit del buffer recibido. */
+    void procesar(ByteBuffer datos) throws IOException;
+
+    /** Entrega lo pendiente que haya quedado completo al terminar el flujo. */
+    void finalizar() throws IOException;
+
+    /** Descarta una trama a medio armar y devuelve los buffers que tenga tomados. */
+    void liberar();
+}
@@ -0,0 +1,191 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tabla de solicitudes pendientes de respuesta. Se registra una sola vez como oyente
+ * y resuelve cada respuesta en O(1): primero por requestId (si el servidor lo
+ * devuelve) y si no, en orden de llegada entre quienes esperan ese comando. Una
+ * respuesta con un requestId que ya no está en la tabla (su espera venció o se
+ * canceló) se descarta: no se le asigna a otra espera del mismo comando.
+ *
+ * Un PONG sin requestId cuenta como respuesta a PING.
+ *
+ * Un ERROR sin requestId va a la espera más antigua del comando que falló, si el
+ * ERROR lo indica ("comando" en la raíz o en el payload); si no, a la de la línea
+ * que salió antes al socket, de cualquier comando salvo PING, cuya espera del latido
+ * casi siempre está abierta. Ese orden lo anota alEscribirComando: con las colas por
+ * prioridad no coincide con el de registro de las esperas.
+ *
+ * La espera debe registrarse antes de enviar el comando para no perder respuestas
+ * rápidas. Los tiempos de espera corren en la RuedaTemporizadores compartida.
+ */
+public final class DespachadorRespuestas implements OyenteMensajesChat {
+    private static final byte[] CLAVE_ID = CamposTrama.clave("requestId");
+    private static final byte[] CLAVE_COMANDO = CamposTrama.clave("comando");
+    private static final byte[] CLAVE_COMMAND = CamposTrama.clave("command");
+    private static final byte[] CLAVE_PAYLOAD = CamposTrama.clave("payload");
+    private static final String COMANDO_ERROR = "ERROR";
+    private static final String COMANDO_PING = "PING";
+    private static final String COMANDO_PONG = "PONG";
+
+    private final RuedaTemporizadores rueda;
+    private final Map<String, Queue<Pendiente>> porComando = new ConcurrentHashMap<>();
+    private final Map<String, Pendiente> porId = new ConcurrentHashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicLong escrituras = new AtomicLong();
+    private final AtomicLong generadorIds = new AtomicLong();
+    private final String prefijoIds = Long.toHexString(System.nanoTime());
+
+    private static final class Pendiente {
+        final long orden;
+        // Orden en que su línea salió al socket; sin anotar va detrás de las ya escritas
+        volatile long escrita = Long.MAX_VALUE;
+        final CompletableFuture<String> futuro = new CompletableFuture<>();
+
+        boolean antesQue(Pendiente otro) {
+            return escrita != otro.escrita ? escrita < otro.escrita : orden < otro.orden;
+        }
+
+        Pendiente(long orden) {
+            this.orden = orden;
+        }
+    }
+
+    public DespachadorRespuestas() {
+        this(RuedaTemporizadores.compartida());
+    }
+
+    public DespachadorRespuestas(RuedaTemporizadores rueda) {
+        this.rueda = rueda;
+    }
+
+    /** Identificador único para incluir como requestId en un comando saliente. */
+    public String nuevoIdSolicitud() {
+        return prefijoIds + "-" + generadorIds.incrementAndGet();
+    }
+
+    public CompletableFuture<String> esperar(String comando, long timeoutMs) {
+        return esperar(comando, null, timeoutMs);
+    }
+
+    /**
+     * Registra la espera de una respuesta al comando. El futuro termina con la línea
+     * recibida, con TimeoutException al vencer el plazo o con IOException si la
+     * conexión se cierra. Cancelarlo retira la espera de la tabla.
+     */
+    public CompletableFuture<String> esperar(String comando, String idSolicitud, long timeoutMs) {
+        Pendiente p = new Pendiente(secuencia.incrementAndGet());
+        Queue<Pendiente> cola = porComando.computeIfAbsent(comando, k -> new ConcurrentLinkedQueue<>());
+        cola.add(p);
+        if (idSolicitud != null) porId.put(idSolicitud, p);
+        RuedaTemporizadores.Temporizador t = rueda.programar(timeoutMs, () ->
+                p.futuro.completeExceptionally(new TimeoutException("Sin respuesta a " + comando + " en " + timeoutMs + " ms")));
+        p.futuro.whenComplete((r, e) -> {
+            t.cancelar();
+            cola.remove(p);
+            if (idSolicitud != null) porId.remove(idSolicitud, p);
+        });
+        return p.futuro;
+    }
+
+    @Override
+    public void alRecibirMensaje(String mensaje) {
+        if (mensaje != null) alRecibirTrama(TramaChat.desdeTexto(mensaje));
+    }
+
+    @Override
+    public void alRecibirTrama(TramaChat trama) {
+        String comando = trama.comando();
+        if (comando == null) return;
+        String id = CamposTrama.texto(trama, CamposTrama.inicioRaiz(trama), CLAVE_ID);
+        if (id != null) {
+            Pendiente exacto = porId.get(id);
+            if (exacto != null) exacto.futuro.complete(trama.comoTexto());
+            return;
+        }
+        if (COMANDO_ERROR.equals(comando)) {
+            completarMasAntiguo(trama);
+            return;
+        }
+        Queue<Pendiente> cola = porComando.get(COMANDO_PONG.equals(comando) ? COMANDO_PING : comando);
+        if (cola == null) return;
+        Pendiente p;
+        while ((p = cola.poll()) != null) {
+            if (p.futuro.complete(trama.comoTexto())) return;
+        }
+    }
+
+    private void completarMasAntiguo(TramaChat trama) {
+        String fallido = comandoFallido(trama);
+        Queue<Pendiente> delFallido = fallido != null ? porComando.get(fallido) : null;
+        if (delFallido != null) {
+            Pendiente p;
+            while ((p = delFallido.poll()) != null) {
+                if (p.futuro.complete(trama.comoTexto())) return;
+            }
+        }
+        while (true) {
+            Pendiente candidato = null;
+            for (Map.Entry<String, Queue<Pendiente>> e : porComando.entrySet()) {
+                if (COMANDO_PING.equals(e.getKey())) continue;
+                Pendiente cabeza = e.getValue().peek();
+                if (cabeza != null && (candidato == null || cabeza.antesQue(candidato))) candidato = cabeza;
+            }
+            if (candidato == null || candidato.futuro.complete(trama.comoTexto())) return;
+        }
+    }
+
+    /**
+     * Anota que salió al socket una línea de ese comando (ver
+     * ClienteChatTcp.observarEscrituras). Las líneas de un mismo comando salen en
+     * orden, así que corresponde a la espera más antigua de ese comando sin anotar.
+     */
+    public synchronized void alEscribirComando(String comando) {
+        Queue<Pendiente> cola = porComando.get(comando);
+        if (cola == null) return;
+        for (Pendiente p : cola) {
+            if (p.escrita == Long.MAX_VALUE) {
+                p.escrita = escrituras.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private static String comandoFallido(TramaChat trama) {
+        int raiz = CamposTrama.inicioRaiz(trama);
+        String comando = CamposTrama.texto(trama, raiz, CLAVE_COMANDO);
+        if (comando != null) return comando;
+        int payload = CamposTrama.buscarValor(trama, raiz, CLAVE_PAYLOAD);
+        if (payload < 0 || payload >= trama.longitud() || trama.byteEn(payload) != '{') return null;
+        comando = CamposTrama.texto(trama, payload, CLAVE_COMMAND);
+        return comando != null ? comando : CamposTrama.texto(trama, payload, CLAVE_COMANDO);
+    }
+
+    @Override
+    public void alCerrar() {
+        fallarPendientes();
+    }
+
+    // Las respuestas de la conexión perdida ya no van a llegar
+    @Override
+    public void alPerderConexion() {
+        fallarPendientes();
+    }
+
+    private void fallarPendientes() {
+        IOException causa = new IOException("Conexión cerrada");
+        for (Queue<Pendiente> cola : porComando.values()) {
+            Pendiente p;
+            while ((p = cola.poll()) != null) p.futuro.completeExceptionally(causa);
+        }
+        for (Pendiente p : porId.values()) p.futuro.completeExceptionally(causa);
+    }
+}
@@ -0,0 +1,252 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+import static com.arquitectura.infra.net.CodecBinario.*;
+
+/**
+ * Lee tramas del codec binario (ver CodecBinario): junta los segmentos de cada una
+ * según sus cabeceras, sin recorrer el contenido, y al completarla la pasa a JSON
+ * para entregarla como cualquier otra TramaChat. Los bytes crudos vuelven a Base64.
+ *
+ * Igual que en DivisorTramasJson, el cuerpo se acumula en un buffer de PoolBuffers
+ * y pasa a un archivo temporal si supera el límite en memoria (ver AcumuladorTrama);
+ * el JSON resultante también se vuelca a disco cuando lo supera. Las tramas
+ * comprimidas se descomprimen en un segundo acumulador antes de transcribirlas.
+ */
+final class DivisorTramasBinario implements DecodificadorTramas {
+    // Múltiplo de 3 para que solo el último bloque Base64 lleve relleno
+    private static final int BLOQUE_BASE64 = 48 * 1024;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private final Consumer<TramaChat> destino;
+    private final int limiteMemoria;
+    // Null si no se acordó compresión
+    private final CompresionTramas compresion;
+    private final Base64.Encoder base64 = Base64.getEncoder();
+
+    // Cabecera del segmento en curso
+    private int cabecera;
+    private int leidosCabecera;
+    private int restanteSegmento;
+    private boolean continua;
+    private boolean enTrama;
+    private boolean comprimida;
+
+    // Cuerpo de la trama, y descomprimido si venía comprimida
+    private final AcumuladorTrama cuerpo;
+    private AcumuladorTrama descomprimido;
+
+    // Salida JSON de la trama que se está transcribiendo
+    private EscritorJson json;
+    private FileChannel jsonVolcado;
+    private byte[] bloqueCrudo;
+    private byte[] bloqueBase64;
+    private int pendientesBase64;
+
+    DivisorTramasBinario(Consumer<TramaChat> destino, int limiteMemoria, CompresionTramas compresion) {
+        this.destino = destino;
+        this.limiteMemoria = limiteMemoria;
+        this.compresion = compresion;
+        this.cuerpo = new AcumuladorTrama(limiteMemoria);
+    }
+
+    @Override
+    public void procesar(ByteBuffer datos) throws IOException {
+        while (datos.hasRemaining()) {
+            if (leidosCabecera < CABECERA) {
+                byte b = datos.get();
+                // Entre tramas puede quedar el salto de línea de la última trama JSON
+                if (leidosCabecera == 0 && !enTrama && (b == '\n' || b == '\r' || b == ' ' || b == '\t')) continue;
+                cabecera = (cabecera << 8) | (b & 0xFF);
+                if (++leidosCabecera < CABECERA) continue;
+                // La marca de compresión solo vale en el primer segmento
+                int permitidos = CONTINUA | MAX_SEGMENTO | (enTrama ? 0 : COMPRIMIDA);
+                if ((cabecera & ~permitidos) != 0) {
+                    throw new IOException("Cabecera de segmento binario inválida: " + Integer.toHexString(cabecera));
+                }
+                if (!enTrama) {
+                    comprimida = (cabecera & COMPRIMIDA) != 0;
+                    if (comprimida && compresion == null) throw new IOException("Trama comprimida sin compresión acordada");
+                }
+                enTrama = true;
+                continua = (cabecera & CONTINUA) != 0;
+                restanteSegmento = cabecera & MAX_SEGMENTO;
+            } else {
+                int n = Math.min(restanteSegmento, datos.remaining());
+                cuerpo.agregar(datos, n);
+                restanteSegmento -= n;
+            }
+            if (leidosCabecera == CABECERA && restanteSegmento == 0) {
+                leidosCabecera = 0;
+                cabecera = 0;
+                if (!continua) entregar();
+            }
+        }
+    }
+
+    /** Las tramas binarias se cierran por longitud: al terminar el flujo no queda nada entregable. */
+    @Override
+    public void finalizar() {
+        liberar();
+    }
+
+    @Override
+    public void liberar() {
+        cuerpo.liberar();
+        if (descomprimido != null) descomprimido.liberar();
+        enTrama = false;
+        jsonVolcado = AcumuladorTrama.cerrar(jsonVolcado);
+    }
+
+    private void entregar() throws IOException {
+        try {
+            ByteBuffer contenido = cuerpo.contenido();
+            if (comprimida) {
+                if (descomprimido == null) descomprimido = new AcumuladorTrama(limiteMemoria);
+                compresion.descomprimir(contenido, descomprimido);
+                contenido = descomprimido.contenido();
+            }
+            if (contenido.hasRemaining()) transcribir(contenido);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Trama binaria mal formada", e);
+        } finally {
+            enTrama = false;
+            comprimida = false;
+            cuerpo.reiniciar();
+            if (descomprimido != null) descomprimido.reiniciar();
+        }
+    }
+
+    private void transcribir(ByteBuffer cuerpo) throws IOException {
+        json = new EscritorJson(Math.min(limiteMemoria, cuerpo.remaining() / 3 * 4 + 64));
+        pendientesBase64 = 0;
+        try {
+            valor(cuerpo);
+            if (jsonVolcado == null) {
+                destino.accept(new TramaChat(json.arregloInterno(), 0, json.longitud()));
+                return;
+            }
+            volcarJson();
+            MappedByteBuffer mapa = jsonVolcado.map(FileChannel.MapMode.READ_ONLY, 0, jsonVolcado.position());
+            System.out.println("[DivisorTramasBinario] Trama de " + jsonVolcado.position() + " bytes volcada a disco");
+            destino.accept(new TramaChat(mapa));
+        } finally {
+            json = null;
+            jsonVolcado = AcumuladorTrama.cerrar(jsonVolcado);
+        }
+    }
+
+    private void valor(ByteBuffer c) throws IOException {
+        byte etiqueta = c.get();
+        switch (etiqueta) {
+            case NULO -> json.bytes(NULL);
+            case FALSO -> json.valor(Boolean.FALSE);
+            case VERDADERO -> json.valor(Boolean.TRUE);
+            case ENTERO -> {
+                long z = leerVarint(c);
+                json.valor((z >>> 1) ^ -(z & 1));
+            }
+            case DECIMAL -> {
+                double d = c.getDouble();
+                json.valor(Double.isFinite(d) ? d : null);
+            }
+            case TEXTO -> {
+                int n = largo(c);
+                json.cadenaUtf8(c, c.position(), n);
+                c.position(c.position() + n);
+            }
+            case BYTES -> {
+                json.ascii('"');
+                escribirBase64(c, largo(c));
+                cerrarBase64();
+                json.ascii('"');
+            }
+            case BYTES_POR_PARTES -> {
+                json.ascii('"');
+                int n;
+                while ((n = largo(c)) > 0) escribirBase64(c, n);
+                cerrarBase64();
+                json.ascii('"');
+            }
+            case ARREGLO -> {
+                json.ascii('[');
+                boolean primero = true;
+                while (c.get(c.position()) != FIN) {
+                    if (!primero) json.ascii(',');
+                    primero = false;
+                    valor(c);
+                }
+                c.get();
+                json.ascii(']');
+            }
+            case OBJETO -> {
+                json.ascii('{');
+                boolean primero = true;
+                while (c.get(c.position()) != FIN) {
+                    if (!primero) json.ascii(',');
+                    primero = false;
+                    if (c.get() != TEXTO) throw new IllegalArgumentException("Clave de objeto no es texto");
+                    int n = largo(c);
+                    json.cadenaUtf8(c, c.position(), n);
+                    c.position(c.position() + n);
+                    json.ascii(':');
+                    valor(c);
+                }
+                c.get();
+                json.ascii('}');
+            }
+            default -> throw new IllegalArgumentException("Etiqueta desconocida: " + etiqueta);
+        }
+        if (json.longitud() >= limiteMemoria) volcarJson();
+    }
+
+    // Codifica n bytes en bloques múltiplos de 3; el resto espera al siguiente tramo o a cerrarBase64
+    private void escribirBase64(ByteBuffer c, int n) throws IOException {
+        if (bloqueCrudo == null) {
+            bloqueCrudo = new byte[BLOQUE_BASE64];
+            bloqueBase64 = new byte[BLOQUE_BASE64 / 3 * 4];
+        }
+        while (n > 0) {
+            int tomar = Math.min(n, BLOQUE_BASE64 - pendientesBase64);
+            c.get(bloqueCrudo, pendientesBase64, tomar);
+            n -= tomar;
+            int disponibles = pendientesBase64 + tomar;
+            int completos = disponibles - disponibles % 3;
+            int escritos = completos == BLOQUE_BASE64
+                    ? base64.encode(bloqueCrudo, bloqueBase64)
+                    : base64.encode(Arrays.copyOf(bloqueCrudo, completos), bloqueBase64);
+            json.bytes(bloqueBase64, 0, escritos);
+            pendientesBase64 = disponibles - completos;
+            System.arraycopy(bloqueCrudo, completos, bloqueCrudo, 0, pendientesBase64);
+            if (json.longitud() >= limiteMemoria) volcarJson();
+        }
+    }
+
+    private void cerrarBase64() {
+        if (pendientesBase64 == 0) return;
+        byte[] resto = base64.encode(Arrays.copyOf(bloqueCrudo, pendientesBase64));
+        json.bytes(resto);
+        pendientesBase64 = 0;
+    }
+
+    private void volcarJson() throws IOException {
+        if (jsonVolcado == null) jsonVolcado = AcumuladorTrama.archivoTemporal();
+        ByteBuffer hecho = json.comoBuffer();
+        while (hecho.hasRemaining()) jsonVolcado.write(hecho);
+        json.reiniciar();
+    }
+
+    private static int largo(ByteBuffer c) {
+        long n = leerVarint(c);
+        if (n < 0 || n > c.remaining()) throw new IllegalArgumentException("Longitud fuera de la trama: " + n);
+        return (int) n;
+    }
+}
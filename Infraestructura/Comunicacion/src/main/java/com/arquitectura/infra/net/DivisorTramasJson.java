@@ -0,0 +1,157 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Separa el flujo UTF-8 entrante en tramas JSON completas trabajando sobre los
+ * bytes crudos: sigue la profundidad de llaves/corchetes y el estado de cadena y
+ * escape sin decodificar a caracteres (los bytes multibyte de UTF-8 nunca
+ * coinciden con los delimitadores ASCII). Un salto de línea a nivel raíz cierra
+ * también la trama, para mensajes que no son objetos.
+ *
+ * Las tramas que caben en una lectura se copian directamente a su arreglo; las que
+ * ocupan varias se juntan en un AcumuladorTrama, cuyo buffer se conserva entre
+ * tramas, y al cerrarse se copian una vez a un arreglo del tamaño justo. liberar()
+ * devuelve el buffer al pool.
+ *
+ * Una trama que supera el límite en memoria el acumulador la pasa a un archivo
+ * temporal, que al completarse se mapea y se entrega como TramaChat en disco.
+ */
+final class DivisorTramasJson implements DecodificadorTramas {
+    private final Consumer<TramaChat> destino;
+    private final AcumuladorTrama acumulado;
+    private boolean enTrama = false;
+    private int nivelEstructura = 0;
+    private boolean enCadena = false;
+    private boolean escape = false;
+    private boolean detener = false;
+
+    DivisorTramasJson(Consumer<TramaChat> destino, int limiteMemoria) {
+        this.destino = destino;
+        this.acumulado = new AcumuladorTrama(limiteMemoria);
+    }
+
+    /**
+     * Consume los bytes entre position y limit del buffer recibido. Si durante la
+     * entrega de una trama se llamó a detenerTrasTrama, vuelve justo después de ella
+     * y deja position en el primer byte sin consumir.
+     */
+    @Override
+    public void procesar(ByteBuffer datos) throws IOException {
+        int limite = datos.limit();
+        int inicioSegmento = datos.position();
+        for (int i = datos.position(); i < limite; i++) {
+            byte b = datos.get(i);
+            if (!enTrama) {
+                if (esEspacio(b)) continue;
+                enTrama = true;
+                inicioSegmento = i;
+            }
+            if (enCadena) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    enCadena = false;
+                }
+                continue;
+            }
+            if (b == '"') {
+                enCadena = true;
+            } else if (b == '{' || b == '[') {
+                nivelEstructura++;
+            } else if (b == '}' || b == ']') {
+                if (nivelEstructura > 0) nivelEstructura--;
+                if (nivelEstructura == 0) {
+                    emitir(datos, inicioSegmento, i + 1);
+                    if (detenido(datos, i + 1)) return;
+                }
+            } else if (b == '\n' && nivelEstructura == 0) {
+                emitir(datos, inicioSegmento, i);
+                if (detenido(datos, i + 1)) return;
+            }
+        }
+        if (enTrama) {
+            acumular(datos, inicioSegmento, limite);
+        }
+        datos.position(limite);
+    }
+
+    /**
+     * Pide que procesar vuelva en cuanto termine de entregar la trama actual, para
+     * que el resto del buffer lo lea otro decodificador (cambio de codec).
+     */
+    void detenerTrasTrama() {
+        detener = true;
+    }
+
+    private boolean detenido(ByteBuffer datos, int siguiente) {
+        if (!detener) return false;
+        detener = false;
+        datos.position(siguiente);
+        return true;
+    }
+
+    /** Entrega lo pendiente si quedó una trama completa a nivel raíz (fin de flujo). */
+    @Override
+    public void finalizar() throws IOException {
+        if (enTrama && nivelEstructura == 0 && !enCadena) {
+            entregarAcumulado();
+        }
+        liberar();
+        enTrama = false;
+    }
+
+    /** Descarta una trama a medio armar (la conexión se cerró) y devuelve el buffer al pool. */
+    @Override
+    public void liberar() {
+        acumulado.liberar();
+    }
+
+    private void emitir(ByteBuffer datos, int desde, int hasta) throws IOException {
+        if (acumulado.largo() == 0) {
+            byte[] trama = new byte[hasta - desde];
+            datos.get(desde, trama);
+            entregar(trama, trama.length);
+        } else {
+            acumular(datos, desde, hasta);
+            entregarAcumulado();
+        }
+        enTrama = false;
+    }
+
+    private void acumular(ByteBuffer datos, int desde, int hasta) throws IOException {
+        acumulado.agregar(datos.duplicate().position(desde), hasta - desde);
+    }
+
+    private void entregarAcumulado() throws IOException {
+        if (acumulado.largo() == 0) return;
+        try {
+            ByteBuffer contenido = acumulado.contenido();
+            if (acumulado.enDisco()) {
+                System.out.println("[DivisorTramasJson] Trama de " + contenido.remaining() + " bytes volcada a disco");
+                destino.accept(new TramaChat(contenido));
+            } else {
+                byte[] trama = new byte[contenido.remaining()];
+                contenido.get(trama);
+                entregar(trama, trama.length);
+            }
+        } finally {
+            acumulado.reiniciar();
+        }
+    }
+
+    private void entregar(byte[] bytes, int largo) {
+        while (largo > 0 && esEspacio(bytes[largo - 1])) largo--;
+        if (largo > 0) {
+            destino.accept(new TramaChat(bytes, 0, largo));
+        }
+    }
+
+    private static boolean esEspacio(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,169 @@
+package com.arquitectura.infra.net;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reparte cada trama solo a los oyentes suscritos a su clave. La clave es el
+ * "command" de la trama; para EVENT también se entrega a los suscritos a
+ * "EVENT:&lt;tipo&gt;". El comando y el tipo se leen una sola vez por trama.
+ *
+ * Los oyentes registrados sin clave (comodín) reciben todas las tramas, como antes.
+ * Cierre y error se avisan una vez a cada oyente, tenga las claves que tenga.
+ */
+public final class EnrutadorMensajesChat implements OyenteMensajesChat {
+    public static final String COMANDO_EVENTO = "EVENT";
+    private static final OyenteMensajesChat[] NINGUNO = new OyenteMensajesChat[0];
+
+    // Se reemplazan completos al suscribir/desuscribir; la lectura no toma candados
+    private volatile Map<String, OyenteMensajesChat[]> porClave = new HashMap<>();
+    private volatile OyenteMensajesChat[] comodines = NINGUNO;
+    private final CopyOnWriteArrayList<OyenteMensajesChat> todos = new CopyOnWriteArrayList<>();
+
+    /** Clave para suscribirse a un tipo concreto de EVENT. */
+    public static String claveEvento(String tipo) {
+        return COMANDO_EVENTO + ":" + normalizar(tipo);
+    }
+
+    public synchronized void suscribir(String clave, OyenteMensajesChat oyente) {
+        if (clave == null || oyente == null) return;
+        String k = normalizar(clave);
+        Map<String, OyenteMensajesChat[]> copia = new HashMap<>(porClave);
+        OyenteMensajesChat[] actuales = copia.getOrDefault(k, NINGUNO);
+        if (contiene(actuales, oyente)) return;
+        copia.put(k, agregar(actuales, oyente));
+        porClave = copia;
+        todos.addIfAbsent(oyente);
+    }
+
+    public synchronized void suscribirTodos(OyenteMensajesChat oyente) {
+        if (oyente == null || contiene(comodines, oyente)) return;
+        comodines = agregar(comodines, oyente);
+        todos.addIfAbsent(oyente);
+    }
+
+    public synchronized void desuscribir(OyenteMensajesChat oyente) {
+        if (oyente == null) return;
+        Map<String, OyenteMensajesChat[]> copia = new HashMap<>();
+        for (Map.Entry<String, OyenteMensajesChat[]> e : porClave.entrySet()) {
+            OyenteMensajesChat[] restantes = quitar(e.getValue(), oyente);
+            if (restantes.length > 0) copia.put(e.getKey(), restantes);
+        }
+        porClave = copia;
+        comodines = quitar(comodines, oyente);
+        todos.remove(oyente);
+    }
+
+    @Override
+    public void alRecibirMensaje(String mensaje) {
+        if (mensaje != null) alRecibirTrama(TramaChat.desdeTexto(mensaje));
+    }
+
+    @Override
+    public void alRecibirTrama(TramaChat trama) {
+        Map<String, OyenteMensajesChat[]> mapa = porClave;
+        if (!mapa.isEmpty()) {
+            String comando = trama.comando();
+            if (comando != null) {
+                entregar(mapa.get(comando), trama);
+                if (COMANDO_EVENTO.equals(comando)) {
+                    String tipo = trama.tipoEvento();
+                    if (tipo != null) entregar(mapa.get(claveEvento(tipo)), trama);
+                }
+            }
+        }
+        entregar(comodines, trama);
+    }
+
+    @Override
+    public void alCerrar() {
+        for (OyenteMensajesChat o : todos) {
+            try {
+                o.alCerrar();
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void alError(Exception error) {
+        for (OyenteMensajesChat o : todos) {
+            try {
+                o.alError(error);
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void alPerderConexion() {
+        for (OyenteMensajesChat o : todos) {
+            try {
+                o.alPerderConexion();
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void alReintentarConexion(int intento, long esperaMs) {
+        for (OyenteMensajesChat o : todos) {
+            try {
+                o.alReintentarConexion(intento, esperaMs);
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void alRestablecerConexion() {
+        for (OyenteMensajesChat o : todos) {
+            try {
+                o.alRestablecerConexion();
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void entregar(OyenteMensajesChat[] oyentes, TramaChat trama) {
+        if (oyentes == null) return;
+        for (OyenteMensajesChat o : oyentes) {
+            try {
+                o.alRecibirTrama(trama);
+            } catch (RuntimeException e) {
+                System.out.println("[EnrutadorMensajesChat] Error en oyente: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String normalizar(String clave) {
+        return clave.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean contiene(OyenteMensajesChat[] oyentes, OyenteMensajesChat oyente) {
+        for (OyenteMensajesChat o : oyentes) if (o == oyente) return true;
+        return false;
+    }
+
+    private static OyenteMensajesChat[] agregar(OyenteMensajesChat[] oyentes, OyenteMensajesChat oyente) {
+        OyenteMensajesChat[] nuevos = Arrays.copyOf(oyentes, oyentes.length + 1);
+        nuevos[oyentes.length] = oyente;
+        return nuevos;
+    }
+
+    private static OyenteMensajesChat[] quitar(OyenteMensajesChat[] oyentes, OyenteMensajesChat oyente) {
+        if (!contiene(oyentes, oyente)) return oyentes;
+        OyenteMensajesChat[] restantes = new OyenteMensajesChat[oyentes.length - 1];
+        int i = 0;
+        for (OyenteMensajesChat o : oyentes) if (o != oyente) restantes[i++] = o;
+        return restantes;
+    }
+}
@@ -0,0 +1,142 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Línea saliente ya codificada en UTF-8 (con su salto de línea) y el futuro que se
+ * completa cuando sus bytes terminan de escribirse en el socket. Una línea con
+ * adjunto Base64 se entrega por bloques que se generan a medida que se escriben; una
+ * trama binaria masiva, por segmentos (ver ColaEnvios).
+ */
+final class EnvioPendiente {
+    // Segmentos de una trama masiva entre los que se puede intercalar otra
+    private static final int TAM_SEGMENTO_MASIVO = 64 * 1024;
+
+    final CompletableFuture<Void> futuro = new CompletableFuture<>();
+    final PrioridadEnvio prioridad;
+    // Null si la línea no empieza por {"command":"X"
+    final String comando;
+    private final LineaBase64 partes;
+    private ByteBuffer actual;
+    private ByteBuffer[] segmentos;
+    private int siguienteSegmento;
+    private boolean binario;
+    private boolean intercalar;
+    private boolean empezado;
+
+    private EnvioPendiente(ByteBuffer datos, LineaBase64 partes, String comando, PrioridadEnvio prioridad) {
+        this.actual = datos;
+        this.partes = partes;
+        this.comando = comando;
+        this.prioridad = prioridad;
+    }
+
+    static EnvioPendiente de(ByteBuffer linea) {
+        String comando = PrioridadEnvio.comando(linea);
+        return new EnvioPendiente(linea, null, comando, PrioridadEnvio.deComando(comando));
+    }
+
+    static EnvioPendiente de(LineaBase64 linea) {
+        return new EnvioPendiente(null, linea, linea.comando(), PrioridadEnvio.MASIVA);
+    }
+
+    static ByteBuffer codificar(String mensaje) {
+        return StandardCharsets.UTF_8.encode(mensaje + '\n');
+    }
+
+    /**
+     * Cambia la línea JSON por la trama binaria equivalente (ver CodecBinario). Lo que
+     * no es JSON válido sale tal cual. La línea original no se modifica. Con
+     * compresión, la trama sale comprimida si supera el umbral (ver CompresionTramas).
+     * Con intercalar, una trama masiva se entrega segmento a segmento y las demás se
+     * pueden intercalar entre ellos.
+     */
+    void pasarABinario(CompresionTramas compresion, boolean intercalar) {
+        this.intercalar = intercalar;
+        if (partes != null) {
+            partes.pasarABinario(compresion);
+            binario = true;
+            return;
+        }
+        boolean masiva = intercalar && prioridad == PrioridadEnvio.MASIVA;
+        ByteBuffer binaria = CodecBinario.desdeJson(actual, compresion,
+                masiva ? TAM_SEGMENTO_MASIVO : CodecBinario.MAX_SEGMENTO);
+        if (binaria == null) return;
+        binario = true;
+        if (masiva) {
+            segmentos = CodecBinario.segmentos(binaria);
+            actual = null;
+        } else {
+            actual = binaria;
+        }
+    }
+
+    /** True si los bloques reutilizan su arreglo: cada uno vale hasta pedir el siguiente. */
+    boolean porPartes() {
+        return partes != null;
+    }
+
+    /** True si, ya empezada, otra trama puede ir entre sus bloques. */
+    boolean admiteIntercalar() {
+        return intercalar && binario && prioridad == PrioridadEnvio.MASIVA;
+    }
+
+    /** True si puede salir entera entre dos bloques de una trama masiva empezada. */
+    boolean intercalable() {
+        return intercalar && binario && partes == null && prioridad != PrioridadEnvio.MASIVA;
+    }
+
+    /** Marca la trama como intercalada (ver CodecBinario); solo antes de empezar. */
+    void marcarIntercalada() {
+        CodecBinario.marcarIntercalada(actual);
+    }
+
+    /**
+     * Siguiente bloque a escribir (cada llamada avanza); null cuando ya se entregaron
+     * todos. IOException si falla la lectura del adjunto con la trama ya empezada.
+     */
+    ByteBuffer bloque() throws IOException {
+        ByteBuffer b;
+        do {
+            if (actual != null) {
+                b = actual;
+                actual = null;
+            } else if (segmentos != null && siguienteSegmento < segmentos.length) {
+                b = segmentos[siguienteSegmento++];
+            } else if (partes != null) {
+                b = partes.siguiente();
+                if (b == null) return null;
+            } else {
+                return null;
+            }
+        } while (!b.hasRemaining());
+        empezado = true;
+        return b;
+    }
+
+    /** True si ya se entregó el último bloque; con partes solo se sabe al pedir otro. */
+    boolean entregado() {
+        return empezado && actual == null && partes == null
+                && (segmentos == null || siguienteSegmento == segmentos.length);
+    }
+
+    void completar() {
+        futuro.complete(null);
+    }
+
+    void fallar(IOException causa) {
+        if (partes != null) partes.cerrar();
+        futuro.completeExceptionally(causa);
+    }
+
+    static void fallarTodos(Queue<EnvioPendiente> envios, IOException causa) {
+        EnvioPendiente e;
+        while ((e = envios.poll()) != null) {
+            e.fallar(causa);
+        }
+    }
+}
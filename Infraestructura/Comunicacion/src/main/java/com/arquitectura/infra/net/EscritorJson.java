@@ -0,0 +1,209 @@
+package com.arquitectura.infra.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Escribe JSON directamente en UTF-8 sobre un arreglo de bytes que luego se entrega
+ * tal cual al transporte. Escapa cada cadena en una sola pasada, sin String ni
+ * StringBuilder intermedios, y reserva el tamaño estimado de antemano para que un
+ * payload grande (audio, foto) no se copie al crecer.
+ */
+final class EscritorJson {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private byte[] buf;
+    private int pos;
+
+    EscritorJson(int capacidadInicial) {
+        this.buf = new byte[Math.max(64, capacidadInicial)];
+    }
+
+    /** Tamaño aproximado en bytes de un valor serializado (cota para reservar). */
+    static int estimarTamano(Object v) {
+        if (v == null) return 4;
+        if (v instanceof CharSequence s) return s.length() + 8;
+        if (v instanceof Map<?, ?> m) {
+            int total = 2;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                total += estimarTamano(String.valueOf(e.getKey())) + estimarTamano(e.getValue()) + 2;
+            }
+            return total;
+        }
+        if (v instanceof Iterable<?> it) {
+            int total = 2;
+            for (Object o : it) total += estimarTamano(o) + 1;
+            return total;
+        }
+        return 24;
+    }
+
+    void bytes(byte[] b) {
+        asegurar(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    void bytes(byte[] b, int desde, int largo) {
+        asegurar(largo);
+        System.arraycopy(b, desde, buf, pos, largo);
+        pos += largo;
+    }
+
+    void ascii(char c) {
+        asegurar(1);
+        buf[pos++] = (byte) c;
+    }
+
+    void valor(Object v) {
+        if (v == null) {
+            bytes(NULL);
+        } else if (v instanceof String s) {
+            cadena(s);
+        } else if (v instanceof Number || v instanceof Boolean) {
+            String t = v.toString();
+            asegurar(t.length());
+            for (int i = 0; i < t.length(); i++) buf[pos++] = (byte) t.charAt(i);
+        } else if (v instanceof Map<?, ?> m) {
+            objeto(m);
+        } else if (v instanceof Iterable<?> it) {
+            arreglo(it);
+        } else {
+            cadena(String.valueOf(v));
+        }
+    }
+
+    void objeto(Map<?, ?> mapa) {
+        ascii('{');
+        miembros(mapa);
+        ascii('}');
+    }
+
+    /** Pares clave:valor del mapa sin las llaves; devuelve si escribió alguno. */
+    boolean miembros(Map<?, ?> mapa) {
+        boolean primero = true;
+        for (Map.Entry<?, ?> e : mapa.entrySet()) {
+            if (!primero) ascii(',');
+            primero = false;
+            cadena(String.valueOf(e.getKey()));
+            ascii(':');
+            valor(e.getValue());
+        }
+        return !primero;
+    }
+
+    void arreglo(Iterable<?> valores) {
+        ascii('[');
+        boolean primero = true;
+        for (Object v : valores) {
+            if (!primero) ascii(',');
+            primero = false;
+            valor(v);
+        }
+        ascii(']');
+    }
+
+    /** Cadena entre comillas, escapada y codificada a UTF-8 en una pasada. */
+    void cadena(String s) {
+        int n = s.length();
+        asegurar(n + 2);
+        buf[pos++] = '"';
+        for (int i = 0; i < n; i++) {
+            if (buf.length - pos < 7) asegurar(7 + (n - i));
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[pos++] = (byte) c;
+                } else {
+                    escapar(c);
+                }
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        asegurar(1);
+        buf[pos++] = '"';
+    }
+
+    /** Cadena entre comillas a partir de bytes que ya son UTF-8: solo se escapan los ASCII. */
+    void cadenaUtf8(ByteBuffer origen, int desde, int largo) {
+        asegurar(largo + 2);
+        buf[pos++] = '"';
+        for (int i = 0; i < largo; i++) {
+            if (buf.length - pos < 7) asegurar(7 + (largo - i));
+            byte b = origen.get(desde + i);
+            if ((b & 0x80) != 0 || (b >= 0x20 && b != '"' && b != '\\')) {
+                buf[pos++] = b;
+            } else {
+                escapar((char) b);
+            }
+        }
+        asegurar(1);
+        buf[pos++] = '"';
+    }
+
+    private void escapar(char c) {
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"' -> buf[pos++] = '"';
+            case '\\' -> buf[pos++] = '\\';
+            case '\n' -> buf[pos++] = 'n';
+            case '\r' -> buf[pos++] = 'r';
+            case '\t' -> buf[pos++] = 't';
+            case '\b' -> buf[pos++] = 'b';
+            case '\f' -> buf[pos++] = 'f';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[(c >> 4) & 0xF];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /** Bytes escritos hasta ahora, sin copiarlos. */
+    ByteBuffer comoBuffer() {
+        return ByteBuffer.wrap(buf, 0, pos);
+    }
+
+    /** Agrega el salto de línea final y entrega los bytes sin copiarlos. */
+    ByteBuffer terminarLinea() {
+        ascii('\n');
+        return comoBuffer();
+    }
+
+    /** Descarta lo escrito conservando el arreglo. */
+    void reiniciar() {
+        pos = 0;
+    }
+
+    int longitud() {
+        return pos;
+    }
+
+    byte[] arregloInterno() {
+        return buf;
+    }
+
+    private void asegurar(int adicional) {
+        if (pos + adicional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + adicional));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.json.VistaJson;
+
+/**
+ * Trama entrante ya leída como JSON. La crea TramaChat.evento() la primera vez que
+ * un oyente la pide y todos los demás reciben la misma instancia, así que cada
+ * trama se analiza una sola vez aunque la procesen el observador, el repositorio y
+ * las vistas, en hilos distintos. Es inmutable.
+ *
+ * Las vistas leen directamente los bytes de la trama (ver VistaJson): los campos
+ * de audio o foto en Base64 no se convierten en String salvo que alguien los pida.
+ */
+public final class EventoChat {
+    private static final String COMANDO_EVENTO = "EVENT";
+
+    private final TramaChat trama;
+    private final VistaJson documento;
+    private final VistaJson payload;
+    private final VistaJson mensaje;
+    private final String comando;
+    private final String tipo;
+
+    EventoChat(TramaChat trama, VistaJson documento) {
+        this.trama = trama;
+        this.documento = documento;
+        this.comando = documento.texto("command");
+        VistaJson p = documento.objeto("payload");
+        this.payload = p != null ? p : documento;
+        this.tipo = p != null ? p.texto("tipo", "evento") : null;
+        // En un EVENT el mensaje puede venir envuelto en "mensaje", "message" o "payload"
+        VistaJson interno = COMANDO_EVENTO.equals(comando) ? payload.objeto("mensaje", "message", "payload") : null;
+        this.mensaje = interno != null ? interno : payload;
+    }
+
+    /** Valor de "command" en la raíz, o null. */
+    public String comando() {
+        return comando;
+    }
+
+    /** El "tipo" (o "evento") del payload, como TramaChat.tipoEvento. */
+    public String tipo() {
+        return tipo;
+    }
+
+    public boolean esComando(String otro) {
+        return otro.equals(comando);
+    }
+
+    /** El objeto raíz de la trama. */
+    public VistaJson documento() {
+        return documento;
+    }
+
+    /** El objeto "payload", o la raíz si la trama no lo trae. */
+    public VistaJson payload() {
+        return payload;
+    }
+
+    /** El mensaje de chat que trae la trama: el envuelto en un EVENT o el payload. */
+    public VistaJson mensaje() {
+        return mensaje;
+    }
+
+    /** La trama de la que salió, para registrar su texto. */
+    public TramaChat trama() {
+        return trama;
+    }
+
+    @Override
+    public String toString() {
+        return "EventoChat[" + comando + (tipo != null ? " " + tipo : "") + "]";
+    }
+}
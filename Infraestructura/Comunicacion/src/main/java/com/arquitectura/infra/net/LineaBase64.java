@@ -0,0 +1,138 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Línea de protocolo cuyo último campo del payload es un binario en Base64 que se
+ * codifica mientras se escribe: cabecera JSON, bloques Base64 leídos del flujo y
+ * cierre "}}\n". Se reutilizan siempre los mismos dos arreglos, así que la memoria
+ * por envío no depende del tamaño del archivo.
+ *
+ * Con el codec binario el mismo envío sale como trama binaria con el campo en
+ * bytes por partes: los bloques van crudos, sin pasar por Base64, y con compresión
+ * acordada cada segmento sale del mismo flujo deflate.
+ *
+ * La línea cierra el flujo al terminar. Si la lectura falla a mitad, siguiente lanza
+ * el error sin escribir el cierre: la trama queda incompleta y el transporte cierra
+ * la conexión, así el servidor nunca recibe un adjunto truncado como si fuera válido.
+ */
+public final class LineaBase64 {
+    // Múltiplo de 3 para que solo el último bloque lleve relleno
+    private static final int TAM_BLOQUE = 48 * 1024;
+    private static final byte[] COLA = "\"}}\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer cabecera;
+    private final InputStream entrada;
+    private final String comando;
+    private final Map<String, Object> payload;
+    private final String campo;
+    private final Base64.Encoder codificador = Base64.getEncoder();
+    private byte[] leidos;
+    private byte[] codificados;
+    private int estado; // 0 cabecera, 1 datos, 2 cola, 3 fin
+    private boolean binario;
+    private CompresionTramas.FlujoComprimido flujo;
+    private long bytesLeidos;
+
+    LineaBase64(ByteBuffer cabecera, InputStream entrada, String comando, Map<String, Object> payload, String campo) {
+        this.cabecera = cabecera;
+        this.entrada = entrada;
+        this.comando = comando;
+        this.payload = payload;
+        this.campo = campo;
+    }
+
+    String comando() {
+        return comando;
+    }
+
+    /** Bytes del archivo consumidos hasta ahora. */
+    public long obtenerBytesLeidos() {
+        return bytesLeidos;
+    }
+
+    /** Pasa al codec binario, comprimido si compresion no es null; solo antes de empezar a escribir. */
+    void pasarABinario(CompresionTramas compresion) {
+        if (estado != 0) return;
+        binario = true;
+        if (compresion != null) flujo = compresion.abrirFlujo();
+    }
+
+    /** Siguiente bloque a escribir o null cuando la línea terminó; IOException si falla la lectura. */
+    ByteBuffer siguiente() throws IOException {
+        if (binario) return siguienteBinario();
+        switch (estado) {
+            case 0:
+                estado = 1;
+                return cabecera;
+            case 1:
+                ByteBuffer bloque = leerBloque();
+                if (bloque != null) return bloque;
+                estado = 2;
+                return ByteBuffer.wrap(COLA);
+            default:
+                estado = 3;
+                cerrar();
+                return null;
+        }
+    }
+
+    private ByteBuffer siguienteBinario() throws IOException {
+        switch (estado) {
+            case 0:
+                estado = 1;
+                return CodecBinario.cabeceraConBytes(comando, payload, campo, flujo);
+            case 1:
+                ByteBuffer bloque = leerBloqueCrudo();
+                if (bloque != null) return bloque;
+                estado = 2;
+                return CodecBinario.cierreBytesPorPartes(flujo);
+            default:
+                estado = 3;
+                cerrar();
+                return null;
+        }
+    }
+
+    // Cada bloque leído va en su propio segmento; el prefijo se escribe delante, en el mismo arreglo
+    private ByteBuffer leerBloqueCrudo() throws IOException {
+        if (leidos == null) leidos = new byte[CodecBinario.PREFIJO_PARTE + TAM_BLOQUE];
+        int n = entrada.readNBytes(leidos, CodecBinario.PREFIJO_PARTE, TAM_BLOQUE);
+        if (n <= 0) return null;
+        bytesLeidos += n;
+        int inicio = CodecBinario.prefijarParte(leidos, CodecBinario.PREFIJO_PARTE, n);
+        if (flujo != null) {
+            int cuerpo = inicio + CodecBinario.CABECERA;
+            return flujo.segmento(leidos, cuerpo, CodecBinario.PREFIJO_PARTE + n - cuerpo, false);
+        }
+        return ByteBuffer.wrap(leidos, inicio, CodecBinario.PREFIJO_PARTE + n - inicio);
+    }
+
+    private ByteBuffer leerBloque() throws IOException {
+        if (leidos == null) {
+            leidos = new byte[TAM_BLOQUE];
+            codificados = new byte[TAM_BLOQUE / 3 * 4];
+        }
+        int n = entrada.readNBytes(leidos, 0, TAM_BLOQUE);
+        if (n <= 0) return null;
+        bytesLeidos += n;
+        int escritos = n == TAM_BLOQUE
+                ? codificador.encode(leidos, codificados)
+                : codificador.encode(Arrays.copyOf(leidos, n), codificados);
+        return ByteBuffer.wrap(codificados, 0, escritos);
+    }
+
+    void cerrar() {
+        if (flujo != null) flujo.cerrar();
+        try {
+            entrada.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.arquitectura.infra.net;
+
+/**
+ * Instantánea de la compresión de tramas (ver CompresionTramas), sumada sobre todas
+ * las conexiones. La relación y el tiempo sirven para ajustar compression.threshold.bytes.
+ */
+public final class MetricasCompresion {
+    private final long tramasComprimidas;
+    private final long tramasSinGanancia;
+    private final long bytesOriginales;
+    private final long bytesComprimidos;
+    private final long nanosCompresion;
+    private final long tramasDescomprimidas;
+    private final long bytesRecibidos;
+    private final long bytesDescomprimidos;
+    private final long nanosDescompresion;
+
+    MetricasCompresion(long tramasComprimidas, long tramasSinGanancia, long bytesOriginales, long bytesComprimidos,
+                       long nanosCompresion, long tramasDescomprimidas, long bytesRecibidos, long bytesDescomprimidos,
+                       long nanosDescompresion) {
+        this.tramasComprimidas = tramasComprimidas;
+        this.tramasSinGanancia = tramasSinGanancia;
+        this.bytesOriginales = bytesOriginales;
+        this.bytesComprimidos = bytesComprimidos;
+        this.nanosCompresion = nanosCompresion;
+        this.tramasDescomprimidas = tramasDescomprimidas;
+        this.bytesRecibidos = bytesRecibidos;
+        this.bytesDescomprimidos = bytesDescomprimidos;
+        this.nanosDescompresion = nanosDescompresion;
+    }
+
+    public long obtenerTramasComprimidas() {
+        return tramasComprimidas;
+    }
+
+    /** Tramas sobre el umbral que no ocupaban menos comprimidas y salieron tal cual. */
+    public long obtenerTramasSinGanancia() {
+        return tramasSinGanancia;
+    }
+
+    public long obtenerBytesOriginales() {
+        return bytesOriginales;
+    }
+
+    public long obtenerBytesComprimidos() {
+        return bytesComprimidos;
+    }
+
+    /** Comprimido sobre original de lo enviado comprimido; 1 si no se comprimió nada. */
+    public double obtenerRelacionEnvio() {
+        return bytesOriginales == 0 ? 1.0 : (double) bytesComprimidos / bytesOriginales;
+    }
+
+    /** CPU de compresión, incluidas las tramas sin ganancia. */
+    public long obtenerNanosCompresion() {
+        return nanosCompresion;
+    }
+
+    public long obtenerTramasDescomprimidas() {
+        return tramasDescomprimidas;
+    }
+
+    public long obtenerBytesRecibidos() {
+        return bytesRecibidos;
+    }
+
+    public long obtenerBytesDescomprimidos() {
+        return bytesDescomprimidos;
+    }
+
+    public double obtenerRelacionRecepcion() {
+        return bytesDescomprimidos == 0 ? 1.0 : (double) bytesRecibidos / bytesDescomprimidos;
+    }
+
+    public long obtenerNanosDescompresion() {
+        return nanosDescompresion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MetricasCompresion{enviadas=%d, sinGanancia=%d, original=%d, comprimido=%d, relacion=%.3f, "
+                        + "compresionMs=%.1f, recibidas=%d, recibido=%d, descomprimido=%d, relacionRecepcion=%.3f, "
+                        + "descompresionMs=%.1f}",
+                tramasComprimidas, tramasSinGanancia, bytesOriginales, bytesComprimidos, obtenerRelacionEnvio(),
+                nanosCompresion / 1e6, tramasDescomprimidas, bytesRecibidos, bytesDescomprimidos,
+                obtenerRelacionRecepcion(), nanosDescompresion / 1e6);
+    }
+}
@@ -0,0 +1,59 @@
+package com.arquitectura.infra.net;
+
+/**
+ * Instantánea de la cola entre el lector del socket y los oyentes.
+ */
+public final class MetricasDespacho {
+    private final int capacidad;
+    private final long profundidad;
+    private final long profundidadMaxima;
+    private final long publicados;
+    private final long despachados;
+    private final long esperasProductor;
+
+    MetricasDespacho(int capacidad, long profundidad, long profundidadMaxima, long publicados, long despachados, long esperasProductor) {
+        this.capacidad = capacidad;
+        this.profundidad = profundidad;
+        this.profundidadMaxima = profundidadMaxima;
+        this.publicados = publicados;
+        this.despachados = despachados;
+        this.esperasProductor = esperasProductor;
+    }
+
+    static MetricasDespacho vacias() {
+        return new MetricasDespacho(0, 0, 0, 0, 0, 0);
+    }
+
+    public int obtenerCapacidad() {
+        return capacidad;
+    }
+
+    /** Tramas publicadas por el lector que aún no se entregaron a los oyentes. */
+    public long obtenerProfundidad() {
+        return profundidad;
+    }
+
+    public long obtenerProfundidadMaxima() {
+        return profundidadMaxima;
+    }
+
+    public long obtenerPublicados() {
+        return publicados;
+    }
+
+    public long obtenerDespachados() {
+        return despachados;
+    }
+
+    /** Veces que el lector tuvo que esperar porque el anillo estaba lleno. */
+    public long obtenerEsperasProductor() {
+        return esperasProductor;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricasDespacho{capacidad=" + capacidad + ", profundidad=" + profundidad
+                + ", max=" + profundidadMaxima + ", publicados=" + publicados
+                + ", despachados=" + despachados + ", esperasProductor=" + esperasProductor + "}";
+    }
+}
@@ -0,0 +1,44 @@
+package com.arquitectura.infra.net;
+
+/**
+ * Instantánea del PoolBuffers compartido.
+ */
+public final class MetricasPoolBuffers {
+    private final long aciertos;
+    private final long fallos;
+    private final long bytesPrestados;
+    private final long bytesRetenidos;
+
+    MetricasPoolBuffers(long aciertos, long fallos, long bytesPrestados, long bytesRetenidos) {
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.bytesPrestados = bytesPrestados;
+        this.bytesRetenidos = bytesRetenidos;
+    }
+
+    /** Pedidos atendidos con un buffer reutilizado. */
+    public long obtenerAciertos() {
+        return aciertos;
+    }
+
+    /** Pedidos que tuvieron que reservar memoria nueva. */
+    public long obtenerFallos() {
+        return fallos;
+    }
+
+    /** Capacidad de los buffers entregados que aún no se devolvieron. */
+    public long obtenerBytesPrestados() {
+        return bytesPrestados;
+    }
+
+    /** Capacidad guardada en el pool lista para reutilizar. */
+    public long obtenerBytesRetenidos() {
+        return bytesRetenidos;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricasPoolBuffers{aciertos=" + aciertos + ", fallos=" + fallos
+                + ", prestados=" + bytesPrestados + ", retenidos=" + bytesRetenidos + "}";
+    }
+}
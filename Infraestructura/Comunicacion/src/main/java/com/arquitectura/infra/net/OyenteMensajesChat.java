@@ -3,7 +3,26 @@ package com.arquitectura.infra.net;
 public interface OyenteMensajesChat {
     void alRecibirMensaje(String mensaje);
 
+    /**
+     * Recibe la trama sin decodificar. Por defecto la convierte a texto y delega en
+     * alRecibirMensaje; los oyentes que solo inspeccionan bytes pueden sobrescribirlo.
+     */
+    default void alRecibirTrama(TramaChat trama) {
+        alRecibirMensaje(trama.comoTexto());
+    }
+
     default void alCerrar() {}
 
+    /**
+     * La conexión se perdió y el supervisor va a intentar recuperarla (solo con
+     * reconexión automática). Si no lo logra, después llega alCerrar.
+     */
+    default void alPerderConexion() {}
+
+    default void alReintentarConexion(int intento, long esperaMs) {}
+
+    /** La conexión se recuperó y la sesión se restableció. */
+    default void alRestablecerConexion() {}
+
     default void alError(Exception e) {}
 }
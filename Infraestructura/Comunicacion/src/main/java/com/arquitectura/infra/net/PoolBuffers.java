@@ -0,0 +1,86 @@
+package com.arquitectura.infra.net;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers reutilizables para la E/S del socket y el armado de tramas. Se reparten
+ * por clases de tamaño en potencias de dos (4 KiB a 8 MiB), directos o en heap por
+ * separado; pedir una capacidad devuelve un buffer de la clase que la cubre.
+ *
+ * Lo devuelto se guarda hasta un total de MAX_RETENIDO_BYTES; el resto se deja al
+ * GC. Con las conexiones estables las métricas deben mostrar solo aciertos.
+ */
+public final class PoolBuffers {
+    private static final int CLASE_MINIMA = 12; // 4 KiB
+    private static final int CLASE_MAXIMA = 23; // 8 MiB
+    private static final long MAX_RETENIDO_BYTES = 32L * 1024 * 1024;
+    private static final PoolBuffers COMPARTIDO = new PoolBuffers();
+
+    private final Queue<ByteBuffer>[] directos = crearClases();
+    private final Queue<ByteBuffer>[] enHeap = crearClases();
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final AtomicLong bytesPrestados = new AtomicLong();
+    private final AtomicLong bytesRetenidos = new AtomicLong();
+
+    public static PoolBuffers compartido() {
+        return COMPARTIDO;
+    }
+
+    public ByteBuffer tomarDirecto(int capacidadMinima) {
+        return tomar(directos, capacidadMinima, true);
+    }
+
+    /** Buffer con arreglo accesible, para las API de flujos (InputStream/OutputStream). */
+    public ByteBuffer tomarEnHeap(int capacidadMinima) {
+        return tomar(enHeap, capacidadMinima, false);
+    }
+
+    /** Devuelve un buffer obtenido de este pool; no debe volver a usarse después. */
+    public void devolver(ByteBuffer buffer) {
+        if (buffer == null) return;
+        int capacidad = buffer.capacity();
+        bytesPrestados.addAndGet(-capacidad);
+        int clase = Integer.numberOfTrailingZeros(capacidad);
+        if (Integer.bitCount(capacidad) != 1 || clase < CLASE_MINIMA || clase > CLASE_MAXIMA) return;
+        if (bytesRetenidos.addAndGet(capacidad) > MAX_RETENIDO_BYTES) {
+            bytesRetenidos.addAndGet(-capacidad);
+            return;
+        }
+        buffer.clear();
+        (buffer.isDirect() ? directos : enHeap)[clase - CLASE_MINIMA].add(buffer);
+    }
+
+    public MetricasPoolBuffers obtenerMetricas() {
+        return new MetricasPoolBuffers(aciertos.sum(), fallos.sum(), bytesPrestados.get(), bytesRetenidos.get());
+    }
+
+    private ByteBuffer tomar(Queue<ByteBuffer>[] clases, int capacidadMinima, boolean directo) {
+        int clase = Math.max(CLASE_MINIMA, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacidadMinima) - 1));
+        ByteBuffer b = null;
+        if (clase <= CLASE_MAXIMA) {
+            b = clases[clase - CLASE_MINIMA].poll();
+        }
+        if (b != null) {
+            aciertos.increment();
+            bytesRetenidos.addAndGet(-b.capacity());
+        } else {
+            fallos.increment();
+            int capacidad = clase <= CLASE_MAXIMA ? 1 << clase : capacidadMinima;
+            b = directo ? ByteBuffer.allocateDirect(capacidad) : ByteBuffer.allocate(capacidad);
+        }
+        bytesPrestados.addAndGet(b.capacity());
+        return b;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Queue<ByteBuffer>[] crearClases() {
+        Queue<ByteBuffer>[] clases = new Queue[CLASE_MAXIMA - CLASE_MINIMA + 1];
+        for (int i = 0; i < clases.length; i++) clases[i] = new ConcurrentLinkedQueue<>();
+        return clases;
+    }
+}
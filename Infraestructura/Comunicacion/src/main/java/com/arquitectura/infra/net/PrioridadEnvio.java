@@ -0,0 +1,59 @@
+package com.arquitectura.infra.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Clase de un envío en la cola de salida (ver ColaEnvios), en orden de prioridad.
+ * Se decide por el comando, no por el tamaño, para que los envíos de un mismo
+ * comando nunca se adelanten entre sí. CIERRE no es una prioridad sino una barrera.
+ */
+enum PrioridadEnvio {
+    /** HELLO, PING, LOGIN: pequeños y de los que depende la conexión. */
+    CONTROL,
+    /** Mensajes, listados y el resto de comandos. */
+    INTERACTIVA,
+    /** Subidas de audio y REGISTER (lleva la foto). */
+    MASIVA,
+    /**
+     * LOGOUT y CLOSE_CONN: salen cuando ya se escribió todo lo encolado antes que
+     * ellos, y lo encolado después espera a que salgan, para que el servidor no
+     * cierre la sesión con mensajes o subidas todavía en la cola.
+     */
+    CIERRE;
+
+    private static final byte[] PREFIJO = "{\"command\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_COMANDO = 48;
+
+    /** Según el comando de la línea (ver comando); INTERACTIVA si no se reconoce. */
+    static PrioridadEnvio deComando(String comando) {
+        if (comando == null) return INTERACTIVA;
+        return switch (comando) {
+            case "HELLO", "PING", "LOGIN" -> CONTROL;
+            case "LOGOUT", "CLOSE_CONN" -> CIERRE;
+            case "REGISTER", "UPLOAD_AUDIO", "UPLOAD_AUDIO_CHUNK", "UPLOAD_AUDIO_COMMIT" -> MASIVA;
+            default -> INTERACTIVA;
+        };
+    }
+
+    // Las líneas de ProtocoloChat empiezan siempre por {"command":"X"; no mueve la posición
+    static String comando(ByteBuffer linea) {
+        int p = linea.position();
+        int fin = Math.min(linea.limit(), p + PREFIJO.length + MAX_COMANDO);
+        if (fin - p <= PREFIJO.length) return null;
+        for (int i = 0; i < PREFIJO.length; i++) {
+            if (linea.get(p + i) != PREFIJO[i]) return null;
+        }
+        int inicio = p + PREFIJO.length;
+        for (int i = inicio; i < fin; i++) {
+            byte b = linea.get(i);
+            if (b == '"') {
+                byte[] c = new byte[i - inicio];
+                linea.get(inicio, c);
+                return new String(c, StandardCharsets.US_ASCII);
+            }
+            if (b == '\\' || b < 0x20) return null;
+        }
+        return null;
+    }
+}
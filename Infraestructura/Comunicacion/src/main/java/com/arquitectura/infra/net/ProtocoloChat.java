@@ -1,7 +1,11 @@
 package com.arquitectura.infra.net;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utilidades mínimas para construir mensajes JSON por línea
@@ -9,63 +13,99 @@ import java.util.HashMap;
  * Pertenece a Infraestructura porque acopla formato (JSON) y transporte.
  */
 public final class ProtocoloChat {
+    private static final byte[] CLAVE_ID = "\"requestId\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLAVE_PAYLOAD = "\"payload\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    // Prefijo {"command":"X", ya codificado por comando
+    private static final Map<String, byte[]> PREFIJOS = new ConcurrentHashMap<>();
+
+    static {
+        for (String c : new String[]{"REGISTER", "LOGIN", "LOGOUT", "SEND_USER", "SEND_CHANNEL", "UPLOAD_AUDIO",
+                "CREATE_CHANNEL", "INVITE", "ACCEPT", "REJECT", "LIST_USERS", "LIST_CHANNELS", "LIST_CONNECTED",
+                "LIST_RECEIVED_INVITATIONS", "LIST_SENT_INVITATIONS", "PING", "BROADCAST", "CLOSE_CONN",
+                "UPLOAD_AUDIO_CHUNK", "UPLOAD_AUDIO_COMMIT", "HELLO"}) {
+            prefijo(c);
+        }
+    }
+
     private ProtocoloChat() {}
 
     public static String construir(String comando, Map<String, Object> payload) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('{');
-        sb.append("\"command\":\"").append(esc(comando)).append("\"");
-        sb.append(',');
-        sb.append("\"payload\":");
-        if (payload == null) {
-            sb.append("null");
-        } else {
-            sb.append(obj(payload));
-        }
-        sb.append('}');
-        return sb.toString();
+        return construir(comando, payload, null);
     }
 
-    public static Map<String, Object> mapa() { return new HashMap<>(); }
+    // Con requestId el servidor puede devolverlo en la respuesta para correlacionarla
+    public static String construir(String comando, Map<String, Object> payload, String idSolicitud) {
+        EscritorJson w = escribir(comando, payload, idSolicitud);
+        return new String(w.arregloInterno(), 0, w.longitud(), StandardCharsets.UTF_8);
+    }
 
-    private static String obj(Map<String, Object> map) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('{');
-        boolean first = true;
-        for (Map.Entry<String, Object> e : map.entrySet()) {
-            if (!first) sb.append(',');
-            first = false;
-            sb.append('"').append(esc(e.getKey())).append('"').append(':');
-            sb.append(val(e.getValue()));
-        }
-        sb.append('}');
-        return sb.toString();
+    /**
+     * Igual que construir, pero deja la línea (con su salto final) codificada en
+     * UTF-8 lista para el transporte, sin pasar por String.
+     */
+    public static ByteBuffer codificar(String comando, Map<String, Object> payload) {
+        return codificar(comando, payload, null);
     }
 
-    private static String arr(Iterable<?> it) {
-        StringBuilder sb = new StringBuilder("[");
-        boolean first = true;
-        for (Object v : it) {
-            if (!first) sb.append(',');
-            first = false;
-            sb.append(val(v));
+    public static ByteBuffer codificar(String comando, Map<String, Object> payload, String idSolicitud) {
+        return escribir(comando, payload, idSolicitud).terminarLinea();
+    }
+
+    /**
+     * Línea cuyo payload termina con el campo campoBase64 leído de datos y codificado
+     * en Base64 por bloques mientras se envía; el binario nunca se arma como String.
+     * La línea cierra el flujo cuando termina de enviarse.
+     */
+    public static LineaBase64 codificarConBase64(String comando, Map<String, Object> payload,
+                                                 String campoBase64, InputStream datos) {
+        EscritorJson w = new EscritorJson(96 + campoBase64.length()
+                + (payload != null ? EscritorJson.estimarTamano(payload) : 0));
+        escribirInicio(w, comando, null);
+        w.ascii('{');
+        if (payload != null && w.miembros(payload)) w.ascii(',');
+        w.cadena(campoBase64);
+        w.ascii(':');
+        w.ascii('"');
+        return new LineaBase64(w.comoBuffer(), datos, comando, payload, campoBase64);
+    }
+
+    public static Map<String, Object> mapa() { return new HashMap<>(); }
+
+    private static EscritorJson escribir(String comando, Map<String, Object> payload, String idSolicitud) {
+        EscritorJson w = new EscritorJson(80 + EscritorJson.estimarTamano(payload)
+                + (idSolicitud != null ? idSolicitud.length() + 16 : 0));
+        escribirInicio(w, comando, idSolicitud);
+        if (payload == null) {
+            w.bytes(NULL);
+        } else {
+            w.objeto(payload);
         }
-        sb.append(']');
-        return sb.toString();
+        w.ascii('}');
+        return w;
     }
 
-    @SuppressWarnings("unchecked")
-    private static String val(Object v) {
-        if (v == null) return "null";
-        if (v instanceof String s) return '"' + esc(s) + '"';
-        if (v instanceof Number || v instanceof Boolean) return v.toString();
-        if (v instanceof Map<?, ?> m) return obj((Map<String, Object>) m);
-        if (v instanceof Iterable<?> it) return arr(it);
-        return '"' + esc(String.valueOf(v)) + '"';
+    // {"command":"X",["requestId":"..",]"payload":
+    private static void escribirInicio(EscritorJson w, String comando, String idSolicitud) {
+        w.bytes(prefijo(comando));
+        if (idSolicitud != null) {
+            w.bytes(CLAVE_ID);
+            w.cadena(idSolicitud);
+            w.ascii(',');
+        }
+        w.bytes(CLAVE_PAYLOAD);
     }
 
-    private static String esc(String s) {
-        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    private static byte[] prefijo(String comando) {
+        return PREFIJOS.computeIfAbsent(comando, c -> {
+            EscritorJson w = new EscritorJson(c.length() + 16);
+            w.bytes("{\"command\":".getBytes(StandardCharsets.US_ASCII));
+            w.cadena(c);
+            w.ascii(',');
+            byte[] b = new byte[w.longitud()];
+            System.arraycopy(w.arregloInterno(), 0, b, 0, b.length);
+            return b;
+        });
     }
 }
-
@@ -0,0 +1,121 @@
+package com.arquitectura.infra.net;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hilo único con un Selector compartido que atiende todas las conexiones NIO del
+ * cliente. Las operaciones sobre claves se encolan y se ejecutan dentro del hilo
+ * del selector para no competir con select().
+ *
+ * Un error inesperado al atender una conexión la cierra, como hace el lector del
+ * transporte bloqueante: su estado de lectura pudo quedar a medias. El hilo del
+ * selector sigue atendiendo a las demás.
+ */
+final class ReactorNio {
+    /** Conexión atendida por el reactor. Todos los métodos corren en el hilo del selector. */
+    interface Manejador {
+        void alPoderLeer() throws IOException;
+
+        void alPoderEscribir() throws IOException;
+
+        /** Revisión periódica (tiempos de espera de lectura, etc.). */
+        default void alRevisar(long ahoraNanos) {}
+
+        void alFallar(IOException e);
+    }
+
+    private static final long INTERVALO_REVISION_MS = 250;
+    private static ReactorNio compartido;
+
+    private final Selector selector;
+    private final Queue<Runnable> tareas = new ConcurrentLinkedQueue<>();
+
+    private ReactorNio() throws IOException {
+        this.selector = Selector.open();
+        Thread hilo = new Thread(this::bucle, "cliente-chat-tcp-selector");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    static synchronized ReactorNio compartido() throws IOException {
+        if (compartido == null) {
+            compartido = new ReactorNio();
+        }
+        return compartido;
+    }
+
+    CompletableFuture<SelectionKey> registrar(SocketChannel canal, Manejador manejador, int interes) {
+        CompletableFuture<SelectionKey> resultado = new CompletableFuture<>();
+        ejecutar(() -> {
+            try {
+                resultado.complete(canal.register(selector, interes, manejador));
+            } catch (Exception e) {
+                resultado.completeExceptionally(e);
+            }
+        });
+        return resultado;
+    }
+
+    void ejecutar(Runnable tarea) {
+        tareas.add(tarea);
+        selector.wakeup();
+    }
+
+    private void bucle() {
+        long ultimaRevision = System.nanoTime();
+        while (true) {
+            try {
+                selector.select(INTERVALO_REVISION_MS);
+            } catch (IOException e) {
+                System.out.println("[ReactorNio] Error en select: " + e.getMessage());
+                continue;
+            }
+            Runnable tarea;
+            while ((tarea = tareas.poll()) != null) {
+                try {
+                    tarea.run();
+                } catch (RuntimeException e) {
+                    System.out.println("[ReactorNio] Error ejecutando tarea: " + e.getMessage());
+                }
+            }
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey clave = it.next();
+                it.remove();
+                Manejador manejador = (Manejador) clave.attachment();
+                try {
+                    if (clave.isValid() && clave.isReadable()) manejador.alPoderLeer();
+                    if (clave.isValid() && clave.isWritable()) manejador.alPoderEscribir();
+                } catch (CancelledKeyException ignored) {
+                } catch (IOException e) {
+                    manejador.alFallar(e);
+                } catch (RuntimeException e) {
+                    System.out.println("[ReactorNio] Error atendiendo conexión: " + e.getMessage());
+                    manejador.alFallar(new IOException(e));
+                }
+            }
+            long ahora = System.nanoTime();
+            if (ahora - ultimaRevision >= INTERVALO_REVISION_MS * 1_000_000L) {
+                ultimaRevision = ahora;
+                for (SelectionKey clave : selector.keys()) {
+                    if (clave.isValid() && clave.attachment() instanceof Manejador m) {
+                        try {
+                            m.alRevisar(ahora);
+                        } catch (RuntimeException e) {
+                            System.out.println("[ReactorNio] Error revisando conexión: " + e.getMessage());
+                            m.alFallar(new IOException(e));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
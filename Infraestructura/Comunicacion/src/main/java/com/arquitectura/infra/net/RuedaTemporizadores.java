@@ -0,0 +1,105 @@
+package com.arquitectura.infra.net;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rueda de temporizadores (hashed wheel) con un solo hilo para todos los tiempos de
+ * espera del cliente. Programar y cancelar son O(1); la precisión es de un tick.
+ */
+public final class RuedaTemporizadores {
+    /** Tarea programada; cancelarla evita que se ejecute. */
+    public interface Temporizador {
+        void cancelar();
+    }
+
+    private static final RuedaTemporizadores COMPARTIDA = new RuedaTemporizadores(10, 512);
+
+    private final long tickNanos;
+    private final int mascara;
+    private final ArrayDeque<Tarea>[] ranuras;
+    private final Queue<Tarea> nuevas = new ConcurrentLinkedQueue<>();
+    private final long inicioNanos = System.nanoTime();
+
+    private static final class Tarea implements Temporizador {
+        final Runnable accion;
+        final long vencimientoNanos;
+        long rondas;
+        volatile boolean cancelada;
+
+        Tarea(Runnable accion, long vencimientoNanos) {
+            this.accion = accion;
+            this.vencimientoNanos = vencimientoNanos;
+        }
+
+        @Override
+        public void cancelar() {
+            cancelada = true;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RuedaTemporizadores(long tickMs, int numeroRanuras) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        int n = Integer.highestOneBit(Math.max(2, numeroRanuras) - 1) << 1;
+        this.mascara = n - 1;
+        this.ranuras = new ArrayDeque[n];
+        for (int i = 0; i < n; i++) ranuras[i] = new ArrayDeque<>();
+        Thread hilo = new Thread(this::bucle, "rueda-temporizadores");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public static RuedaTemporizadores compartida() {
+        return COMPARTIDA;
+    }
+
+    public Temporizador programar(long retrasoMs, Runnable accion) {
+        Tarea t = new Tarea(accion, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, retrasoMs)));
+        nuevas.add(t);
+        return t;
+    }
+
+    private void bucle() {
+        long tick = 0;
+        while (true) {
+            long objetivo = inicioNanos + (tick + 1) * tickNanos;
+            long restante;
+            while ((restante = objetivo - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(restante);
+            }
+            ubicarNuevas(tick);
+            ArrayDeque<Tarea> ranura = ranuras[(int) (tick & mascara)];
+            for (Iterator<Tarea> it = ranura.iterator(); it.hasNext(); ) {
+                Tarea t = it.next();
+                if (t.cancelada) {
+                    it.remove();
+                } else if (t.rondas <= 0) {
+                    it.remove();
+                    try {
+                        t.accion.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("[RuedaTemporizadores] Error en tarea: " + e.getMessage());
+                    }
+                } else {
+                    t.rondas--;
+                }
+            }
+            tick++;
+        }
+    }
+
+    private void ubicarNuevas(long tickActual) {
+        Tarea t;
+        while ((t = nuevas.poll()) != null) {
+            if (t.cancelada) continue;
+            long ticks = Math.max(tickActual, (t.vencimientoNanos - inicioNanos) / tickNanos);
+            t.rondas = (ticks - tickActual) / ranuras.length;
+            ranuras[(int) (ticks & mascara)].add(t);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.config.ConfiguracionClienteChat.PuntoServidor;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elige a qué servidor de server.endpoints conecta ClienteChatTcp. Con varios, los
+ * intentos se lanzan escalonados al estilo happy eyeballs: primero el de menor RTT
+ * estimado y, cada server.race.stagger.ms sin respuesta (o en cuanto uno falla), el
+ * siguiente en paralelo. Gana la primera conexión establecida; las demás se cierran
+ * al completarse.
+ *
+ * El RTT de cada servidor es una media móvil de lo que tarda en conectar, también
+ * cuando su intento pierde la carrera. Un servidor que falla o cuya conexión se
+ * pierde queda en cuarentena, al final del orden, por un tiempo que se duplica con
+ * cada fallo seguido; así la reconexión va primero al siguiente servidor sano. Los
+ * que están en cuarentena se siguen intentando si no queda otro.
+ */
+final class SelectorServidores {
+    private static final long CUARENTENA_INICIAL_MS = 5_000;
+    private static final long CUARENTENA_MAXIMA_MS = 5 * 60_000;
+
+    /** Abre la conexión con un servidor: Socket o SocketChannel según el transporte. */
+    interface Conector<T extends Closeable> {
+        T conectar(InetSocketAddress destino, int timeoutMs) throws IOException;
+    }
+
+    private final List<Estado> estados = new ArrayList<>();
+    private final int escalonMs;
+    private final int timeoutMs;
+    private volatile Estado actual;
+    // Si no es null, solo se conecta a este (la conexión masiva sigue a la principal)
+    private volatile PuntoServidor fijo;
+
+    SelectorServidores(ConfiguracionClienteChat configuracion) {
+        for (PuntoServidor p : configuracion.obtenerServidores()) estados.add(new Estado(p));
+        this.escalonMs = configuracion.obtenerEscalonConexionMs();
+        this.timeoutMs = configuracion.obtenerTiempoEsperaConexionMs();
+    }
+
+    /** Servidor de la conexión actual (o la última), o null si nunca conectó. */
+    PuntoServidor obtenerActual() {
+        Estado e = actual;
+        return e == null ? null : e.punto;
+    }
+
+    boolean tieneAlternativas() {
+        return fijo == null && estados.size() > 1;
+    }
+
+    void fijar(PuntoServidor punto) {
+        this.fijo = punto;
+    }
+
+    /** La conexión con el servidor actual se perdió sin cerrarla nosotros. */
+    void alPerderConexion() {
+        Estado e = actual;
+        if (e != null && estados.size() > 1) {
+            synchronized (this) {
+                e.penalizar();
+            }
+            System.out.println("[SelectorServidores] " + e.punto + " en cuarentena por " + e.cuarentenaMs + " ms");
+        }
+    }
+
+    /** Conecta al servidor que gane la carrera. Si fallan todos, lanza el último error. */
+    <T extends Closeable> T conectar(Conector<T> conector) throws IOException {
+        List<Estado> orden = ordenar();
+        if (orden.size() == 1) {
+            Estado unico = orden.get(0);
+            T conexion = intentar(unico, conector);
+            actual = unico;
+            return conexion;
+        }
+        Carrera<T> carrera = new Carrera<>(conector);
+        int lanzados = 0;
+        int terminados = 0;
+        IOException ultimo = null;
+        try {
+            carrera.lanzar(orden.get(lanzados++));
+            while (terminados < lanzados) {
+                Resultado<T> r = lanzados < orden.size()
+                        ? carrera.resultados.poll(escalonMs, TimeUnit.MILLISECONDS)
+                        : carrera.resultados.take();
+                if (r == null) {
+                    carrera.lanzar(orden.get(lanzados++));
+                    continue;
+                }
+                terminados++;
+                if (r.fallo != null) {
+                    ultimo = r.fallo;
+                    if (lanzados < orden.size()) carrera.lanzar(orden.get(lanzados++));
+                    continue;
+                }
+                carrera.decidir();
+                actual = r.estado;
+                System.out.println("[SelectorServidores] Conectado a " + r.estado.punto + " ("
+                        + (r.nanos / 1_000_000) + " ms, " + lanzados + "/" + orden.size() + " intentados)");
+                return r.conexion;
+            }
+        } catch (InterruptedException e) {
+            carrera.decidir();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Conexión interrumpida");
+        }
+        throw ultimo != null ? ultimo : new IOException("Sin servidores a los que conectar");
+    }
+
+    // Sanos por RTT (los que no tienen medida, en el orden configurado), luego los en cuarentena
+    private synchronized List<Estado> ordenar() {
+        PuntoServidor f = fijo;
+        if (f != null) {
+            for (Estado e : estados) {
+                if (e.punto.equals(f)) return List.of(e);
+            }
+            return List.of(new Estado(f));
+        }
+        long ahora = System.nanoTime();
+        List<Estado> orden = new ArrayList<>(estados);
+        orden.sort(Comparator.comparing((Estado e) -> e.enCuarentena(ahora))
+                .thenComparingLong(e -> e.enCuarentena(ahora) ? e.cuarentenaHasta : 0)
+                .thenComparingLong(e -> e.rttNanos < 0 ? Long.MAX_VALUE : e.rttNanos));
+        return orden;
+    }
+
+    private <T extends Closeable> T intentar(Estado estado, Conector<T> conector) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            InetSocketAddress destino = new InetSocketAddress(estado.punto.obtenerHost(), estado.punto.obtenerPuerto());
+            if (destino.isUnresolved()) throw new UnknownHostException(estado.punto.obtenerHost());
+            T conexion = conector.conectar(destino, timeoutMs);
+            synchronized (this) {
+                estado.medir(System.nanoTime() - inicio);
+            }
+            return conexion;
+        } catch (IOException e) {
+            synchronized (this) {
+                estado.penalizar();
+            }
+            if (estados.size() > 1) System.out.println("[SelectorServidores] Falló " + estado.punto + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static final class Estado {
+        final PuntoServidor punto;
+        long rttNanos = -1;
+        int fallosSeguidos;
+        long cuarentenaMs;
+        long cuarentenaHasta;
+
+        Estado(PuntoServidor punto) {
+            this.punto = punto;
+        }
+
+        boolean enCuarentena(long ahora) {
+            return fallosSeguidos > 0 && ahora - cuarentenaHasta < 0;
+        }
+
+        void medir(long nanos) {
+            rttNanos = rttNanos < 0 ? nanos : (rttNanos * 3 + nanos) / 4;
+            fallosSeguidos = 0;
+        }
+
+        void penalizar() {
+            fallosSeguidos++;
+            cuarentenaMs = Math.min(CUARENTENA_MAXIMA_MS, CUARENTENA_INICIAL_MS << Math.min(fallosSeguidos - 1, 20));
+            cuarentenaHasta = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cuarentenaMs);
+        }
+    }
+
+    private static final class Resultado<T> {
+        final Estado estado;
+        final T conexion;
+        final IOException fallo;
+        final long nanos;
+
+        Resultado(Estado estado, T conexion, IOException fallo, long nanos) {
+            this.estado = estado;
+            this.conexion = conexion;
+            this.fallo = fallo;
+            this.nanos = nanos;
+        }
+    }
+
+    /** Intentos en curso; una vez decidida, lo que siga conectando se cierra. */
+    private final class Carrera<T extends Closeable> {
+        final LinkedBlockingQueue<Resultado<T>> resultados = new LinkedBlockingQueue<>();
+        private final Conector<T> conector;
+        private boolean decidida;
+
+        Carrera(Conector<T> conector) {
+            this.conector = conector;
+        }
+
+        void lanzar(Estado estado) {
+            FabricaEjecutores.compartida().iniciar("cliente-chat-conexion-" + estado.punto, () -> {
+                long inicio = System.nanoTime();
+                Resultado<T> r;
+                try {
+                    r = new Resultado<>(estado, intentar(estado, conector), null, System.nanoTime() - inicio);
+                } catch (IOException e) {
+                    r = new Resultado<>(estado, null, e, 0);
+                }
+                synchronized (this) {
+                    if (!decidida) {
+                        resultados.add(r);
+                        return;
+                    }
+                }
+                cerrar(r);
+            });
+        }
+
+        // Lo que ya llegó y no ganó se cierra; lo que llegue después, al completarse
+        void decidir() {
+            synchronized (this) {
+                decidida = true;
+            }
+            Resultado<T> r;
+            while ((r = resultados.poll()) != null) cerrar(r);
+        }
+
+        private void cerrar(Resultado<T> r) {
+            if (r.conexion == null) return;
+            try { r.conexion.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Recupera la conexión de ClienteChatTcp cuando se pierde sin que nadie la haya
+ * cerrado. Reintenta con espera exponencial con fluctuación (la mitad fija, la otra
+ * mitad al azar, para que muchos clientes no reconecten a la vez), ejecuta la
+ * AccionReconexion y luego envía en orden lo que se pidió enviar mientras tanto.
+ *
+ * Mientras reconecta, los envíos de otros hilos se retienen en lugar de fallar. Los
+ * del propio hilo del supervisor (la re-autenticación) pasan directo.
+ *
+ * Con varios servidores el primer intento sale casi enseguida: el servidor perdido
+ * ya quedó al final del orden (ver SelectorServidores) y se pasa al siguiente.
+ */
+final class SupervisorReconexion {
+    private final ClienteChatTcp cliente;
+    private final ConfiguracionClienteChat configuracion;
+    private final OyenteMensajesChat eventos;
+    private final ArrayDeque<EnvioRetenido> retenidos = new ArrayDeque<>();
+
+    private volatile AccionReconexion accion;
+    private boolean reteniendo;
+    private boolean detenido;
+    private Thread hilo;
+
+    private static final class EnvioRetenido {
+        final Function<TransporteChat, CompletableFuture<Void>> envio;
+        final CompletableFuture<Void> futuro = new CompletableFuture<>();
+
+        EnvioRetenido(Function<TransporteChat, CompletableFuture<Void>> envio) {
+            this.envio = envio;
+        }
+    }
+
+    SupervisorReconexion(ClienteChatTcp cliente, ConfiguracionClienteChat configuracion, OyenteMensajesChat eventos) {
+        this.cliente = cliente;
+        this.configuracion = configuracion;
+        this.eventos = eventos;
+    }
+
+    void establecerAccion(AccionReconexion accion) {
+        this.accion = accion;
+    }
+
+    /** Arranca la reconexión si no hay una en curso y avisa la pérdida a los oyentes. */
+    synchronized void iniciar() {
+        if (hilo != null) return;
+        eventos.alPerderConexion();
+        detenido = false;
+        reteniendo = true;
+        hilo = FabricaEjecutores.compartida().iniciar("cliente-chat-reconexion", this::reconectar);
+    }
+
+    /** Cierre pedido por la aplicación: se abandona la reconexión en curso. */
+    void detener() {
+        Thread actual;
+        synchronized (this) {
+            detenido = true;
+            actual = hilo;
+        }
+        if (actual != null && actual != Thread.currentThread()) actual.interrupt();
+    }
+
+    synchronized boolean reconectando() {
+        return hilo != null;
+    }
+
+    synchronized boolean esHiloSupervisor() {
+        return hilo == Thread.currentThread();
+    }
+
+    /**
+     * Si hay una reconexión en curso y el llamador no es el supervisor, guarda el
+     * envío y devuelve su futuro; si no, devuelve null y el envío sigue su camino.
+     */
+    synchronized CompletableFuture<Void> retenerSiReconecta(Function<TransporteChat, CompletableFuture<Void>> envio) {
+        if (!reteniendo || Thread.currentThread() == hilo) return null;
+        EnvioRetenido r = new EnvioRetenido(envio);
+        if (retenidos.size() >= configuracion.obtenerLimiteEnviosRetenidos()) {
+            r.futuro.completeExceptionally(new IOException("Reconectando: demasiados envíos pendientes"));
+        } else {
+            retenidos.add(r);
+        }
+        return r.futuro;
+    }
+
+    private void reconectar() {
+        int maximo = configuracion.obtenerIntentosMaximosReconexion();
+        int intento = 0;
+        boolean recuperada = false;
+        while (!estaDetenido() && (maximo == 0 || intento < maximo)) {
+            long espera = intento == 0 && cliente.tieneServidoresAlternativos()
+                    ? ThreadLocalRandom.current().nextLong(configuracion.obtenerEsperaInicialReconexionMs() / 4 + 1)
+                    : calcularEspera(intento);
+            intento++;
+            eventos.alReintentarConexion(intento, espera);
+            System.out.println("[SupervisorReconexion] Intento " + intento + " en " + espera + " ms");
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (estaDetenido()) break;
+            try {
+                cliente.conectar();
+                AccionReconexion a = accion;
+                if (a != null) a.alReconectar();
+                recuperada = true;
+                break;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[SupervisorReconexion] Falló el intento " + intento + ": " + e.getMessage());
+                cliente.descartarConexion();
+            }
+        }
+        terminar(recuperada);
+    }
+
+    private void terminar(boolean recuperada) {
+        ArrayDeque<EnvioRetenido> pendientes;
+        synchronized (this) {
+            pendientes = new ArrayDeque<>(retenidos);
+            retenidos.clear();
+            if (recuperada) {
+                // Se reenvían bajo el candado para que nada nuevo se adelante a los retenidos
+                for (EnvioRetenido r : pendientes) {
+                    cliente.enviarRetenido(r.envio).whenComplete((v, e) -> {
+                        if (e != null) r.futuro.completeExceptionally(e); else r.futuro.complete(null);
+                    });
+                }
+            }
+            reteniendo = false;
+            hilo = null;
+        }
+        if (recuperada) {
+            System.out.println("[SupervisorReconexion] Conexión restablecida; reenviados " + pendientes.size() + " envíos");
+            eventos.alRestablecerConexion();
+            return;
+        }
+        IOException causa = new IOException("No se pudo reconectar");
+        for (EnvioRetenido r : pendientes) r.futuro.completeExceptionally(causa);
+        if (!estaDetenido()) {
+            System.out.println("[SupervisorReconexion] Sin conexión tras los reintentos; se cierra");
+            eventos.alCerrar();
+        }
+    }
+
+    private synchronized boolean estaDetenido() {
+        return detenido;
+    }
+
+    private long calcularEspera(int intento) {
+        long inicial = configuracion.obtenerEsperaInicialReconexionMs();
+        long maxima = configuracion.obtenerEsperaMaximaReconexionMs();
+        long base = Math.min(maxima, inicial << Math.min(intento, 20));
+        long mitad = base / 2;
+        return mitad + ThreadLocalRandom.current().nextLong(mitad + 1);
+    }
+}
@@ -0,0 +1,197 @@
+package com.arquitectura.infra.net;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import com.arquitectura.infra.json.VistaJson;
+
+/**
+ * Trama JSON recibida del servidor, tal como llegó en UTF-8. El texto solo se
+ * decodifica la primera vez que algún oyente lo pide y luego se reutiliza.
+ *
+ * Las tramas que superaron frame.max.memory.bytes viven en un archivo mapeado
+ * (estaEnDisco): sus bytes no ocupan heap, y conviene recorrerlas con abrirFlujo o
+ * recorrerObjetos en lugar de comoTexto, que las decodificaría enteras.
+ */
+public final class TramaChat {
+    private static final byte[] CLAVE_COMANDO = CamposTrama.clave("command");
+    private static final byte[] CLAVE_PAYLOAD = CamposTrama.clave("payload");
+    private static final byte[] CLAVE_TIPO = CamposTrama.clave("tipo");
+    private static final byte[] CLAVE_EVENTO = CamposTrama.clave("evento");
+    private static final String SIN_VALOR = new String("");
+    private static final EventoChat SIN_EVENTO = new EventoChat(null, VistaJson.de("{}"));
+
+    private final byte[] datos;
+    // Solo en tramas en disco (datos es null)
+    private final ByteBuffer mapa;
+    private final int inicio;
+    private final int longitud;
+    private volatile String texto;
+    private volatile String comando;
+    private volatile String tipoEvento;
+    private volatile EventoChat evento;
+
+    TramaChat(byte[] datos, int inicio, int longitud) {
+        this.datos = datos;
+        this.mapa = null;
+        this.inicio = inicio;
+        this.longitud = longitud;
+    }
+
+    TramaChat(ByteBuffer mapa) {
+        this.datos = null;
+        this.mapa = mapa.asReadOnlyBuffer();
+        this.inicio = 0;
+        this.longitud = mapa.remaining();
+    }
+
+    public static TramaChat desdeTexto(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        TramaChat trama = new TramaChat(bytes, 0, bytes.length);
+        trama.texto = texto;
+        return trama;
+    }
+
+    /** Longitud de la trama en bytes. */
+    public int longitud() {
+        return longitud;
+    }
+
+    public byte byteEn(int indice) {
+        if (indice < 0 || indice >= longitud) throw new IndexOutOfBoundsException(indice);
+        return datos != null ? datos[inicio + indice] : mapa.get(indice);
+    }
+
+    /** True si la trama superó el límite en memoria y se lee desde un archivo mapeado. */
+    public boolean estaEnDisco() {
+        return datos == null;
+    }
+
+    /** Vista de solo lectura sobre los bytes de la trama, sin copiarlos. */
+    public ByteBuffer comoBuffer() {
+        if (datos == null) return mapa.duplicate();
+        return ByteBuffer.wrap(datos, inicio, longitud).slice().asReadOnlyBuffer();
+    }
+
+    /** Los bytes de la trama como flujo, sin copiarlos a un arreglo. */
+    public InputStream abrirFlujo() {
+        ByteBuffer b = comoBuffer();
+        return new InputStream() {
+            @Override public int read() {
+                return b.hasRemaining() ? b.get() & 0xFF : -1;
+            }
+
+            @Override public int read(byte[] destino, int desde, int largo) {
+                if (largo == 0) return 0;
+                if (!b.hasRemaining()) return -1;
+                int n = Math.min(largo, b.remaining());
+                b.get(destino, desde, n);
+                return n;
+            }
+
+            @Override public int available() {
+                return b.remaining();
+            }
+        };
+    }
+
+    /** En las tramas en disco el texto no se guarda: cada llamada lo decodifica entero. */
+    public String comoTexto() {
+        String t = texto;
+        if (t == null) {
+            t = textoEntre(0, longitud);
+            if (datos != null) texto = t;
+        }
+        return t;
+    }
+
+    /**
+     * La trama leída como JSON, o null si no es un objeto JSON. Se analiza sobre los
+     * bytes, sin pasarla a texto, la primera vez que se pide; los demás oyentes
+     * reciben el mismo EventoChat.
+     */
+    public EventoChat evento() {
+        EventoChat e = evento;
+        if (e == null) {
+            VistaJson doc = VistaJson.intentar(comoBuffer());
+            e = doc != null ? new EventoChat(this, doc) : SIN_EVENTO;
+            evento = e;
+        }
+        return e == SIN_EVENTO ? null : e;
+    }
+
+    /**
+     * Entrega uno por uno, como VistaJson sobre los bytes de la trama, los objetos del
+     * arreglo "clave" del payload (o de la raíz si no está en el payload). Nada se
+     * pasa a texto, así que sirve para recorrer tramas en disco. Los elementos que no
+     * son objetos JSON se saltan. Devuelve cuántos entregó.
+     */
+    public int recorrerObjetos(String clave, Consumer<VistaJson> accion) {
+        byte[] k = CamposTrama.clave(clave);
+        int raiz = CamposTrama.inicioRaiz(this);
+        int arreglo = -1;
+        int inicioPayload = CamposTrama.buscarValor(this, raiz, CLAVE_PAYLOAD);
+        if (inicioPayload >= 0 && byteEn(inicioPayload) == '{') arreglo = CamposTrama.buscarValor(this, inicioPayload, k);
+        if (arreglo < 0) arreglo = CamposTrama.buscarValor(this, raiz, k);
+        if (arreglo < 0 || byteEn(arreglo) != '[') return 0;
+        ByteBuffer bytes = comoBuffer();
+        int[] entregados = {0};
+        CamposTrama.recorrerArreglo(this, arreglo, (desde, hasta) -> {
+            VistaJson objeto = VistaJson.intentar(bytes.slice(desde, hasta - desde));
+            if (objeto == null) return;
+            accion.accept(objeto);
+            entregados[0]++;
+        });
+        return entregados[0];
+    }
+
+    /** Texto de una clave directa del payload, sin decodificar el resto. */
+    public String textoPayload(String clave) {
+        int inicioPayload = CamposTrama.buscarValor(this, CamposTrama.inicioRaiz(this), CLAVE_PAYLOAD);
+        if (inicioPayload < 0 || byteEn(inicioPayload) != '{') return null;
+        return CamposTrama.texto(this, inicioPayload, CamposTrama.clave(clave));
+    }
+
+    String textoEntre(int desde, int hasta) {
+        if (datos != null) return new String(datos, inicio + desde, hasta - desde, StandardCharsets.UTF_8);
+        byte[] copia = new byte[hasta - desde];
+        mapa.get(desde, copia);
+        return new String(copia, StandardCharsets.UTF_8);
+    }
+
+    /** Valor de "command" en la raíz de la trama (se calcula una vez). */
+    public String comando() {
+        String c = comando;
+        if (c == null) {
+            c = CamposTrama.texto(this, CamposTrama.inicioRaiz(this), CLAVE_COMANDO);
+            comando = c != null ? c : SIN_VALOR;
+        }
+        return c == SIN_VALOR ? null : c;
+    }
+
+    /** Para tramas EVENT, el "tipo" (o "evento") declarado en el payload. */
+    public String tipoEvento() {
+        String t = tipoEvento;
+        if (t == null) {
+            int inicioPayload = CamposTrama.buscarValor(this, CamposTrama.inicioRaiz(this), CLAVE_PAYLOAD);
+            if (inicioPayload >= 0 && byteEn(inicioPayload) == '{') {
+                t = CamposTrama.texto(this, inicioPayload, CLAVE_TIPO);
+                if (t == null) t = CamposTrama.texto(this, inicioPayload, CLAVE_EVENTO);
+            }
+            tipoEvento = t != null ? t : SIN_VALOR;
+        }
+        return t == SIN_VALOR ? null : t;
+    }
+
+    /** Texto de una clave de la raíz de la trama, sin decodificar el resto. */
+    public String textoRaiz(String clave) {
+        return CamposTrama.texto(this, CamposTrama.inicioRaiz(this), CamposTrama.clave(clave));
+    }
+
+    @Override
+    public String toString() {
+        return comoTexto();
+    }
+}
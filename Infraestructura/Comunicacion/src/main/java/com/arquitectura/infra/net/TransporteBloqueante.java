@@ -0,0 +1,178 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Transporte clásico: Socket con un hilo lector bloqueante y un hilo escritor por
+ * conexión. El escritor toma los bloques pendientes de la ColaEnvios, por prioridad,
+ * los junta en un buffer de PoolBuffers y los escribe de una vez; el lector también
+ * lee sobre un buffer del pool.
+ */
+final class TransporteBloqueante implements TransporteChat {
+    private static final int TAM_BUFFER = 64 * 1024;
+    private static final int MAX_LOTE = 256;
+
+    private final ConfiguracionClienteChat configuracion;
+    private final OyenteMensajesChat oyente;
+    private final AtomicBoolean conectado = new AtomicBoolean(false);
+    private final ColaEnvios pendientes;
+    private final CodecConexion codec;
+    private final SelectorServidores servidores;
+
+    private Socket socket;
+    private InputStream lector;
+    private OutputStream escritor;
+    private Thread hiloLector;
+    private Thread hiloEscritor;
+
+    TransporteBloqueante(ConfiguracionClienteChat configuracion, OyenteMensajesChat oyente, CodecConexion codec,
+                         SelectorServidores servidores, Consumer<String> alEscribirComando) {
+        this.configuracion = configuracion;
+        this.oyente = oyente;
+        this.codec = codec;
+        this.servidores = servidores;
+        this.pendientes = new ColaEnvios(alEscribirComando);
+    }
+
+    @Override
+    public synchronized void conectar() throws IOException {
+        if (conectado.get()) return;
+        socket = servidores.conectar((destino, timeoutMs) -> {
+            Socket s = new Socket();
+            try {
+                s.connect(destino, timeoutMs);
+                return s;
+            } catch (IOException e) {
+                s.close();
+                throw e;
+            }
+        });
+        if (configuracion.obtenerTiempoEsperaLecturaMs() > 0) {
+            socket.setSoTimeout(configuracion.obtenerTiempoEsperaLecturaMs());
+        }
+        lector = socket.getInputStream();
+        escritor = socket.getOutputStream();
+        conectado.set(true);
+        iniciarBucleLectura();
+        iniciarBucleEscritura();
+    }
+
+    private void iniciarBucleLectura() {
+        final InputStream entrada = lector;
+        hiloLector = FabricaEjecutores.compartida().iniciar("cliente-chat-tcp-lector", () -> {
+            ByteBuffer buffer = PoolBuffers.compartido().tomarEnHeap(TAM_BUFFER);
+            byte[] arreglo = buffer.array();
+            try {
+                int leidos;
+                while (conectado.get() && (leidos = entrada.read(arreglo, 0, buffer.capacity())) != -1) {
+                    buffer.clear().limit(leidos);
+                    codec.procesar(buffer);
+                }
+                codec.finalizar();
+            } catch (IOException e) {
+                oyente.alError(e);
+            } finally {
+                codec.liberar();
+                PoolBuffers.compartido().devolver(buffer);
+                conectado.set(false);
+                oyente.alCerrar();
+                try { close(); } catch (IOException ignored) {}
+            }
+        });
+    }
+
+    private void iniciarBucleEscritura() {
+        final OutputStream salida = escritor;
+        hiloEscritor = FabricaEjecutores.compartida().iniciar("cliente-chat-tcp-escritor", () -> {
+            ByteBuffer acumulado = PoolBuffers.compartido().tomarEnHeap(TAM_BUFFER);
+            try {
+                while (conectado.get()) {
+                    if (!pendientes.esperar(250, TimeUnit.MILLISECONDS)) continue;
+                    // Hasta MAX_LOTE bloques por vuelta, en el orden que decide la cola
+                    ByteBuffer b;
+                    for (int n = 0; n < MAX_LOTE && (b = pendientes.siguienteBloque()) != null; n++) {
+                        while (b.hasRemaining()) {
+                            // put copia también desde buffers directos, que no tienen arreglo
+                            int k = Math.min(b.remaining(), acumulado.remaining());
+                            acumulado.put(acumulado.position(), b, b.position(), k);
+                            acumulado.position(acumulado.position() + k);
+                            b.position(b.position() + k);
+                            if (!acumulado.hasRemaining()) vaciar(salida, acumulado);
+                        }
+                    }
+                    vaciar(salida, acumulado);
+                    pendientes.completarEscritos();
+                }
+            } catch (IOException e) {
+                // El lector detecta el cierre y avisa a los oyentes
+                pendientes.fallarTodos(e);
+                try { close(); } catch (IOException ignored) {}
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                PoolBuffers.compartido().devolver(acumulado);
+                pendientes.fallarTodos(new IOException("Conexión cerrada"));
+            }
+        });
+    }
+
+    private static void vaciar(OutputStream salida, ByteBuffer acumulado) throws IOException {
+        if (acumulado.position() == 0) return;
+        salida.write(acumulado.array(), acumulado.arrayOffset(), acumulado.position());
+        acumulado.clear();
+    }
+
+    @Override
+    public boolean estaConectado() {
+        return conectado.get();
+    }
+
+    @Override
+    public CompletableFuture<Void> encolar(EnvioPendiente envio) {
+        if (!conectado.get()) {
+            envio.fallar(new IOException("No conectado"));
+            return envio.futuro;
+        }
+        codec.preparar(envio);
+        pendientes.agregar(envio);
+        if (!conectado.get()) {
+            // Se cerró mientras encolábamos: el escritor ya no lo va a atender
+            pendientes.fallarTodos(new IOException("No conectado"));
+        }
+        return envio.futuro;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        conectado.set(false);
+        if (hiloLector != null) {
+            hiloLector.interrupt();
+            hiloLector = null;
+        }
+        if (hiloEscritor != null) {
+            hiloEscritor.interrupt();
+            hiloEscritor = null;
+        }
+        if (lector != null) {
+            try { lector.close(); } catch (IOException ignored) {}
+            lector = null;
+        }
+        if (escritor != null) {
+            try { escritor.close(); } catch (IOException ignored) {}
+            escritor = null;
+        }
+        if (socket != null && !socket.isClosed()) {
+            try { socket.close(); } catch (IOException ignored) {}
+            socket = null;
+        }
+    }
+}
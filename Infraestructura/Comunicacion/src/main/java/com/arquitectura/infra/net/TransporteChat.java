@@ -0,0 +1,36 @@
+package com.arquitectura.infra.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Canal físico usado por ClienteChatTcp. Cada implementación entrega las tramas
+ * recibidas y los eventos de cierre/error al oyente que recibe en su constructor.
+ */
+interface TransporteChat extends Closeable {
+    void conectar() throws IOException;
+
+    boolean estaConectado();
+
+    /**
+     * Encola la línea para el escritor de la conexión sin bloquear al llamador. El
+     * futuro se completa cuando los bytes quedaron escritos en el socket.
+     */
+    default CompletableFuture<Void> enviarAsincrono(String mensaje) {
+        return encolar(EnvioPendiente.de(EnvioPendiente.codificar(mensaje)));
+    }
+
+    /** Encola una línea ya codificada en UTF-8 (con su salto final); el buffer no se copia. */
+    default CompletableFuture<Void> enviarAsincrono(ByteBuffer linea) {
+        return encolar(EnvioPendiente.de(linea));
+    }
+
+    default CompletableFuture<Void> enviarAsincrono(LineaBase64 linea) {
+        return encolar(EnvioPendiente.de(linea));
+    }
+
+    /** Pone el envío en la cola de salida y devuelve su futuro. */
+    CompletableFuture<Void> encolar(EnvioPendiente envio);
+}
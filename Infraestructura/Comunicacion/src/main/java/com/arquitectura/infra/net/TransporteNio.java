@@ -0,0 +1,248 @@
+package com.arquitectura.infra.net;
+
+import com.arquitectura.infra.config.ConfiguracionClienteChat;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Transporte no bloqueante: SocketChannel registrado en el ReactorNio compartido.
+ * La lectura y la escritura se atienden por disponibilidad, de modo que un envío
+ * grande no bloquea al emisor ni a la lectura de respuestas.
+ *
+ * Si el anillo de despacho se llena, el selector no espera (atiende a todas las
+ * conexiones): se quita OP_READ de esta conexión, así solo ella queda sujeta al
+ * control de flujo de TCP, y se vuelve a leer cuando el despacho vacía el desborde.
+ */
+final class TransporteNio implements TransporteChat, ReactorNio.Manejador {
+    private static final int TAM_BUFFER = 64 * 1024;
+    private static final int MAX_LOTE = 64;
+
+    private final ConfiguracionClienteChat configuracion;
+    private final OyenteMensajesChat oyente;
+    private final AtomicBoolean conectado = new AtomicBoolean(false);
+    private final AtomicBoolean cerrado = new AtomicBoolean(false);
+    private final AtomicBoolean escrituraSolicitada = new AtomicBoolean(false);
+    private final ColaEnvios salientes;
+
+    // Estado de lectura: solo se toca desde el hilo del selector. El buffer viene de
+    // PoolBuffers y vuelve al pool al cerrar la conexión.
+    private ByteBuffer entrada;
+    private final CodecConexion codec;
+    private final SelectorServidores servidores;
+    // Lote para la escritura vectorizada, con lo que falta escribir en [desdeLote,
+    // finLote): solo se usa desde el hilo del selector
+    private final ByteBuffer[] lote = new ByteBuffer[MAX_LOTE];
+    private int desdeLote;
+    private int finLote;
+
+    private final AnilloDespachoTramas anillo;
+    private volatile ReactorNio reactor;
+    private SocketChannel canal;
+    private volatile SelectionKey clave;
+    private volatile long ultimaLecturaNanos;
+    // Lectura suspendida hasta que el despacho se ponga al día: solo el hilo del selector
+    private boolean lecturaPausada;
+
+    TransporteNio(ConfiguracionClienteChat configuracion, OyenteMensajesChat oyente, CodecConexion codec,
+                  SelectorServidores servidores, AnilloDespachoTramas anillo, Consumer<String> alEscribirComando) {
+        this.configuracion = configuracion;
+        this.oyente = oyente;
+        this.codec = codec;
+        this.servidores = servidores;
+        this.salientes = new ColaEnvios(alEscribirComando);
+        this.anillo = anillo;
+        anillo.noEsperarAlLlenarse(() -> {
+            ReactorNio r = reactor;
+            if (r != null) r.ejecutar(this::reanudarLectura);
+        });
+    }
+
+    @Override
+    public synchronized void conectar() throws IOException {
+        if (conectado.get()) return;
+        // La conexión inicial se hace en modo bloqueante para respetar el timeout configurado
+        canal = servidores.conectar((destino, timeoutMs) -> {
+            SocketChannel c = SocketChannel.open();
+            try {
+                c.socket().connect(destino, timeoutMs);
+                return c;
+            } catch (IOException e) {
+                c.close();
+                throw e;
+            }
+        });
+        try {
+            canal.configureBlocking(false);
+            entrada = PoolBuffers.compartido().tomarDirecto(TAM_BUFFER);
+            reactor = ReactorNio.compartido();
+            ultimaLecturaNanos = System.nanoTime();
+            conectado.set(true);
+            clave = reactor.registrar(canal, this, SelectionKey.OP_READ).get(5, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            conectado.set(false);
+            try { canal.close(); } catch (IOException ignored) {}
+            liberarBuffers();
+            throw e;
+        } catch (Exception e) {
+            conectado.set(false);
+            try { canal.close(); } catch (IOException ignored) {}
+            liberarBuffers();
+            throw new IOException("No se pudo registrar el canal en el selector", e);
+        }
+    }
+
+    @Override
+    public boolean estaConectado() {
+        return conectado.get();
+    }
+
+    @Override
+    public CompletableFuture<Void> encolar(EnvioPendiente envio) {
+        if (!conectado.get()) {
+            envio.fallar(new IOException("No conectado"));
+            return envio.futuro;
+        }
+        codec.preparar(envio);
+        salientes.agregar(envio);
+        if (cerrado.get()) {
+            salientes.fallarTodos(new IOException("No conectado"));
+        } else if (escrituraSolicitada.compareAndSet(false, true)) {
+            reactor.ejecutar(this::activarInteresEscritura);
+        }
+        return envio.futuro;
+    }
+
+    private void activarInteresEscritura() {
+        SelectionKey k = clave;
+        if (k != null && k.isValid()) {
+            k.interestOps(k.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public void alPoderLeer() throws IOException {
+        if (entrada == null) return;
+        int leidos = canal.read(entrada);
+        if (leidos < 0) {
+            codec.finalizar();
+            cerrarInterno();
+            return;
+        }
+        if (leidos == 0) return;
+        ultimaLecturaNanos = System.nanoTime();
+        entrada.flip();
+        codec.procesar(entrada);
+        entrada.clear();
+        if (anillo.desbordado()) pausarLectura();
+    }
+
+    private void pausarLectura() {
+        SelectionKey k = clave;
+        if (k == null || !k.isValid()) return;
+        lecturaPausada = true;
+        k.interestOps(k.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    // Hilo del selector, cuando el despacho vació el desborde
+    private void reanudarLectura() {
+        if (!lecturaPausada) return;
+        lecturaPausada = false;
+        SelectionKey k = clave;
+        if (cerrado.get() || k == null || !k.isValid()) return;
+        // El tiempo de espera de lectura no corre mientras la lectura estuvo pausada
+        ultimaLecturaNanos = System.nanoTime();
+        k.interestOps(k.interestOps() | SelectionKey.OP_READ);
+    }
+
+    @Override
+    public void alPoderEscribir() throws IOException {
+        while (true) {
+            if (desdeLote == finLote) {
+                // Junta hasta MAX_LOTE bloques, en el orden que decide la cola, en una sola
+                // escritura vectorizada. Un bloque por partes cierra el lote: su arreglo se
+                // reutiliza para el siguiente.
+                desdeLote = finLote = 0;
+                ByteBuffer b;
+                while (finLote < MAX_LOTE && (b = salientes.siguienteBloque()) != null) {
+                    lote[finLote++] = b;
+                    if (salientes.ultimoBloquePorPartes()) break;
+                }
+                if (finLote == 0) {
+                    salientes.completarEscritos();
+                    break;
+                }
+            }
+            canal.write(lote, desdeLote, finLote - desdeLote);
+            while (desdeLote < finLote && !lote[desdeLote].hasRemaining()) lote[desdeLote++] = null;
+            if (desdeLote < finLote) {
+                return; // el socket no acepta más por ahora; seguimos con OP_WRITE activo
+            }
+            salientes.completarEscritos();
+        }
+        clave.interestOps(lecturaPausada ? 0 : SelectionKey.OP_READ);
+        escrituraSolicitada.set(false);
+        // Un envío pudo encolarse entre el vaciado y el cambio de interés
+        if (!salientes.estaVacia() && escrituraSolicitada.compareAndSet(false, true)) {
+            activarInteresEscritura();
+        }
+    }
+
+    @Override
+    public void alRevisar(long ahoraNanos) {
+        int tiempoLectura = configuracion.obtenerTiempoEsperaLecturaMs();
+        if (tiempoLectura > 0 && !lecturaPausada && ahoraNanos - ultimaLecturaNanos > tiempoLectura * 1_000_000L) {
+            alFallar(new SocketTimeoutException("Read timed out"));
+        }
+    }
+
+    @Override
+    public void alFallar(IOException e) {
+        if (!cerrado.get()) {
+            oyente.alError(e);
+        }
+        cerrarInterno();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cerrarInterno();
+    }
+
+    private void cerrarInterno() {
+        conectado.set(false);
+        if (!cerrado.compareAndSet(false, true)) return;
+        SelectionKey k = clave;
+        if (k != null) k.cancel();
+        if (canal != null) {
+            try { canal.close(); } catch (IOException ignored) {}
+        }
+        salientes.fallarTodos(new IOException("Conexión cerrada"));
+        liberarBuffers();
+        oyente.alCerrar();
+    }
+
+    // Los buffers de lectura solo se tocan desde el hilo del selector: se devuelven allí,
+    // después de cualquier lectura en curso sobre el canal ya cancelado
+    private void liberarBuffers() {
+        Runnable liberar = () -> {
+            codec.liberar();
+            if (entrada != null) {
+                PoolBuffers.compartido().devolver(entrada);
+                entrada = null;
+            }
+        };
+        if (reactor != null) {
+            reactor.ejecutar(liberar);
+        } else {
+            liberar.run();
+        }
+    }
+}
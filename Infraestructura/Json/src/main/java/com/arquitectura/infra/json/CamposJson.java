@@ -0,0 +1,102 @@
+package com.arquitectura.infra.json;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Los campos de un objeto VistaJson ubicados con una TablaAlias: leer() recorre sus
+ * claves una vez y anota dónde está cada alias, y los accesos por número de campo
+ * miran solo esas posiciones, en el orden de preferencia de la tabla. Las reglas
+ * son las de VistaJson con la lista de alias del campo (texto salta los que no son
+ * texto, textoDeLaPrimera se queda con el primero presente, etc.).
+ *
+ * Mutable y pensado para reutilizarse: un lote de mensajes usa una sola instancia
+ * y llama a leer() con cada uno. No es seguro entre hilos.
+ */
+public final class CamposJson {
+    private final TablaAlias tabla;
+    private final int[] nodos;
+    private VistaJson objeto;
+
+    public CamposJson(TablaAlias tabla) {
+        this.tabla = tabla;
+        this.nodos = new int[tabla.cantidadAlias()];
+    }
+
+    /** Pasa a leer este objeto; lo anterior se descarta. Devuelve esta instancia. */
+    public CamposJson leer(VistaJson objeto) {
+        this.objeto = objeto;
+        objeto.anotarCampos(tabla, nodos);
+        return this;
+    }
+
+    /** True si alguno de los alias del campo está, aunque su valor sea null. */
+    public boolean contiene(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            if (nodos[a] >= 0) return true;
+        }
+        return false;
+    }
+
+    public String texto(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v >= 0 && objeto.esTexto(v)) return objeto.texto(v);
+        }
+        return null;
+    }
+
+    public String textoDeLaPrimera(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v >= 0) return objeto.esTexto(v) ? objeto.texto(v) : null;
+        }
+        return null;
+    }
+
+    public Long largo(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v < 0) continue;
+            Long l = objeto.comoLargo(v);
+            if (l != null) return l;
+        }
+        return null;
+    }
+
+    public Integer entero(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v < 0) continue;
+            Long l = objeto.comoLargo(v);
+            if (l != null && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) return l.intValue();
+        }
+        return null;
+    }
+
+    public Boolean booleano(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v < 0) continue;
+            Boolean b = objeto.comoBooleano(v);
+            if (b != null) return b;
+        }
+        return null;
+    }
+
+    public VistaJson objeto(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            VistaJson o = nodos[a] >= 0 ? objeto.objeto(nodos[a]) : null;
+            if (o != null) return o;
+        }
+        return null;
+    }
+
+    /** Como VistaJson.tramoResuelto: los bytes del texto, sin copiar si no tiene escapes. */
+    public ByteBuffer tramoResuelto(int campo) {
+        for (int a : tabla.aliasDe(campo)) {
+            int v = nodos[a];
+            if (v >= 0 && objeto.esTexto(v)) return objeto.tramoResuelto(v);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.arquitectura.infra.json;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Decodifica Base64 (con las reglas de Base64.getDecoder()) leyendo directamente un
+ * tramo de la trama, sin pasarlo antes a String: los caracteres se copian por
+ * bloques fijos de 8 KiB a un arreglo de paso y se escriben ya decodificados en el
+ * destino, así que un audio de varios MB no genera ni el String ni su substring.
+ *
+ * Los tramos salen de VistaJson.tramo o tramoResuelto. El destino puede ser un
+ * buffer prestado de un pool: decodificar escribe desde su posición y la avanza.
+ */
+public final class DecodificadorBase64 {
+    private static final int BLOQUE = 8192; // caracteres por vuelta, múltiplo de 4
+    private static final ThreadLocal<byte[][]> PASO = ThreadLocal.withInitial(() -> new byte[][] {new byte[BLOQUE], new byte[BLOQUE / 4 * 3]});
+
+    private DecodificadorBase64() {
+    }
+
+    /** Bytes que salen de decodificar el tramo entre position y limit. */
+    public static int longitudDecodificada(ByteBuffer base64) {
+        int n = base64.remaining();
+        int fin = base64.limit();
+        for (int i = 0; i < 2 && n > 0 && base64.get(fin - 1 - i) == '='; i++) n--;
+        if (n % 4 == 1 || (n < base64.remaining() && base64.remaining() % 4 != 0)) {
+            throw new IllegalArgumentException("Base64 con longitud inválida: " + base64.remaining());
+        }
+        return n / 4 * 3 + (n % 4 == 0 ? 0 : n % 4 - 1);
+    }
+
+    /**
+     * Decodifica el tramo (sin moverlo) en destino a partir de su posición, que
+     * avanza; devuelve la cantidad de bytes escritos. IllegalArgumentException si el
+     * tramo no es Base64 o el destino no tiene lugar, sin haber escrito nada en el
+     * segundo caso.
+     */
+    public static int decodificar(ByteBuffer base64, ByteBuffer destino) {
+        int total = longitudDecodificada(base64);
+        if (destino.remaining() < total) {
+            throw new IllegalArgumentException("Destino sin espacio: hacen falta " + total + " bytes");
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[][] paso = PASO.get();
+        int desde = base64.position();
+        int fin = base64.limit();
+        // Bloques completos mientras quede algo detrás: el último lleva el relleno
+        while (fin - desde > BLOQUE) {
+            base64.get(desde, paso[0], 0, BLOQUE);
+            if (decoder.decode(paso[0], paso[1]) != paso[1].length) {
+                throw new IllegalArgumentException("Relleno Base64 antes del final");
+            }
+            destino.put(paso[1]);
+            desde += BLOQUE;
+        }
+        byte[] ultimo = new byte[fin - desde];
+        base64.get(desde, ultimo);
+        destino.put(decoder.decode(ultimo));
+        return total;
+    }
+
+    /** Decodifica el tramo entero en un arreglo nuevo del tamaño justo. */
+    public static byte[] aBytes(ByteBuffer base64) {
+        byte[] res = new byte[longitudDecodificada(base64)];
+        decodificar(base64, ByteBuffer.wrap(res));
+        return res;
+    }
+}
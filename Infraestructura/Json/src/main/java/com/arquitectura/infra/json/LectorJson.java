@@ -0,0 +1,290 @@
+package com.arquitectura.infra.json;
+
+/**
+ * Tokenizador JSON de tipo pull: recorre el texto una sola vez y entrega un token
+ * por llamada a siguiente(). Las comas y los dos puntos se validan y se saltan.
+ *
+ * Los textos no se copian al leerlos: texto() crea el String solo si se pide, y
+ * saltarValor() pasa por encima de un objeto o arreglo entero sin materializar
+ * nada, así que un campo de varios MB que no interesa cuesta un recorrido de
+ * caracteres y ninguna asignación.
+ */
+public final class LectorJson {
+
+    public enum Token {
+        INICIO_OBJETO, FIN_OBJETO, INICIO_ARREGLO, FIN_ARREGLO,
+        CLAVE, TEXTO, NUMERO, VERDADERO, FALSO, NULO, FIN
+    }
+
+    private final String json;
+    private final int fin;
+    private int pos;
+
+    // Pila de contenedores abiertos: true = objeto, false = arreglo
+    private boolean[] pila = new boolean[16];
+    private int nivel;
+    // Lo siguiente dentro de un objeto es una clave; tras un valor hace falta ',' o cierre
+    private boolean esperaClave;
+    private boolean tras;
+
+    private Token actual;
+    private int inicioToken;
+    private int finToken;
+    private boolean conEscapes;
+
+    public LectorJson(String json) {
+        this(json, 0, json.length());
+    }
+
+    public LectorJson(String json, int inicio, int fin) {
+        this.json = json;
+        this.pos = inicio;
+        this.fin = fin;
+    }
+
+    public Token siguiente() {
+        saltarBlancos();
+        if (tras) {
+            if (pos >= fin) return terminar();
+            char c = json.charAt(pos);
+            if (c == ',') {
+                if (nivel == 0) throw error("',' fuera de un objeto o arreglo");
+                pos++;
+                saltarBlancos();
+                tras = false;
+                esperaClave = pila[nivel - 1];
+                if (pos < fin && (json.charAt(pos) == '}' || json.charAt(pos) == ']')) throw error("',' antes de un cierre");
+            } else if (c != '}' && c != ']') {
+                throw error("Se esperaba ',' o cierre");
+            }
+        }
+        if (pos >= fin) return terminar();
+        char c = json.charAt(pos);
+        if (esperaClave) {
+            if (c == '}') return cerrar(true);
+            if (c != '"') throw error("Se esperaba una clave");
+            leerTexto();
+            saltarBlancos();
+            if (pos >= fin || json.charAt(pos) != ':') throw error("Se esperaba ':'");
+            pos++;
+            esperaClave = false;
+            return actual = Token.CLAVE;
+        }
+        inicioToken = pos;
+        switch (c) {
+            case '{' -> {
+                abrir(true);
+                esperaClave = true;
+                return actual = Token.INICIO_OBJETO;
+            }
+            case '[' -> {
+                abrir(false);
+                return actual = Token.INICIO_ARREGLO;
+            }
+            case '}', ']' -> {
+                return cerrar(c == '}');
+            }
+            case '"' -> {
+                leerTexto();
+                tras = true;
+                return actual = Token.TEXTO;
+            }
+            case 't' -> { return literal("true", Token.VERDADERO); }
+            case 'f' -> { return literal("false", Token.FALSO); }
+            case 'n' -> { return literal("null", Token.NULO); }
+            default -> {
+                if (c != '-' && (c < '0' || c > '9')) throw error("Valor inesperado '" + c + "'");
+                pos++;
+                while (pos < fin) {
+                    char d = json.charAt(pos);
+                    if ((d >= '0' && d <= '9') || d == '.' || d == 'e' || d == 'E' || d == '+' || d == '-') pos++;
+                    else break;
+                }
+                finToken = pos;
+                conEscapes = false;
+                tras = true;
+                return actual = Token.NUMERO;
+            }
+        }
+    }
+
+    /** Último token leído. */
+    public Token actual() {
+        return actual;
+    }
+
+    /** Texto del último CLAVE, TEXTO o NUMERO, sin comillas y con los escapes resueltos. */
+    public String texto() {
+        if (!conEscapes) return json.substring(inicioToken, finToken);
+        return desescapar(json, inicioToken, finToken);
+    }
+
+    /** Compara el último CLAVE o TEXTO con otro texto sin crear un String. */
+    public boolean textoEs(String otro) {
+        if (conEscapes) return texto().equals(otro);
+        int n = finToken - inicioToken;
+        return n == otro.length() && json.regionMatches(inicioToken, otro, 0, n);
+    }
+
+    /** Inicio del último token en el texto fuente; en un TEXTO, tras la comilla. */
+    public int inicioToken() {
+        return inicioToken;
+    }
+
+    /** Fin (exclusivo) del último token; en un TEXTO, la comilla de cierre. */
+    public int finToken() {
+        return finToken;
+    }
+
+    /** True si el último TEXTO o CLAVE tiene secuencias de escape. */
+    public boolean tieneEscapes() {
+        return conEscapes;
+    }
+
+    public String fuente() {
+        return json;
+    }
+
+    /** Profundidad actual: 1 dentro del objeto raíz. */
+    public int nivel() {
+        return nivel;
+    }
+
+    /**
+     * Tras un INICIO_OBJETO o INICIO_ARREGLO, avanza hasta su cierre sin producir
+     * tokens; con cualquier otro token no hace nada. Devuelve la posición del cierre
+     * (exclusiva) en el texto fuente.
+     */
+    public int saltarContenido() {
+        if (actual != Token.INICIO_OBJETO && actual != Token.INICIO_ARREGLO) return pos;
+        int profundidad = 1;
+        while (pos < fin) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                pos = finDeTexto(pos);
+                pos++;
+            } else if (c == '{' || c == '[') {
+                profundidad++;
+            } else if (c == '}' || c == ']') {
+                if (--profundidad == 0) {
+                    nivel--;
+                    tras = true;
+                    esperaClave = false;
+                    actual = c == '}' ? Token.FIN_OBJETO : Token.FIN_ARREGLO;
+                    return pos;
+                }
+            }
+        }
+        throw error("Contenedor sin cerrar");
+    }
+
+    /** Lee el siguiente valor y, si es un objeto o arreglo, lo salta entero. */
+    public Token saltarValor() {
+        Token t = siguiente();
+        if (t == Token.INICIO_OBJETO || t == Token.INICIO_ARREGLO) saltarContenido();
+        return t;
+    }
+
+    public int posicion() {
+        return pos;
+    }
+
+    private Token terminar() {
+        if (nivel > 0) throw error("JSON incompleto");
+        return actual = Token.FIN;
+    }
+
+    private void abrir(boolean objeto) {
+        if (nivel == pila.length) pila = java.util.Arrays.copyOf(pila, nivel * 2);
+        pila[nivel++] = objeto;
+        pos++;
+        tras = false;
+    }
+
+    private Token cerrar(boolean objeto) {
+        if (nivel == 0 || pila[nivel - 1] != objeto) throw error("Cierre inesperado");
+        inicioToken = pos;
+        pos++;
+        nivel--;
+        tras = true;
+        esperaClave = false;
+        return actual = objeto ? Token.FIN_OBJETO : Token.FIN_ARREGLO;
+    }
+
+    private Token literal(String palabra, Token token) {
+        if (!json.startsWith(palabra, pos) || pos + palabra.length() > fin) throw error("Literal inválido");
+        pos += palabra.length();
+        finToken = pos;
+        tras = true;
+        return actual = token;
+    }
+
+    // pos está en la comilla de apertura; deja pos tras la de cierre
+    private void leerTexto() {
+        int inicio = pos + 1;
+        int cierre = finDeTexto(inicio);
+        inicioToken = inicio;
+        finToken = cierre;
+        pos = cierre + 1;
+    }
+
+    // Desde el primer carácter del texto hasta su comilla de cierre; anota si hay escapes
+    private int finDeTexto(int desde) {
+        conEscapes = false;
+        int i = desde;
+        while (i < fin) {
+            char c = json.charAt(i);
+            if (c == '"') return i;
+            if (c == '\\') {
+                conEscapes = true;
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        throw error("Texto sin cerrar");
+    }
+
+    private void saltarBlancos() {
+        while (pos < fin) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String motivo) {
+        return new IllegalArgumentException("JSON inválido en la posición " + pos + ": " + motivo);
+    }
+
+    /**
+     * Resuelve los escapes JSON del texto entre inicio y fin (sin comillas). Un escape
+     * incompleto al final se deja tal cual. Lo comparten VistaJson y CodecBinario.
+     */
+    public static String desescapar(String json, int inicio, int fin) {
+        StringBuilder sb = new StringBuilder(fin - inicio);
+        for (int i = inicio; i < fin; i++) {
+            char c = json.charAt(i);
+            if (c != '\\' || i + 1 >= fin) {
+                sb.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (i + 4 < fin) {
+                        sb.append((char) Integer.parseInt(json, i + 1, i + 5, 16));
+                        i += 4;
+                    }
+                }
+                default -> sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,293 @@
+package com.arquitectura.infra.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.arquitectura.infra.json.LectorJson.Token;
+
+/**
+ * Objeto JSON leído de una pasada con LectorJson, con acceso tipado a sus campos.
+ * Los textos quedan como String, los números enteros como Long (los demás como
+ * Double), los objetos como ObjetoJson y los arreglos como List<Object>.
+ *
+ * Inmutable una vez leído, así que se puede compartir entre hilos sin copiarlo.
+ *
+ * Los accesos reciben una o varias claves alternativas y miran solo los campos de
+ * este objeto, en el orden de las claves. Los números escritos entre comillas
+ * ("id":"42") también valen para largo y entero, y "true"/"false" para booleano,
+ * como aceptaban las expresiones regulares a las que sustituye.
+ */
+public final class ObjetoJson {
+    private static final Object NULO = new Object();
+
+    private String[] claves;
+    private Object[] valores;
+    private int cantidad;
+
+    private ObjetoJson(int capacidad) {
+        claves = new String[capacidad];
+        valores = new Object[capacidad];
+    }
+
+    /** Lee un objeto JSON completo; IllegalArgumentException si el texto no es uno. */
+    public static ObjetoJson parsear(String json) {
+        if (json == null) throw new IllegalArgumentException("JSON nulo");
+        LectorJson lector = new LectorJson(json);
+        if (lector.siguiente() != Token.INICIO_OBJETO) throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        ObjetoJson o = leerObjeto(lector);
+        if (lector.siguiente() != Token.FIN) throw new IllegalArgumentException("Contenido tras el objeto JSON");
+        return o;
+    }
+
+    /** Como parsear, pero null si el texto no es un objeto JSON válido. */
+    public static ObjetoJson intentarParsear(String json) {
+        if (json == null) return null;
+        try {
+            return parsear(json);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Lee el objeto cuyo INICIO_OBJETO acaba de devolver el lector, hasta su cierre. */
+    public static ObjetoJson leerObjeto(LectorJson lector) {
+        ObjetoJson o = new ObjetoJson(8);
+        Token t;
+        while ((t = lector.siguiente()) == Token.CLAVE) {
+            String clave = lector.texto();
+            o.agregar(clave, leerValor(lector, lector.siguiente()));
+        }
+        if (t != Token.FIN_OBJETO) throw new IllegalArgumentException("Objeto JSON mal cerrado");
+        return o;
+    }
+
+    private static List<Object> leerArreglo(LectorJson lector) {
+        List<Object> elementos = new ArrayList<>();
+        Token t;
+        while ((t = lector.siguiente()) != Token.FIN_ARREGLO) {
+            elementos.add(leerValor(lector, t));
+        }
+        return Collections.unmodifiableList(elementos);
+    }
+
+    private static Object leerValor(LectorJson lector, Token t) {
+        return switch (t) {
+            case TEXTO -> lector.texto();
+            case NUMERO -> numero(lector.texto());
+            case VERDADERO -> Boolean.TRUE;
+            case FALSO -> Boolean.FALSE;
+            case NULO -> NULO;
+            case INICIO_OBJETO -> leerObjeto(lector);
+            case INICIO_ARREGLO -> leerArreglo(lector);
+            default -> throw new IllegalArgumentException("Valor JSON inesperado: " + t);
+        };
+    }
+
+    private static Object numero(String texto) {
+        boolean entero = true;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') { entero = false; break; }
+        }
+        try {
+            if (entero) return Long.parseLong(texto);
+        } catch (NumberFormatException fueraDeRango) {
+            // Sigue como Double
+        }
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número JSON inválido: " + texto);
+        }
+    }
+
+    private void agregar(String clave, Object valor) {
+        if (cantidad == claves.length) {
+            claves = Arrays.copyOf(claves, cantidad * 2);
+            valores = Arrays.copyOf(valores, cantidad * 2);
+        }
+        claves[cantidad] = clave;
+        valores[cantidad++] = valor;
+    }
+
+    private int indice(String clave) {
+        for (int i = 0; i < cantidad; i++) {
+            if (claves[i].equals(clave)) return i;
+        }
+        return -1;
+    }
+
+    public int tamanio() {
+        return cantidad;
+    }
+
+    public boolean contiene(String clave) {
+        return indice(clave) >= 0;
+    }
+
+    /** True si alguna de las claves está, aunque su valor sea null. */
+    public boolean contieneAlguna(String... claves) {
+        for (String c : claves) {
+            if (indice(c) >= 0) return true;
+        }
+        return false;
+    }
+
+    public boolean esNulo(String clave) {
+        int i = indice(clave);
+        return i >= 0 && valores[i] == NULO;
+    }
+
+    /** Primer valor de texto entre las claves; salta las que no existen o no son texto. */
+    public String texto(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i >= 0 && valores[i] instanceof String s) return s;
+        }
+        return null;
+    }
+
+    /**
+     * El valor de la primera clave presente, si es texto; null si es null, otro tipo
+     * o ninguna está. A diferencia de texto, un "contenido":null no deja pasar a la
+     * siguiente clave.
+     */
+    public String textoDeLaPrimera(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i >= 0) return valores[i] instanceof String s ? s : null;
+        }
+        return null;
+    }
+
+    public Long largo(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i < 0) continue;
+            Long v = comoLargo(valores[i]);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    public Integer entero(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i < 0) continue;
+            Long v = comoLargo(valores[i]);
+            if (v != null && v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return v.intValue();
+        }
+        return null;
+    }
+
+    public Boolean booleano(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i < 0) continue;
+            Boolean v = comoBooleano(valores[i]);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    public ObjetoJson objeto(String... claves) {
+        for (String c : claves) {
+            int i = indice(c);
+            if (i >= 0 && valores[i] instanceof ObjetoJson o) return o;
+        }
+        return null;
+    }
+
+    /** Elementos del arreglo, o una lista vacía si no está o no es un arreglo. */
+    @SuppressWarnings("unchecked")
+    public List<Object> arreglo(String clave) {
+        int i = indice(clave);
+        if (i >= 0 && valores[i] instanceof List<?> l) return (List<Object>) l;
+        return Collections.emptyList();
+    }
+
+    /** Los objetos del arreglo; los elementos que no son objetos se ignoran. */
+    public List<ObjetoJson> objetos(String clave) {
+        List<Object> elementos = arreglo(clave);
+        List<ObjetoJson> res = new ArrayList<>(elementos.size());
+        for (Object e : elementos) {
+            if (e instanceof ObjetoJson o) res.add(o);
+        }
+        return res;
+    }
+
+    /** Los objetos del primer campo que sea un arreglo, cualquiera sea su clave. */
+    public List<ObjetoJson> objetosDelPrimerArreglo() {
+        for (int i = 0; i < cantidad; i++) {
+            if (valores[i] instanceof List) return objetos(claves[i]);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Primer texto con esa clave en este objeto o en los anidados, en el orden del
+     * documento. Para respuestas del servidor cuya forma no es fija.
+     */
+    public String buscarTexto(String clave) {
+        Object v = buscar(this, clave, String.class);
+        return (String) v;
+    }
+
+    /** Como buscarTexto, para el primer valor entero con esa clave. */
+    public Long buscarLargo(String clave) {
+        return (Long) buscar(this, clave, Long.class);
+    }
+
+    /** Como buscarTexto, para el primer true/false con esa clave. */
+    public Boolean buscarBooleano(String clave) {
+        return (Boolean) buscar(this, clave, Boolean.class);
+    }
+
+    private static Object buscar(Object valor, String clave, Class<?> tipo) {
+        if (valor instanceof ObjetoJson o) {
+            for (int i = 0; i < o.cantidad; i++) {
+                Object v = o.valores[i];
+                if (o.claves[i].equals(clave)) {
+                    Object convertido = tipo == String.class ? (v instanceof String ? v : null)
+                            : tipo == Long.class ? comoLargo(v) : comoBooleano(v);
+                    if (convertido != null) return convertido;
+                }
+                if (v instanceof ObjetoJson || v instanceof List) {
+                    Object r = buscar(v, clave, tipo);
+                    if (r != null) return r;
+                }
+            }
+        } else if (valor instanceof List<?> l) {
+            for (Object e : l) {
+                Object r = buscar(e, clave, tipo);
+                if (r != null) return r;
+            }
+        }
+        return null;
+    }
+
+    private static Long comoLargo(Object v) {
+        if (v instanceof Long l) return l;
+        if (v instanceof String s) {
+            String t = s.trim();
+            if (t.isEmpty()) return null;
+            try {
+                return Long.parseLong(t);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Boolean comoBooleano(Object v) {
+        if (v instanceof Boolean b) return b;
+        if (v instanceof String s) {
+            if (s.equalsIgnoreCase("true")) return Boolean.TRUE;
+            if (s.equalsIgnoreCase("false")) return Boolean.FALSE;
+        }
+        return null;
+    }
+}
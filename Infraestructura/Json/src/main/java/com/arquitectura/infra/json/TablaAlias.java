@@ -0,0 +1,98 @@
+package com.arquitectura.infra.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Claves alternativas de los campos de un tipo de objeto JSON: cada campo tiene sus
+ * alias en orden de preferencia y un mismo alias puede servir a varios campos
+ * ("audio" es marca de audio y también Base64). La tabla de dispersión se arma una
+ * vez; CamposJson la usa para ubicar todos los campos de un objeto en una sola
+ * pasada por sus claves, comparando los bytes de la trama sin crear Strings.
+ *
+ * Inmutable; se declara como constante y se comparte entre hilos.
+ */
+public final class TablaAlias {
+    private final byte[][] alias;
+    private final int[][] aliasDeCampo;
+    // Direccionamiento abierto: índice de alias + 1, 0 = libre
+    private final int[] ranuras;
+    private final int mascara;
+
+    /** Cada argumento es un campo: sus alias, del preferido al último. */
+    public TablaAlias(String[]... campos) {
+        List<String> distintos = new ArrayList<>();
+        aliasDeCampo = new int[campos.length][];
+        for (int c = 0; c < campos.length; c++) {
+            if (campos[c].length == 0) throw new IllegalArgumentException("Campo " + c + " sin alias");
+            aliasDeCampo[c] = new int[campos[c].length];
+            for (int i = 0; i < campos[c].length; i++) {
+                if (campos[c][i].isEmpty()) throw new IllegalArgumentException("Alias vacío en el campo " + c);
+                int a = distintos.indexOf(campos[c][i]);
+                if (a < 0) {
+                    a = distintos.size();
+                    distintos.add(campos[c][i]);
+                }
+                aliasDeCampo[c][i] = a;
+            }
+        }
+        alias = new byte[distintos.size()][];
+        int capacidad = Integer.highestOneBit(Math.max(4, distintos.size() * 4) - 1) << 1;
+        ranuras = new int[capacidad];
+        mascara = capacidad - 1;
+        for (int a = 0; a < alias.length; a++) {
+            alias[a] = distintos.get(a).getBytes(StandardCharsets.UTF_8);
+            int r = dispersion(alias[a].length, alias[a][0], alias[a][alias[a].length / 2], alias[a][alias[a].length - 1]) & mascara;
+            while (ranuras[r] != 0) r = (r + 1) & mascara;
+            ranuras[r] = a + 1;
+        }
+    }
+
+    public int campos() {
+        return aliasDeCampo.length;
+    }
+
+    int cantidadAlias() {
+        return alias.length;
+    }
+
+    int[] aliasDe(int campo) {
+        return aliasDeCampo[campo];
+    }
+
+    /** Alias con esos bytes (sin comillas ni escapes), o -1. */
+    int buscar(ByteBuffer datos, int inicio, int fin) {
+        int n = fin - inicio;
+        if (n == 0) return -1;
+        int r = dispersion(n, datos.get(inicio), datos.get(inicio + n / 2), datos.get(fin - 1)) & mascara;
+        for (int a; (a = ranuras[r] - 1) >= 0; r = (r + 1) & mascara) {
+            byte[] b = alias[a];
+            if (b.length == n && iguales(datos, inicio, b)) return a;
+        }
+        return -1;
+    }
+
+    private static boolean iguales(ByteBuffer datos, int inicio, byte[] b) {
+        for (int i = 0; i < b.length; i++) {
+            if (datos.get(inicio + i) != b[i]) return false;
+        }
+        return true;
+    }
+
+    int buscar(String clave) {
+        byte[] b = clave.getBytes(StandardCharsets.UTF_8);
+        for (int a = 0; a < alias.length; a++) {
+            if (Arrays.equals(alias[a], b)) return a;
+        }
+        return -1;
+    }
+
+    // Largo y tres bytes: basta para separar los alias de un mismo objeto
+    private static int dispersion(int largo, byte primero, byte medio, byte ultimo) {
+        int h = largo * 0x9E3779B9 ^ primero << 16 ^ medio << 8 ^ ultimo;
+        return h ^ h >>> 15;
+    }
+}
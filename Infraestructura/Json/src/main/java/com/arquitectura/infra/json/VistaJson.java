@@ -0,0 +1,576 @@
+package com.arquitectura.infra.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Objeto JSON leído sobre los bytes UTF-8 de una trama, sin pasarla a String. Una
+ * sola pasada estructural anota dónde empieza y termina cada clave y cada valor del
+ * documento entero (una "cinta" de enteros); los valores se crean recién cuando se
+ * piden y los objetos anidados son vistas sobre la misma cinta, sin volver a leer.
+ *
+ * Los textos de las claves de datos binarios (audioBase64, foto...) quedan como
+ * tramos opacos: no se copian nunca salvo que se pidan con texto(), se pueden leer
+ * tal cual con tramo() (y decodificar con DecodificadorBase64) y en
+ * textoAbreviado() salen recortados, como en los logs.
+ *
+ * Los accesos siguen las reglas de ObjetoJson: claves alternativas, solo campos de
+ * este objeto, y números o booleanos escritos entre comillas también valen. Es
+ * inmutable una vez leída.
+ */
+public final class VistaJson {
+    private static final int CLAVE = 1, CADENA = 2, NUMERO = 3, VERDADERO = 4, FALSO = 5,
+            NULO = 6, OBJETO = 7, ARREGLO = 8, TRAMO = 9;
+    private static final int TIPO = 0xF;
+    private static final int CON_ESCAPES = 0x10;
+    private static final long COMILLAS = 0x2222222222222222L;
+    private static final long BARRAS = 0x5C5C5C5C5C5C5C5CL;
+
+    /** Claves cuyo texto es Base64 de audio o imagen. */
+    private static final String[] CLAVES_OPACAS = {"audioBase64", "base64", "audio", "foto", "fotoBase64", "imagenBase64", "archivoBase64"};
+
+    private final Cinta cinta;
+    private final int nodo;
+
+    private VistaJson(Cinta cinta, int nodo) {
+        this.cinta = cinta;
+        this.nodo = nodo;
+    }
+
+    /**
+     * Lee el objeto JSON entre position y limit del buffer, que no se copia ni se
+     * mueve; IllegalArgumentException si no es uno.
+     */
+    public static VistaJson de(ByteBuffer datos) {
+        Cinta c = new Cinta(datos.slice());
+        c.blancos();
+        if (c.pos >= c.largo || c.datos.get(c.pos) != '{') throw c.error("Se esperaba un objeto JSON");
+        c.objeto();
+        c.blancos();
+        if (c.pos < c.largo) throw c.error("Contenido tras el objeto JSON");
+        return new VistaJson(c, 0);
+    }
+
+    public static VistaJson de(String json) {
+        if (json == null) throw new IllegalArgumentException("JSON nulo");
+        return de(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Como de, pero null si los bytes no son un objeto JSON válido. */
+    public static VistaJson intentar(ByteBuffer datos) {
+        if (datos == null) return null;
+        try {
+            return de(datos);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public int tamanio() {
+        int n = 0;
+        for (int k = nodo + 1; k < cinta.siguiente(nodo); k = cinta.siguiente(k + 1)) n++;
+        return n;
+    }
+
+    public boolean contiene(String clave) {
+        return valor(clave) >= 0;
+    }
+
+    /** True si alguna de las claves está, aunque su valor sea null. */
+    public boolean contieneAlguna(String... claves) {
+        for (String c : claves) {
+            if (valor(c) >= 0) return true;
+        }
+        return false;
+    }
+
+    public boolean esNulo(String clave) {
+        int v = valor(clave);
+        return v >= 0 && cinta.tipo(v) == NULO;
+    }
+
+    /** Primer valor de texto entre las claves; salta las que no existen o no son texto. */
+    public String texto(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v >= 0 && esTexto(v)) return cinta.texto(v);
+        }
+        return null;
+    }
+
+    /** El valor de la primera clave presente, si es texto (ver ObjetoJson.textoDeLaPrimera). */
+    public String textoDeLaPrimera(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v >= 0) return esTexto(v) ? cinta.texto(v) : null;
+        }
+        return null;
+    }
+
+    public Long largo(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v < 0) continue;
+            Long l = comoLargo(v);
+            if (l != null) return l;
+        }
+        return null;
+    }
+
+    public Integer entero(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v < 0) continue;
+            Long l = comoLargo(v);
+            if (l != null && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) return l.intValue();
+        }
+        return null;
+    }
+
+    public Boolean booleano(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v < 0) continue;
+            Boolean b = comoBooleano(v);
+            if (b != null) return b;
+        }
+        return null;
+    }
+
+    public VistaJson objeto(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v >= 0 && cinta.tipo(v) == OBJETO) return new VistaJson(cinta, v);
+        }
+        return null;
+    }
+
+    /** Los objetos del arreglo; los elementos que no son objetos se ignoran. */
+    public List<VistaJson> objetos(String clave) {
+        int v = valor(clave);
+        if (v < 0 || cinta.tipo(v) != ARREGLO) return Collections.emptyList();
+        List<VistaJson> res = new ArrayList<>();
+        for (int k = v + 1; k < cinta.siguiente(v); k = cinta.siguiente(k)) {
+            if (cinta.tipo(k) == OBJETO) res.add(new VistaJson(cinta, k));
+        }
+        return res;
+    }
+
+    /**
+     * Los bytes de un texto sin escapes, sin comillas y sin copiarlos; null si la
+     * clave no está o su valor no es un texto así. Pensado para los tramos Base64.
+     */
+    public ByteBuffer tramo(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v >= 0 && esTexto(v) && (cinta.nodos[4 * v] & CON_ESCAPES) == 0) {
+                int inicio = cinta.inicio(v);
+                return cinta.datos.slice(inicio, cinta.fin(v) - inicio).asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Como tramo, pero un texto con escapes (el "\/" que ponen algunos serializadores
+     * en el Base64) también vale: se resuelve en una copia. Null si no hay texto.
+     */
+    public ByteBuffer tramoResuelto(String... claves) {
+        for (String c : claves) {
+            int v = valor(c);
+            if (v >= 0 && esTexto(v)) return tramoResuelto(v);
+        }
+        return null;
+    }
+
+    /** Primer texto con esa clave en este objeto o en los anidados, en el orden del documento. */
+    public String buscarTexto(String clave) {
+        int v = buscar(clave, CADENA);
+        return v >= 0 ? cinta.texto(v) : null;
+    }
+
+    public Long buscarLargo(String clave) {
+        int v = buscar(clave, NUMERO);
+        return v >= 0 ? comoLargo(v) : null;
+    }
+
+    public Boolean buscarBooleano(String clave) {
+        int v = buscar(clave, VERDADERO);
+        return v >= 0 ? comoBooleano(v) : null;
+    }
+
+    /**
+     * El JSON de este objeto tal como llegó, con los tramos opacos recortados a sus
+     * primeros caracteres seguidos de "...". Para los logs.
+     */
+    public String textoAbreviado(int previsualizacion) {
+        int desde = cinta.inicio(nodo);
+        int hasta = cinta.fin(nodo);
+        byte[] salida = new byte[Math.min(hasta - desde, 256)];
+        int n = 0;
+        for (int k = nodo + 1; k < cinta.siguiente(nodo); k++) {
+            if (cinta.tipo(k) != TRAMO || cinta.fin(k) - cinta.inicio(k) <= previsualizacion) continue;
+            int corte = cinta.inicio(k) + previsualizacion;
+            salida = agregar(salida, n, desde, corte);
+            n += corte - desde;
+            salida = agregar(salida, n, "...");
+            n += 3;
+            desde = cinta.fin(k);
+        }
+        salida = agregar(salida, n, desde, hasta);
+        n += hasta - desde;
+        return new String(salida, 0, n, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return textoAbreviado(10);
+    }
+
+    private byte[] agregar(byte[] salida, int n, int desde, int hasta) {
+        salida = asegurar(salida, n + hasta - desde);
+        cinta.datos.get(desde, salida, n, hasta - desde);
+        return salida;
+    }
+
+    private static byte[] agregar(byte[] salida, int n, String ascii) {
+        salida = asegurar(salida, n + ascii.length());
+        for (int i = 0; i < ascii.length(); i++) salida[n + i] = (byte) ascii.charAt(i);
+        return salida;
+    }
+
+    private static byte[] asegurar(byte[] b, int necesario) {
+        return necesario <= b.length ? b : Arrays.copyOf(b, Math.max(necesario, b.length * 2));
+    }
+
+    // Nodo del valor de la clave entre los campos directos de este objeto, o -1
+    private int valor(String clave) {
+        if (cinta.tipo(nodo) != OBJETO) return -1;
+        int fin = cinta.siguiente(nodo);
+        for (int k = nodo + 1; k < fin; k = cinta.siguiente(k + 1)) {
+            if (cinta.claveEs(k, clave)) return k + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Una pasada por las claves de este objeto: deja en nodos[alias] el nodo del
+     * valor de cada alias de la tabla que aparezca (el primero si se repite) y -1 en
+     * los demás. La usa CamposJson.
+     */
+    void anotarCampos(TablaAlias tabla, int[] nodos) {
+        Arrays.fill(nodos, -1);
+        if (cinta.tipo(nodo) != OBJETO) return;
+        int fin = cinta.siguiente(nodo);
+        for (int k = nodo + 1; k < fin; k = cinta.siguiente(k + 1)) {
+            int a = (cinta.nodos[4 * k] & CON_ESCAPES) != 0
+                    ? tabla.buscar(cinta.texto(k))
+                    : tabla.buscar(cinta.datos, cinta.inicio(k), cinta.fin(k));
+            if (a >= 0 && nodos[a] < 0) nodos[a] = k + 1;
+        }
+    }
+
+    // Accesos por nodo, para CamposJson; v es el nodo de un valor de este documento
+
+    String texto(int v) {
+        return cinta.texto(v);
+    }
+
+    VistaJson objeto(int v) {
+        return cinta.tipo(v) == OBJETO ? new VistaJson(cinta, v) : null;
+    }
+
+    ByteBuffer tramoResuelto(int v) {
+        if ((cinta.nodos[4 * v] & CON_ESCAPES) == 0) {
+            int inicio = cinta.inicio(v);
+            return cinta.datos.slice(inicio, cinta.fin(v) - inicio).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(cinta.texto(v).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Recorre los nodos en orden; tipo CADENA, NUMERO o VERDADERO elige la conversión
+    private int buscar(String clave, int tipo) {
+        int fin = cinta.siguiente(nodo);
+        for (int k = nodo + 1; k < fin; k++) {
+            if (cinta.tipo(k) != CLAVE || !cinta.claveEs(k, clave)) continue;
+            int v = k + 1;
+            boolean vale = switch (tipo) {
+                case CADENA -> esTexto(v);
+                case NUMERO -> comoLargo(v) != null;
+                default -> comoBooleano(v) != null;
+            };
+            if (vale) return v;
+        }
+        return -1;
+    }
+
+    boolean esTexto(int v) {
+        int t = cinta.tipo(v);
+        return t == CADENA || t == TRAMO;
+    }
+
+    Long comoLargo(int v) {
+        int t = cinta.tipo(v);
+        if (t == NUMERO) return cinta.numeroEntero(cinta.inicio(v), cinta.fin(v));
+        if (t != CADENA) return null;
+        String s = cinta.texto(v).trim();
+        if (s.isEmpty()) return null;
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    Boolean comoBooleano(int v) {
+        int t = cinta.tipo(v);
+        if (t == VERDADERO) return Boolean.TRUE;
+        if (t == FALSO) return Boolean.FALSE;
+        if (t != CADENA) return null;
+        int n = cinta.fin(v) - cinta.inicio(v);
+        if (n != 4 && n != 5) return null;
+        String s = cinta.texto(v);
+        if (s.equalsIgnoreCase("true")) return Boolean.TRUE;
+        if (s.equalsIgnoreCase("false")) return Boolean.FALSE;
+        return null;
+    }
+
+    /**
+     * Resultado de la pasada: cuatro enteros por nodo (tipo, inicio, fin y el nodo
+     * que sigue a todo su contenido). En un objeto los hijos alternan clave y valor.
+     * Para textos inicio y fin excluyen las comillas.
+     */
+    private static final class Cinta {
+        final ByteBuffer datos;
+        final int largo;
+        int[] nodos;
+        int cantidad;
+        int pos;
+
+        Cinta(ByteBuffer datos) {
+            this.datos = datos;
+            this.largo = datos.limit();
+            // Crece si hace falta; un tramo de varios MB no suma nodos
+            this.nodos = new int[Math.max(64, Math.min(largo / 8, 1 << 16) & ~3)];
+        }
+
+        int tipo(int n) { return nodos[4 * n] & TIPO; }
+        int inicio(int n) { return nodos[4 * n + 1]; }
+        int fin(int n) { return nodos[4 * n + 2]; }
+        int siguiente(int n) { return nodos[4 * n + 3]; }
+
+        private int nuevo(int tipo, int inicio, int fin) {
+            if (4 * cantidad + 4 > nodos.length) nodos = Arrays.copyOf(nodos, nodos.length * 2);
+            int n = cantidad++;
+            nodos[4 * n] = tipo;
+            nodos[4 * n + 1] = inicio;
+            nodos[4 * n + 2] = fin;
+            nodos[4 * n + 3] = n + 1;
+            return n;
+        }
+
+        private void cerrar(int n) {
+            nodos[4 * n + 2] = pos;
+            nodos[4 * n + 3] = cantidad;
+        }
+
+        // pos está en '{'
+        void objeto() {
+            int n = nuevo(OBJETO, pos, 0);
+            pos++;
+            blancos();
+            if (pos < largo && datos.get(pos) == '}') {
+                pos++;
+                cerrar(n);
+                return;
+            }
+            while (true) {
+                blancos();
+                if (pos >= largo || datos.get(pos) != '"') throw error("Se esperaba una clave");
+                int clave = cadena(CLAVE);
+                blancos();
+                if (pos >= largo || datos.get(pos) != ':') throw error("Se esperaba ':'");
+                pos++;
+                blancos();
+                if (pos < largo && datos.get(pos) == '"' && esOpaca(clave)) cadena(TRAMO);
+                else valor();
+                blancos();
+                if (pos >= largo) throw error("JSON incompleto");
+                byte b = datos.get(pos++);
+                if (b == '}') break;
+                if (b != ',') throw error("Se esperaba ',' o '}'");
+            }
+            cerrar(n);
+        }
+
+        private void arreglo() {
+            int n = nuevo(ARREGLO, pos, 0);
+            pos++;
+            blancos();
+            if (pos < largo && datos.get(pos) == ']') {
+                pos++;
+                cerrar(n);
+                return;
+            }
+            while (true) {
+                valor();
+                blancos();
+                if (pos >= largo) throw error("JSON incompleto");
+                byte b = datos.get(pos++);
+                if (b == ']') break;
+                if (b != ',') throw error("Se esperaba ',' o ']'");
+            }
+            cerrar(n);
+        }
+
+        private void valor() {
+            blancos();
+            if (pos >= largo) throw error("JSON incompleto");
+            byte b = datos.get(pos);
+            switch (b) {
+                case '{' -> objeto();
+                case '[' -> arreglo();
+                case '"' -> cadena(CADENA);
+                case 't' -> literal("true", VERDADERO);
+                case 'f' -> literal("false", FALSO);
+                case 'n' -> literal("null", NULO);
+                default -> {
+                    if (b != '-' && (b < '0' || b > '9')) throw error("Valor inesperado '" + (char) b + "'");
+                    int inicio = pos++;
+                    while (pos < largo) {
+                        byte d = datos.get(pos);
+                        if ((d >= '0' && d <= '9') || d == '.' || d == 'e' || d == 'E' || d == '+' || d == '-') pos++;
+                        else break;
+                    }
+                    nuevo(NUMERO, inicio, pos);
+                }
+            }
+        }
+
+        // pos está en la comilla de apertura; un tramo con escapes queda como texto normal
+        private int cadena(int tipo) {
+            int inicio = pos + 1;
+            int i = saltarSinComillas(inicio);
+            boolean escapes = false;
+            while (true) {
+                if (i >= largo) throw error("Texto sin cerrar");
+                byte b = datos.get(i);
+                if (b == '"') break;
+                if (b == '\\') {
+                    escapes = true;
+                    i += 2;
+                } else {
+                    i++;
+                }
+            }
+            pos = i + 1;
+            if (escapes) {
+                if (tipo == TRAMO) tipo = CADENA;
+                tipo |= CON_ESCAPES;
+            }
+            return nuevo(tipo, inicio, i);
+        }
+
+        // De 8 en 8 bytes hasta el primer bloque con '"' o '\\': un Base64 largo se
+        // recorre sin mirar byte por byte
+        private int saltarSinComillas(int i) {
+            while (i + 8 <= largo) {
+                long w = datos.getLong(i);
+                if (contieneByte(w, COMILLAS) || contieneByte(w, BARRAS)) break;
+                i += 8;
+            }
+            return i;
+        }
+
+        private static boolean contieneByte(long w, long patron) {
+            long x = w ^ patron;
+            return ((x - 0x0101010101010101L) & ~x & 0x8080808080808080L) != 0;
+        }
+
+        private void literal(String palabra, int tipo) {
+            int n = palabra.length();
+            if (pos + n > largo) throw error("Literal inválido");
+            for (int i = 0; i < n; i++) {
+                if (datos.get(pos + i) != palabra.charAt(i)) throw error("Literal inválido");
+            }
+            nuevo(tipo, pos, pos + n);
+            pos += n;
+        }
+
+        void blancos() {
+            while (pos < largo) {
+                byte b = datos.get(pos);
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+                pos++;
+            }
+        }
+
+        private boolean esOpaca(int clave) {
+            // Las iniciales de CLAVES_OPACAS
+            byte primero = datos.get(inicio(clave));
+            if (primero != 'a' && primero != 'b' && primero != 'f' && primero != 'i') return false;
+            for (String c : CLAVES_OPACAS) {
+                if (claveEs(clave, c)) return true;
+            }
+            return false;
+        }
+
+        boolean claveEs(int n, String clave) {
+            if ((nodos[4 * n] & CON_ESCAPES) != 0) return texto(n).equals(clave);
+            int inicio = inicio(n);
+            int largoClave = fin(n) - inicio;
+            if (largoClave != clave.length()) {
+                return largoClave > clave.length() && !esAscii(clave) && texto(n).equals(clave);
+            }
+            for (int i = 0; i < largoClave; i++) {
+                char c = clave.charAt(i);
+                if (c >= 0x80) return texto(n).equals(clave);
+                if (datos.get(inicio + i) != c) return false;
+            }
+            return true;
+        }
+
+        private static boolean esAscii(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) >= 0x80) return false;
+            }
+            return true;
+        }
+
+        String texto(int n) {
+            int inicio = inicio(n);
+            byte[] b = new byte[fin(n) - inicio];
+            datos.get(inicio, b);
+            String s = new String(b, StandardCharsets.UTF_8);
+            return (nodos[4 * n] & CON_ESCAPES) != 0 ? LectorJson.desescapar(s, 0, s.length()) : s;
+        }
+
+        // null si tiene decimales, exponente o no cabe en un long (como ObjetoJson)
+        Long numeroEntero(int inicio, int fin) {
+            int i = inicio;
+            boolean negativo = datos.get(i) == '-';
+            if (negativo) i++;
+            if (i == fin) return null;
+            long v = 0;
+            for (; i < fin; i++) {
+                byte d = datos.get(i);
+                if (d < '0' || d > '9') return null;
+                if (v < (Long.MIN_VALUE + (d - '0')) / 10) return null;
+                v = v * 10 - (d - '0');
+            }
+            if (!negativo) {
+                if (v == Long.MIN_VALUE) return null;
+                v = -v;
+            }
+            return v;
+        }
+
+        IllegalArgumentException error(String motivo) {
+            return new IllegalArgumentException("JSON inválido en la posición " + pos + ": " + motivo);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.arquitectura.repositorios;
+
+import com.arquitectura.infra.json.TablaAlias;
+
+/**
+ * Campos de un mensaje del servidor (MESSAGE_SYNC o EVENT) con todos los nombres
+ * con que los mandan las distintas versiones del servidor y del P2P. Las mismas
+ * claves sirven para el objeto "contenido" anidado. Se leen con un CamposJson:
+ *
+ *   CamposJson m = new CamposJson(CamposMensajeSync.TABLA);
+ *   Long serverId = m.leer(obj).largo(CamposMensajeSync.SERVER_ID);
+ */
+public final class CamposMensajeSync {
+    public static final int SERVER_ID = 0;
+    public static final int TIPO = 1;
+    public static final int EMISOR = 2;
+    public static final int EMISOR_NOMBRE = 3;
+    public static final int RECEPTOR = 4;
+    public static final int RECEPTOR_NOMBRE = 5;
+    public static final int CANAL_ID = 6;
+    public static final int CANAL_UUID = 7;
+    public static final int CANAL = 8;
+    public static final int TIMESTAMP = 9;
+    public static final int TIPO_CONVERSACION = 10;
+    public static final int ES_AUDIO = 11;
+    public static final int CONTENIDO = 12;
+    public static final int TEXTO = 13;
+    public static final int RUTA = 14;
+    public static final int TRANSCRIPCION = 15;
+    public static final int AUDIO_BASE64 = 16;
+    public static final int MIME = 17;
+    public static final int DURACION = 18;
+    // Respaldo en la raíz del lote de MESSAGE_SYNC cuando "contenido" no trae el dato;
+    // conserva el orden de siempre (audioMime antes que mime, solo transcripcion/texto)
+    public static final int TRANSCRIPCION_RAIZ = 19;
+    public static final int MIME_RAIZ = 20;
+    public static final int DURACION_RAIZ = 21;
+
+    // En el orden de las constantes
+    public static final TablaAlias TABLA = new TablaAlias(
+            new String[] {"serverId", "mensajeId", "messageId", "id"},
+            new String[] {"tipo", "tipoMensaje"},
+            new String[] {"emisor", "emisorId"},
+            new String[] {"emisorNombre", "nombreEmisor", "emisor_nombre", "emisorNombreUsuario", "emisorName"},
+            new String[] {"receptor", "receptorId"},
+            new String[] {"receptorNombre", "nombreReceptor", "receptor_nombre", "receptorNombreUsuario", "receptorName"},
+            new String[] {"canalId"},
+            new String[] {"canalUuid", "uuidCanal", "canalUUID"},
+            new String[] {"canal"},
+            new String[] {"timeStamp", "timestamp"},
+            new String[] {"tipoConversacion"},
+            new String[] {"esAudio", "audio", "audioFlag"},
+            new String[] {"contenido"},
+            new String[] {"contenido", "texto", "mensaje"},
+            new String[] {"rutaArchivo", "ruta", "rutaAudio"},
+            new String[] {"transcripcion", "transcripcionTexto", "transcripcionMensaje", "transcription"},
+            new String[] {"audioBase64", "base64", "audio"},
+            new String[] {"mime", "mimeType", "tipoMime", "audioMime"},
+            new String[] {"duracionSeg", "duracion", "duracionSegundos", "duracionEnSegundos", "audioDuracionSeg"},
+            new String[] {"transcripcion", "texto"},
+            new String[] {"audioMime", "mime"},
+            new String[] {"audioDuracionSeg", "duracion"});
+
+    private CamposMensajeSync() {
+    }
+}
@@ -9,6 +9,9 @@ import java.sql.Types;
 import java.util.Objects;
 
 import com.arquitectura.config.ProveedorConexionCliente;
+import com.arquitectura.infra.json.CamposJson;
+import com.arquitectura.infra.json.DecodificadorBase64;
+import com.arquitectura.infra.json.VistaJson;
 
 public class RepositorioMensajes {
 
@@ -61,9 +64,9 @@ public class RepositorioMensajes {
         throw new SQLException("No se pudo obtener el id generado del mensaje de audio");
     }
 
-    public long insertarMensajeAudioConRuta(Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String transcripcion, String tipo, String rutaArchivo, String audioBase64, String mime, Integer duracionSeg) throws SQLException {
+    public long insertarMensajeAudioConRuta(Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String transcripcion, String tipo, String rutaArchivo, java.nio.ByteBuffer audio, String mime, Integer duracionSeg) throws SQLException {
         validarDestino(receptorId, canalId);
-        String sql = "INSERT INTO mensajes (fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, contexto_usuario_id) " +
+        String sql = "INSERT INTO mensajes (fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_datos, audio_mime, audio_duracion_seg, contexto_usuario_id) " +
                 "VALUES (CURRENT_TIMESTAMP, ?, ?, ?, ?, ?, ?, TRUE, ?, ?, ?, ?, ?, ?)";
         try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion();
              PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -75,7 +78,7 @@ public class RepositorioMensajes {
             if (canalId != null) ps.setLong(6, canalId); else ps.setNull(6, Types.BIGINT);
             if (transcripcion != null) ps.setString(7, transcripcion); else ps.setNull(7, Types.CLOB);
             ps.setString(8, rutaArchivo);
-            if (audioBase64 != null) ps.setString(9, audioBase64); else ps.setNull(9, Types.CLOB);
+            fijarAudio(ps, 9, audio);
             if (mime != null) ps.setString(10, mime); else ps.setNull(10, Types.VARCHAR);
             if (duracionSeg != null) ps.setInt(11, duracionSeg); else ps.setNull(11, Types.INTEGER);
             ps.setLong(12, contextoActual());
@@ -97,7 +100,7 @@ public class RepositorioMensajes {
     }
     public java.util.List<com.arquitectura.entidades.MensajeLocal> listarMensajesDeCanal(Long canalId, Integer limit) throws SQLException {
         if (canalId == null) return java.util.List.of();
-        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg " +
+        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, audio_datos " +
                      "FROM mensajes WHERE canal_id = ? AND contexto_usuario_id = ? ORDER BY fecha_envio ASC" + (limit != null ? " LIMIT ?" : "");
         java.util.List<com.arquitectura.entidades.MensajeLocal> res = new java.util.ArrayList<>();
         try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion();
@@ -119,7 +122,7 @@ public class RepositorioMensajes {
                     if (esAudio) {
                         String ruta = rs.getString(11);
                         String transcripcion = rs.getString(10);
-                        String audioBase64 = rs.getString(12);
+                        byte[] audio = leerAudio(rs, 15, 12);
                         String audioMime = rs.getString(13);
                         Integer duracion = rs.getObject(14) != null ? rs.getInt(14) : null;
                         com.arquitectura.entidades.AudioMensajeLocal a = new com.arquitectura.entidades.AudioMensajeLocal();
@@ -133,7 +136,7 @@ public class RepositorioMensajes {
                         a.setCanalId(canal);
                         a.setRutaArchivo(ruta);
                         a.setTranscripcion(transcripcion);
-                        if (audioBase64 != null) a.setAudioBase64(audioBase64);
+                        if (audio != null) a.setAudio(audio);
                         if (audioMime != null) a.setMime(audioMime);
                         if (duracion != null) a.setDuracionSeg(duracion);
                         res.add(a);
@@ -160,7 +163,7 @@ public class RepositorioMensajes {
     /** Listar mensajes de un canal por su UUID (útil en entornos P2P con IDs diferentes entre servidores) */
     public java.util.List<com.arquitectura.entidades.MensajeLocal> listarMensajesDeCanalPorUuid(String canalUuid, Integer limit) throws SQLException {
         if (canalUuid == null || canalUuid.isBlank()) return java.util.List.of();
-        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg " +
+        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, audio_datos " +
                      "FROM mensajes WHERE canal_uuid = ? AND contexto_usuario_id = ? ORDER BY fecha_envio ASC" + (limit != null ? " LIMIT ?" : "");
         java.util.List<com.arquitectura.entidades.MensajeLocal> res = new java.util.ArrayList<>();
         try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion();
@@ -182,7 +185,7 @@ public class RepositorioMensajes {
                     if (esAudio) {
                         String ruta = rs.getString(11);
                         String transcripcion = rs.getString(10);
-                        String audioBase64 = rs.getString(12);
+                        byte[] audio = leerAudio(rs, 15, 12);
                         String audioMime = rs.getString(13);
                         Integer duracion = rs.getObject(14) != null ? rs.getInt(14) : null;
                         com.arquitectura.entidades.AudioMensajeLocal a = new com.arquitectura.entidades.AudioMensajeLocal();
@@ -196,7 +199,7 @@ public class RepositorioMensajes {
                         a.setCanalId(canal);
                         a.setRutaArchivo(ruta);
                         a.setTranscripcion(transcripcion);
-                        if (audioBase64 != null) a.setAudioBase64(audioBase64);
+                        if (audio != null) a.setAudio(audio);
                         if (audioMime != null) a.setMime(audioMime);
                         if (duracion != null) a.setDuracionSeg(duracion);
                         res.add(a);
@@ -223,7 +226,7 @@ public class RepositorioMensajes {
     public java.util.List<com.arquitectura.entidades.MensajeLocal> listarMensajesPrivados(Long miId, Long otroId, Integer limit) throws SQLException {
         if (otroId == null) return java.util.List.of();
         boolean idPropioValido = miId != null && miId > 0;
-        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg " +
+        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, audio_datos " +
                      "FROM mensajes WHERE canal_id IS NULL AND contexto_usuario_id = ? AND " +
                      (idPropioValido
                              ? "((emisor_id = ? AND receptor_id = ?) OR (emisor_id = ? AND receptor_id = ?)) "
@@ -257,7 +260,7 @@ public class RepositorioMensajes {
                     if (esAudio) {
                         String ruta = rs.getString(11);
                         String transcripcion = rs.getString(10);
-                        String audioBase64 = rs.getString(12);
+                        byte[] audio = leerAudio(rs, 15, 12);
                         String audioMime = rs.getString(13);
                         Integer duracion = rs.getObject(14) != null ? rs.getInt(14) : null;
                         com.arquitectura.entidades.AudioMensajeLocal a = new com.arquitectura.entidades.AudioMensajeLocal();
@@ -270,7 +273,7 @@ public class RepositorioMensajes {
                         a.setReceptorNombre(receptorNombre);
                         a.setRutaArchivo(ruta);
                         a.setTranscripcion(transcripcion);
-                        if (audioBase64 != null) a.setAudioBase64(audioBase64);
+                        if (audio != null) a.setAudio(audio);
                         if (audioMime != null) a.setMime(audioMime);
                         if (duracion != null) a.setDuracionSeg(duracion);
                         res.add(a);
@@ -301,7 +304,7 @@ public class RepositorioMensajes {
         System.out.println("[RepositorioMensajes] listarMensajesPrivadosPorNombre miNombre=" + miNombre + " otroNombre=" + otroNombre);
         if (otroNombre == null || otroNombre.isBlank()) return java.util.List.of();
         boolean nombrePropioValido = miNombre != null && !miNombre.isBlank();
-        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg " +
+        String sql = "SELECT id, fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, audio_datos " +
                      "FROM mensajes WHERE canal_id IS NULL AND contexto_usuario_id = ? AND " +
                      (nombrePropioValido
                              ? "((LOWER(emisor_nombre) = LOWER(?) AND LOWER(receptor_nombre) = LOWER(?)) OR (LOWER(emisor_nombre) = LOWER(?) AND LOWER(receptor_nombre) = LOWER(?))) "
@@ -335,7 +338,7 @@ public class RepositorioMensajes {
                     if (esAudio) {
                         String ruta = rs.getString(11);
                         String transcripcion = rs.getString(10);
-                        String audioBase64 = rs.getString(12);
+                        byte[] audio = leerAudio(rs, 15, 12);
                         String audioMime = rs.getString(13);
                         Integer duracion = rs.getObject(14) != null ? rs.getInt(14) : null;
                         com.arquitectura.entidades.AudioMensajeLocal a = new com.arquitectura.entidades.AudioMensajeLocal();
@@ -348,7 +351,7 @@ public class RepositorioMensajes {
                         a.setReceptorNombre(receptorNombre);
                         a.setRutaArchivo(ruta);
                         a.setTranscripcion(transcripcion);
-                        if (audioBase64 != null) a.setAudioBase64(audioBase64);
+                        if (audio != null) a.setAudio(audio);
                         if (audioMime != null) a.setMime(audioMime);
                         if (duracion != null) a.setDuracionSeg(duracion);
                         res.add(a);
@@ -372,6 +375,15 @@ public class RepositorioMensajes {
         return res;
     }
 
+    /** Marca de tiempo del mensaje más reciente recibido del servidor, o null si no hay ninguno. */
+    public java.sql.Timestamp obtenerUltimoServerTs() throws SQLException {
+        try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion();
+             PreparedStatement ps = cn.prepareStatement("SELECT MAX(server_ts) FROM mensajes WHERE contexto_usuario_id = ?")) {
+            ps.setLong(1, contextoActual());
+            try (ResultSet rs = ps.executeQuery()) { return rs.next() ? rs.getTimestamp(1) : null; }
+        }
+    }
+
     // ---- Inserciones desde servidor (con deduplicación por server_id y/o por campos + timestamp) ----
     public boolean existePorServerId(Long serverId) throws SQLException {
         if (serverId == null) return false;
@@ -492,7 +504,7 @@ public class RepositorioMensajes {
         return 0L;
     }
 
-    public long insertarDesdeServidorAudioConRuta(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String canalUuid, String transcripcion, String tipo, String rutaArchivo, String audioBase64, String mime, Integer duracionSeg) throws SQLException {
+    public long insertarDesdeServidorAudioConRuta(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String canalUuid, String transcripcion, String tipo, String rutaArchivo, java.nio.ByteBuffer audio, String mime, Integer duracionSeg) throws SQLException {
         System.out.println("[RepositorioMensajes] insertarDesdeServidorAudioConRuta serverId=" + serverId + " emisorId=" + emisorId + " emisorNombre=" + emisorNombre + " receptorId=" + receptorId + " receptorNombre=" + receptorNombre + " ruta=" + rutaArchivo);
         
         // Verificar duplicado por nombre y ruta (P2P compatible)
@@ -501,7 +513,7 @@ public class RepositorioMensajes {
             return 0L;
         }
         
-        if (serverId != null && intentarActualizarCoincidenciaLocal(serverId, serverTs, emisorId, emisorNombre, receptorId, receptorNombre, canalId, true, transcripcion, rutaArchivo, audioBase64, mime, duracionSeg)) {
+        if (serverId != null && intentarActualizarCoincidenciaLocal(serverId, serverTs, emisorId, emisorNombre, receptorId, receptorNombre, canalId, true, transcripcion, rutaArchivo, audio, mime, duracionSeg)) {
             System.out.println("[RepositorioMensajes] Audio actualizado localmente");
             return 0L;
         }
@@ -519,7 +531,7 @@ public class RepositorioMensajes {
         // NO usar existePorCampos para audios en P2P porque usa IDs que pueden diferir
         // if (existePorCampos(emisorId, receptorId, canalId, true, null, rutaArchivo, serverTs)) return 0L;
         
-        String sql = "INSERT INTO mensajes (fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, canal_uuid, es_audio, texto, ruta_audio, audio_base64, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id) " +
+        String sql = "INSERT INTO mensajes (fecha_envio, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, canal_uuid, es_audio, texto, ruta_audio, audio_datos, audio_mime, audio_duracion_seg, server_id, server_ts, contexto_usuario_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion();
              PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -533,7 +545,7 @@ public class RepositorioMensajes {
             if (canalUuid != null) ps.setString(8, canalUuid); else ps.setNull(8, Types.VARCHAR);
             if (transcripcion != null) ps.setString(9, transcripcion); else ps.setNull(9, Types.CLOB);
             ps.setString(10, rutaArchivo);
-            if (audioBase64 != null) ps.setString(11, audioBase64); else ps.setNull(11, Types.CLOB);
+            fijarAudio(ps, 11, audio);
             if (mime != null) ps.setString(12, mime); else ps.setNull(12, Types.VARCHAR);
             if (duracionSeg != null) ps.setInt(13, duracionSeg); else ps.setNull(13, Types.INTEGER);
             if (serverId != null) ps.setLong(14, serverId); else ps.setNull(14, Types.BIGINT);
@@ -545,7 +557,7 @@ public class RepositorioMensajes {
         return 0L;
     }
 
-    private boolean intentarActualizarCoincidenciaLocal(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, boolean esAudio, String texto, String rutaArchivo, String audioBase64, String mime, Integer duracionSeg) throws SQLException {
+    private boolean intentarActualizarCoincidenciaLocal(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, boolean esAudio, String texto, String rutaArchivo, java.nio.ByteBuffer audio, String mime, Integer duracionSeg) throws SQLException {
         boolean intentoPorRuta = esAudio && rutaArchivo != null && !rutaArchivo.isEmpty();
         int intentos = intentoPorRuta ? 2 : 1;
         try (Connection cn = ProveedorConexionCliente.instancia().obtenerConexion()) {
@@ -562,13 +574,13 @@ public class RepositorioMensajes {
                     idEncontrado = buscarCoincidenciaLocal(cn, emisorId, receptorId, canalId, esAudio, campoComparacion, null);
                 }
 
-                if (idEncontrado != null && actualizarMensajeCoincidente(cn, idEncontrado, serverId, serverTs, emisorNombre, receptorNombre, texto, audioBase64, mime, duracionSeg)) {
+                if (idEncontrado != null && actualizarMensajeCoincidente(cn, idEncontrado, serverId, serverTs, emisorNombre, receptorNombre, texto, audio, mime, duracionSeg)) {
                     return true;
                 }
             }
         }
         if (esAudio && rutaArchivo != null && !rutaArchivo.isBlank()) {
-            return intentarActualizarCoincidenciaLocalPorRutaNormalizada(serverId, serverTs, emisorId, emisorNombre, receptorId, receptorNombre, canalId, texto, rutaArchivo, audioBase64, mime, duracionSeg);
+            return intentarActualizarCoincidenciaLocalPorRutaNormalizada(serverId, serverTs, emisorId, emisorNombre, receptorId, receptorNombre, canalId, texto, rutaArchivo, audio, mime, duracionSeg);
         }
         return false;
     }
@@ -610,7 +622,7 @@ public class RepositorioMensajes {
         return null;
     }
 
-    private boolean intentarActualizarCoincidenciaLocalPorRutaNormalizada(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String texto, String rutaArchivo, String audioBase64, String mime, Integer duracionSeg) throws SQLException {
+    private boolean intentarActualizarCoincidenciaLocalPorRutaNormalizada(Long serverId, java.sql.Timestamp serverTs, Long emisorId, String emisorNombre, Long receptorId, String receptorNombre, Long canalId, String texto, String rutaArchivo, java.nio.ByteBuffer audio, String mime, Integer duracionSeg) throws SQLException {
         String rutaNormalizada = normalizarRuta(rutaArchivo);
         if (rutaNormalizada == null || rutaNormalizada.isEmpty()) return false;
 
@@ -643,7 +655,7 @@ public class RepositorioMensajes {
                     String rutaLocalNorm = normalizarRuta(rutaLocal);
                     if (rutaLocalNorm == null) continue;
                     if (rutaLocalNorm.equalsIgnoreCase(rutaNormalizada) || rutaLocal.endsWith(rutaNormalizada)) {
-                        if (actualizarMensajeCoincidente(cn, id, serverId, serverTs, emisorNombre, receptorNombre, texto, audioBase64, mime, duracionSeg)) {
+                        if (actualizarMensajeCoincidente(cn, id, serverId, serverTs, emisorNombre, receptorNombre, texto, audio, mime, duracionSeg)) {
                             return true;
                         }
                     }
@@ -653,15 +665,15 @@ public class RepositorioMensajes {
         return false;
     }
 
-    private boolean actualizarMensajeCoincidente(Connection cn, long id, Long serverId, java.sql.Timestamp serverTs, String emisorNombre, String receptorNombre, String texto, String audioBase64, String mime, Integer duracionSeg) throws SQLException {
+    private boolean actualizarMensajeCoincidente(Connection cn, long id, Long serverId, java.sql.Timestamp serverTs, String emisorNombre, String receptorNombre, String texto, java.nio.ByteBuffer audio, String mime, Integer duracionSeg) throws SQLException {
         try (PreparedStatement up = cn.prepareStatement(
-                "UPDATE mensajes SET server_id = ?, server_ts = ?, emisor_nombre = COALESCE(emisor_nombre, ?), receptor_nombre = COALESCE(receptor_nombre, ?), texto = COALESCE(texto, ?), audio_base64 = COALESCE(audio_base64, ?), audio_mime = COALESCE(audio_mime, ?), audio_duracion_seg = COALESCE(audio_duracion_seg, ?) WHERE id = ?")) {
+                "UPDATE mensajes SET server_id = ?, server_ts = ?, emisor_nombre = COALESCE(emisor_nombre, ?), receptor_nombre = COALESCE(receptor_nombre, ?), texto = COALESCE(texto, ?), audio_datos = COALESCE(audio_datos, ?), audio_mime = COALESCE(audio_mime, ?), audio_duracion_seg = COALESCE(audio_duracion_seg, ?) WHERE id = ?")) {
             if (serverId != null) up.setLong(1, serverId); else up.setNull(1, Types.BIGINT);
             if (serverTs != null) up.setTimestamp(2, serverTs); else up.setNull(2, Types.TIMESTAMP);
             if (emisorNombre != null) up.setString(3, emisorNombre); else up.setNull(3, Types.VARCHAR);
             if (receptorNombre != null) up.setString(4, receptorNombre); else up.setNull(4, Types.VARCHAR);
             if (texto != null) up.setString(5, texto); else up.setNull(5, Types.CLOB);
-            if (audioBase64 != null) up.setString(6, audioBase64); else up.setNull(6, Types.CLOB);
+            fijarAudio(up, 6, audio);
             if (mime != null) up.setString(7, mime); else up.setNull(7, Types.VARCHAR);
             if (duracionSeg != null) up.setInt(8, duracionSeg); else up.setNull(8, Types.INTEGER);
             up.setLong(9, id);
@@ -780,11 +792,11 @@ public class RepositorioMensajes {
 
     /**
      * Inserta múltiples mensajes del servidor de manera optimizada usando batch processing
-     * @param mensajesJson Lista de objetos JSON de mensajes
+     * @param mensajes Objetos JSON de los mensajes, ya leídos
      * @return número de mensajes insertados exitosamente
      */
-    public int insertarMensajesDesdeServidorBatch(java.util.List<String> mensajesJson) throws SQLException {
-        if (mensajesJson == null || mensajesJson.isEmpty()) return 0;
+    public int insertarMensajesDesdeServidorBatch(java.util.List<VistaJson> mensajes) throws SQLException {
+        if (mensajes == null || mensajes.isEmpty()) return 0;
 
         int insertados = 0;
         long contexto = contextoActual();
@@ -794,25 +806,27 @@ public class RepositorioMensajes {
 
             // Preparar statements para inserción
             String sqlTexto = "INSERT INTO mensajes (fecha_envio, server_id, server_ts, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, contexto_usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?, ?)";
-            String sqlAudio = "INSERT INTO mensajes (fecha_envio, server_id, server_ts, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, audio_base64, audio_mime, audio_duracion_seg, contexto_usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?, ?, ?, ?)";
+            String sqlAudio = "INSERT INTO mensajes (fecha_envio, server_id, server_ts, tipo, emisor_id, emisor_nombre, receptor_id, receptor_nombre, canal_id, es_audio, texto, audio_datos, audio_mime, audio_duracion_seg, contexto_usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?, ?, ?, ?)";
 
             try (PreparedStatement psTexto = cn.prepareStatement(sqlTexto);
                  PreparedStatement psAudio = cn.prepareStatement(sqlAudio)) {
 
-                // Procesar cada mensaje
-                for (String objJson : mensajesJson) {
+                // Procesar cada mensaje; los campos de cada uno se ubican en una sola pasada
+                CamposJson m = new CamposJson(CamposMensajeSync.TABLA);
+                CamposJson contenido = new CamposJson(CamposMensajeSync.TABLA);
+                for (VistaJson obj : mensajes) {
                     try {
-                        // Extraer campos básicos usando métodos simplificados
-                        Long serverId = extraerLongSimple(objJson, "serverId", "mensajeId", "messageId", "id");
-
-                        String tipoMsg = extraerTextoSimple(objJson, "tipo", "tipoMensaje");
-                        Long emisor = extraerLongSimple(objJson, "emisor", "emisorId");
-                        String emisorNombre = extraerTextoSimple(objJson, "emisorNombre", "nombreEmisor");
-                        Long receptor = extraerLongSimple(objJson, "receptor", "receptorId");
-                        String receptorNombre = extraerTextoSimple(objJson, "receptorNombre", "nombreReceptor");
-                        Long canalId = extraerLongSimple(objJson, "canalId");
-                        String timestamp = extraerTextoSimple(objJson, "timeStamp", "timestamp");
-                        Boolean esAudio = extraerBooleanSimple(objJson, "esAudio", "audio");
+                        m.leer(obj);
+                        Long serverId = m.largo(CamposMensajeSync.SERVER_ID);
+
+                        String tipoMsg = textoNoVacio(m, CamposMensajeSync.TIPO);
+                        Long emisor = m.largo(CamposMensajeSync.EMISOR);
+                        String emisorNombre = textoNoVacio(m, CamposMensajeSync.EMISOR_NOMBRE);
+                        Long receptor = m.largo(CamposMensajeSync.RECEPTOR);
+                        String receptorNombre = textoNoVacio(m, CamposMensajeSync.RECEPTOR_NOMBRE);
+                        Long canalId = m.largo(CamposMensajeSync.CANAL_ID);
+                        String timestamp = textoNoVacio(m, CamposMensajeSync.TIMESTAMP);
+                        Boolean esAudio = m.booleano(CamposMensajeSync.ES_AUDIO);
                         
                         // Mejorar detección de audio basándose en el tipo de mensaje
                         if (esAudio == null && "AUDIO".equalsIgnoreCase(tipoMsg)) {
@@ -822,25 +836,17 @@ public class RepositorioMensajes {
                         java.sql.Timestamp serverTs = parseServerTimestamp(timestamp);
 
                         MensajeExistente existente = obtenerMensajePorServerId(cn, serverId);
+                        VistaJson contenidoObj = m.objeto(CamposMensajeSync.CONTENIDO);
+                        CamposJson c = contenidoObj != null ? contenido.leer(contenidoObj) : null;
                         String contenidoTexto = null;
                         String rutaAudio = null;
                         boolean esAudioMensaje = Boolean.TRUE.equals(esAudio);
                         if (!esAudioMensaje) {
-                            String contenidoObjPrev = extraerObjetoContenido(objJson);
-                            if (contenidoObjPrev != null) {
-                                contenidoTexto = extraerTextoSimple(contenidoObjPrev, "contenido", "texto", "mensaje");
-                            }
-                            if (contenidoTexto == null) {
-                                contenidoTexto = extraerTextoSimple(objJson, "contenido", "texto", "mensaje");
-                            }
+                            if (c != null) contenidoTexto = textoNoVacio(c, CamposMensajeSync.TEXTO);
+                            if (contenidoTexto == null) contenidoTexto = textoNoVacio(m, CamposMensajeSync.TEXTO);
                         } else {
-                            String contenidoObjPrev = extraerObjetoContenido(objJson);
-                            if (contenidoObjPrev != null) {
-                                rutaAudio = extraerTextoSimple(contenidoObjPrev, "rutaArchivo", "ruta", "rutaAudio");
-                            }
-                            if (rutaAudio == null) {
-                                rutaAudio = extraerTextoSimple(objJson, "rutaArchivo", "ruta", "rutaAudio");
-                            }
+                            if (c != null) rutaAudio = textoNoVacio(c, CamposMensajeSync.RUTA);
+                            if (rutaAudio == null) rutaAudio = textoNoVacio(m, CamposMensajeSync.RUTA);
                         }
 
                         if (existente != null) {
@@ -857,25 +863,20 @@ public class RepositorioMensajes {
                         // Decidir si es audio o texto
                         if (esAudioMensaje) {
                             // Mensaje de audio - extraer desde objeto contenido
-                            String contenidoObj = extraerObjetoContenido(objJson);
                             String transcripcion = null;
-                            String audioBase64 = null;
                             String mime = null;
                             Integer duracion = null;
                             
-                            if (contenidoObj != null) {
-                                // Extraer campos del objeto contenido
-                                transcripcion = extraerTextoSimple(contenidoObj, "transcripcion", "transcripcionTexto");
-                                audioBase64 = extraerTextoSimple(contenidoObj, "audioBase64", "base64", "audio");
-                                mime = extraerTextoSimple(contenidoObj, "mime", "mimeType", "tipoMime");
-                                duracion = extraerIntegerSimple(contenidoObj, "duracionSeg", "duracion");
+                            if (c != null) {
+                                transcripcion = textoNoVacio(c, CamposMensajeSync.TRANSCRIPCION);
+                                mime = textoNoVacio(c, CamposMensajeSync.MIME);
+                                duracion = c.entero(CamposMensajeSync.DURACION);
                             }
                             
                             // Fallback: buscar directamente en el JSON raíz
-                            if (transcripcion == null) transcripcion = extraerTextoSimple(objJson, "transcripcion", "texto");
-                            if (audioBase64 == null) audioBase64 = extraerTextoSimple(objJson, "audioBase64", "base64");
-                            if (mime == null) mime = extraerTextoSimple(objJson, "audioMime", "mime");
-                            if (duracion == null) duracion = extraerIntegerSimple(objJson, "audioDuracionSeg", "duracion");
+                            if (transcripcion == null) transcripcion = textoNoVacio(m, CamposMensajeSync.TRANSCRIPCION_RAIZ);
+                            if (mime == null) mime = textoNoVacio(m, CamposMensajeSync.MIME_RAIZ);
+                            if (duracion == null) duracion = m.entero(CamposMensajeSync.DURACION_RAIZ);
 
                             // Agregar al batch de audio
                             int idx = 1;
@@ -889,7 +890,11 @@ public class RepositorioMensajes {
                             if (receptorNombre != null) psAudio.setString(idx++, receptorNombre); else psAudio.setNull(idx++, Types.VARCHAR);
                             if (canalId != null) psAudio.setLong(idx++, canalId); else psAudio.setNull(idx++, Types.BIGINT);
                             if (transcripcion != null) psAudio.setString(idx++, transcripcion); else psAudio.setNull(idx++, Types.CLOB);
-                            if (audioBase64 != null) psAudio.setString(idx++, audioBase64); else psAudio.setNull(idx++, Types.CLOB);
+                            // El Base64 se decodifica desde la trama, sin crear un String
+                            int idxAudio = idx++;
+                            boolean audioFijado = c != null && fijarAudioBase64(psAudio, idxAudio, c.tramoResuelto(CamposMensajeSync.AUDIO_BASE64));
+                            if (!audioFijado) audioFijado = fijarAudioBase64(psAudio, idxAudio, m.tramoResuelto(CamposMensajeSync.AUDIO_BASE64));
+                            if (!audioFijado) psAudio.setNull(idxAudio, Types.BLOB);
                             if (mime != null) psAudio.setString(idx++, mime); else psAudio.setNull(idx++, Types.VARCHAR);
                             if (duracion != null) psAudio.setInt(idx++, duracion); else psAudio.setNull(idx++, Types.INTEGER);
                             psAudio.setLong(idx++, contexto);
@@ -960,105 +965,47 @@ public class RepositorioMensajes {
         }
     }
 
-    // Métodos de extracción simplificados para mejor rendimiento
-    private String extraerTextoSimple(String json, String... claves) {
-        if (json == null) return null;
-        for (String clave : claves) {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"" + clave + "\"\\s*:\\s*\"([^\"]*)\"|\"" + clave + "\"\\s*:\\s*null");
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1);
-                return valor != null && !valor.trim().isEmpty() ? valor : null;
-            }
-        }
-        return null;
+    // Texto del primer alias que lo tenga; los textos en blanco cuentan como ausentes
+    private static String textoNoVacio(CamposJson campos, int campo) {
+        String valor = campos.texto(campo);
+        return valor != null && !valor.trim().isEmpty() ? valor : null;
     }
 
-    private Long extraerLongSimple(String json, String... claves) {
-        if (json == null) return null;
-        for (String clave : claves) {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"" + clave + "\"\\s*:\\s*(\\d+)|\"" + clave + "\"\\s*:\\s*null");
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1);
-                if (valor != null) {
-                    try {
-                        return Long.valueOf(valor);
-                    } catch (NumberFormatException e) {
-                        // Continuar con siguiente clave
-                    }
-                }
-            }
+    // Decodifica el tramo Base64 directamente al parámetro; false si no hay audio que fijar
+    private static boolean fijarAudioBase64(PreparedStatement ps, int idx, java.nio.ByteBuffer tramo) throws SQLException {
+        if (tramo == null || !tramo.hasRemaining()) return false;
+        try {
+            ps.setBytes(idx, DecodificadorBase64.aBytes(tramo));
+            return true;
+        } catch (IllegalArgumentException e) {
+            System.err.println("[RepositorioMensajes] Audio con Base64 inválido, se guarda sin audio: " + e.getMessage());
+            return false;
         }
-        return null;
     }
 
-    private Boolean extraerBooleanSimple(String json, String... claves) {
-        if (json == null) return null;
-        for (String clave : claves) {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"" + clave + "\"\\s*:\\s*(true|false)|\"" + clave + "\"\\s*:\\s*null");
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1);
-                if (valor != null) {
-                    return Boolean.valueOf(valor);
-                }
-            }
+    // Bytes entre position y limit; H2 los copia al fijar el parámetro, así que pueden venir de un pool
+    private static void fijarAudio(PreparedStatement ps, int idx, java.nio.ByteBuffer audio) throws SQLException {
+        if (audio == null || !audio.hasRemaining()) {
+            ps.setNull(idx, Types.BLOB);
+        } else if (audio.hasArray()) {
+            ps.setBinaryStream(idx, new java.io.ByteArrayInputStream(audio.array(), audio.arrayOffset() + audio.position(), audio.remaining()), audio.remaining());
+        } else {
+            byte[] copia = new byte[audio.remaining()];
+            audio.duplicate().get(copia);
+            ps.setBytes(idx, copia);
         }
-        return null;
     }
 
-    private Integer extraerIntegerSimple(String json, String... claves) {
-        if (json == null) return null;
-        for (String clave : claves) {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"" + clave + "\"\\s*:\\s*(\\d+)|\"" + clave + "\"\\s*:\\s*null");
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                String valor = m.group(1);
-                if (valor != null) {
-                    try {
-                        return Integer.valueOf(valor);
-                    } catch (NumberFormatException e) {
-                        // Continuar con siguiente clave
-                    }
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * Extrae el objeto "contenido" del JSON principal
-     */
-    private String extraerObjetoContenido(String json) {
-        if (json == null) return null;
-        
-        // Buscar el inicio del objeto contenido
-        int contenidoIndex = json.indexOf("\"contenido\"");
-        if (contenidoIndex == -1) return null;
-        
-        // Buscar el inicio del objeto después de los dos puntos
-        int startIndex = json.indexOf("{", contenidoIndex);
-        if (startIndex == -1) return null;
-        
-        // Contar llaves para encontrar el final del objeto
-        int braceCount = 1;
-        int endIndex = startIndex + 1;
-        
-        while (endIndex < json.length() && braceCount > 0) {
-            char c = json.charAt(endIndex);
-            if (c == '{') {
-                braceCount++;
-            } else if (c == '}') {
-                braceCount--;
-            }
-            endIndex++;
-        }
-        
-        if (braceCount == 0) {
-            return json.substring(startIndex, endIndex);
+    // audio_datos, o el Base64 de las filas guardadas antes de esa columna
+    private static byte[] leerAudio(ResultSet rs, int columnaDatos, int columnaBase64) throws SQLException {
+        byte[] datos = rs.getBytes(columnaDatos);
+        if (datos != null) return datos;
+        String base64 = rs.getString(columnaBase64);
+        if (base64 == null || base64.isBlank()) return null;
+        try {
+            return java.util.Base64.getDecoder().decode(base64);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        
-        return null;
     }
 }
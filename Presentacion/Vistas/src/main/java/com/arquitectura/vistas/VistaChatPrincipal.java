@@ -9,10 +9,16 @@ import com.arquitectura.entidades.ClienteLocal;
 import com.arquitectura.entidades.MensajeLocal;
 import com.arquitectura.entidades.TextoMensajeLocal;
 import com.arquitectura.servicios.ServicioConexionChat;
+import com.arquitectura.servicios.CalidadConexion;
 import com.arquitectura.servicios.ObservadorEventosChat;
 import com.arquitectura.servicios.ServicioContextoDatos;
 import com.arquitectura.servicios.SincronizacionCompletadaListener;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+import com.arquitectura.infra.json.VistaJson;
+import com.arquitectura.infra.net.EnrutadorMensajesChat;
+import com.arquitectura.infra.net.EventoChat;
 import com.arquitectura.infra.net.OyenteMensajesChat;
+import com.arquitectura.infra.net.TramaChat;
 import com.arquitectura.servicios.OyenteActualizacionMensajes;
 import com.arquitectura.servicios.ServicioEventosMensajes;
 
@@ -29,7 +35,6 @@ import java.awt.*;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.Base64;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
@@ -110,18 +115,23 @@ public class VistaChatPrincipal extends JFrame {
     private void registrarOyenteEventos() {
         oyenteEventos = new OyenteMensajesChat() {
             @Override public void alRecibirMensaje(String mensaje) {
-                if (mensaje == null || notificadoDesconexion) return;
-                String compact = mensaje.replaceAll("\\s+", "");
-                if (compact.contains("\"command\":\"EVENT\"")) {
-                    String tipo = extraerCampo(compact, "tipo");
+                if (mensaje != null) alRecibirTrama(TramaChat.desdeTexto(mensaje));
+            }
+
+            @Override public void alRecibirTrama(TramaChat trama) {
+                if (notificadoDesconexion) return;
+                EventoChat evento = trama.evento();
+                if (evento != null && evento.esComando("EVENT")) {
+                    VistaJson doc = evento.documento();
+                    String tipo = doc.buscarTexto("tipo");
                     if ("KICKED".equalsIgnoreCase(tipo)) {
                         notificadoDesconexion = true;
-                        String msg = extraerCampo(mensaje, "mensaje");
+                        String msg = doc.buscarTexto("mensaje");
                         if (msg == null || msg.isEmpty()) msg = "El servidor cerró esta conexión.";
                         mostrarDialogoYSalir("Conexión expulsada", msg);
                     } else if ("SERVER_SHUTDOWN".equalsIgnoreCase(tipo)) {
                         notificadoDesconexion = true;
-                        String msg = extraerCampo(mensaje, "mensaje");
+                        String msg = doc.buscarTexto("mensaje");
                         if (msg == null || msg.isEmpty()) msg = "El servidor se está apagando. Serás desconectado.";
                         mostrarDialogoYSalir("Servidor apagándose", msg);
                     }
@@ -133,8 +143,25 @@ public class VistaChatPrincipal extends JFrame {
                 notificadoDesconexion = true;
                 mostrarDialogoYSalir("Servidor desconectado", "El servidor se apagó o se perdió la conexión. La aplicación se cerrará.");
             }
+
+            // Con reconexión automática solo se informa en la barra de estado
+            @Override public void alPerderConexion() {
+                actualizarEstadoConexion("Conexión perdida, reconectando...");
+            }
+
+            @Override public void alReintentarConexion(int intento, long esperaMs) {
+                actualizarEstadoConexion("Reconectando (intento " + intento + ", en " + (esperaMs / 1000.0) + " s)...");
+            }
+
+            @Override public void alRestablecerConexion() {
+                actualizarEstadoConexion("Conectado");
+            }
         };
-        try { clienteTCP.registrarOyente(oyenteEventos); } catch (Exception ignored) {}
+        try {
+            // Solo los eventos que cierran la sesión; el cierre de conexión llega a todos los suscritos
+            clienteTCP.suscribir(EnrutadorMensajesChat.claveEvento("KICKED"), oyenteEventos);
+            clienteTCP.suscribir(EnrutadorMensajesChat.claveEvento("SERVER_SHUTDOWN"), oyenteEventos);
+        } catch (Exception ignored) {}
     }
 
     private void registrarOyenteSincronizacionGlobal() {
@@ -164,15 +191,6 @@ public class VistaChatPrincipal extends JFrame {
 
 
 
-    private static String extraerCampo(String jsonLinea, String campo) {
-        try {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\\\"" + java.util.regex.Pattern.quote(campo) + "\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            java.util.regex.Matcher m = p.matcher(jsonLinea);
-            if (m.find()) return m.group(1);
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     private void mostrarDialogoYSalir(String titulo, String mensaje) {
         javax.swing.SwingUtilities.invokeLater(() -> {
             try {
@@ -317,7 +335,10 @@ public class VistaChatPrincipal extends JFrame {
         try {
             if (!clienteTCP.estaConectado()) clienteTCP.conectar();
             com.arquitectura.servicios.ServicioComandosChat comandos = new com.arquitectura.servicios.ServicioComandosChat(clienteTCP);
-            java.util.List<ClienteLocal> usuarios = comandos.listarUsuariosYEsperar(6000);
+            // Ambas consultas salen a la vez; se espera solo a la más lenta
+            var usuariosEnCurso = comandos.listarUsuariosAsincrono(6000);
+            var conectadosEnCurso = comandos.listarConectadosAsincrono(3000);
+            java.util.List<ClienteLocal> usuarios = usuariosEnCurso.join();
             
             // ========== SOLUCIÓN P2P: Obtener lista de conectados por NOMBRE ==========
             // El servidor LIST_USERS puede tener estados incorrectos por conflicto de IDs entre servidores P2P
@@ -325,7 +346,7 @@ public class VistaChatPrincipal extends JFrame {
             // y luego aplicamos esos estados POR NOMBRE (no por ID)
             java.util.Set<String> conectadosPorNombre = new java.util.HashSet<>();
             try {
-                java.util.List<ClienteLocal> conectados = comandos.listarConectadosYEsperar(3000);
+                java.util.List<ClienteLocal> conectados = conectadosEnCurso.join();
                 if (conectados != null) {
                     for (ClienteLocal c : conectados) {
                         if (c != null && c.getNombreDeUsuario() != null) {
@@ -468,11 +489,28 @@ public class VistaChatPrincipal extends JFrame {
         return panelDerecho;
     }
 
+    private void actualizarEstadoConexion(String texto) {
+        SwingUtilities.invokeLater(() -> {
+            if (lblEstadoConexion != null) lblEstadoConexion.setText(texto);
+        });
+    }
+
     private JPanel crearBarraEstado() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(4, 8, 4, 8));
         lblEstadoConexion = new JLabel("Conectado");
         panel.add(lblEstadoConexion, BorderLayout.WEST);
+        // Refresca la calidad medida por el latido; durante una reconexión manda el oyente de eventos
+        javax.swing.Timer refresco = new javax.swing.Timer(2000, null);
+        refresco.addActionListener(e -> {
+            if (!isDisplayable()) { refresco.stop(); return; }
+            if (!clienteTCP.estaConectado() || clienteTCP.estaReconectando()) return;
+            CalidadConexion calidad = clienteTCP.obtenerCalidadConexion();
+            if (!calidad.tieneMuestras()) return;
+            lblEstadoConexion.setText(String.format(java.util.Locale.ROOT, "Conectado · RTT %.0f ms (p50 %.0f / p99 %.0f)",
+                    calidad.obtenerUltimoRttMs(), calidad.obtenerRttP50Ms(), calidad.obtenerRttP99Ms()));
+        });
+        refresco.start();
         return panel;
     }
 
@@ -689,7 +727,7 @@ public class VistaChatPrincipal extends JFrame {
             return;
         }
 
-        Thread envio = new Thread(() -> {
+        FabricaEjecutores.compartida().iniciar("envio-audio", () -> {
             ControladorAudio.ResultadoEnvioAudio resultado;
             if (usuarioDestino != null) {
                 resultado = audioController.enviarAudioAPrivado(usuarioDestino.getId(), usuarioDestino.getNombreDeUsuario(), archivoWav, datosWav);
@@ -708,9 +746,7 @@ public class VistaChatPrincipal extends JFrame {
                     JOptionPane.showMessageDialog(this, msg, "Error", JOptionPane.ERROR_MESSAGE);
                 }
             });
-        }, "envio-audio");
-        envio.setDaemon(true);
-        envio.start();
+        });
     }
 
     private void mostrarInfoUsuario() {
@@ -780,7 +816,7 @@ public class VistaChatPrincipal extends JFrame {
                 System.err.println("[VistaChatPrincipal] Error contando solicitudes: " + e.getMessage());
                 return 0;
             }
-        }).thenAccept(count -> SwingUtilities.invokeLater(() -> actualizarTextoSolicitudes(count)));
+        }, FabricaEjecutores.compartida().tareas()).thenAccept(count -> SwingUtilities.invokeLater(() -> actualizarTextoSolicitudes(count)));
     }
 
     private void actualizarTextoSolicitudes(int count) {
@@ -1152,7 +1188,7 @@ public class VistaChatPrincipal extends JFrame {
         MensajeAudioPanel(AudioMensajeLocal audio) {
             setLayout(new FlowLayout(FlowLayout.LEFT, 6, 0));
             setOpaque(false);
-            this.audioBytes = decodificarAudio(audio != null ? audio.getAudioBase64() : null);
+            this.audioBytes = audio != null ? audio.getAudio() : null;
             btnReproducir = new JButton("▶ Reproducir");
             btnReproducir.addActionListener(e -> alternarReproduccion());
             add(btnReproducir);
@@ -1225,17 +1261,6 @@ public class VistaChatPrincipal extends JFrame {
                 btnReproducir.setText("Audio no disponible");
             }
         }
-
-        private byte[] decodificarAudio(String base64) {
-            if (base64 == null || base64.isBlank()) {
-                return new byte[0];
-            }
-            try {
-                return Base64.getDecoder().decode(base64);
-            } catch (IllegalArgumentException e) {
-                return new byte[0];
-            }
-        }
     }
 
     static class UsuarioListRenderer extends DefaultListCellRenderer {
@@ -30,7 +30,12 @@ import javax.swing.border.EmptyBorder;
 
 import com.arquitectura.controladores.ControladorLogin;
 import com.arquitectura.entidades.ClienteLocal;
+import com.arquitectura.infra.hilos.FabricaEjecutores;
+import com.arquitectura.infra.json.VistaJson;
+import com.arquitectura.infra.net.EnrutadorMensajesChat;
+import com.arquitectura.infra.net.EventoChat;
 import com.arquitectura.infra.net.OyenteMensajesChat;
+import com.arquitectura.infra.net.TramaChat;
 import com.arquitectura.servicios.ObservadorEventosChat;
 import com.arquitectura.servicios.ServicioConexionChat;
 
@@ -190,7 +195,7 @@ public class VistaLogin extends JFrame {
         botonIniciarSesion.setEnabled(false);
         etiquetaEstado.setText("Conectando..."); etiquetaEstado.setForeground(Color.BLUE);
 
-        new Thread(() -> {
+        FabricaEjecutores.compartida().iniciar("vista-login-sesion", () -> {
             boolean ok = controladorLogin.iniciarSesion(usuario, contrasena);
             String msg = controladorLogin.getUltimoMensajeServidor();
             SwingUtilities.invokeLater(() -> {
@@ -198,7 +203,7 @@ public class VistaLogin extends JFrame {
                 if (ok) { mostrarExito((msg != null && !msg.isEmpty()) ? msg : "Login exitoso"); abrirVentanaPrincipal(); }
                 else { mostrarError((msg != null && !msg.isEmpty()) ? msg : "Usuario o contrasena incorrectos"); }
             });
-        }).start();
+        });
     }
 
     private void ejecutarRegistro() {
@@ -212,7 +217,7 @@ public class VistaLogin extends JFrame {
         if (!email.contains("@") || !email.contains(".")) { mostrarError("Email invalido"); return; }
 
         botonRegistrar.setEnabled(false); etiquetaEstado.setText("Registrando..."); etiquetaEstado.setForeground(Color.BLUE);
-        new Thread(() -> {
+        FabricaEjecutores.compartida().iniciar("vista-login-registro", () -> {
             boolean ok = controladorLogin.registrar(usuario, email, contrasena, bytesFoto);
             String msg = controladorLogin.getUltimoMensajeServidor();
             SwingUtilities.invokeLater(() -> {
@@ -225,7 +230,7 @@ public class VistaLogin extends JFrame {
                     mostrarError((msg != null && !msg.isEmpty()) ? msg : "Error en registro");
                 }
             });
-        }).start();
+        });
     }
 
     private void seleccionarFoto() {
@@ -274,7 +279,7 @@ public class VistaLogin extends JFrame {
     private void conectarAlIniciar() {
         etiquetaEstado.setText("Conectando con el servidor...");
         etiquetaEstado.setForeground(Color.BLUE);
-        new Thread(() -> {
+        FabricaEjecutores.compartida().iniciar("vista-login-conexion", () -> {
             boolean ok;
             try {
                 ServicioConexionChat sc = controladorLogin.getServicioConexion();
@@ -290,25 +295,29 @@ public class VistaLogin extends JFrame {
                 if (finalOk) { mostrarExito("Conectado al servidor"); }
                 else { mostrarError("No se pudo conectar al servidor"); }
             });
-        }).start();
+        });
     }
 
     private void registrarOyenteEventos() {
         oyenteEventos = new OyenteMensajesChat() {
             @Override public void alRecibirMensaje(String mensaje) {
-                if (mensaje == null || notificadoDesconexion) return;
-                String compact = mensaje.replaceAll("\\s+", "");
-                
-                if (compact.contains("\"command\":\"EVENT\"")) {
-                    String tipo = extraerCampo(compact, "tipo");
+                if (mensaje != null) alRecibirTrama(TramaChat.desdeTexto(mensaje));
+            }
+
+            @Override public void alRecibirTrama(TramaChat trama) {
+                if (notificadoDesconexion) return;
+                EventoChat evento = trama.evento();
+                if (evento != null && evento.esComando("EVENT")) {
+                    VistaJson doc = evento.documento();
+                    String tipo = doc.buscarTexto("tipo");
                     if ("KICKED".equalsIgnoreCase(tipo)) {
                         notificadoDesconexion = true;
-                        String msg = extraerCampo(mensaje, "mensaje");
+                        String msg = doc.buscarTexto("mensaje");
                         if (msg == null || msg.isEmpty()) msg = "El servidor cerró esta conexión.";
                         mostrarDialogoYSalir("Conexión expulsada", msg);
                     } else if ("SERVER_SHUTDOWN".equalsIgnoreCase(tipo)) {
                         notificadoDesconexion = true;
-                        String msg = extraerCampo(mensaje, "mensaje");
+                        String msg = doc.buscarTexto("mensaje");
                         if (msg == null || msg.isEmpty()) msg = "El servidor se está apagando. Serás desconectado.";
                         mostrarDialogoYSalir("Servidor apagándose", msg);
                     }
@@ -321,16 +330,11 @@ public class VistaLogin extends JFrame {
                 mostrarDialogoYSalir("Servidor desconectado", "El servidor se apagó o se perdió la conexión. La aplicación se cerrará.");
             }
         };
-        try { controladorLogin.getServicioConexion().registrarOyente(oyenteEventos); } catch (Exception ignored) {}
-    }
-
-    private static String extraerCampo(String jsonLinea, String campo) {
         try {
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("\\\"" + java.util.regex.Pattern.quote(campo) + "\\\"\\s*:\\s*\\\"(.*?)\\\"");
-            java.util.regex.Matcher m = p.matcher(jsonLinea);
-            if (m.find()) return m.group(1);
+            // Solo los eventos que cierran la sesión; el cierre de conexión llega a todos los suscritos
+            controladorLogin.getServicioConexion().suscribir(EnrutadorMensajesChat.claveEvento("KICKED"), oyenteEventos);
+            controladorLogin.getServicioConexion().suscribir(EnrutadorMensajesChat.claveEvento("SERVER_SHUTDOWN"), oyenteEventos);
         } catch (Exception ignored) {}
-        return null;
     }
 
     private void mostrarDialogoYSalir(String titulo, String mensaje) {
@@ -343,7 +347,7 @@ public class VistaLogin extends JFrame {
 
     private void probarConexion() {
         etiquetaEstado.setText("Probando conexion..."); etiquetaEstado.setForeground(Color.BLUE);
-        new Thread(() -> {
+        FabricaEjecutores.compartida().iniciar("vista-login-prueba", () -> {
             boolean ok;
             try {
                 ServicioConexionChat sc = controladorLogin.getServicioConexion();
@@ -358,7 +362,7 @@ public class VistaLogin extends JFrame {
                 if (res) { mostrarExito("Conectado (PONG)"); }
                 else { mostrarError("No se pudo conectar"); }
             });
-        }).start();
+        });
     }
 
     public static void main(String[] args) {